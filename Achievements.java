@@ -0,0 +1,23 @@
+import java.util.List;
+
+/**
+ * <p>
+ * This class lists the achievements every game starts with.
+ */
+public final class Achievements {
+    public static final Rule FIRST_HARVEST = new Rule("Green Thumb", "Harvest your first crop.",
+            Rule.atLeast(GameCounter.HARVESTS, 1));
+    public static final Rule SUNFLOWER_FIELDS = new Rule("Sunflower Fields", "Harvest 100 sunflowers.",
+            Rule.atLeast(GameCounter.HARVESTED_SUNFLOWER, 100));
+    public static final Rule ORCHARD = new Rule("Orchard", "Harvest 10 apple trees.",
+            Rule.atLeast(GameCounter.HARVESTED_APPLE, 10));
+    public static final Rule RAPID_RISE = new Rule("Rapid Rise", "Become a Legendary Farmer by day 60.",
+            Rule.atLeast(GameCounter.TITLE, FarmerTitle.LEGENDARY_FARMER.ordinal()),
+            Rule.atMost(GameCounter.DAY, 60));
+    public static final Rule TYCOON = new Rule("Tycoon", "Have 10000 objectCoins.",
+            Rule.atLeast(GameCounter.OBJECTCOINS, 10000));
+
+    public static final List<Rule> ALL = List.of(FIRST_HARVEST, SUNFLOWER_FIELDS, ORCHARD, RAPID_RISE, TYCOON);
+
+    private Achievements() {}
+}
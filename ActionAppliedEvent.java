@@ -0,0 +1,26 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for an action chosen from the menu being applied to the game.
+ */
+@Name("myfarm.ActionApplied")
+@Label("Action Applied")
+@Category("MyFarm")
+public class ActionAppliedEvent extends jdk.jfr.Event {
+    @Label("Action")
+    @Description("The menu character of the action")
+    char action;
+
+    @Label("Row")
+    int x;
+
+    @Label("Column")
+    int y;
+
+    @Label("Result")
+    @Description("The error caused by the action, or OK if there was none")
+    String result;
+}
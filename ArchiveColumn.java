@@ -0,0 +1,67 @@
+/**
+ * <p>
+ * This enum lists the columns of the archive of finished games, see GameArchive. Every column holds one
+ * whole number per game.
+ */
+public enum ArchiveColumn {
+    /**
+     * The time the game was archived, in milliseconds since the epoch. Games are archived in the order
+     * they end, so this column is sorted within an archive written by one writer.
+     */
+    ENDED_AT,
+    DAY,
+    /**
+     * 1 if the game ended because every Plot had a withered Crop and 0 if the Farmer ran out of money.
+     */
+    END_CAUSE,
+    OBJECTCOINS,
+    LEVEL,
+    /**
+     * The ordinal of the Farmer's title.
+     */
+    TITLE,
+    HARVESTED_TURNIP,
+    HARVESTED_CARROT,
+    HARVESTED_POTATO,
+    HARVESTED_ROSE,
+    HARVESTED_TURNIPS,
+    HARVESTED_SUNFLOWER,
+    HARVESTED_MANGO,
+    HARVESTED_APPLE,
+    /**
+     * The EXP units gained from plowing.
+     */
+    EXP_PLOW,
+    EXP_WATER,
+    EXP_FERTILIZE,
+    EXP_SHOVEL,
+    EXP_PICKAXE,
+    EXP_HARVEST;
+
+    private static final String EXP_ACTIONS = "PWFSXH";
+
+    /**
+     * Gets the row of a finished game.
+     * @param gameManager the game.
+     * @param endedAt the time the game ended, in milliseconds since the epoch.
+     * @return the value of every column, by ordinal.
+     */
+    public static long[] row(GameManager gameManager, long endedAt) {
+        long[] row = new long[values().length];
+        Farmer farmer = gameManager.getFarmer();
+        RuleEngine rules = gameManager.getRules();
+        row[ENDED_AT.ordinal()] = endedAt;
+        row[DAY.ordinal()] = gameManager.getDay();
+        row[END_CAUSE.ordinal()] = gameManager.getFarm().isFullOfWitheredCrops(gameManager.getDay()) ? 1 : 0;
+        row[OBJECTCOINS.ordinal()] = farmer.getObjectCoins();
+        row[LEVEL.ordinal()] = farmer.getLevel();
+        row[TITLE.ordinal()] = farmer.getTitle().ordinal();
+        for (int i = 0; i < CropFactory.CHOICES.length(); i++) {
+            row[HARVESTED_TURNIP.ordinal() + i] = rules.get(GameCounter.harvested(CropFactory.CHOICES.charAt(i)));
+        }
+        for (int i = 0; i < EXP_ACTIONS.length(); i++) {
+            row[EXP_PLOW.ordinal() + i] = gameManager.getExpGained(EXP_ACTIONS.charAt(i));
+        }
+        return row;
+    }
+}
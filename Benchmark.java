@@ -0,0 +1,1088 @@
+import com.sun.management.ThreadMXBean;
+import exceptions.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * <p>
+ * Benchmark harness for the hot paths of the game: the Farm predicate scans, advancing the day, harvest
+ * calculation, the tree adjacency check, planting through the CropFactory, a full scripted game from the
+ * menu and from a command file and updating the counters of the rule engine, recording telemetry,
+ * generating rock maps, building mid-game scenarios, publishing snapshots to concurrent readers, encoding
+ * state streams, ranking harvestable Crops, checking every Crop for maturity and withering at once,
+ * scanning an archive of 10M finished games, undoing actions and selling harvests on a shared market
+ * while other threads sell too, against a market behind a single lock.
+ * <p>
+ * A VecFarmEnv of many games is then stepped with random actions, on one thread and across the common
+ * fork-join pool, reporting the steps per second and the bytes allocated per step by every thread. How
+ * close GameManager.getRetainedBytes is to the heap games take up is checked by test/MemoryFootprintTest.
+ * <p>
+ * A load test then compares applying commands from many client threads on the ticks of a TickScheduler
+ * against dispatching each command to its game's thread as it arrives, by throughput and latency, after a
+ * first run of the same load that is not recorded. Both hold at most LOAD_QUEUE_CAPACITY commands per game
+ * and make clients wait beyond that, so that neither can win by queueing without bound. It also measures
+ * a ClusterCoordinator with 1, 2 and 4 shard processes, whose latency is that of a whole batch.
+ * <p>
+ * JMH itself cannot be used here since it does not accept benchmarks that live in the default package like
+ * the rest of the game, so this harness does what it does for these benchmarks. Every group of benchmarks
+ * runs in fresh JVMs, benchmark.forks of them one after another (2 unless set, and 0 to run in this JVM),
+ * so that the profile and heap left by one group cannot change the code the JIT compiles for the next.
+ * Every case runs WARMUP_ITERATIONS iterations that are thrown away and then MEASURE_ITERATIONS that are
+ * kept, and the mean time per operation over the iterations of every fork is reported with its standard
+ * deviation. The result of every operation goes to consume, a compiler blackhole in the forks like the one
+ * JMH uses, so that no operation can be removed as dead code. Besides the time, the bytes allocated per
+ * operation and the garbage collections that ran during measurement are reported, which stands in for
+ * JMH's GC and allocation profilers.
+ * <p>
+ * Results are printed to the console and, if a file is given as the first argument, written to that file.
+ * The results of the current code are kept in benchmarks/baseline.txt so that changes can be compared.
+ */
+public class Benchmark {
+    private static final int DEFAULT_FORKS = 2;
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURE_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 100_000_000L;
+    private static final String FORK_ARGUMENT = "--fork";
+    private static final String SAMPLE_PREFIX = "#sample ";
+    private static final int[] FARM_SIZES = {1, 10, 100, 1000};
+    private static final String GAME_SCRIPT = "P\n0 0\nT\n0 0\nT\nW\n0 0\nE\nY\nE\nY\nH\n0 0\n\n";
+    private static final int GAME_SCRIPT_REPEATS = 20;
+    private static final String RUNNER_SCRIPT = "P 0 0\nT 0 0 T\nW 0 0\nE Y\nE Y\nH 0 0\n";
+    private static final int RUNNER_SCRIPT_REPEATS = 100_000;
+    private static final int[] SNAPSHOT_READERS = {0, 1, 100};
+    private static final long SNAPSHOT_READ_PAUSE_NANOS = 1_000_000L;
+    private static final int[] MARKET_HARVESTERS = {0, 1, 7, 63};
+    private static final int LOAD_GAMES = 64;
+    private static final int LOAD_PRODUCERS = 4;
+    private static final int LOAD_WORKERS = 2;
+    private static final int LOAD_COMMANDS = 200_000;
+    private static final String LOAD_ACTIONS = "WWWWPSFH";
+    private static final int[] LOAD_RATES = {0, 20_000};
+    private static final int LOAD_QUEUE_CAPACITY = 1024;
+    private static final int[] CLUSTER_SHARDS = {1, 2, 4};
+    private static final int CLUSTER_BATCH = 2048;
+    private static final int CLUSTER_ROUNDS = 200;
+    private static final int ARCHIVE_GAMES = 10_000_000;
+    private static final int ENV_GAMES = 256;
+    private static final int ENV_ACTION_BATCHES = 64;
+    private static final int ENV_WARMUP_ITERATIONS = 30;
+
+    private static final PrintStream console = System.out;
+    private static final PrintStream errors = System.err;
+    private static final StringBuilder results = new StringBuilder();
+    private static final Map<String, Group> groups = new LinkedHashMap<>();
+    private static final Map<String, Samples> samples = new LinkedHashMap<>();
+    // Set in the forks, whose JVMs are started with blackhole as a compiler blackhole.
+    private static final boolean COMPILER_BLACKHOLE = Boolean.getBoolean("benchmark.compiler.blackhole");
+    // Two values that are never equal, which the JIT cannot know since they are volatile.
+    private static volatile long baitLeft = 1;
+    private static volatile long baitRight = 2;
+    private static final LongAdder blackholeReaders = new LongAdder();
+
+    /**
+     * Benchmarks run together in one JVM, sharing their setup.
+     */
+    private interface Group {
+        void run() throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        // The game prints to the console on almost every action, which would drown out everything else.
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+
+        Map<String, Group> measured = new LinkedHashMap<>();
+        for (int size : FARM_SIZES) {
+            measured.put("scans-" + size, () -> benchmarkFarmScans(size));
+        }
+        for (int size : FARM_SIZES) {
+            measured.put("day-" + size, () -> benchmarkAdvanceDay(size));
+        }
+        measured.put("days", Benchmark::benchmarkAdvanceDays);
+        measured.put("harvest", Benchmark::benchmarkHarvestCalculate);
+        measured.put("adjacency", Benchmark::benchmarkAdjacency);
+        measured.put("planting", Benchmark::benchmarkPlanting);
+        measured.put("scripted", Benchmark::benchmarkScriptedGame);
+        measured.put("runner", Benchmark::benchmarkScriptRunner);
+        measured.put("rules-10", () -> benchmarkRuleEngine(10));
+        measured.put("rules-1000", () -> benchmarkRuleEngine(1000));
+        measured.put("telemetry", Benchmark::benchmarkTelemetry);
+        measured.put("maps", Benchmark::benchmarkMapGenerator);
+        measured.put("scenario", Benchmark::benchmarkScenario);
+        measured.put("snapshots", () -> benchmarkSnapshots(-1));
+        for (int readers : SNAPSHOT_READERS) {
+            measured.put("snapshots-" + readers, () -> benchmarkSnapshots(readers));
+        }
+        measured.put("stream", Benchmark::benchmarkStateStream);
+        measured.put("index", Benchmark::benchmarkHarvestIndex);
+        measured.put("columns", Benchmark::benchmarkCropStateColumns);
+        measured.put("archive", Benchmark::benchmarkArchive);
+        measured.put("undo", Benchmark::benchmarkUndo);
+        for (int harvesters : MARKET_HARVESTERS) {
+            measured.put("market-" + harvesters, () -> benchmarkMarket(harvesters, false));
+            measured.put("market-locked-" + harvesters, () -> benchmarkMarket(harvesters, true));
+        }
+        Map<String, Group> environments = new LinkedHashMap<>();
+        environments.put("env-step", () -> benchmarkEnvironment(false));
+        environments.put("env-step-parallel", () -> benchmarkEnvironment(true));
+        Map<String, Group> loads = new LinkedHashMap<>();
+        for (int rate : LOAD_RATES) {
+            loads.put("dispatch-" + rate, () -> benchmarkDispatch(false, rate));
+            loads.put("ticked-" + rate, () -> benchmarkDispatch(true, rate));
+        }
+        for (int shards : CLUSTER_SHARDS) {
+            loads.put("cluster-" + shards, () -> benchmarkCluster(shards));
+        }
+        groups.putAll(measured);
+        groups.putAll(environments);
+        groups.putAll(loads);
+        if (args.length == 2 && args[0].equals(FORK_ARGUMENT)) {
+            runForked(args[1]);
+            return;
+        }
+
+        int forks = Integer.getInteger("benchmark.forks", DEFAULT_FORKS);
+        report(String.format(Locale.ROOT, "%-44s %14s %14s %14s %8s %10s", "BENCHMARK", "NS/OP", "SD", "BYTES/OP",
+                "GCS", "GC MS"));
+        for (String group : measured.keySet()) {
+            run(group, forks);
+        }
+        // These measure once per run and report their own lines, so a single fork is enough.
+        report(String.format(Locale.ROOT, "%-44s %14s %14s", "ENVIRONMENT", "STEPS/S", "BYTES/STEP"));
+        for (String group : environments.keySet()) {
+            run(group, Math.min(forks, 1));
+        }
+        report(String.format(Locale.ROOT, "%-44s %14s %14s %8s %10s", "LOAD TEST", "COMMANDS/S", "P50(US)", "P99(US)", "P99.9(US)"));
+        for (String group : loads.keySet()) {
+            run(group, Math.min(forks, 1));
+        }
+
+        if (args.length > 0) {
+            Files.writeString(Path.of(args[0]), results);
+        }
+        System.setOut(console);
+    }
+
+    /**
+     * Runs a group of benchmarks in forked JVMs, or in this one if forks is 0, and reports the results of
+     * its measured operations over every fork.
+     * @param group the name of the group.
+     * @param forks the amount of JVMs to run the group in one after another.
+     */
+    private static void run(String group, int forks) throws IOException {
+        if (forks == 0) {
+            groups.get(group).run();
+        }
+        for (int fork = 0; fork < forks; fork++) {
+            List<String> command = new ArrayList<>();
+            command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+            // Forks get the options of this JVM, such as its heap and modules, and the compiler blackhole.
+            command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            command.addAll(List.of("-XX:+UnlockExperimentalVMOptions", "-XX:CompileCommand=quiet",
+                    "-XX:CompileCommand=blackhole,Benchmark::blackhole", "-Dbenchmark.compiler.blackhole=true",
+                    "-cp", System.getProperty("java.class.path"), "Benchmark", FORK_ARGUMENT, group));
+            Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (line.startsWith(SAMPLE_PREFIX)) {
+                        addSamples(line.substring(SAMPLE_PREFIX.length()));
+                    } else {
+                        report(line);
+                    }
+                }
+            }
+            try {
+                if (process.waitFor() != 0) {
+                    throw new IOException("the fork running " + group + " failed");
+                }
+            } catch (InterruptedException e) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while running " + group, e);
+            }
+        }
+        for (Samples sample : samples.values()) {
+            report(sample.toString());
+        }
+        samples.clear();
+    }
+
+    /**
+     * Runs one group of benchmarks as a fork, printing its lines and the samples of its measured operations
+     * for the JVM that forked it.
+     * @param group the name of the group.
+     */
+    private static void runForked(String group) {
+        try {
+            Group benchmark = groups.get(group);
+            if (benchmark == null) {
+                throw new IllegalArgumentException("no benchmark group named " + group);
+            }
+            benchmark.run();
+        } catch (Throwable e) {
+            e.printStackTrace(errors);
+            System.exit(1);
+        }
+        for (Samples sample : samples.values()) {
+            console.println(SAMPLE_PREFIX + sample.encode());
+        }
+        console.flush();
+    }
+
+    /**
+     * Measures the three Farm predicates on the day that makes each of them scan the whole farm.
+     * @param size the number of rows and columns of the farm.
+     */
+    private static void benchmarkFarmScans(int size) {
+        Farm farm = plantedFarm(size);
+        measure("Farm.hasHarvestableCrop " + size + "x" + size, () -> farm.hasHarvestableCrop(2) ? 1 : 0);
+        measure("Farm.hasUnmaturedCrop " + size + "x" + size, () -> farm.hasUnmaturedCrop(3) ? 1 : 0);
+        measure("Farm.isFullOfWitheredCrops " + size + "x" + size, () -> farm.isFullOfWitheredCrops(10) ? 1 : 0);
+    }
+
+    /**
+     * Measures advancing the day on a fully planted farm.
+     * @param size the number of rows and columns of the farm.
+     */
+    private static void benchmarkAdvanceDay(int size) {
+        GameManager gameManager = new GameManager(size, size);
+        plant(gameManager.getFarm());
+        measure("GameManager.advanceDay " + size + "x" + size, () -> {
+            gameManager.advanceDay();
+            return gameManager.getDay();
+        });
+    }
+
+    /**
+     * Measures skipping 10,000 days on a farm where nothing will happen anymore.
+     */
+    private static void benchmarkAdvanceDays() {
+        GameManager gameManager = new GameManager(10, 10);
+        measure("GameManager.advanceDays 10000 idle 10x10", () -> gameManager.advanceDays(10_000));
+    }
+
+    private static void benchmarkHarvestCalculate() {
+        Crop crop = CropFactory.createPotato(1);
+        try {
+            for (int i = 0; i < 4; i++) {
+                crop.addWater();
+            }
+            crop.addFertilizer();
+        } catch (PlotUnoccupiedException ignored) {}
+        measure("Crop.harvestCalculate", () -> crop.harvestCalculate(1, 1, 2, true));
+    }
+
+    private static void benchmarkAdjacency() {
+        Farm farm = plantedFarm(100);
+        measure("Farm.hasEmptyAdjacentPlots 100x100", () -> farm.hasEmptyAdjacentPlots(50, 50) ? 1 : 0);
+    }
+
+    private static void benchmarkPlanting() {
+        Farmer farmer = new Farmer();
+        Plot plot = new Plot();
+        measure("CropFactory planting", () -> {
+            farmer.plant(plot, CropFactory.createTurnip(1));
+            return farmer.getObjectCoins();
+        });
+    }
+
+    private static void benchmarkScriptedGame() {
+        String script = GAME_SCRIPT.repeat(GAME_SCRIPT_REPEATS);
+        measure("Scripted game (" + GAME_SCRIPT_REPEATS + " harvests)", () -> playScript(script));
+    }
+
+    /**
+     * Measures running the same game as benchmarkScriptedGame from a memory-mapped command file through a
+     * ScriptRunner, for many more harvests, including writing the outcome log and a final checkpoint.
+     */
+    private static void benchmarkScriptRunner() throws IOException {
+        Path directory = Files.createTempDirectory("script");
+        Path script = directory.resolve("script.txt");
+        Path log = directory.resolve("script.log");
+        Path checkpoint = directory.resolve("script.checkpoint");
+        Files.writeString(script, RUNNER_SCRIPT.repeat(RUNNER_SCRIPT_REPEATS));
+        measure("ScriptRunner (" + RUNNER_SCRIPT_REPEATS + " harvests)", () -> {
+            try {
+                Files.deleteIfExists(checkpoint);
+                return new ScriptRunner(script, log, checkpoint, 1, 1, ScriptRunner.DEFAULT_CHECKPOINT_INTERVAL,
+                        1L).run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        Files.deleteIfExists(checkpoint);
+        Files.deleteIfExists(log);
+        Files.delete(script);
+        Files.delete(directory);
+    }
+
+    /**
+     * Measures updating a counter that every Rule of an engine depends on, with thresholds spread out so
+     * that only some of them are crossed.
+     * @param count the amount of Rules.
+     */
+    private static void benchmarkRuleEngine(int count) {
+        RuleEngine rules = new RuleEngine();
+        for (int i = 0; i < count; i++) {
+            rules.add(new Rule("Rule " + i, "", Rule.atLeast(GameCounter.OBJECTCOINS, i * 1000L),
+                    Rule.atMost(GameCounter.DAY, i)));
+        }
+        measure("RuleEngine counter update " + count + " rules", () -> {
+            rules.increment(GameCounter.OBJECTCOINS, 1);
+            return rules.get(GameCounter.OBJECTCOINS);
+        });
+    }
+
+    /**
+     * Measures recording telemetry while the writer thread writes it to a temporary file.
+     */
+    private static void benchmarkTelemetry() throws IOException {
+        Path directory = Files.createTempDirectory("telemetry");
+        TelemetryWriter writer = new TelemetryWriter(directory.resolve("benchmark"), 1 << 16, 64L << 20,
+                TelemetryWriter.Policy.BLOCK);
+        measure("TelemetryWriter.record", () -> writer.record(1, 1, 'P', Telemetry.SOURCE_ACTION, Telemetry.OK, 500, 0) ? 1 : 0);
+        writer.close();
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static void benchmarkMapGenerator() {
+        measure("MapGenerator.generate 1000x1000", () -> MapGenerator.generate(1, 1000, 1000, 0.1).countRocks());
+    }
+
+    /**
+     * Measures building a scenario, and advancing the day on a mid-game scenario instead of a farm of
+     * Turnips all planted on the same day.
+     */
+    private static void benchmarkScenario() {
+        measure("ScenarioGenerator.generate 100x100", () -> ScenarioGenerator.generate(1, new ScenarioSpec(100, 100)).getDay());
+        GameManager gameManager = ScenarioGenerator.generate(1, new ScenarioSpec(100, 100));
+        measure("GameManager.advanceDay scenario 100x100", () -> {
+            gameManager.advanceDay();
+            return gameManager.getDay();
+        });
+    }
+
+    /**
+     * Measures selling a harvest on a shared market while other threads keep selling on it and the market
+     * ticks every millisecond, which is the contention between games on different threads.
+     * @param harvesters the amount of other selling threads.
+     * @param locked whether to sell on a market that keeps its supply and prices behind a single lock
+     *               instead of on a Market.
+     */
+    private static void benchmarkMarket(int harvesters, boolean locked) {
+        Market market = new Market(1000);
+        long[] lockedSupply = new long[CropFactory.CHOICES.length()];
+        int[] lockedPrices = market.getPrices();
+        Crop[] crops = new Crop[CropFactory.CHOICES.length()];
+        for (int i = 0; i < crops.length; i++) {
+            try {
+                crops[i] = CropFactory.create(CropFactory.CHOICES.charAt(i), 0);
+            } catch (InvalidInputException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        LongSupplier[] sell = new LongSupplier[harvesters + 1];
+        for (int i = 0; i < sell.length; i++) {
+            long[] sale = {i};
+            sell[i] = locked ? () -> {
+                int species = (int) (sale[0]++ % crops.length);
+                synchronized (lockedSupply) {
+                    lockedSupply[species] += 2;
+                    return lockedPrices[species];
+                }
+            } : () -> market.sell(crops[(int) (sale[0]++ % crops.length)], 2);
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread[] threads = new Thread[harvesters + 1];
+        threads[0] = new Thread(() -> {
+            while (running.get()) {
+                if (locked) {
+                    synchronized (lockedSupply) {
+                        System.arraycopy(market.tick(), 0, lockedPrices, 0, lockedPrices.length);
+                        Arrays.fill(lockedSupply, 0);
+                    }
+                } else {
+                    market.tick();
+                }
+                LockSupport.parkNanos(1_000_000);
+            }
+        });
+        for (int i = 1; i < threads.length; i++) {
+            LongSupplier harvester = sell[i];
+            threads[i] = new Thread(() -> {
+                long sum = 0;
+                while (running.get()) {
+                    sum += harvester.getAsLong();
+                }
+                blackholeReaders.add(sum);
+            });
+        }
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+        measure((locked ? "Locked market sell, " : "Market.sell, ") + harvesters + " harvesters", sell[0]);
+        running.set(false);
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Measures changing a Plot and publishing a snapshot while other threads read the latest snapshot
+     * once every SNAPSHOT_READ_PAUSE_NANOS like spectators refreshing a view, which is the overhead
+     * snapshots add to every action. Readers that spun instead would only measure how many of them share
+     * a CPU with the writer, so the amount of CPUs is reported with the result.
+     * @param readers the amount of reading threads, or -1 to measure the change without snapshots.
+     */
+    private static void benchmarkSnapshots(int readers) {
+        GameManager gameManager = ScenarioGenerator.generate(1, new ScenarioSpec(100, 100));
+        Farm farm = gameManager.getFarm();
+        SnapshotPublisher publisher = readers < 0 ? null : gameManager.enableSnapshots();
+        Thread[] threads = new Thread[Math.max(0, readers)];
+        AtomicBoolean running = new AtomicBoolean(true);
+        for (int i = 0; i < threads.length; i++) {
+            int offset = i;
+            threads[i] = new Thread(() -> {
+                long sum = 0;
+                for (int read = offset; running.get(); read++) {
+                    GameSnapshot snapshot = gameManager.getSnapshot();
+                    sum += snapshot.getPlotState(read % 100, read / 100 % 100) + snapshot.getObjectCoins();
+                    LockSupport.parkNanos(SNAPSHOT_READ_PAUSE_NANOS);
+                }
+                blackholeReaders.add(sum);
+            });
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        long[] plot = {0};
+        int cpus = Runtime.getRuntime().availableProcessors();
+        measure(readers < 0 ? "Plot change without snapshots 100x100"
+                : "Plot change and publish, " + readers + " readers, " + cpus + (cpus == 1 ? " CPU" : " CPUs"), () -> {
+            Plot changed = farm.getPlot((int) (plot[0] % 100), (int) (plot[0]++ / 100 % 100));
+            changed.setRock(!changed.getRock());
+            return publisher == null ? 0 : publisher.publish(gameManager.getDay()).getVersion();
+        });
+        running.set(false);
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Measures the frames of a state stream: a delta of one changed Plot on a farm of a million Plots,
+     * which should cost the same as on a small farm, and a keyframe of a mid-game scenario.
+     */
+    private static void benchmarkStateStream() {
+        Farm farm = new Farm(1000, 1000);
+        StateStreamEncoder delta = new StateStreamEncoder(farm, new Farmer(), Integer.MAX_VALUE, true);
+        delta.nextFrame(1);
+        long[] plot = {0};
+        measure("StateStreamEncoder delta 1 plot 1000x1000", () -> {
+            Plot changed = farm.getPlot((int) (plot[0] % 1000), (int) (plot[0]++ / 1000 % 1000));
+            changed.setRock(!changed.getRock());
+            return delta.nextFrame(1).length;
+        });
+        GameManager gameManager = ScenarioGenerator.generate(1, new ScenarioSpec(100, 100));
+        StateStreamEncoder keyframe = new StateStreamEncoder(gameManager.getFarm(), gameManager.getFarmer(), 1, true);
+        measure("StateStreamEncoder keyframe scenario 100x100", () -> keyframe.nextFrame(gameManager.getDay()).length);
+        StateStreamDecoder decoder = new StateStreamDecoder();
+        byte[] frame = keyframe.nextFrame(gameManager.getDay());
+        measure("StateStreamDecoder keyframe scenario 100x100", () -> decoder.apply(frame) ? decoder.getStateHash() : 0);
+    }
+
+    /**
+     * Measures finding the 10 most valuable harvestable Crops of a farm of a million Plots from a
+     * HarvestIndex, against scanning the farm for harvestable Crops like Farm.displayHarvestableCrop.
+     */
+    private static void benchmarkHarvestIndex() {
+        Farm farm = plantedFarm(1000);
+        int day = farm.getPlot(0, 0).getCrop().getMaturityDay();
+        measure("Farm harvestable scan 1000x1000", () -> {
+            int harvestable = 0;
+            for (int i = 0; i < farm.getRows(); i++) {
+                for (int j = 0; j < farm.getColumns(); j++) {
+                    try {
+                        harvestable += farm.getPlot(i, j).hasHarvestableCrop(day) ? 1 : 0;
+                    } catch (PlotUnoccupiedException | CropWitheredException | CropNotMaturedException ignored) {}
+                }
+            }
+            return harvestable;
+        });
+        HarvestIndex index = new HarvestIndex(farm, new Farmer());
+        measure("HarvestIndex top 10 1000x1000", () -> index.top(day, 10).length);
+    }
+
+    /**
+     * Measures computing which Crops mature and wither on a mid-game farm of a million Plots, calling each
+     * Crop against the branch-free pass over the columns of CropStateColumns.
+     */
+    private static void benchmarkCropStateColumns() {
+        GameManager gameManager = ScenarioGenerator.generate(1, new ScenarioSpec(1000, 1000));
+        CropStateColumns columns = new CropStateColumns(gameManager.getFarm());
+        long[] matured = new long[columns.getMaskLength()];
+        long[] withered = new long[columns.getMaskLength()];
+        int day = gameManager.getDay();
+        // The day changes on every call so that no call can be folded into the one before.
+        int[] calls = {0};
+        measure("Crop state scalar 1000x1000", () -> {
+            columns.evaluateScalar(day + (calls[0]++ & 7), matured, withered);
+            return matured[0] ^ withered[withered.length - 1];
+        });
+        measure("Crop state columns " + (CropStateColumns.isVectorized() ? "vector " : "") + "1000x1000", () -> {
+            columns.evaluate(day + (calls[0]++ & 7), matured, withered);
+            return matured[0] ^ withered[withered.length - 1];
+        });
+    }
+
+    /**
+     * Measures undoing and redoing an action on a mid-game farm of a million Plots through the UndoHistory,
+     * against setting the game back by restoring a snapshot of every Plot.
+     */
+    private static void benchmarkUndo() {
+        GameManager gameManager = ScenarioGenerator.generate(1, new ScenarioSpec(1000, 1000));
+        gameManager.getFarmer().setDisplay(false);
+        gameManager.enableUndo(100, 10_000);
+        GameSnapshot snapshot = GameSnapshot.of(gameManager);
+        Plot plot = null;
+        for (int i = 0; plot == null; i++) {
+            Plot candidate = gameManager.getFarm().getPlot(i / 1000, i % 1000);
+            if (!candidate.getPlow() && !candidate.getRock()) {
+                plot = candidate;
+            }
+        }
+        gameManager.applyCommand('P', plot.getIndex() / 1000, plot.getIndex() % 1000, (char) 0);
+        measure("GameManager undo and redo 1000x1000", () -> {
+            gameManager.undo();
+            gameManager.redo();
+            return gameManager.stateHash();
+        });
+        measure("GameSnapshot restore 1000x1000", () -> snapshot.restore().stateHash());
+    }
+
+    /**
+     * Measures queries over an archive of 10M synthetic finished games: a scan of one column over every
+     * game, a count over a range of end times that skips the segments outside it, and a query filtering on
+     * two columns and reading two others.
+     */
+    private static void benchmarkArchive() throws IOException {
+        Path directory = Files.createTempDirectory("archive");
+        GameArchiveWriter writer = new GameArchiveWriter(directory, GameArchiveWriter.DEFAULT_SEGMENT_ROWS);
+        SplittableRandom random = new SplittableRandom(1);
+        long[] row = new long[ArchiveColumn.values().length];
+        for (int game = 0; game < ARCHIVE_GAMES; game++) {
+            row[ArchiveColumn.ENDED_AT.ordinal()] = 1_700_000_000_000L + game * 10L + random.nextInt(10);
+            row[ArchiveColumn.DAY.ordinal()] = 1 + random.nextInt(200);
+            row[ArchiveColumn.END_CAUSE.ordinal()] = random.nextInt(4) == 0 ? 1 : 0;
+            row[ArchiveColumn.OBJECTCOINS.ordinal()] = random.nextInt(5000);
+            row[ArchiveColumn.LEVEL.ordinal()] = random.nextInt(15);
+            row[ArchiveColumn.TITLE.ordinal()] = row[ArchiveColumn.LEVEL.ordinal()] / 5;
+            for (int i = 0; i < CropFactory.CHOICES.length(); i++) {
+                // Most games only plant a few of the species.
+                row[ArchiveColumn.HARVESTED_TURNIP.ordinal() + i] = random.nextInt(8) == 0 ? random.nextInt(50) : 0;
+            }
+            for (int i = ArchiveColumn.EXP_PLOW.ordinal(); i < row.length; i++) {
+                row[i] = random.nextInt(1000) * Farmer.EXP_SCALE;
+            }
+            writer.append(row);
+        }
+        writer.close();
+        GameArchive archive = new GameArchive(directory);
+        long from = 1_700_000_000_000L + ARCHIVE_GAMES * 10L / 2;
+        long[] sum = {0};
+        GameArchive.Query[] queries = {
+                archive.query(),
+                archive.query().where(ArchiveColumn.ENDED_AT, from, from + ARCHIVE_GAMES / 10),
+                archive.query().where(ArchiveColumn.END_CAUSE, 1).where(ArchiveColumn.LEVEL, 10, 14)
+                        .select(ArchiveColumn.DAY, ArchiveColumn.HARVESTED_APPLE)
+        };
+        String[] names = {"GameArchive sum coins 10M games", "GameArchive count 1% by end time 10M games",
+                "GameArchive filter 2 select 2 10M games"};
+        for (int i = 0; i < queries.length; i++) {
+            int query = i;
+            measure(names[i], () -> {
+                try {
+                    switch (query) {
+                        case 0:
+                            return queries[0].sum(ArchiveColumn.OBJECTCOINS);
+                        case 1:
+                            return queries[1].count();
+                        default:
+                            return queries[2].scan(values -> sum[0] += values[0] + values[1]) + sum[0];
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Measures stepping a VecFarmEnv of ENV_GAMES games on 5x10 farms with random actions, most of which
+     * fail like the ones of an untrained agent, on this thread or split across the common fork-join pool.
+     * A step is one action applied to one game, and the bytes allocated by every thread are counted.
+     * @param parallel true to step with stepParallel and false to step on this thread.
+     */
+    private static void benchmarkEnvironment(boolean parallel) {
+        VecFarmEnv env = new VecFarmEnv(ENV_GAMES, 5, 10, 100);
+        SplittableRandom random = new SplittableRandom(1);
+        int[][] actions = new int[ENV_ACTION_BATCHES][ENV_GAMES];
+        for (int[] batch : actions) {
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = random.nextInt(env.getActionCount());
+            }
+        }
+        int batches = ForkJoinPool.getCommonPoolParallelism() + 1;
+        int[] calls = {0};
+        LongSupplier step = () -> {
+            int[] batch = actions[calls[0]++ % ENV_ACTION_BATCHES];
+            if (parallel) {
+                env.stepParallel(batch, batches);
+            } else {
+                env.step(batch);
+            }
+            return Float.floatToIntBits(env.getRewards()[0]);
+        };
+        // Every game runs most of the engine, which takes the JIT longer to settle than the other cases.
+        long[] operations = new long[1];
+        for (int i = 0; i < ENV_WARMUP_ITERATIONS; i++) {
+            iteration(step, operations);
+        }
+        operations[0] = 0;
+        long allocated = allThreadsAllocatedBytes();
+        double nanos = 0;
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            nanos += iteration(step, operations) / MEASURE_ITERATIONS;
+        }
+        long bytes = allThreadsAllocatedBytes() - allocated;
+        report(String.format(Locale.ROOT, "%-44s %14.0f %14.1f",
+                "VecFarmEnv." + (parallel ? "stepParallel " + batches + " batches" : "step") + ", " + ENV_GAMES
+                        + " games",
+                ENV_GAMES * 1e9 / nanos, (double) bytes / (operations[0] * ENV_GAMES)));
+    }
+
+    /**
+     * Submits commands to many games with snapshots from several client threads and reports the throughput
+     * and the latency from submitting a command to its result, after a first pass that is not recorded.
+     * @param ticked true to apply the commands on the ticks of a TickScheduler and false to dispatch each
+     *               command to a thread pinned to its game as it arrives.
+     * @param rate the commands per second submitted by all clients together, or 0 to submit them as fast as
+     *             possible and measure the most that can be applied.
+     */
+    private static void benchmarkDispatch(boolean ticked, int rate) {
+        dispatchLoad(ticked, rate, new long[Metrics.BUCKETS]);
+        long[] buckets = new long[Metrics.BUCKETS];
+        long elapsed = dispatchLoad(ticked, rate, buckets);
+        long completed = LOAD_COMMANDS / LOAD_PRODUCERS * LOAD_PRODUCERS;
+        report(String.format(Locale.ROOT, "%-44s %14.0f %14.1f %8.1f %10.1f",
+                (ticked ? "TickScheduler, 1 ms ticks, " : "Dispatch per command, ")
+                        + (rate == 0 ? "saturated" : rate + "/s"),
+                completed * 1e9 / elapsed, percentile(buckets, 50) / 1e3, percentile(buckets, 99) / 1e3,
+                percentile(buckets, 99.9) / 1e3));
+    }
+
+    /**
+     * Submits LOAD_COMMANDS commands to new games and waits for all of their results. Either way a game
+     * holds at most LOAD_QUEUE_CAPACITY commands that were not applied yet, and a client whose command is
+     * turned away waits and tries again, so that neither way can queue without bound.
+     * @param buckets the latency histogram to add the latencies to, see Metrics.bucket.
+     * @return the nanoseconds from the first command being due to the last result.
+     */
+    private static long dispatchLoad(boolean ticked, int rate, long[] buckets) {
+        LongAdder[] latency = new LongAdder[Metrics.BUCKETS];
+        for (int i = 0; i < latency.length; i++) {
+            latency[i] = new LongAdder();
+        }
+        LongAdder completed = new LongAdder();
+        TickScheduler.ResultListener listener = (game, action, code, nanos) -> {
+            latency[Metrics.bucket(nanos)].increment();
+            completed.increment();
+        };
+        GameManager[] games = new GameManager[LOAD_GAMES];
+        for (int i = 0; i < games.length; i++) {
+            games[i] = ScenarioGenerator.generate(i, new ScenarioSpec(10, 10));
+            games[i].enableSnapshots();
+        }
+        TickScheduler scheduler = null;
+        ExecutorService[] executors = new ExecutorService[LOAD_WORKERS];
+        AtomicIntegerArray queued = new AtomicIntegerArray(LOAD_GAMES);
+        if (ticked) {
+            scheduler = new TickScheduler(LOAD_WORKERS, 1_000_000L, LOAD_QUEUE_CAPACITY, listener);
+            for (GameManager game : games) {
+                scheduler.register(game);
+            }
+        } else {
+            for (int i = 0; i < executors.length; i++) {
+                executors[i] = Executors.newSingleThreadExecutor();
+            }
+        }
+
+        Thread[] producers = new Thread[LOAD_PRODUCERS];
+        long start = System.nanoTime();
+        for (int i = 0; i < producers.length; i++) {
+            SplittableRandom random = new SplittableRandom(i);
+            long interval = rate == 0 ? 0 : 1_000_000_000L * LOAD_PRODUCERS / rate;
+            TickScheduler tickScheduler = scheduler;
+            producers[i] = new Thread(() -> {
+                for (int command = 0; command < LOAD_COMMANDS / LOAD_PRODUCERS; command++) {
+                    long due = start + command * interval;
+                    while (System.nanoTime() - due < 0) {
+                        LockSupport.parkNanos(due - System.nanoTime());
+                    }
+                    int index = random.nextInt(LOAD_GAMES);
+                    GameManager game = games[index];
+                    char action = LOAD_ACTIONS.charAt(random.nextInt(LOAD_ACTIONS.length()));
+                    int x = random.nextInt(10);
+                    int y = random.nextInt(10);
+                    if (tickScheduler != null) {
+                        TickScheduler.Admission admission;
+                        while ((admission = tickScheduler.submit(game.getId(), action, x, y, (char) 0))
+                                == TickScheduler.Admission.REJECTED) {
+                            LockSupport.parkNanos(100_000L);
+                        }
+                        if (admission == TickScheduler.Admission.SLOW_DOWN) {
+                            Thread.yield();
+                        }
+                    } else {
+                        while (queued.getAndIncrement(index) >= LOAD_QUEUE_CAPACITY) {
+                            queued.decrementAndGet(index);
+                            LockSupport.parkNanos(100_000L);
+                        }
+                        long submitted = System.nanoTime();
+                        executors[Math.floorMod(game.getId(), LOAD_WORKERS)].execute(() -> {
+                            short code = game.applyCommand(action, x, y, (char) 0);
+                            queued.decrementAndGet(index);
+                            listener.completed(game.getId(), action, code, System.nanoTime() - submitted);
+                        });
+                    }
+                }
+            });
+            producers[i].start();
+        }
+        while (completed.sum() < LOAD_COMMANDS / LOAD_PRODUCERS * LOAD_PRODUCERS) {
+            LockSupport.parkNanos(1_000_000L);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (scheduler != null) {
+            scheduler.close();
+        }
+        for (ExecutorService executor : executors) {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] += latency[i].sum();
+        }
+        return elapsed;
+    }
+
+    /**
+     * Sends batches of commands for the games of a cluster of shard processes and reports the throughput
+     * and the latency of a batch, from sending it to having the outcomes of every shard.
+     * @param shards the amount of shard processes.
+     */
+    private static void benchmarkCluster(int shards) throws IOException {
+        try (ClusterCoordinator cluster = ClusterCoordinator.launch(shards)) {
+            int[] games = new int[LOAD_GAMES];
+            for (int i = 0; i < games.length; i++) {
+                games[i] = cluster.createScenario(i, 10, 10);
+            }
+            SplittableRandom random = new SplittableRandom(1);
+            long[] buckets = new long[Metrics.BUCKETS];
+            long elapsed = 0;
+            for (int round = -CLUSTER_ROUNDS / 4; round < CLUSTER_ROUNDS; round++) {
+                for (int i = 0; i < CLUSTER_BATCH; i++) {
+                    cluster.submit(games[random.nextInt(games.length)],
+                            LOAD_ACTIONS.charAt(random.nextInt(LOAD_ACTIONS.length())),
+                            random.nextInt(10), random.nextInt(10), (char) 0);
+                }
+                long start = System.nanoTime();
+                consume(cluster.flush().length);
+                long nanos = System.nanoTime() - start;
+                // The first rounds warm up the shards and are not counted.
+                if (round >= 0) {
+                    elapsed += nanos;
+                    buckets[Metrics.bucket(nanos)]++;
+                }
+            }
+            report(String.format(Locale.ROOT, "%-44s %14.0f %14.1f %8.1f %10.1f",
+                    "ClusterCoordinator, " + shards + " shards", (double) CLUSTER_ROUNDS * CLUSTER_BATCH * 1e9 / elapsed,
+                    percentile(buckets, 50) / 1e3, percentile(buckets, 99) / 1e3, percentile(buckets, 99.9) / 1e3));
+        }
+    }
+
+    /**
+     * Gets an upper bound of a percentile of a histogram whose buckets are powers of two, like the ones of
+     * Metrics.
+     */
+    private static long percentile(long[] buckets, double percentile) {
+        long total = 0;
+        for (long count : buckets) {
+            total += count;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank && buckets[i] > 0) {
+                return 1L << (i + 1);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Plays a game the way the Driver does, reading its input from the given script.
+     * @param script the input to play the game with.
+     * @return the day when the script ran out or the game ended.
+     */
+    private static long playScript(String script) {
+        Scanner scanner = new Scanner(script);
+        GameManager gameManager = new GameManager();
+        while (!gameManager.endCheck() && scanner.hasNext()) {
+            UIManager.displayFarmInfo(gameManager.getDay(), gameManager.getFarmer(), gameManager.getFarm());
+            UIManager.displayChoiceMenu(gameManager.getRules());
+            try {
+                gameManager.choiceMenu(scanner);
+            } catch (NoAvailablePlotsException | CannotAffordException |
+                     InvalidInputException | TreeAdjacencyException ignored) {}
+        }
+        return gameManager.getDay();
+    }
+
+    /**
+     * Creates a farm where every Plot has been plowed and planted with a watered Turnip on day 1.
+     * @param size the number of rows and columns of the farm.
+     * @return the planted farm.
+     */
+    private static Farm plantedFarm(int size) {
+        Farm farm = new Farm(size, size);
+        plant(farm);
+        return farm;
+    }
+
+    private static void plant(Farm farm) {
+        for (int i = 0; i < farm.getRows(); i++) {
+            for (int j = 0; j < farm.getColumns(); j++) {
+                Plot plot = farm.getPlot(i, j);
+                try {
+                    plot.plow(1);
+                    plot.setCrop(CropFactory.createTurnip(1));
+                    plot.water(1);
+                } catch (CropWitheredException | PlotAlreadyPlowedException | PlotAlreadyOccupiedException |
+                         PlotNotPlowedException | PlotUnoccupiedException | PlotAlreadyMaturedException ignored) {}
+            }
+        }
+    }
+
+    /**
+     * Warms up and then measures an operation over several iterations, keeping the time per operation of
+     * every iteration and the allocation and GC activity per operation of all of them.
+     * @param name the name of the benchmark.
+     * @param operation the operation to measure, its result is consumed so that it cannot be optimized away.
+     */
+    private static void measure(String name, LongSupplier operation) {
+        long[] operations = new long[1];
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration(operation, operations);
+        }
+        operations[0] = 0;
+        long gcCount = gcCount();
+        long gcTime = gcTime();
+        long allocated = allocatedBytes();
+        double[] nanos = new double[MEASURE_ITERATIONS];
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            nanos[i] = iteration(operation, operations);
+        }
+        long bytes = allocatedBytes() - allocated;
+        samples.computeIfAbsent(name, Samples::new).add(nanos, (double) bytes / operations[0],
+                gcCount() - gcCount, gcTime() - gcTime);
+    }
+
+    /**
+     * Runs an operation for at least ITERATION_NANOS, and at least once.
+     * @param operations the amount of operations run so far, which this adds to.
+     * @return the time per operation of the iteration in nanoseconds.
+     */
+    private static double iteration(LongSupplier operation, long[] operations) {
+        long count = 0;
+        long elapsed;
+        long start = System.nanoTime();
+        do {
+            consume(operation.getAsLong());
+            count++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < ITERATION_NANOS);
+        operations[0] += count;
+        return (double) elapsed / count;
+    }
+
+    /**
+     * Consumes a result so that the JIT cannot remove the code computing it, like the Blackhole of JMH. In
+     * a fork the result goes to the compiler blackhole, which costs nothing. Otherwise it is compared with
+     * two values that are never equal, which cannot be removed and never writes.
+     * @param value the result to consume.
+     */
+    private static void consume(long value) {
+        if (COMPILER_BLACKHOLE) {
+            blackhole(value);
+        } else if (value == baitLeft & value == baitRight) {
+            baitLeft = value;
+        }
+    }
+
+    /**
+     * Does nothing, which is what the JVM needs of a compiler blackhole; its argument is still computed.
+     */
+    private static void blackhole(long value) {
+    }
+
+    /**
+     * Adds the samples a fork printed to the ones of the same benchmark.
+     * @param line the line printed by Samples.encode.
+     */
+    private static void addSamples(String line) {
+        String[] fields = line.split("\t");
+        String[] iterations = fields[4].split(" ");
+        double[] nanos = new double[iterations.length];
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = Double.parseDouble(iterations[i]);
+        }
+        samples.computeIfAbsent(fields[0], Samples::new).add(nanos, Double.parseDouble(fields[1]),
+                Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+    }
+
+    private static void report(String line) {
+        console.println(line);
+        results.append(line).append(System.lineSeparator());
+    }
+
+    private static long allocatedBytes() {
+        return ((ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Gets the bytes allocated by every live thread, such as the workers of the common fork-join pool.
+     */
+    private static long allThreadsAllocatedBytes() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bytes = 0;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            bytes += Math.max(0, allocated);
+        }
+        return bytes;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    /**
+     * The measurements of one benchmark over every fork that ran it.
+     */
+    private static final class Samples {
+        private final String name;
+        private double[] nanos = new double[0];
+        private double bytes = 0;
+        private long gcs = 0;
+        private long gcMillis = 0;
+        private int forks = 0;
+
+        private Samples(String name) {
+            this.name = name;
+        }
+
+        private void add(double[] iterations, double bytesPerOperation, long gcCount, long gcTime) {
+            int length = nanos.length;
+            nanos = Arrays.copyOf(nanos, length + iterations.length);
+            System.arraycopy(iterations, 0, nanos, length, iterations.length);
+            bytes += bytesPerOperation;
+            gcs += gcCount;
+            gcMillis += gcTime;
+            forks++;
+        }
+
+        /**
+         * Writes the samples of one fork as a line for the JVM that forked it.
+         */
+        private String encode() {
+            StringBuilder line = new StringBuilder();
+            line.append(name).append('\t').append(bytes).append('\t').append(gcs).append('\t').append(gcMillis)
+                    .append('\t');
+            for (int i = 0; i < nanos.length; i++) {
+                line.append(i == 0 ? "" : " ").append(nanos[i]);
+            }
+            return line.toString();
+        }
+
+        /**
+         * Formats the mean and standard deviation of the time per operation over every iteration, and the
+         * allocation and GC activity per fork.
+         */
+        @Override
+        public String toString() {
+            double mean = Arrays.stream(nanos).average().orElse(0);
+            double squares = Arrays.stream(nanos).map(x -> (x - mean) * (x - mean)).sum();
+            double deviation = Math.sqrt(squares / Math.max(1, nanos.length - 1));
+            return String.format(Locale.ROOT, "%-44s %14.1f %14.1f %14.1f %8d %10d", name, mean, deviation,
+                    bytes / forks, gcs / forks, gcMillis / forks);
+        }
+    }
+}
@@ -0,0 +1,457 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * <p>
+ * This class spreads games across several ShardWorker processes on the same machine and talks to them
+ * over loopback sockets with the binary protocol of ClusterProtocol, so that more games can be hosted
+ * than one process can hold.
+ * <p>
+ * Games are given ids by the coordinator and placed on the shard with the fewest games. Commands are
+ * buffered per shard and sent in one batch per shard when flushed: every shard is sent its batch before
+ * any reply is read, so the shards apply their batches at the same time. Advancing the day is a barrier
+ * across the shards: no shard is sent anything else until every shard has advanced all of its games.
+ * <p>
+ * A game can be moved to another shard by handing off its GameSnapshot: the old shard removes the game
+ * and replies with its snapshot, which the new shard restores. rebalance uses this to even out the games
+ * of the shards after games were moved by hand.
+ * <p>
+ * A coordinator must be used by one thread at a time.
+ */
+public class ClusterCoordinator implements Closeable {
+    private final Shard[] shards;
+    private final HashMap<Integer, Shard> placement = new HashMap<>();
+    private int nextGame = 1;
+    private int pending = 0;
+
+    /**
+     * Starts worker processes running the same classes as this one, and connects to them.
+     * @param shards the amount of worker processes.
+     * @return the coordinator of the workers.
+     * @throws IOException if a worker cannot be started or connected to.
+     */
+    public static ClusterCoordinator launch(int shards) throws IOException {
+        if (shards < 1) {
+            throw new IllegalArgumentException("a cluster needs at least one shard");
+        }
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Process[] processes = new Process[shards];
+        Socket[] sockets = new Socket[shards];
+        try {
+            for (int i = 0; i < shards; i++) {
+                // Shards give their games the same memory budget as this process.
+                processes[i] = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        "-Dgame.memory.budget=" + Long.getLong("game.memory.budget", Long.MAX_VALUE), "ShardWorker")
+                        .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            }
+            for (int i = 0; i < shards; i++) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(processes[i].getInputStream()));
+                String line = reader.readLine();
+                if (line == null || !line.startsWith(ClusterProtocol.PORT_LINE)) {
+                    throw new IOException("shard " + i + " did not start");
+                }
+                int port = Integer.parseInt(line.substring(ClusterProtocol.PORT_LINE.length()).trim());
+                sockets[i] = new Socket(InetAddress.getLoopbackAddress(), port);
+            }
+        } catch (IOException | NumberFormatException e) {
+            for (Process process : processes) {
+                if (process != null) {
+                    process.destroy();
+                }
+            }
+            throw e instanceof IOException ? (IOException) e : new IOException("shard printed a bad port", e);
+        }
+        return new ClusterCoordinator(sockets, processes);
+    }
+
+    /**
+     * Constructor for a coordinator of workers that are already running, such as workers serving sockets
+     * in the same process.
+     * @param sockets the sockets connected to each worker.
+     * @throws IOException if the sockets cannot be used.
+     */
+    public ClusterCoordinator(Socket... sockets) throws IOException {
+        this(sockets, new Process[sockets.length]);
+    }
+
+    private ClusterCoordinator(Socket[] sockets, Process[] processes) throws IOException {
+        shards = new Shard[sockets.length];
+        for (int i = 0; i < sockets.length; i++) {
+            shards[i] = new Shard(i, sockets[i], processes[i]);
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Gets the amount of games on a shard.
+     * @param shard the index of the shard.
+     * @return the amount of games on the shard.
+     */
+    public int getGameCount(int shard) {
+        return shards[shard].games;
+    }
+
+    /**
+     * Gets the shard a game is on.
+     * @param game the id of the game.
+     * @return the index of the shard, or -1 if there is no such game.
+     */
+    public int getShard(int game) {
+        Shard shard = placement.get(game);
+        return shard == null ? -1 : shard.index;
+    }
+
+    /**
+     * Creates an empty game on the shard with the fewest games.
+     * @param rows the number of rows of Plots.
+     * @param columns the number of columns of Plots.
+     * @return the id of the game.
+     * @throws IOException if the shard cannot be reached or fails to create the game.
+     */
+    public int createGame(int rows, int columns) throws IOException {
+        return create(rows, columns, -1);
+    }
+
+    /**
+     * Creates a game from ScenarioGenerator on the shard with the fewest games.
+     * @param seed the seed of the scenario, which must not be negative.
+     * @param rows the number of rows of Plots.
+     * @param columns the number of columns of Plots.
+     * @return the id of the game.
+     * @throws IOException if the shard cannot be reached or fails to create the game.
+     */
+    public int createScenario(long seed, int rows, int columns) throws IOException {
+        if (seed < 0) {
+            throw new IllegalArgumentException("seed must not be negative");
+        }
+        return create(rows, columns, seed);
+    }
+
+    private int create(int rows, int columns, long seed) throws IOException {
+        flush();
+        Shard shard = shards[0];
+        for (Shard candidate : shards) {
+            if (candidate.games < shard.games) {
+                shard = candidate;
+            }
+        }
+        int game = nextGame++;
+        shard.out.writeByte(ClusterProtocol.CREATE);
+        shard.out.writeInt(game);
+        shard.out.writeInt(rows);
+        shard.out.writeInt(columns);
+        shard.out.writeLong(seed);
+        shard.out.flush();
+        shard.readReply();
+        shard.games++;
+        placement.put(game, shard);
+        return game;
+    }
+
+    /**
+     * Queues a command for the shard of its game, to be sent on the next flush.
+     * @param game the id of the game.
+     * @param action the menu character of the action.
+     * @param x the row of the Plot acted on, ignored by REGISTER and END DAY.
+     * @param y the column of the Plot acted on, ignored by REGISTER and END DAY.
+     * @param crop the menu character of the Crop to plant, only used by PLANT.
+     * @return the position of the command among those queued since the last flush, which is where its
+     * outcome code is in the array returned by flush.
+     */
+    public int submit(int game, char action, int x, int y, char crop) {
+        Shard shard = placement.get(game);
+        if (shard == null) {
+            throw new IllegalArgumentException("unknown game " + game);
+        }
+        return shard.queue(game, action, x, y, crop, pending++);
+    }
+
+    /**
+     * Sends the queued commands to every shard and waits for all of their outcomes.
+     * @return the outcome code of every command queued since the last flush, in the order they were
+     * queued, see Telemetry.code.
+     * @throws IOException if a shard cannot be reached.
+     */
+    public short[] flush() throws IOException {
+        short[] codes = new short[pending];
+        for (Shard shard : shards) {
+            shard.sendCommands();
+        }
+        for (Shard shard : shards) {
+            shard.readOutcomes(codes);
+        }
+        pending = 0;
+        return codes;
+    }
+
+    /**
+     * Advances the day of every game on every shard, after sending the queued commands. This returns only
+     * once every shard has advanced all of its games.
+     * @return the amount of games advanced.
+     * @throws IOException if a shard cannot be reached.
+     */
+    public int advanceDay() throws IOException {
+        flush();
+        for (Shard shard : shards) {
+            shard.out.writeByte(ClusterProtocol.ADVANCE_DAY);
+            shard.out.flush();
+        }
+        int advanced = 0;
+        for (Shard shard : shards) {
+            shard.readReply();
+            advanced += shard.in.readInt();
+        }
+        return advanced;
+    }
+
+    /**
+     * Moves a game to another shard by handing off its snapshot. The counters of the rule engine that
+     * only count actions start again from 0 on the new shard, see GameSnapshot. If the new shard fails to
+     * restore the game, it is restored on the old shard again before the failure is thrown.
+     * @param game the id of the game.
+     * @param shard the index of the shard to move the game to.
+     * @throws IOException if a shard cannot be reached or fails to hand off the game.
+     */
+    public void move(int game, int shard) throws IOException {
+        Shard from = placement.get(game);
+        if (from == null) {
+            throw new IllegalArgumentException("unknown game " + game);
+        }
+        Shard to = shards[shard];
+        if (from == to) {
+            return;
+        }
+        flush();
+        from.out.writeByte(ClusterProtocol.EXPORT);
+        from.out.writeInt(game);
+        from.out.flush();
+        from.readReply();
+        GameSnapshot snapshot = GameSnapshot.read(from.in);
+        from.games--;
+        placement.remove(game);
+        try {
+            restore(to, game, snapshot);
+        } catch (IOException e) {
+            // The old shard no longer has the game, so it is given the snapshot back rather than lost.
+            try {
+                restore(from, game, snapshot);
+            } catch (IOException rollback) {
+                e.addSuppressed(rollback);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Restores a game handed off by another shard on a shard.
+     */
+    private void restore(Shard shard, int game, GameSnapshot snapshot) throws IOException {
+        shard.out.writeByte(ClusterProtocol.IMPORT);
+        shard.out.writeInt(game);
+        snapshot.write(shard.out);
+        shard.out.flush();
+        shard.readReply();
+        shard.games++;
+        placement.put(game, shard);
+    }
+
+    /**
+     * Moves games from the shards with the most games to the shards with the fewest until every shard has
+     * at most one game more than any other.
+     * @return the amount of games moved.
+     * @throws IOException if a shard cannot be reached or fails to hand off a game.
+     */
+    public int rebalance() throws IOException {
+        int moved = 0;
+        while (true) {
+            Shard most = shards[0];
+            Shard fewest = shards[0];
+            for (Shard shard : shards) {
+                most = shard.games > most.games ? shard : most;
+                fewest = shard.games < fewest.games ? shard : fewest;
+            }
+            if (most.games - fewest.games <= 1) {
+                return moved;
+            }
+            for (var entry : placement.entrySet()) {
+                if (entry.getValue() == most) {
+                    move(entry.getKey(), fewest.index);
+                    moved++;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the hash of the state of a game, see GameManager.stateHash.
+     * @param game the id of the game.
+     * @return the hash of the game.
+     * @throws IOException if the shard cannot be reached.
+     */
+    public long stateHash(int game) throws IOException {
+        Shard shard = placement.get(game);
+        if (shard == null) {
+            throw new IllegalArgumentException("unknown game " + game);
+        }
+        flush();
+        shard.out.writeByte(ClusterProtocol.HASH);
+        shard.out.writeInt(game);
+        shard.out.flush();
+        shard.readReply();
+        return shard.in.readLong();
+    }
+
+    /**
+     * Gets the next frame of the state stream of a game, after sending the queued commands. The frame
+     * holds everything that changed in the game since the last frame, so polling once per flush gives a
+     * frame per tick. Frames can be sent to any number of remote clients, which rebuild the game with a
+     * StateStreamDecoder.
+     * @param game the id of the game.
+     * @param keyframe true to get a keyframe, as when a new client joins, and false to get whatever the
+     *                 stream sends next.
+     * @return the frame, see StateStreamEncoder.
+     * @throws IOException if the shard cannot be reached.
+     */
+    public byte[] pollStream(int game, boolean keyframe) throws IOException {
+        Shard shard = placement.get(game);
+        if (shard == null) {
+            throw new IllegalArgumentException("unknown game " + game);
+        }
+        flush();
+        shard.out.writeByte(ClusterProtocol.STREAM);
+        shard.out.writeInt(game);
+        shard.out.writeByte(keyframe ? 1 : 0);
+        shard.out.flush();
+        shard.readReply();
+        byte[] frame = new byte[shard.in.readInt()];
+        shard.in.readFully(frame);
+        return frame;
+    }
+
+    /**
+     * Shuts every shard down and waits for the worker processes to exit.
+     * @throws IOException if a shard cannot be reached.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Shard shard : shards) {
+            try {
+                shard.out.writeByte(ClusterProtocol.SHUTDOWN);
+                shard.out.flush();
+                shard.readReply();
+            } catch (IOException e) {
+                failure = e;
+            }
+            shard.socket.close();
+            if (shard.process != null) {
+                try {
+                    shard.process.waitFor();
+                } catch (InterruptedException e) {
+                    shard.process.destroy();
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * The connection to one worker and the commands queued for it.
+     */
+    private static final class Shard {
+        private final int index;
+        private final Socket socket;
+        private final Process process;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private int games = 0;
+
+        private byte[] commands = new byte[256 * ClusterProtocol.COMMAND_BYTES];
+        private int[] positions = new int[256];
+        private int count = 0;
+        private int sent = 0;
+
+        private Shard(int index, Socket socket, Process process) throws IOException {
+            this.index = index;
+            this.socket = socket;
+            this.process = process;
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        }
+
+        private int queue(int game, char action, int x, int y, char crop, int position) {
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+                commands = Arrays.copyOf(commands, count * 2 * ClusterProtocol.COMMAND_BYTES);
+            }
+            int offset = count * ClusterProtocol.COMMAND_BYTES;
+            short row = ClusterProtocol.toShort(x);
+            short column = ClusterProtocol.toShort(y);
+            commands[offset] = (byte) (game >>> 24);
+            commands[offset + 1] = (byte) (game >>> 16);
+            commands[offset + 2] = (byte) (game >>> 8);
+            commands[offset + 3] = (byte) game;
+            commands[offset + 4] = (byte) action;
+            commands[offset + 5] = (byte) (row >>> 8);
+            commands[offset + 6] = (byte) row;
+            commands[offset + 7] = (byte) (column >>> 8);
+            commands[offset + 8] = (byte) column;
+            commands[offset + 9] = (byte) crop;
+            positions[count++] = position;
+            return position;
+        }
+
+        private void sendCommands() throws IOException {
+            sent = count;
+            if (count > 0) {
+                out.writeByte(ClusterProtocol.COMMANDS);
+                out.writeInt(count);
+                out.write(commands, 0, count * ClusterProtocol.COMMAND_BYTES);
+                out.flush();
+                count = 0;
+            }
+        }
+
+        private void readOutcomes(short[] codes) throws IOException {
+            if (sent > 0) {
+                readReply();
+                int replied = in.readInt();
+                if (replied != sent) {
+                    throw new IOException("shard " + index + " replied to " + replied + " of " + sent + " commands");
+                }
+                for (int i = 0; i < sent; i++) {
+                    codes[positions[i]] = in.readShort();
+                }
+                sent = 0;
+            }
+        }
+
+        private void readReply() throws IOException {
+            int status = in.readByte();
+            if (status == ClusterProtocol.REPLY_ERROR) {
+                throw new IOException("shard " + index + ": " + in.readUTF());
+            } else if (status != ClusterProtocol.REPLY_OK) {
+                throw new IOException("shard " + index + " sent a bad reply");
+            }
+        }
+    }
+}
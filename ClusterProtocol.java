@@ -0,0 +1,82 @@
+/**
+ * <p>
+ * This class holds the binary protocol spoken between a ClusterCoordinator and its ShardWorkers over a
+ * loopback socket.
+ * <p>
+ * Every message starts with a byte giving its type, followed by its fields in the order listed here, in
+ * the big-endian layout of DataOutputStream. Every request is answered by exactly one reply, in the order
+ * the requests were sent, so that the coordinator can send requests to all shards before reading any
+ * reply. A reply starts with REPLY_OK followed by the fields of the reply, or REPLY_ERROR followed by a
+ * message written with writeUTF.
+ * <p>
+ * A command takes COMMAND_BYTES: the game as an int, the action as a byte, the row and column as shorts and
+ * the Crop as a byte. Rows and columns that do not fit in a short are sent as -1, which no farm has.
+ */
+public final class ClusterProtocol {
+    /**
+     * Creates a game: int game, int rows, int columns, long seed. A negative seed creates an empty game
+     * and any other seed a scenario from ScenarioGenerator. Replies with nothing.
+     */
+    public static final byte CREATE = 1;
+    /**
+     * Applies commands: int count, then count commands. Replies with int count, then the outcome code of
+     * each command as a short, see Telemetry.code, which is Telemetry.UNKNOWN for a game not on the shard.
+     */
+    public static final byte COMMANDS = 2;
+    /**
+     * Advances the day of every game of the shard. Replies with the int amount of games advanced.
+     */
+    public static final byte ADVANCE_DAY = 3;
+    /**
+     * Removes a game from the shard: int game. Replies with its GameSnapshot, see GameSnapshot.write.
+     */
+    public static final byte EXPORT = 4;
+    /**
+     * Adds a game to the shard: int game, then its GameSnapshot. Replies with nothing.
+     */
+    public static final byte IMPORT = 5;
+    /**
+     * Gets the hash of the state of a game: int game. Replies with the long of GameManager.stateHash.
+     */
+    public static final byte HASH = 6;
+    /**
+     * Gets the next frame of the state stream of a game: int game, byte keyframe. The stream is started
+     * on the first request, and a keyframe of 1 asks for a keyframe. Replies with the int length of the
+     * frame, then the frame, see StateStreamEncoder.
+     */
+    public static final byte STREAM = 8;
+    /**
+     * Stops the shard after replying with nothing.
+     */
+    public static final byte SHUTDOWN = 7;
+
+    /**
+     * The start of a reply to a request that succeeded.
+     */
+    public static final byte REPLY_OK = 0;
+    /**
+     * The start of a reply to a request that failed.
+     */
+    public static final byte REPLY_ERROR = 1;
+
+    /**
+     * The amount of bytes of a command.
+     */
+    public static final int COMMAND_BYTES = Integer.BYTES + 1 + Short.BYTES + Short.BYTES + 1;
+
+    /**
+     * The line a ShardWorker prints first to its standard output, followed by the port it listens on.
+     */
+    public static final String PORT_LINE = "PORT ";
+
+    private ClusterProtocol() {}
+
+    /**
+     * Converts a row or column to the short it is sent as.
+     * @param coordinate the row or column.
+     * @return the coordinate, or -1 if it does not fit in a short.
+     */
+    public static short toShort(int coordinate) {
+        return coordinate == (short) coordinate ? (short) coordinate : -1;
+    }
+}
@@ -1,4 +1,6 @@
 import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 import exceptions.PlotUnoccupiedException;
 
@@ -27,6 +29,7 @@ public class Crop {
     private final int cost;
     private final int price;
     private final double exp;
+    private int species = -1;
     private int waterAmount = 0;
     private int fertilizerAmount = 0;
 
@@ -62,6 +65,34 @@ public class Crop {
         this.exp = exp;
     }
 
+    /**
+     * Sets the index of the crop in CropFactory.CHOICES, for crops made by CropFactory.
+     * @param species the index of the crop.
+     */
+    void setSpecies(int species) {
+        this.species = species;
+    }
+
+    /**
+     * Getter of species, which lets the crop be looked up in tables ordered like CropFactory.CHOICES
+     * without comparing its name.
+     * @return the index of the crop in CropFactory.CHOICES, or -1 if it was not made by CropFactory.
+     */
+    public int getSpecies() {
+        return species;
+    }
+
+    /**
+     * Sets how many times the crop has been watered and fertilized, for crops restored or generated
+     * directly instead of through actions.
+     * @param waterAmount the amount of times the crop has been watered.
+     * @param fertilizerAmount the amount of times the crop has been fertilized.
+     */
+    void setAmounts(int waterAmount, int fertilizerAmount) {
+        this.waterAmount = waterAmount;
+        this.fertilizerAmount = fertilizerAmount;
+    }
+
     /**
      * Getter of name.
      * @return the String of name.
@@ -70,6 +101,94 @@ public class Crop {
         return name;
     }
 
+    /**
+     * Getter of type.
+     * @return the String of type.
+     */
+    public String getType(){
+        return type;
+    }
+
+    /**
+     * Getter of the days to pass before the crop becomes harvestable.
+     * @return the harvest time of crop.
+     */
+    public int getHarvestTime(){
+        return harvestTime;
+    }
+
+    /**
+     * Getter of the minimum amount of water needed.
+     * @return the minimum water of crop.
+     */
+    public int getWaterMin(){
+        return waterMin;
+    }
+
+    /**
+     * Getter of the maximum amount of water counted for calculation.
+     * @return the maximum water of crop.
+     */
+    public int getWaterMax(){
+        return waterMax;
+    }
+
+    /**
+     * Getter of the minimum amount of fertilizer needed.
+     * @return the minimum fertilizer of crop.
+     */
+    public int getFertilizerMin(){
+        return fertilizerMin;
+    }
+
+    /**
+     * Getter of the maximum amount of fertilizer counted for calculation.
+     * @return the maximum fertilizer of crop.
+     */
+    public int getFertilizerMax(){
+        return fertilizerMax;
+    }
+
+    /**
+     * Getter of the minimum amount of product/s crop can produce.
+     * @return the minimum products of crop.
+     */
+    public int getProductMin(){
+        return productMin;
+    }
+
+    /**
+     * Getter of the maximum amount of product/s crop can produce.
+     * @return the maximum products of crop.
+     */
+    public int getProductMax(){
+        return productMax;
+    }
+
+    /**
+     * Getter of the day when crop was planted.
+     * @return the day crop was planted.
+     */
+    public int getDate(){
+        return date;
+    }
+
+    /**
+     * Getter of the amount of times crop was watered.
+     * @return the water amount of crop.
+     */
+    public int getWaterAmount(){
+        return waterAmount;
+    }
+
+    /**
+     * Getter of the amount of times fertilizer was added to crop.
+     * @return the fertilizer amount of crop.
+     */
+    public int getFertilizerAmount(){
+        return fertilizerAmount;
+    }
+
     /**
      * Getter of crop cost.
      * @return the cost of crop.
@@ -78,6 +197,14 @@ public class Crop {
         return cost;
     }
 
+    /**
+     * Getter of the base selling price of crop.
+     * @return the base price of one product of crop.
+     */
+    public int getPrice() {
+        return price;
+    }
+
     /**
      * Getter of the EXP gain from crop.
      * @return the EXP gain from crop.
@@ -95,6 +222,26 @@ public class Crop {
         return day - date == harvestTime;
     }
 
+    /**
+     * Gets the day the crop matures and can be harvested.
+     * @return the day the crop matures.
+     */
+    public int getMaturityDay(){
+        return date + harvestTime;
+    }
+
+    /**
+     * Gets the day the crop withers if it is not watered or fertilized anymore. This is the day it matures
+     * if it does not have the minimum water or fertilizer by then, and the day after that if it does.
+     * @return the day the crop withers.
+     */
+    public int getWitherDay(){
+        if (waterMin > waterAmount || fertilizerMin > fertilizerAmount){
+            return getMaturityDay();
+        }
+        return getMaturityDay() + 1;
+    }
+
     /**
      * Increments water amount of Crop by 1.
      * @throws PlotUnoccupiedException 
@@ -139,27 +286,102 @@ public class Crop {
      * @param waterMaxBonus the Farmer stat for an additional bonus in calculating additional profit from watering.
      * @param fertilizerMaxBonus the Farmer stat for an additional bonus in calculating additional profit from fertilizing.
      * @param bonusEarnings the Farmer stat for additional bonus to base price when calculating profit.
+     * @param display whether the parts of the formula are displayed.
      * @return the total amount of objectCoins gained from harvesting the crop based on the formula.
      */
 
-    public int harvestCalculate(int waterMaxBonus, int fertilizerMaxBonus, int bonusEarnings){
+    public int harvestCalculate(int waterMaxBonus, int fertilizerMaxBonus, int bonusEarnings, boolean display){
+        return harvestCalculate(waterMaxBonus, fertilizerMaxBonus, bonusEarnings, display, ThreadLocalRandom.current());
+    }
 
-        int productsProduced = (int)Math.floor(Math.random()*(productMax - productMin + 1) + productMin);
-        int harvestTotal = productsProduced * (price + bonusEarnings);
-        int waterBonus = Math.round(harvestTotal * (float)0.2 * (Math.min(waterAmount, waterMax + waterMaxBonus) - 1));
-        int fertilizerBonus = Math.round(harvestTotal * (float)0.5 * (Math.min(fertilizerAmount, fertilizerMax + fertilizerMaxBonus)));
-        int finalHarvestPrice = harvestTotal + waterBonus + fertilizerBonus;
-        System.out.println();
-        System.out.println("  Amount of " + name + " made: " + productsProduced);
-        System.out.println("  Harvest price total: " + harvestTotal);
-        System.out.println("  Water bonus: " + waterBonus);
-        System.out.println("  Fertilizer bonus: " + fertilizerBonus);
-        if (Objects.equals(type, "Flower")){
-            return Math.round(finalHarvestPrice * (float)1.1);
+    /**
+     * Calculates the total objectCoins earned from harvesting and selling crop with the formula of
+     * harvestCalculate, with the amount of products drawn from a given generator.
+     * @param waterMaxBonus the Farmer stat for an additional bonus in calculating additional profit from watering.
+     * @param fertilizerMaxBonus the Farmer stat for an additional bonus in calculating additional profit from fertilizing.
+     * @param bonusEarnings the Farmer stat for additional bonus to base price when calculating profit.
+     * @param display whether the parts of the formula are displayed.
+     * @param random the generator of the amount of products, such as the GameRandom of the game.
+     * @return the total amount of objectCoins gained from harvesting the crop based on the formula.
+     */
+    public int harvestCalculate(int waterMaxBonus, int fertilizerMaxBonus, int bonusEarnings, boolean display,
+                                RandomGenerator random){
+        return harvestCalculate(waterMaxBonus, fertilizerMaxBonus, bonusEarnings, display, random, null);
+    }
+
+    /**
+     * Calculates the total objectCoins earned from harvesting and selling crop with the formula of
+     * harvestCalculate, selling the products on a shared Market at its published price instead of the
+     * base price.
+     * @param waterMaxBonus the Farmer stat for an additional bonus in calculating additional profit from watering.
+     * @param fertilizerMaxBonus the Farmer stat for an additional bonus in calculating additional profit from fertilizing.
+     * @param bonusEarnings the Farmer stat for additional bonus to base price when calculating profit.
+     * @param display whether the parts of the formula are displayed.
+     * @param random the generator of the amount of products, such as the GameRandom of the game.
+     * @param market the market the products are sold on, or null to sell them at the base price.
+     * @return the total amount of objectCoins gained from harvesting the crop based on the formula.
+     */
+    public int harvestCalculate(int waterMaxBonus, int fertilizerMaxBonus, int bonusEarnings, boolean display,
+                                RandomGenerator random, Market market){
+        HarvestEvent event = new HarvestEvent();
+        event.begin();
+
+        int productsProduced = random.nextInt(productMin, productMax + 1);
+        int sellingPrice = market != null ? market.sell(this, productsProduced) : price;
+        int harvestTotal = productsProduced * (sellingPrice + bonusEarnings);
+        int waterBonus = waterBonus(harvestTotal, waterAmount, waterMaxBonus);
+        int fertilizerBonus = fertilizerBonus(harvestTotal, fertilizerAmount, fertilizerMaxBonus);
+        int finalHarvestPrice = flowerBonus(harvestTotal + waterBonus + fertilizerBonus);
+        if (display){
+            System.out.println();
+            System.out.println("  Amount of " + name + " made: " + productsProduced);
+            if (market != null) {
+                System.out.println("  Market price: " + sellingPrice);
+            }
+            System.out.println("  Harvest price total: " + harvestTotal);
+            System.out.println("  Water bonus: " + waterBonus);
+            System.out.println("  Fertilizer bonus: " + fertilizerBonus);
+        }
+        if (event.shouldCommit()) {
+            event.species = name;
+            event.products = productsProduced;
+            event.profit = finalHarvestPrice;
+            event.waterBonus = waterBonus;
+            event.fertilizerBonus = fertilizerBonus;
+            event.commit();
         }
         return finalHarvestPrice;
     }
 
+    /**
+     * Calculates the objectCoins earned from selling the crop with the same formula as harvestCalculate,
+     * for a given amount of products, water and fertilizer instead of the ones of the crop.
+     * @param productsProduced the amount of products harvested.
+     * @param water the amount of times the crop was watered.
+     * @param fertilizer the amount of times fertilizer was added to the crop.
+     * @param waterMaxBonus the Farmer stat for an additional bonus in calculating additional profit from watering.
+     * @param fertilizerMaxBonus the Farmer stat for an additional bonus in calculating additional profit from fertilizing.
+     * @param bonusEarnings the Farmer stat for additional bonus to base price when calculating profit.
+     * @return the total amount of objectCoins gained from selling the crop.
+     */
+    public int calculatePrice(int productsProduced, int water, int fertilizer, int waterMaxBonus, int fertilizerMaxBonus, int bonusEarnings){
+        int harvestTotal = productsProduced * (price + bonusEarnings);
+        return flowerBonus(harvestTotal + waterBonus(harvestTotal, water, waterMaxBonus)
+                + fertilizerBonus(harvestTotal, fertilizer, fertilizerMaxBonus));
+    }
+
+    private int waterBonus(int harvestTotal, int water, int waterMaxBonus){
+        return Math.round(harvestTotal * (float)0.2 * (Math.min(water, waterMax + waterMaxBonus) - 1));
+    }
 
+    private int fertilizerBonus(int harvestTotal, int fertilizer, int fertilizerMaxBonus){
+        return Math.round(harvestTotal * (float)0.5 * (Math.min(fertilizer, fertilizerMax + fertilizerMaxBonus)));
+    }
 
+    private int flowerBonus(int finalHarvestPrice){
+        if (Objects.equals(type, "Flower")){
+            return Math.round(finalHarvestPrice * (float)1.1);
+        }
+        return finalHarvestPrice;
+    }
 }
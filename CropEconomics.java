@@ -0,0 +1,210 @@
+import exceptions.InvalidInputException;
+
+/**
+ * <p>
+ * This class computes the economics of every Crop for every Farmer title: the expected selling price and
+ * profit of a harvest, its variance and the expected profit per day the Crop spends growing.
+ * <p>
+ * Values are exact, since every possible amount of products is enumerated with the same formula as
+ * Crop.harvestCalculate and products are equally likely. Profit is the selling price minus the seed cost
+ * after the title's discount and 10 objectCoins per fertilizer. A Crop that does not get its minimum water
+ * or fertilizer withers and only loses money.
+ * <p>
+ * The table is computed once when the class is first used and never changes, so any entry and the best
+ * Crop for a title can be looked up in constant time.
+ */
+public final class CropEconomics {
+    private static final FarmerTitle[] titles = FarmerTitle.values();
+    private static final int FERTILIZER_COST = 10;
+
+    private static final Crop[] crops = new Crop[CropFactory.CHOICES.length()];
+    private static final int maxWater;
+    private static final int maxFertilizer;
+    private static final double[] expectedPrice;
+    private static final double[] expectedProfit;
+    private static final double[] variance;
+    private static final double[] profitPerDay;
+    private static final int[] best = new int[titles.length];
+
+    static {
+        int water = 0;
+        int fertilizer = 0;
+        for (int i = 0; i < crops.length; i++) {
+            try {
+                crops[i] = CropFactory.create(CropFactory.CHOICES.charAt(i), 0);
+            } catch (InvalidInputException e) {
+                throw new IllegalStateException(e);
+            }
+            water = Math.max(water, crops[i].getWaterMax());
+            fertilizer = Math.max(fertilizer, crops[i].getFertilizerMax());
+        }
+        int waterBonus = 0;
+        int fertilizerBonus = 0;
+        for (FarmerTitle title : titles) {
+            waterBonus = Math.max(waterBonus, title.getWaterMaxBonus());
+            fertilizerBonus = Math.max(fertilizerBonus, title.getFertilizerMaxBonus());
+        }
+        maxWater = water + waterBonus;
+        maxFertilizer = fertilizer + fertilizerBonus;
+
+        int size = titles.length * crops.length * (maxWater + 1) * (maxFertilizer + 1);
+        expectedPrice = new double[size];
+        expectedProfit = new double[size];
+        variance = new double[size];
+        profitPerDay = new double[size];
+        for (int title = 0; title < titles.length; title++) {
+            best[title] = -1;
+            for (int crop = 0; crop < crops.length; crop++) {
+                for (int w = 0; w <= maxWater; w++) {
+                    for (int f = 0; f <= maxFertilizer; f++) {
+                        int index = index(title, crop, w, f);
+                        compute(index, titles[title], crops[crop], w, f);
+                        if (best[title] < 0 || profitPerDay[index] > profitPerDay[best[title]]) {
+                            best[title] = index;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private CropEconomics() {}
+
+    /**
+     * Gets the expected objectCoins from harvesting a Crop, without its costs, which are already paid by
+     * the time it can be harvested.
+     * @param title the title of the Farmer.
+     * @param choice the menu character of the Crop.
+     * @param water the amount of times the Crop was watered.
+     * @param fertilizer the amount of times fertilizer was added to the Crop.
+     * @return the expected selling price in objectCoins, 0 if the Crop withers.
+     */
+    public static double getExpectedPrice(FarmerTitle title, char choice, int water, int fertilizer) {
+        return expectedPrice[index(title.ordinal(), crop(choice), clamp(water, maxWater), clamp(fertilizer, maxFertilizer))];
+    }
+
+    /**
+     * Gets the expected profit of planting and harvesting a Crop.
+     * @param title the title of the Farmer.
+     * @param choice the menu character of the Crop.
+     * @param water the amount of times the Crop is watered.
+     * @param fertilizer the amount of times fertilizer is added to the Crop.
+     * @return the expected profit in objectCoins.
+     */
+    public static double getExpectedProfit(FarmerTitle title, char choice, int water, int fertilizer) {
+        return expectedProfit[index(title.ordinal(), crop(choice), clamp(water, maxWater), clamp(fertilizer, maxFertilizer))];
+    }
+
+    /**
+     * Gets the variance of the profit of planting and harvesting a Crop.
+     * @param title the title of the Farmer.
+     * @param choice the menu character of the Crop.
+     * @param water the amount of times the Crop is watered.
+     * @param fertilizer the amount of times fertilizer is added to the Crop.
+     * @return the variance of the profit.
+     */
+    public static double getVariance(FarmerTitle title, char choice, int water, int fertilizer) {
+        return variance[index(title.ordinal(), crop(choice), clamp(water, maxWater), clamp(fertilizer, maxFertilizer))];
+    }
+
+    /**
+     * Gets the expected profit per day of growing a Crop.
+     * @param title the title of the Farmer.
+     * @param choice the menu character of the Crop.
+     * @param water the amount of times the Crop is watered.
+     * @param fertilizer the amount of times fertilizer is added to the Crop.
+     * @return the expected profit divided by the harvest time of the Crop.
+     */
+    public static double getProfitPerDay(FarmerTitle title, char choice, int water, int fertilizer) {
+        return profitPerDay[index(title.ordinal(), crop(choice), clamp(water, maxWater), clamp(fertilizer, maxFertilizer))];
+    }
+
+    /**
+     * Gets the Crop with the highest expected profit per day for a title.
+     * @param title the title of the Farmer.
+     * @return the menu character of the best Crop.
+     */
+    public static char getBestCrop(FarmerTitle title) {
+        return CropFactory.CHOICES.charAt(best[title.ordinal()] / ((maxWater + 1) * (maxFertilizer + 1)) % crops.length);
+    }
+
+    /**
+     * Gets the amount of water to give the best Crop for a title.
+     * @param title the title of the Farmer.
+     * @return the amount of times to water the best Crop.
+     */
+    public static int getBestWater(FarmerTitle title) {
+        return best[title.ordinal()] / (maxFertilizer + 1) % (maxWater + 1);
+    }
+
+    /**
+     * Gets the amount of fertilizer to give the best Crop for a title.
+     * @param title the title of the Farmer.
+     * @return the amount of times to fertilize the best Crop.
+     */
+    public static int getBestFertilizer(FarmerTitle title) {
+        return best[title.ordinal()] % (maxFertilizer + 1);
+    }
+
+    /**
+     * Prints the table of every Crop with the amounts of water and fertilizer that make a difference
+     * for each title, followed by the best Crop for each title.
+     */
+    public static void main(String[] args) {
+        for (FarmerTitle title : titles) {
+            System.out.println();
+            System.out.println("  --------  " + title.getName().toUpperCase() + "  --------  ");
+            System.out.println("  |    NAME     | WATER | FERTI | EXPECTED PROFIT | VARIANCE  | PROFIT PER DAY |");
+            for (int crop = 0; crop < crops.length; crop++) {
+                for (int w = 0; w <= crops[crop].getWaterMax() + title.getWaterMaxBonus(); w++) {
+                    for (int f = 0; f <= crops[crop].getFertilizerMax() + title.getFertilizerMaxBonus(); f++) {
+                        int index = index(title.ordinal(), crop, w, f);
+                        System.out.printf("  | %-11s | %5d | %5d | %15.2f | %9.2f | %14.2f |%n", crops[crop].getName(),
+                                w, f, expectedProfit[index], variance[index], profitPerDay[index]);
+                    }
+                }
+            }
+            System.out.println("  Best crop: " + crops[crop(getBestCrop(title))].getName() + " watered "
+                    + getBestWater(title) + " time/s and fertilized " + getBestFertilizer(title) + " time/s.");
+        }
+    }
+
+    private static void compute(int index, FarmerTitle title, Crop crop, int water, int fertilizer) {
+        int seedCost = crop.getCost() - title.getSeedCostReduction() + FERTILIZER_COST * fertilizer;
+        if (water < crop.getWaterMin() || fertilizer < crop.getFertilizerMin()) {
+            expectedProfit[index] = -seedCost;
+            profitPerDay[index] = (double) -seedCost / crop.getHarvestTime();
+            return;
+        }
+        int outcomes = crop.getProductMax() - crop.getProductMin() + 1;
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (int products = crop.getProductMin(); products <= crop.getProductMax(); products++) {
+            double profit = crop.calculatePrice(products, water, fertilizer, title.getWaterMaxBonus(),
+                    title.getFertilizerMaxBonus(), title.getBonusEarnings()) - seedCost;
+            sum += profit;
+            sumOfSquares += profit * profit;
+        }
+        double mean = sum / outcomes;
+        expectedPrice[index] = mean + seedCost;
+        expectedProfit[index] = mean;
+        variance[index] = sumOfSquares / outcomes - mean * mean;
+        profitPerDay[index] = mean / crop.getHarvestTime();
+    }
+
+    private static int index(int title, int crop, int water, int fertilizer) {
+        return ((title * crops.length + crop) * (maxWater + 1) + water) * (maxFertilizer + 1) + fertilizer;
+    }
+
+    private static int crop(char choice) {
+        int crop = CropFactory.CHOICES.indexOf(choice);
+        if (crop < 0) {
+            throw new IllegalArgumentException("Unknown crop: " + choice);
+        }
+        return crop;
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(value, max));
+    }
+}
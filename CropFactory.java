@@ -1,33 +1,88 @@
-public class CropFactory {
-    public static Crop createTurnip(int day) {
-        return new Crop("Turnip", "Root", day, 2, 1, 2, 0, 1, 1, 2, 5, 6, 5);
-    }
-
-    public static Crop createCarrot(int day) {
-        return new Crop("Carrot", "Root", day, 3, 1, 2, 0, 1, 1, 2, 10, 9, 7.5);
-    }
-
-    public static Crop createPotato(int day) {
-        return new Crop("Potato", "Root", day, 5, 3, 4, 1, 2, 1, 10, 20, 3, 12.5);
-    }
-
-    public static Crop createRose(int day) {
-        return new Crop("Rose", "Flower", day, 1, 1, 2, 0, 1, 1, 1, 5, 5, 2.5);
-    }
-
-    public static Crop createTurnips(int day) {
-        return new Crop("Turnips", "Flower", day, 2, 2, 3, 0, 1, 1, 1, 10, 9, 5);
-    }
-
-    public static Crop createSunflower(int day) {
-        return new Crop("Sunflower", "Flower", day, 3, 2, 3, 1, 2, 1, 1, 20, 19, 7.5);
-    }
-
-    public static Crop createMango(int day) {
-        return new Crop("Mango", "Tree", day, 10, 7, 7, 4, 4, 5, 15, 100, 8, 25);
-    }
-
-    public static Crop createApple(int day) {
-        return new Crop("Apple", "Tree", day, 10, 7, 7, 5, 5, 10, 15, 200, 5, 25);
-    }
-}
+import exceptions.InvalidInputException;
+
+public class CropFactory {
+    /**
+     * The menu characters of every Crop, in the order they are listed in UIManager.displayPlantOptions.
+     */
+    public static final String CHOICES = "TCPRUSMA";
+
+    /**
+     * Creates the Crop chosen with its menu character, as listed by UIManager.displayPlantOptions.
+     * @param choice the menu character of the Crop.
+     * @param day the day the Crop is planted.
+     * @return the new Crop.
+     * @throws InvalidInputException if no Crop uses the given character.
+     */
+    public static Crop create(char choice, int day) throws InvalidInputException {
+        return switch (choice) {
+            case 'T' -> createTurnip(day);
+            case 'C' -> createCarrot(day);
+            case 'P' -> createPotato(day);
+            case 'R' -> createRose(day);
+            case 'U' -> createTurnips(day);
+            case 'S' -> createSunflower(day);
+            case 'M' -> createMango(day);
+            case 'A' -> createApple(day);
+            default -> throw new InvalidInputException();
+        };
+    }
+
+    /**
+     * Gets the menu character of a Crop.
+     * @param crop the Crop.
+     * @return the menu character of the Crop, or 0 if it is not on the menu.
+     */
+    public static char getChoice(Crop crop) {
+        if (crop.getSpecies() >= 0) {
+            return CHOICES.charAt(crop.getSpecies());
+        }
+        return switch (crop.getName()) {
+            case "Turnip" -> 'T';
+            case "Carrot" -> 'C';
+            case "Potato" -> 'P';
+            case "Rose" -> 'R';
+            case "Turnips" -> 'U';
+            case "Sunflower" -> 'S';
+            case "Mango" -> 'M';
+            case "Apple" -> 'A';
+            default -> 0;
+        };
+    }
+
+    public static Crop createTurnip(int day) {
+        return withSpecies(new Crop("Turnip", "Root", day, 2, 1, 2, 0, 1, 1, 2, 5, 6, 5), 'T');
+    }
+
+    public static Crop createCarrot(int day) {
+        return withSpecies(new Crop("Carrot", "Root", day, 3, 1, 2, 0, 1, 1, 2, 10, 9, 7.5), 'C');
+    }
+
+    public static Crop createPotato(int day) {
+        return withSpecies(new Crop("Potato", "Root", day, 5, 3, 4, 1, 2, 1, 10, 20, 3, 12.5), 'P');
+    }
+
+    public static Crop createRose(int day) {
+        return withSpecies(new Crop("Rose", "Flower", day, 1, 1, 2, 0, 1, 1, 1, 5, 5, 2.5), 'R');
+    }
+
+    public static Crop createTurnips(int day) {
+        return withSpecies(new Crop("Turnips", "Flower", day, 2, 2, 3, 0, 1, 1, 1, 10, 9, 5), 'U');
+    }
+
+    public static Crop createSunflower(int day) {
+        return withSpecies(new Crop("Sunflower", "Flower", day, 3, 2, 3, 1, 2, 1, 1, 20, 19, 7.5), 'S');
+    }
+
+    public static Crop createMango(int day) {
+        return withSpecies(new Crop("Mango", "Tree", day, 10, 7, 7, 4, 4, 5, 15, 100, 8, 25), 'M');
+    }
+
+    public static Crop createApple(int day) {
+        return withSpecies(new Crop("Apple", "Tree", day, 10, 7, 7, 5, 5, 10, 15, 200, 5, 25), 'A');
+    }
+
+    private static Crop withSpecies(Crop crop, char choice) {
+        crop.setSpecies(CHOICES.indexOf(choice));
+        return crop;
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ * <p>
+ * This class keeps the fields of the Crops of a farm that decide when they mature and wither in one
+ * primitive array per field, so that the daily checks of every Plot can be made as integer arithmetic
+ * over whole arrays instead of calls on each Crop.
+ * <p>
+ * evaluate computes the same answers as Crop.getHarvestStatus and Plot.hasWitheredCrop for every Plot, as
+ * bit masks of 64 Plots per long. Its inner loop has no branches: the compares of Crop.isWithered are
+ * done with the sign bits of differences, over several Plots at a time. When the Vector API module is
+ * added at run time and CropStateVectors was compiled with it, evaluate runs that pass with explicit
+ * vectors as wide as the machine has. Otherwise it falls back to a scalar loop, which the JIT may or may
+ * not compile to SIMD instructions. An empty Plot is stored with a harvest time that is never reached, so
+ * it needs no check of its own.
+ * evaluateScalar computes the same masks by calling the Crop of every Plot, for comparison.
+ * <p>
+ * The columns follow every change to the Plots of the farm. Evaluating does not mark Crops as withered,
+ * which Farm.hasWitheredCrops still does.
+ */
+public class CropStateColumns implements PlotListener {
+    // Far enough away that no day reaches it, and close enough to 0 that differences cannot overflow.
+    private static final int NEVER = 1 << 30;
+    // The Vector API pass, or null to use the scalar loop only.
+    private static final Kernel KERNEL = loadKernel();
+
+    private final Farm farm;
+    private final int size;
+    private final int[] date;
+    private final int[] harvestTime;
+    private final int[] water;
+    private final int[] waterMin;
+    private final int[] fertilizer;
+    private final int[] fertilizerMin;
+    // 1 for Plots already found to have a withered Crop.
+    private final int[] found;
+    private final int[] lanes;
+
+    /**
+     * Constructor for CropStateColumns, which copies the Crops already on the farm and starts following it.
+     * @param farm the farm.
+     */
+    public CropStateColumns(Farm farm) {
+        this.farm = farm;
+        size = farm.getRows() * farm.getColumns();
+        date = new int[size];
+        harvestTime = new int[size];
+        water = new int[size];
+        waterMin = new int[size];
+        fertilizer = new int[size];
+        fertilizerMin = new int[size];
+        found = new int[size];
+        lanes = new int[size];
+        for (int i = 0; i < farm.getRows(); i++) {
+            for (int j = 0; j < farm.getColumns(); j++) {
+                plotChanged(farm.getPlot(i, j), 0);
+            }
+        }
+        farm.addPlotListener(this);
+    }
+
+    @Override
+    public void plotChanged(Plot plot, long oldState) {
+        int index = plot.getIndex();
+        Crop crop = plot.getCrop();
+        if (crop instanceof NullCrop) {
+            date[index] = 0;
+            harvestTime[index] = NEVER;
+        } else {
+            date[index] = crop.getDate();
+            harvestTime[index] = crop.getHarvestTime();
+        }
+        water[index] = crop.getWaterAmount();
+        waterMin[index] = crop.getWaterMin();
+        fertilizer[index] = crop.getFertilizerAmount();
+        fertilizerMin[index] = crop.getFertilizerMin();
+        found[index] = plot.isWithered() ? 1 : 0;
+    }
+
+    /**
+     * Gets the amount of longs needed for the masks of the farm.
+     * @return one long per 64 Plots.
+     */
+    public int getMaskLength() {
+        return (size + 63) >>> 6;
+    }
+
+    /**
+     * Computes which Plots have a Crop that matures and which have a Crop that has withered on a day.
+     * Bit i % 64 of long i / 64 of a mask is for the Plot with index i.
+     * @param day the current day in the Game.
+     * @param matured the mask to fill with the Plots whose Crop matures on the day.
+     * @param withered the mask to fill with the Plots whose Crop has withered by the day.
+     */
+    public void evaluate(int day, long[] matured, long[] withered) {
+        checkMasks(matured, withered);
+        int start = 0;
+        if (KERNEL != null) {
+            start = KERNEL.evaluate(day, size, date, harvestTime, water, waterMin, fertilizer, fertilizerMin,
+                    found, matured, withered);
+        }
+        // The scalar loop does the Plots past the last whole word, or every Plot without the Vector API.
+        for (int i = start; i < size; i++) {
+            int age = day - date[i];
+            int sinceMaturity = age - harvestTime[i];
+            // 1 if the Crop matures today: sinceMaturity is neither negative nor positive.
+            int mature = ~(sinceMaturity | -sinceMaturity) >>> 31;
+            // 1 if the Crop matured before today.
+            int past = -sinceMaturity >>> 31;
+            // 1 if the Crop has less than the minimum water or fertilizer.
+            int lacking = ((water[i] - waterMin[i]) | (fertilizer[i] - fertilizerMin[i])) >>> 31;
+            lanes[i] = mature | (found[i] | past | (mature & lacking)) << 1;
+        }
+        pack(start >>> 6, matured, withered);
+    }
+
+    /**
+     * Computes the same masks as evaluate by calling Crop.getHarvestStatus and Crop.isWithered on the Crop
+     * of every Plot.
+     * @param day the current day in the Game.
+     * @param matured the mask to fill with the Plots whose Crop matures on the day.
+     * @param withered the mask to fill with the Plots whose Crop has withered by the day.
+     */
+    public void evaluateScalar(int day, long[] matured, long[] withered) {
+        checkMasks(matured, withered);
+        int columns = farm.getColumns();
+        for (int i = 0; i < size; i++) {
+            Plot plot = farm.getPlot(i / columns, i % columns);
+            Crop crop = plot.getCrop();
+            boolean mature = crop.getHarvestStatus(day);
+            boolean dead = plot.isWithered() || crop.isWithered(day);
+            lanes[i] = (mature ? 1 : 0) | (dead ? 2 : 0);
+        }
+        pack(0, matured, withered);
+    }
+
+    /**
+     * Gets whether evaluate uses the Vector API.
+     * @return true if the jdk.incubator.vector module and CropStateVectors were found.
+     */
+    public static boolean isVectorized() {
+        return KERNEL != null;
+    }
+
+    /**
+     * Stops following the farm.
+     */
+    public void close() {
+        farm.removePlotListener(this);
+    }
+
+    private void checkMasks(long[] matured, long[] withered) {
+        if (matured.length < getMaskLength() || withered.length < getMaskLength()) {
+            throw new IllegalArgumentException("masks must have " + getMaskLength() + " longs");
+        }
+    }
+
+    private static Kernel loadKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return Class.forName("CropStateVectors").asSubclass(Kernel.class).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Packs the bits of every lane into the masks, 64 lanes at a time, starting from a word.
+     */
+    private void pack(int from, long[] matured, long[] withered) {
+        for (int word = from; word < getMaskLength(); word++) {
+            long mature = 0;
+            long dead = 0;
+            int end = Math.min(size, (word + 1) << 6);
+            // Shifting a long by i only uses the low 6 bits of i, which is the position in the word.
+            for (int i = word << 6; i < end; i++) {
+                long lane = lanes[i];
+                mature |= (lane & 1) << i;
+                dead |= (lane >>> 1) << i;
+            }
+            matured[word] = mature;
+            withered[word] = dead;
+        }
+    }
+
+    /**
+     * The pass of evaluate over vectors, given every column of the farm.
+     */
+    interface Kernel {
+        /**
+         * Fills the words of the masks whose 64 Plots are all on the farm.
+         * @return the index of the first Plot not done, a multiple of 64 which the scalar loop starts from.
+         */
+        int evaluate(int day, int size, int[] date, int[] harvestTime, int[] water, int[] waterMin,
+                int[] fertilizer, int[] fertilizerMin, int[] found, long[] matured, long[] withered);
+    }
+}
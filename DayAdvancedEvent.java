@@ -0,0 +1,23 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for advancing the day in a game, timed over the wither check of the whole farm.
+ */
+@Name("myfarm.DayAdvanced")
+@Label("Day Advanced")
+@Category("MyFarm")
+@Description("A day was advanced and the crops of the farm were checked for withering")
+public class DayAdvancedEvent extends jdk.jfr.Event {
+    @Label("Day")
+    int day;
+
+    @Label("Plots Scanned")
+    int plotsScanned;
+
+    @Label("Crops Withered")
+    @Description("The number of Plots with withered crops after the day was advanced")
+    int cropsWithered;
+}
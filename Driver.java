@@ -3,6 +3,8 @@ import exceptions.InvalidInputException;
 import exceptions.NoAvailablePlotsException;
 import exceptions.ScannerException;
 import exceptions.TreeAdjacencyException;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Scanner;
 
 public class Driver {
@@ -10,10 +12,121 @@ public class Driver {
         Scanner scanner = new Scanner(System.in);
         char newGameChoice = 'N';
 
+        // Periodically write metrics to a file if one is given with -Dmetrics.file=<path>
+        String metricsFile = System.getProperty("metrics.file");
+        if (metricsFile != null) {
+            Metrics.startDump(Path.of(metricsFile), 10);
+        }
+        // Record the economy of each game in <prefix>.<game> if a prefix is given with -Dledger.file=<prefix>
+        String ledgerFile = System.getProperty("ledger.file");
+        // Record telemetry in <prefix>.<n> if a prefix is given with -Dtelemetry.file=<prefix>, dropping records
+        // when the writer falls behind unless -Dtelemetry.policy=block is given
+        String telemetryFile = System.getProperty("telemetry.file");
+        if (telemetryFile != null) {
+            try {
+                Telemetry.start(Path.of(telemetryFile), 1 << 16, 64L << 20,
+                        "block".equalsIgnoreCase(System.getProperty("telemetry.policy"))
+                                ? TelemetryWriter.Policy.BLOCK : TelemetryWriter.Policy.DROP);
+            } catch (IOException e) {
+                System.err.println("Error: could not open telemetry: " + e.getMessage());
+            }
+        }
+        // Run the commands of a script without the menu with -Dscript.file=<path> on farms of -Dscript.rows by
+        // -Dscript.columns, logging their outcomes to <path>.log and resuming from <path>.checkpoint if an
+        // earlier run stopped
+        String scriptFile = System.getProperty("script.file");
+        if (scriptFile != null) {
+            ScriptRunner runner = new ScriptRunner(Path.of(scriptFile), Path.of(scriptFile + ".log"),
+                    Path.of(scriptFile + ".checkpoint"), Integer.getInteger("script.rows", 5),
+                    Integer.getInteger("script.columns", 10), ScriptRunner.DEFAULT_CHECKPOINT_INTERVAL,
+                    Long.getLong("game.seed"));
+            try {
+                long start = System.nanoTime();
+                long commands = runner.run();
+                System.out.printf("Ran %d commands in %.3f s, %d games ended.%n", commands,
+                        (System.nanoTime() - start) / 1e9, runner.getGames());
+            } catch (IOException e) {
+                System.err.println("Error: could not run the script: " + e.getMessage());
+            }
+            Telemetry.stop();
+            return;
+        }
+        // Archive a row of each finished game in the segments of <dir> if one is given with -Darchive.dir=<dir>
+        GameArchiveWriter archive = null;
+        if (System.getProperty("archive.dir") != null) {
+            try {
+                archive = new GameArchiveWriter(Path.of(System.getProperty("archive.dir")),
+                        GameArchiveWriter.DEFAULT_SEGMENT_ROWS);
+            } catch (IOException e) {
+                System.err.println("Error: could not open the archive: " + e.getMessage());
+            }
+        }
+        int games = 0;
+        // Put rocks on the farm from a text or PBM map with -Dmap.file=<path>, or from a map generated with
+        // -Dmap.seed=<seed>, -Dmap.rows, -Dmap.columns and -Dmap.density
+        RockMap rockMap = null;
+        try {
+            if (System.getProperty("map.file") != null) {
+                rockMap = MapGenerator.read(Path.of(System.getProperty("map.file")));
+            } else if (System.getProperty("map.seed") != null) {
+                rockMap = MapGenerator.generate(Long.parseLong(System.getProperty("map.seed")),
+                        Integer.getInteger("map.rows", 5), Integer.getInteger("map.columns", 10),
+                        Double.parseDouble(System.getProperty("map.density", "0.1")));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error: could not load the map: " + e.getMessage());
+        }
+        // Sell harvests on a market whose prices follow the products harvested every -Dmarket.tick=<millis>,
+        // selling at base price when -Dmarket.target products of a Crop are harvested in that time
+        Market market = null;
+        if (System.getProperty("market.tick") != null) {
+            try {
+                market = new Market(Long.getLong("market.target", 10));
+                market.start(Long.parseLong(System.getProperty("market.tick")));
+            } catch (IllegalArgumentException e) {
+                market = null;
+                System.err.println("Error: could not open the market: " + e.getMessage());
+            }
+        }
+
         // Outer loop for restarting the game
         do {
-            // Create a new game instance
-            GameManager gameManager = new GameManager();
+            // Create a new game instance, on a farm with rocks if a map is given
+            GameManager gameManager = rockMap != null ? new GameManager(rockMap) : new GameManager();
+            // The metrics only read games that publish snapshots, so that they never touch a game being played
+            if (metricsFile != null) {
+                gameManager.enableSnapshots();
+                Metrics.track(gameManager);
+            }
+            gameManager.enableHarvestIndex();
+            // Keep the last 100 steps, with up to 10000 changed Plots between them, for undoing
+            gameManager.enableUndo(100, 10_000);
+            gameManager.setMarket(market);
+            // Give the same harvests every game with -Dgame.seed=<seed>
+            if (System.getProperty("game.seed") != null) {
+                try {
+                    gameManager.setSeed(Long.parseLong(System.getProperty("game.seed")));
+                } catch (NumberFormatException e) {
+                    System.err.println("Error: could not set the seed: " + e.getMessage());
+                }
+            }
+            // Cap the heap of each game with -Dgame.memory.budget=<bytes>
+            if (System.getProperty("game.memory.budget") != null) {
+                try {
+                    gameManager.setMemoryBudget(Long.parseLong(System.getProperty("game.memory.budget")));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Error: could not set the memory budget: " + e.getMessage());
+                }
+            }
+            EconomyLedger ledger = null;
+            if (ledgerFile != null) {
+                try {
+                    ledger = new EconomyLedger(4096, Path.of(ledgerFile + "." + ++games));
+                    gameManager.setLedger(ledger);
+                } catch (IOException e) {
+                    System.err.println("Error: could not open the ledger: " + e.getMessage());
+                }
+            }
 
             // Display the starting screen using the UIManager
             UIManager.displayStartScreen(scanner);
@@ -23,20 +136,38 @@ public class Driver {
                 UIManager.displayFarmInfo(
                         gameManager.getDay(),
                         gameManager.getFarmer(),
-                        gameManager.getFarm()
-                );
-                UIManager.displayChoiceMenu(
                         gameManager.getFarm(),
-                        gameManager.getFarmer(),
-                        gameManager.getDay()
+                        gameManager.getHarvestIndex()
                 );
+                UIManager.displayChoiceMenu(gameManager.getRules(), gameManager.getUndoHistory());
 
                 try {
                     gameManager.choiceMenu(scanner);
                 } catch (NoAvailablePlotsException | CannotAffordException |
                          InvalidInputException | TreeAdjacencyException e) {
+                    Telemetry.record(gameManager.getId(), gameManager.getDay(), (char) 0, Telemetry.SOURCE_DRIVER,
+                            Telemetry.code(e), gameManager.getFarmer().getObjectCoins(),
+                            gameManager.getFarmer().getTotalExpUnits());
                     System.err.println(e.getMessage());
                 }
+                UIManager.displayAchievements(gameManager.getRules());
+            }
+
+            Metrics.recordGameEnd(gameManager.getFarm().isFullOfWitheredCrops(gameManager.getDay()));
+            Metrics.untrack(gameManager);
+            if (archive != null) {
+                try {
+                    archive.append(gameManager);
+                } catch (IOException e) {
+                    System.err.println("Error: could not write the archive: " + e.getMessage());
+                }
+            }
+            if (ledger != null) {
+                try {
+                    ledger.close();
+                } catch (IOException e) {
+                    System.err.println("Error: could not write the ledger: " + e.getMessage());
+                }
             }
 
             // Display the end screen and ask if the player wants a new game
@@ -44,11 +175,22 @@ public class Driver {
             try {
                 newGameChoice = InputManager.getCharInput(scanner);
             } catch (ScannerException e) {
+                Telemetry.record(gameManager.getId(), gameManager.getDay(), (char) 0, Telemetry.SOURCE_DRIVER,
+                        Telemetry.code(e), gameManager.getFarmer().getObjectCoins(),
+                        gameManager.getFarmer().getTotalExpUnits());
                 System.err.println("Error: " + e.getMessage());
                 break;
             }
         } while (newGameChoice == 'N');  // 'N' means "new game"
 
         scanner.close();
+        if (archive != null) {
+            try {
+                archive.close();
+            } catch (IOException e) {
+                System.err.println("Error: could not write the archive: " + e.getMessage());
+            }
+        }
+        Telemetry.stop();
     }
 }
\ No newline at end of file
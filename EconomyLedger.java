@@ -0,0 +1,194 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>
+ * This class is an append-only ledger of every change to a Farmer's objectCoins and EXP, with the day,
+ * the action that caused it and the Plot it was done on.
+ * <p>
+ * Entries are kept in a ring of primitive arrays, so recording one does not allocate. If the ledger has a
+ * file, the ring is written to it in a single batch whenever it fills up and when the ledger is flushed.
+ * Without a file, the oldest entries are overwritten once the ring is full.
+ * <p>
+ * If writing to the file fails, the file no longer holds every change, so the ledger stops recording and
+ * every later flush and close throws, with the failure as its cause. Entries are never dropped to make
+ * room without being written.
+ * <p>
+ * A ledger file holds every change since the start of the game, so the Farmer's balances can be rebuilt
+ * by replaying it.
+ */
+public class EconomyLedger {
+    /**
+     * The amount of bytes of an entry in a ledger file: the day, action, Plot index, coin change and EXP change.
+     */
+    public static final int ENTRY_BYTES = Integer.BYTES + 1 + Integer.BYTES + Integer.BYTES + Long.BYTES;
+
+    private final int[] days;
+    private final byte[] actions;
+    private final int[] plots;
+    private final int[] coinDeltas;
+    private final long[] expDeltas;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long written = 0;
+    private long flushed = 0;
+    private IOException failure = null;
+
+    /**
+     * Constructor for a ledger that only keeps its most recent entries in memory.
+     * @param capacity the amount of entries kept.
+     */
+    public EconomyLedger(int capacity) {
+        this(capacity, (FileChannel) null);
+    }
+
+    /**
+     * Constructor for a ledger that writes its entries to a file. Entries are appended to the file if it exists.
+     * @param capacity the amount of entries kept in memory before they are written.
+     * @param file the file to write the entries to, or null to only keep them in memory.
+     * @throws IOException if the file cannot be opened.
+     */
+    public EconomyLedger(int capacity, Path file) throws IOException {
+        this(capacity, file == null ? null : FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+    }
+
+    private EconomyLedger(int capacity, FileChannel channel) {
+        days = new int[capacity];
+        actions = new byte[capacity];
+        plots = new int[capacity];
+        coinDeltas = new int[capacity];
+        expDeltas = new long[capacity];
+        this.channel = channel;
+        buffer = channel == null ? null : ByteBuffer.allocateDirect(capacity * ENTRY_BYTES);
+    }
+
+    /**
+     * Records a change to a Farmer's balances. Nothing is recorded once writing to the file has failed,
+     * which flush and close report.
+     * @param day the day the change happened.
+     * @param action the menu character of the action that caused the change.
+     * @param plot the index of the Plot acted on, row * columns + column, or -1 if the action has no Plot.
+     * @param coinDelta the change in objectCoins.
+     * @param expDelta the change in EXP units.
+     */
+    public void record(int day, char action, int plot, int coinDelta, long expDelta) {
+        if (failure != null) {
+            return;
+        }
+        if (written - flushed == days.length) {
+            if (channel != null) {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    System.err.println("Error: could not write the ledger, it stops recording: " + e.getMessage());
+                    return;
+                }
+            } else {
+                flushed++;
+            }
+        }
+        int index = (int) (written % days.length);
+        days[index] = day;
+        actions[index] = (byte) action;
+        plots[index] = plot;
+        coinDeltas[index] = coinDelta;
+        expDeltas[index] = expDelta;
+        written++;
+    }
+
+    /**
+     * Estimates the heap used by the ledger's ring of entries. The buffer for writing to a file is direct
+     * and not on the heap.
+     * @return the estimated bytes, see MemoryFootprint.
+     */
+    public long getRetainedBytes() {
+        return MemoryFootprint.object(7 * MemoryFootprint.REFERENCE + 2 * Long.BYTES)
+                + MemoryFootprint.array(days.length, Integer.BYTES) + MemoryFootprint.array(actions.length, 1)
+                + MemoryFootprint.array(plots.length, Integer.BYTES)
+                + MemoryFootprint.array(coinDeltas.length, Integer.BYTES)
+                + MemoryFootprint.array(expDeltas.length, Long.BYTES);
+    }
+
+    /**
+     * Gets the amount of entries recorded since the ledger was created.
+     * @return the amount of entries recorded.
+     */
+    public long size() {
+        return written;
+    }
+
+    /**
+     * Writes the entries that have not been written yet to the ledger's file.
+     * @throws IOException if the entries cannot be written, or writing them failed before.
+     */
+    public void flush() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        if (failure != null) {
+            throw new IOException("the ledger stopped recording after a failed write", failure);
+        }
+        buffer.clear();
+        for (long i = flushed; i < written; i++) {
+            int index = (int) (i % days.length);
+            buffer.putInt(days[index]).put(actions[index]).putInt(plots[index])
+                    .putInt(coinDeltas[index]).putLong(expDeltas[index]);
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            failure = e;
+            throw e;
+        }
+        flushed = written;
+    }
+
+    /**
+     * Writes the remaining entries and closes the ledger's file, which is closed even if they cannot be written.
+     * @throws IOException if the entries cannot be written, or writing them failed before.
+     */
+    public void close() throws IOException {
+        if (channel != null) {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Rebuilds a Farmer from a ledger file by replaying every change to its balances on a new Farmer.
+     * @param file the ledger file of the game.
+     * @return the Farmer with the balances the ledger ends with.
+     * @throws IOException if the file cannot be read.
+     */
+    public static Farmer replay(Path file) throws IOException {
+        Farmer farmer = new Farmer();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(4096 * ENTRY_BYTES);
+            while (channel.read(buffer) > 0 || buffer.position() > 0) {
+                buffer.flip();
+                if (buffer.remaining() < ENTRY_BYTES) {
+                    break;
+                }
+                while (buffer.remaining() >= ENTRY_BYTES) {
+                    buffer.getInt();
+                    char action = (char) buffer.get();
+                    buffer.getInt();
+                    farmer.replay(action, buffer.getInt(), buffer.getLong());
+                }
+                buffer.compact();
+            }
+        }
+        farmer.levelCheck();
+        return farmer;
+    }
+}
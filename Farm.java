@@ -1,11 +1,24 @@
 import exceptions.*;
 
+import java.util.Arrays;
+
 /**
  * This represents the entire farm, which contains the various Plots that the Farmer will be acting on.
  */
 public class Farm {
+    // The fields of a Farm, a Plot and a Crop, see MemoryFootprint.
+    private static final long FARM_BYTES = MemoryFootprint.object(MemoryFootprint.REFERENCE + Long.BYTES
+            + 3 * Integer.BYTES + MemoryFootprint.REFERENCE + 1);
+    private static final long PLOT_BYTES = MemoryFootprint.object(2 * MemoryFootprint.REFERENCE + 3 + Integer.BYTES);
+    private static final long CROP_BYTES = MemoryFootprint.object(2 * MemoryFootprint.REFERENCE
+            + 12 * Integer.BYTES + Double.BYTES);
 
     private Plot[][] plots;
+    private long stateHash = 0;
+    private int harvestableCount = 0;
+    private int plantedCount = 0;
+    private PlotListener[] listeners = new PlotListener[0];
+    private boolean stackTraces = true;
 
     /**
      * Constructor for Farm.
@@ -14,6 +27,31 @@ public class Farm {
         initializePlots();
     }
 
+    /**
+     * Constructor for a Farm with a custom size.
+     * @param rows the number of rows of Plots.
+     * @param columns the number of columns of Plots.
+     */
+    public Farm(int rows, int columns){
+        initializePlots(rows, columns);
+    }
+
+    /**
+     * Gets the number of rows of the farm.
+     * @return the number of rows of Plots.
+     */
+    public int getRows(){
+        return plots.length;
+    }
+
+    /**
+     * Gets the number of columns of the farm.
+     * @return the number of columns of Plots.
+     */
+    public int getColumns(){
+        return plots[0].length;
+    }
+
     /**
      * Gets the Plot at the coordinate (x, y) specified.
      * @param x the row of the Plot.
@@ -38,8 +76,163 @@ public class Farm {
      * Initializes the needed Plots for the Farm.
      */
     public void initializePlots(){ // Will be expanded to 5 x 10 in final project
-        plots = new Plot[1][1];
-        plots[0][0] = new Plot();
+        initializePlots(1, 1);
+    }
+
+    /**
+     * Initializes a rows x columns grid of empty Plots for the Farm.
+     * @param rows the number of rows of Plots.
+     * @param columns the number of columns of Plots.
+     */
+    public void initializePlots(int rows, int columns){
+        plots = new Plot[rows][columns];
+        stateHash = 0;
+        plantedCount = 0;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                plots[i][j] = new Plot(this, i * columns + j);
+            }
+        }
+    }
+
+    /**
+     * Gets the hash of the state of every Plot, which is kept up to date as Plots change.
+     * @return the XOR of the keys of every Plot.
+     */
+    public long getStateHash(){
+        return stateHash;
+    }
+
+    /**
+     * Computes the hash of every Plot again, after Plots were restored without telling the farm.
+     */
+    void rehash(){
+        long hash = 0;
+        int planted = 0;
+        for (Plot[] plotRow : plots) {
+            for (Plot plot : plotRow) {
+                hash ^= plot.hashKey();
+                if (!(plot.getCrop() instanceof NullCrop)) {
+                    planted++;
+                }
+            }
+        }
+        stateHash = hash;
+        plantedCount = planted;
+    }
+
+    /**
+     * Gets the amount of Plots with a Crop, which is kept up to date as Plots change.
+     * @return the number of Plots with a Crop, withered or not.
+     */
+    public int getPlantedCount(){
+        return plantedCount;
+    }
+
+    /**
+     * Estimates the heap used by the farm: its Plots, the Crop planted on each and the arrays holding them.
+     * @return the estimated bytes, see MemoryFootprint.
+     */
+    public long getRetainedBytes(){
+        return estimateBytes(plots.length, plots[0].length, listeners.length) + (long) plantedCount * CROP_BYTES;
+    }
+
+    /**
+     * Estimates the heap used by a new farm without Crops.
+     * @param rows the number of rows of Plots.
+     * @param columns the number of columns of Plots.
+     * @return the estimated bytes, see MemoryFootprint.
+     */
+    public static long estimateBytes(int rows, int columns){
+        return estimateBytes(rows, columns, 0);
+    }
+
+    private static long estimateBytes(int rows, int columns, int listeners){
+        return FARM_BYTES + MemoryFootprint.array(listeners, MemoryFootprint.REFERENCE)
+                + MemoryFootprint.array(rows, MemoryFootprint.REFERENCE)
+                + rows * (MemoryFootprint.array(columns, MemoryFootprint.REFERENCE) + (long) columns * PLOT_BYTES);
+    }
+
+    /**
+     * Adds a listener that is told of every change to the Plots of the farm.
+     * @param listener the listener to add.
+     */
+    public void addPlotListener(PlotListener listener){
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+    }
+
+    /**
+     * Removes a listener added with addPlotListener.
+     * @param listener the listener to remove.
+     */
+    public void removePlotListener(PlotListener listener){
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                PlotListener[] remaining = new PlotListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, remaining, 0, i);
+                System.arraycopy(listeners, i + 1, remaining, i, remaining.length - i);
+                listeners = remaining;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sets whether the errors of actions on the Plots of the farm fill in their stack traces.
+     * @param stackTraces true for errors with stack traces and false for errors with only a message.
+     */
+    void setStackTraces(boolean stackTraces){
+        this.stackTraces = stackTraces;
+    }
+
+    /**
+     * Gets whether the errors of actions on the Plots of the farm fill in their stack traces.
+     */
+    boolean hasStackTraces(){
+        return stackTraces;
+    }
+
+    /**
+     * Updates the farm after one of its Plots has changed and tells the listeners.
+     * @param plot the Plot that changed.
+     * @param oldState the packed state of the Plot before it changed.
+     */
+    void plotChanged(Plot plot, long oldState){
+        stateHash ^= ZobristHash.stateKey(plot.getIndex(), oldState) ^ plot.hashKey();
+        plantedCount += (plot.getCrop() instanceof NullCrop ? 0 : 1) - (PlotState.getCrop(oldState) != 0 ? 1 : 0);
+        for (PlotListener listener : listeners) {
+            listener.plotChanged(plot, oldState);
+        }
+    }
+
+    /**
+     * Sets a Plot to a packed state and tells the listeners, as if the Plot had changed through an action.
+     * @param index the index of the Plot.
+     * @param state the packed state from PlotState.
+     * @throws InvalidInputException if the state has a Crop that does not exist.
+     */
+    void restorePlot(int index, long state) throws InvalidInputException {
+        Plot plot = plots[index / plots[0].length][index % plots[0].length];
+        long oldState = PlotState.encode(plot);
+        if (oldState != state) {
+            PlotState.restore(plot, state);
+            plotChanged(plot, oldState);
+        }
+    }
+
+    /**
+     * Empties every Plot, taking away its Crop and rock and unplowing it, and tells the listeners of the
+     * Plots that changed, for starting a new game on the same farm.
+     */
+    void reset() {
+        for (int index = 0; index < plots.length * plots[0].length; index++) {
+            try {
+                restorePlot(index, 0);
+            } catch (InvalidInputException e) {
+                throw new IllegalStateException(e);
+            }
+        }
     }
 
 
@@ -49,14 +242,18 @@ public class Farm {
      * @return true if it is a Plot to be plowed and false if not.
      */
     public boolean hasPlowablePlot(){
+        FarmScanEvent event = new FarmScanEvent();
+        event.begin();
+        int visited = 0;
         for (Plot[] plot : plots) {
             for (Plot value : plot) {
+                visited++;
                 if (!value.getPlow()) {
-                    return false;
+                    return event.finish("hasPlowablePlot", visited, false);
                 }
             }
         }
-        return true;
+        return event.finish("hasPlowablePlot", visited, true);
     }
 
     /**
@@ -64,14 +261,18 @@ public class Farm {
      * @return true if there is a rock and false if not.
      */
     public boolean hasRock(){
+        FarmScanEvent event = new FarmScanEvent();
+        event.begin();
+        int visited = 0;
         for (Plot[] plot : plots) {
             for (Plot value : plot) {
+                visited++;
                 if (value.getRock()) {
-                    return true;
+                    return event.finish("hasRock", visited, true);
                 }
             }
         }
-        return false;
+        return event.finish("hasRock", visited, false);
     }
 
     /**
@@ -79,16 +280,20 @@ public class Farm {
      * @return true if there is a plantable Plot and false if not.
      */
     public boolean hasPlantablePlot() {
+        FarmScanEvent event = new FarmScanEvent();
+        event.begin();
+        int visited = 0;
         for (Plot[] plot : plots) {
             for (Plot value : plot) {
+                visited++;
                 try {
                     if (value.isPlantable()) {
-                        return true;
+                        return event.finish("hasPlantablePlot", visited, true);
                     }
                 } catch (PlotHasRockException | PlotAlreadyOccupiedException | PlotNotPlowedException ignored) {}
             }
         }
-        return false;
+        return event.finish("hasPlantablePlot", visited, false);
     }
 
     /**
@@ -97,33 +302,13 @@ public class Farm {
      * @param y the column to be checked.
      * @return true if all adjacent Plots are empty and false if not.
      */
-    public boolean hasEmptyAdjacentPlots(int x, int y){ // Does not apply in prototype as only one plot exists at the moment.
-        if(x - 1 >= 0 && y - 1 >= 0 && plots[x - 1][y - 1].isEmpty()) { // Top left
-            return false;
-        }
-        if(y - 1 >= 0 && plots[x][y - 1].isEmpty()){ // Top middle
-            return false;
-        }
-        if(y - 1 >= 0 && x + 1 < plots[y - 1].length && plots[x + 1][y - 1].isEmpty()){ // Top right
-            return false;
-        }
-        if(x - 1 >= 0 && plots[x - 1][y].isEmpty()){
-            return false;
-        }
-        if(plots[x][y].isEmpty()){
-            return false;
-        }
-        if(x + 1 < plots[y].length && plots[x + 1][y].isEmpty()){
-            return false;
-        }
-        if(x - 1 >= 0 && y + 1 < plots.length && plots[x - 1][y + 1].isEmpty()){
-            return false;
-        }
-        if(y + 1 < plots.length && plots[x][y + 1].isEmpty()){
-            return false;
-        }
-        if(y + 1 < plots.length && x + 1 < plots[y + 1].length && plots[x + 1][y + 1].isEmpty()){
-            return true;
+    public boolean hasEmptyAdjacentPlots(int x, int y){
+        for (int i = x - 1; i <= x + 1; i++) {
+            for (int j = y - 1; j <= y + 1; j++) {
+                if ((i != x || j != y) && isValidPlot(i, j) && !plots[i][j].isEmpty()) {
+                    return false;
+                }
+            }
         }
         return true;
     }
@@ -134,16 +319,19 @@ public class Farm {
      * @return true if there is a Crop that is neither withered nor mature and false if not.
      */
     public boolean hasUnmaturedCrop(int day){
+        FarmScanEvent event = new FarmScanEvent();
+        event.begin();
+        int visited = 0;
         for (Plot[] plot : plots) {
             for (Plot value : plot) {
-                try {
-                    if (!value.hasWitheredCrop(day) && !value.hasHarvestableCrop(day)) {
-                        return true;
-                    }
-                } catch (PlotUnoccupiedException | CropWitheredException | CropNotMaturedException ignored) {}
+                visited++;
+                if (!(value.getCrop() instanceof NullCrop) && !value.hasWitheredCrop(day)
+                        && !value.getCrop().getHarvestStatus(day)) {
+                    return event.finish("hasUnmaturedCrop", visited, true);
+                }
             }
         }
-        return false;
+        return event.finish("hasUnmaturedCrop", visited, false);
     }
 
     /**
@@ -152,16 +340,20 @@ public class Farm {
      * @return true if there is a Plot with a Crop that can be harvested and false if not.
      */
     public boolean hasHarvestableCrop(int day){
+        FarmScanEvent event = new FarmScanEvent();
+        event.begin();
+        int visited = 0;
         for (Plot[] plot : plots) {
             for (Plot value : plot) {
+                visited++;
                 try {
                     if (value.hasHarvestableCrop(day)) {
-                        return true;
+                        return event.finish("hasHarvestableCrop", visited, true);
                     }
                 } catch (PlotUnoccupiedException | CropWitheredException | CropNotMaturedException ignored) {}
             }
         }
-        return false;
+        return event.finish("hasHarvestableCrop", visited, false);
     }
 
     /**
@@ -187,27 +379,94 @@ public class Farm {
      * @return true if all Plots have withered Crops and false if not.
      */
     public boolean isFullOfWitheredCrops(int day){
+        FarmScanEvent event = new FarmScanEvent();
+        event.begin();
+        int visited = 0;
         for (Plot[] plot : plots) {
             for (Plot value : plot) {
+                visited++;
                 if (!value.hasWitheredCrop(day)) {
-                    return false;
+                    return event.finish("isFullOfWitheredCrops", visited, false);
                 }
             }
         }
-        return true;
+        return event.finish("isFullOfWitheredCrops", visited, true);
+    }
+
+    /**
+     * Gets the next day after the given day on which any Crop on the farm matures or withers, if nothing
+     * else is done to the farm.
+     * @param day the current day in the Game.
+     * @return the day of the next change to a Crop, or Integer.MAX_VALUE if no Crop will change.
+     */
+    public int getNextEventDay(int day){
+        int next = Integer.MAX_VALUE;
+        for (Plot[] plot : plots) {
+            for (Plot value : plot) {
+                next = Math.min(next, value.getNextEventDay(day));
+            }
+        }
+        return next;
     }
 
     /**
-     * Update on whether crops have withered in the Plots.
+     * Update on whether crops have withered in the Plots. The Plots with a harvestable crop are counted
+     * at the same time, see getHarvestableCount.
      * @param day the current day in the Game.
+     * @return the number of Plots with withered crops.
+     */
+
+    public int hasWitheredCrops(int day){
+        int withered = 0;
+        int harvestable = 0;
+        for (Plot[] plotRow : plots) {
+            for (Plot plot : plotRow) {
+                if (plot.hasWitheredCrop(day)) {
+                    withered++;
+                } else if (!(plot.getCrop() instanceof NullCrop) && plot.getCrop().getHarvestStatus(day)) {
+                    harvestable++;
+                }
+            }
+        }
+        harvestableCount = harvestable;
+        return withered;
+    }
+
+    /**
+     * Gets the number of Plots that had a harvestable crop when hasWitheredCrops was last called.
+     * @return the number of Plots with a harvestable crop on that day.
+     */
+    public int getHarvestableCount(){
+        return harvestableCount;
+    }
+
+    /**
+     * Puts rocks on the Plots where a map has them and removes them from the others. Plots outside of the
+     * map are left as they are.
+     * @param map the map of rocks.
      */
+    public void setRocks(RockMap map){
+        for (int i = 0; i < Math.min(plots.length, map.getRows()); i++) {
+            for (int j = 0; j < Math.min(plots[i].length, map.getColumns()); j++) {
+                plots[i][j].setRock(map.hasRock(i, j));
+            }
+        }
+    }
 
-    public void hasWitheredCrops(int day){
+    /**
+     * Counts the rocks on the farm.
+     * @return the number of Plots with a rock.
+     */
+    public int countRocks(){
+        int rocks = 0;
         for (Plot[] plotRow : plots) {
             for (Plot plot : plotRow) {
-                plot.hasWitheredCrop(day);
+                if (plot.getRock()) {
+                    rocks++;
+                }
             }
         }
+        return rocks;
     }
 
 
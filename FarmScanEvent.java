@@ -0,0 +1,37 @@
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for a scan of the farm by one of the predicates of Farm.
+ */
+@Name("myfarm.FarmScan")
+@Label("Farm Scan")
+@Category("MyFarm")
+public class FarmScanEvent extends jdk.jfr.Event {
+    @Label("Predicate")
+    String predicate;
+
+    @Label("Plots Visited")
+    int plotsVisited;
+
+    @Label("Result")
+    boolean result;
+
+    /**
+     * Ends the scan, committing the event if it is being recorded.
+     * @param predicate the name of the predicate that scanned the farm.
+     * @param plotsVisited the number of Plots visited before the predicate returned.
+     * @param result the result of the predicate.
+     * @return the result of the predicate, so that it can be returned directly.
+     */
+    public boolean finish(String predicate, int plotsVisited, boolean result) {
+        if (shouldCommit()) {
+            this.predicate = predicate;
+            this.plotsVisited = plotsVisited;
+            this.result = result;
+            commit();
+        }
+        return result;
+    }
+}
@@ -1,4 +1,6 @@
 import exceptions.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 /**
  * <p>
@@ -11,29 +13,91 @@ import exceptions.*;
  * <p>
  * Farmers also have a leveling system where every 100 EXP, they can gain a level. Every 5 levels up to 15,
  * they can gain an upgrade by registering for a new title with a cost, which will give them special
- * bonuses for doing so.
+ * bonuses for doing so. The titles and their bonuses are listed in FarmerTitle.
+ * <p>
+ * EXP is kept as a whole number of hundredths of EXP so that it adds up exactly.
  */
 public class Farmer {
-    private double exp = 0;
-    private int level = 5;
-    private int objectCoins = 500;
-    private String type = "Farmer";
-    private int bonusEarnings = 0;
-    private int seedCostReduction = 0;
-    private int waterMaxBonus = 0;
-    private int fertilizerMaxBonus = 0;
+    /**
+     * The amount of EXP units in 1 EXP.
+     */
+    public static final int EXP_SCALE = 100;
+    /**
+     * The amount of EXP units needed to gain a level.
+     */
+    public static final long EXP_PER_LEVEL = 100L * EXP_SCALE;
+
+    private static final int START_LEVEL = 5;
+    private static final int START_OBJECTCOINS = 500;
+
+    private long exp = 0;
+    private int level = START_LEVEL;
+    private int objectCoins = START_OBJECTCOINS;
+    private FarmerTitle title = FarmerTitle.FARMER;
+    private boolean display = true;
+    private boolean stackTraces = true;
+    private RandomGenerator random = null;
+    private Market market = null;
 
     /**
      * Constructor of Farmer.
      */
     public Farmer(){}
 
+    /**
+     * Constructor of a Farmer in the middle of a game.
+     * @param title the title of the Farmer.
+     * @param level the level of the Farmer.
+     * @param exp the EXP units earned towards the next level.
+     * @param objectCoins the objectCoins of the Farmer.
+     */
+    public Farmer(FarmerTitle title, int level, long exp, int objectCoins){
+        this.title = title;
+        this.level = level;
+        this.exp = exp;
+        this.objectCoins = objectCoins;
+    }
+
+    /**
+     * Sets whether the results of actions are displayed, which is turned off when the game is played
+     * without a console.
+     * @param display true if results are displayed and false if not.
+     */
+    public void setDisplay(boolean display){
+        this.display = display;
+    }
+
+    /**
+     * Sets whether the errors of the actions of the Farmer fill in their stack traces.
+     * @param stackTraces true for errors with stack traces and false for errors with only a message.
+     */
+    void setStackTraces(boolean stackTraces){
+        this.stackTraces = stackTraces;
+    }
+
     /**
      * Gets the total amount of EXP earned.
      * @return the total amount of EXP the player has earned.
      */
     public double getTotalExp(){
-        return ((level - 1) * 100) + exp;
+        return (double) getTotalExpUnits() / EXP_SCALE;
+    }
+
+    /**
+     * Gets the total amount of EXP earned in EXP units.
+     * @return the total amount of EXP the player has earned, in hundredths of EXP.
+     */
+    public long getTotalExpUnits(){
+        return (level - 1) * EXP_PER_LEVEL + exp;
+    }
+
+    /**
+     * Converts an amount of EXP to EXP units.
+     * @param exp the amount of EXP.
+     * @return the amount of EXP in hundredths of EXP, rounded to the nearest one.
+     */
+    public static long toExpUnits(double exp){
+        return Math.round(exp * EXP_SCALE);
     }
 
     /**
@@ -57,7 +121,23 @@ public class Farmer {
      * @return the current title of the Farmer
      */
     public String getType() {
-        return type;
+        return title.getName();
+    }
+
+    /**
+     * Gets the current title of the Farmer with its bonuses.
+     * @return the current title of the Farmer
+     */
+    public FarmerTitle getTitle() {
+        return title;
+    }
+
+    /**
+     * Gets the hash of the Farmer's objectCoins, level and title.
+     * @return the key of the Farmer from ZobristHash.
+     */
+    public long getStateHash() {
+        return ZobristHash.farmerKey(objectCoins, level, title);
     }
 
     /**
@@ -65,7 +145,7 @@ public class Farmer {
      * @return the seed cost reduction the Farmer has for purchasing Crops.
      */
     public int getSeedCostReduction() {
-        return seedCostReduction;
+        return title.getSeedCostReduction();
     }
 
     /**
@@ -77,7 +157,7 @@ public class Farmer {
      */
     public boolean coinCheck(int amount, boolean discount){
         if (discount){
-            return objectCoins - seedCostReduction >= amount;
+            return objectCoins - title.getSeedCostReduction() >= amount;
         }
         else {
             return objectCoins >= amount;
@@ -85,25 +165,82 @@ public class Farmer {
     }
 
     /**
-     * Checks if the player has 100 EXP to level up, and updates the level if so.
+     * Checks if the player has 100 EXP to level up, and updates the level if so. Every level the EXP
+     * is enough for is gained at once.
      * @return true if the player has enough EXP, and false if not.
      */
     public boolean levelCheck(){
-        if(exp >= 100){
-            exp -= 100;
-            level++;
+        long levels = exp / EXP_PER_LEVEL;
+        if(levels > 0){
+            exp -= levels * EXP_PER_LEVEL;
+            level += (int) levels;
             return true;
         }
         return false;
     }
 
     /**
-     * Displays an update that the player has levelled up if activated.
+     * Sets the generator of the amount of products of every harvest.
+     * @param random the generator, or null to use ThreadLocalRandom.
+     */
+    public void setRandom(RandomGenerator random){
+        this.random = random;
+    }
+
+    /**
+     * Sets the market the products of every harvest are sold on.
+     * @param market the market, or null to sell products at the base price of their Crop.
+     */
+    public void setMarket(Market market){
+        this.market = market;
+    }
+
+    /**
+     * Applies a change to the Farmer's balances recorded in an EconomyLedger. Spending objectCoins on
+     * registering is counted as registering for the next title, and getting them back as the registering
+     * being undone.
+     * @param action the menu character of the action that caused the change.
+     * @param coinDelta the change in objectCoins.
+     * @param expDelta the change in EXP units.
+     */
+    public void replay(char action, int coinDelta, long expDelta){
+        objectCoins += coinDelta;
+        exp += expDelta;
+        if (action == 'R' && coinDelta < 0 && title.next() != null){
+            title = title.next();
+        } else if (action == 'R' && coinDelta > 0 && title.previous() != null){
+            title = title.previous();
+        }
+    }
+
+    /**
+     * Sets every balance of the Farmer back to an earlier state, for undoing actions.
+     * @param title the title of the Farmer.
+     * @param level the level of the Farmer.
+     * @param exp the EXP units earned towards the next level.
+     * @param objectCoins the objectCoins of the Farmer.
+     */
+    void restore(FarmerTitle title, int level, long exp, int objectCoins){
+        this.title = title;
+        this.level = level;
+        this.exp = exp;
+        this.objectCoins = objectCoins;
+    }
+
+    /**
+     * Sets the Farmer's title and balances back to those of a new Farmer.
+     */
+    void reset(){
+        restore(FarmerTitle.FARMER, START_LEVEL, 0, START_OBJECTCOINS);
+    }
+
+    /**
+     * Displays an update that the player has levelled up if activated and results are displayed.
      * @param update true if the player has levelled and false if not.
      */
 
     public void levelUpdate(boolean update){
-        if (update) {
+        if (update && display) {
             System.out.println();
             System.out.println("  Level up! You are now level " + level + ".");
         }
@@ -114,19 +251,8 @@ public class Farmer {
      * @return true if the next title can be registered and false if not.
      */
     public boolean registerCheck(){
-        switch(type){
-            case "Farmer":
-                return level >= 5;
-            case "Registered Farmer":
-                return level >= 10;
-            case "Distinguished Farmer":
-                return level >= 15;
-            case "Legendary Farmer":
-                return false;
-            default:
-                System.out.println("  Error in registerCheck!");
-                return false;
-        }
+        FarmerTitle next = title.next();
+        return next != null && level >= next.getLevelRequirement();
     }
 
     /**
@@ -137,7 +263,7 @@ public class Farmer {
      */
     public void plow(Plot plot, int day) throws CropWitheredException, PlotAlreadyPlowedException, PlotAlreadyOccupiedException {
         plot.plow(day);
-        exp += 0.5;
+        exp += toExpUnits(0.5);
     }
 
     /**
@@ -147,7 +273,7 @@ public class Farmer {
      */
     public void plant(Plot plot, Crop crop){
         plot.setCrop(crop);
-        objectCoins -= crop.getCost() - seedCostReduction;
+        objectCoins -= crop.getCost() - title.getSeedCostReduction();
     }
 
     /**
@@ -158,7 +284,7 @@ public class Farmer {
      */
     public void water(Plot plot, int day) throws CropWitheredException, PlotUnoccupiedException, PlotNotPlowedException, PlotAlreadyMaturedException {
         plot.water(day);
-        exp += 0.5;
+        exp += toExpUnits(0.5);
     }
 
     /**
@@ -171,7 +297,7 @@ public class Farmer {
     public void fertilize(Plot plot, int day) throws CropWitheredException, PlotUnoccupiedException, PlotNotPlowedException, PlotAlreadyMaturedException {
         plot.fertilize(day);
         objectCoins -= 10;
-        exp += 4;
+        exp += toExpUnits(4);
     }
 
     /**
@@ -185,16 +311,23 @@ public class Farmer {
         try {
             plot.hasHarvestableCrop(day);
         } catch (PlotUnoccupiedException | CropWitheredException | CropNotMaturedException e) {
-            System.err.println("Error: " + e.getMessage());
+            if (Telemetry.isEnabled()) {
+                Telemetry.record(0, day, 'H', Telemetry.SOURCE_FARMER, Telemetry.code(e), objectCoins, getTotalExpUnits());
+            } else {
+                System.err.println("Error: " + e.getMessage());
+            }
         }
 
-        int profit = plot.getHarvestProfit(waterMaxBonus, fertilizerMaxBonus, bonusEarnings);
+        int profit = plot.getHarvestProfit(title.getWaterMaxBonus(), title.getFertilizerMaxBonus(), title.getBonusEarnings(), display,
+                random != null ? random : ThreadLocalRandom.current(), market);
         double expGain = plot.getHarvestExp();
         objectCoins += profit;
-        exp += expGain;
-        System.out.println("  Amount of objectCoins gained: " + profit);
-        System.out.println("  Amount of EXP gained: " + expGain);
-        System.out.println();
+        exp += toExpUnits(expGain);
+        if (display) {
+            System.out.println("  Amount of objectCoins gained: " + profit);
+            System.out.println("  Amount of EXP gained: " + expGain);
+            System.out.println();
+        }
         plot.resetPlot();
     }
     /**
@@ -203,23 +336,11 @@ public class Farmer {
      */
     public void displayRegister(){
         System.out.println("  The next upgrade costs " + getRegisterCost() + " objectCoins.");
-        switch (type) {
-            case "Farmer" -> {
-                System.out.println();
-                System.out.println("  The upgrade to become a Registered Farmer.");
-                System.out.println("  It will increase earnings by 1 per produce and reduce seed cost by 1.");
-            }
-            case "Registered Farmer" -> {
-                System.out.println();
-                System.out.println("  The upgrade to become a Distinguished Farmer.");
-                System.out.println("  It will increase earnings by 1 per produce and reduce seed cost by another 1.");
-                System.out.println("  It will also increase maximum water bonus by 1.");
-            }
-            case "Distinguished Farmer" -> {
-                System.out.println();
-                System.out.println("  The final upgrade to become a Legendary Farmer.");
-                System.out.println("  It will increase earnings by 2 per produce and reduce seed cost by another 1.");
-                System.out.println("  It will also increase maximum water and fertilizer bonus by 1.");
+        FarmerTitle next = title.next();
+        if (next != null) {
+            System.out.println();
+            for (String line : next.getDescription()) {
+                System.out.println("  " + line);
             }
         }
     }
@@ -230,67 +351,29 @@ public class Farmer {
      * @return the error code received from doing the action.
      */
     public void register() throws CannotAffordException {
-        switch(type){
-            case "Farmer":
-                if(objectCoins >= 200){
-                    objectCoins -= 200;
-                    bonusEarnings = 1;
-                    seedCostReduction = 1;
-                    type = "Registered Farmer";
-                }
-                else throw new CannotAffordException();
-                break;
-
-            case "Registered Farmer":
-                if(objectCoins >= 300){
-                    objectCoins -= 300;
-                    bonusEarnings = 2;
-                    seedCostReduction = 2;
-                    waterMaxBonus = 1;
-                    type = "Distinguished Farmer";
-                }
-                else throw new CannotAffordException();
-                break;
-
-            case "Distinguished Farmer":
-                if(objectCoins >= 400){
-                    objectCoins -= 400;
-                    bonusEarnings = 4;
-                    seedCostReduction = 3;
-                    waterMaxBonus = 2;
-                    fertilizerMaxBonus = 1;
-                    type = "Legendary Farmer";
-                }
-                else throw new CannotAffordException();
-                break;
-
-            default:
-                System.out.println("  Error in register().");
-                break;
+        FarmerTitle next = title.next();
+        if (next == null) {
+            System.out.println("  Error in register().");
+        }
+        else if (objectCoins >= next.getCost()) {
+            objectCoins -= next.getCost();
+            title = next;
         }
+        else throw CannotAffordException.of(stackTraces);
     }
 
     /**
      * Gets the cost of upgrading to the next title for registering.
-     * The following is list of the costs of the upgrades:
-     * <ul>
-     *     <li>200 for upgrading to Registered Farmer.
-     *     <li>300 for upgrading to Distinguished Farmer.
-     *     <li>400 for upgrading to Legendary Farmer.
+     * The costs of the upgrades are listed in FarmerTitle.
      * @return the appropriate cost for the next title upgrade.
      */
     public int getRegisterCost(){
-        switch(type){
-            case "Farmer":
-                return 200;
-            case "Registered Farmer":
-                return 300;
-            case "Distinguished Farmer":
-                return 400;
-            case "Legendary Farmer":
-                System.out.println("  You have reached the maximum title available.");
+        FarmerTitle next = title.next();
+        if (next == null) {
+            System.out.println("  You have reached the maximum title available.");
+            return 0;
         }
-        return 0;
+        return next.getCost();
     }
 
     /**
@@ -304,10 +387,10 @@ public class Farmer {
     public void shovel(Plot plot) throws CannotAffordException {
         if (objectCoins > 7) {
             objectCoins -= 7;
-            exp += 2;
+            exp += toExpUnits(2);
             plot.resetPlot();
         }
-        else throw new CannotAffordException();
+        else throw CannotAffordException.of(stackTraces);
     }
     /**
      * Pickaxes a rock on a Plot with one. It requires 50 objectCoins and will net the Farmer 15
@@ -316,13 +399,13 @@ public class Farmer {
      * @return the error code received from doing the action.
      */
     public void pickaxe(Plot plot) throws NoRockException, CannotAffordException {
-        if (objectCoins > 50) {
+        if (objectCoins >= 50) {
             plot.removeRock();
                 objectCoins -= 50;
-                exp += 15;
+                exp += toExpUnits(15);
         }
         else {
-            throw new CannotAffordException();
+            throw CannotAffordException.of(stackTraces);
         }
     }
 }
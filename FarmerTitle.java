@@ -0,0 +1,125 @@
+/**
+ * <p>
+ * This represents the titles a Farmer can register for, in the order they are unlocked.
+ * <p>
+ * Each title has the level needed to register for it, the cost of registering and the bonuses it gives:
+ * the additional earnings per produce, the seed cost reduction, and the additional water and fertilizer
+ * that are counted when calculating the bonuses of a harvest.
+ */
+public enum FarmerTitle {
+    FARMER("Farmer", 0, 0, 0, 0, 0, 0),
+    REGISTERED_FARMER("Registered Farmer", 5, 200, 1, 1, 0, 0,
+            "The upgrade to become a Registered Farmer.",
+            "It will increase earnings by 1 per produce and reduce seed cost by 1."),
+    DISTINGUISHED_FARMER("Distinguished Farmer", 10, 300, 2, 2, 1, 0,
+            "The upgrade to become a Distinguished Farmer.",
+            "It will increase earnings by 1 per produce and reduce seed cost by another 1.",
+            "It will also increase maximum water bonus by 1."),
+    LEGENDARY_FARMER("Legendary Farmer", 15, 400, 4, 3, 2, 1,
+            "The final upgrade to become a Legendary Farmer.",
+            "It will increase earnings by 2 per produce and reduce seed cost by another 1.",
+            "It will also increase maximum water and fertilizer bonus by 1.");
+
+    private static final FarmerTitle[] titles = values();
+
+    private final String name;
+    private final int levelRequirement;
+    private final int cost;
+    private final int bonusEarnings;
+    private final int seedCostReduction;
+    private final int waterMaxBonus;
+    private final int fertilizerMaxBonus;
+    private final String[] description;
+
+    FarmerTitle(String name, int levelRequirement, int cost, int bonusEarnings, int seedCostReduction,
+                int waterMaxBonus, int fertilizerMaxBonus, String... description) {
+        this.name = name;
+        this.levelRequirement = levelRequirement;
+        this.cost = cost;
+        this.bonusEarnings = bonusEarnings;
+        this.seedCostReduction = seedCostReduction;
+        this.waterMaxBonus = waterMaxBonus;
+        this.fertilizerMaxBonus = fertilizerMaxBonus;
+        this.description = description;
+    }
+
+    /**
+     * Gets the name of the title as displayed to the player.
+     * @return the name of the title.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the level needed to register for the title.
+     * @return the level requirement of the title.
+     */
+    public int getLevelRequirement() {
+        return levelRequirement;
+    }
+
+    /**
+     * Gets the objectCoins needed to register for the title.
+     * @return the cost of the title.
+     */
+    public int getCost() {
+        return cost;
+    }
+
+    /**
+     * Gets the additional earnings per produce when harvesting.
+     * @return the earning bonus of the title.
+     */
+    public int getBonusEarnings() {
+        return bonusEarnings;
+    }
+
+    /**
+     * Gets the discount when buying seeds.
+     * @return the seed cost reduction of the title.
+     */
+    public int getSeedCostReduction() {
+        return seedCostReduction;
+    }
+
+    /**
+     * Gets the additional water counted for the water bonus of a harvest.
+     * @return the water bonus limit increase of the title.
+     */
+    public int getWaterMaxBonus() {
+        return waterMaxBonus;
+    }
+
+    /**
+     * Gets the additional fertilizer counted for the fertilizer bonus of a harvest.
+     * @return the fertilizer bonus limit increase of the title.
+     */
+    public int getFertilizerMaxBonus() {
+        return fertilizerMaxBonus;
+    }
+
+    /**
+     * Gets the lines describing the upgrade to the title.
+     * @return the description of the title.
+     */
+    public String[] getDescription() {
+        return description.clone();
+    }
+
+    /**
+     * Gets the title that can be registered for after this one.
+     * @return the next title, or null if this is the last title.
+     */
+    public FarmerTitle next() {
+        return ordinal() + 1 < titles.length ? titles[ordinal() + 1] : null;
+    }
+
+    /**
+     * Gets the title this one is registered for after.
+     * @return the previous title, or null if this is the first title.
+     */
+    public FarmerTitle previous() {
+        return ordinal() > 0 ? titles[ordinal() - 1] : null;
+    }
+}
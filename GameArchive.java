@@ -0,0 +1,380 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * <p>
+ * This class reads an archive of finished games written by GameArchiveWriter, for offline analytics over
+ * many games.
+ * <p>
+ * An archive is a directory of segment files, each holding the rows of up to a fixed amount of games as
+ * one block per ArchiveColumn. A segment starts with a header: MAGIC, the amount of rows and of columns,
+ * and for every column the encoding of its block, the smallest and largest value in it, and the offset
+ * and length of the block in the file.
+ * <p>
+ * Only the headers are read when the archive is opened. A query reads only the blocks of the columns it
+ * selects or filters on, and uses the smallest and largest values of each segment to skip segments where
+ * no row can match its filters, and to skip checking filters that every row of a segment matches.
+ */
+public class GameArchive {
+    /**
+     * The first int of every segment file.
+     */
+    public static final int MAGIC = 0x47415243;
+    /**
+     * The encoding of a block as runs of a value followed by the length of the run.
+     */
+    public static final byte RUNS = 0;
+    /**
+     * The encoding of a block as its first value followed by the difference of each value from the one
+     * before it.
+     */
+    public static final byte DELTA = 1;
+
+    private static final int COLUMN_HEADER_BYTES = 1 + Long.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".col";
+
+    private final Segment[] segments;
+    private final long rows;
+
+    /**
+     * Opens an archive, reading the header of every segment.
+     * @param directory the directory of the archive.
+     * @throws IOException if a segment cannot be read or is not a segment of an archive.
+     */
+    public GameArchive(Path directory) throws IOException {
+        Path[] files = listSegments(directory);
+        segments = new Segment[files.length];
+        long total = 0;
+        for (int i = 0; i < files.length; i++) {
+            segments[i] = new Segment(files[i]);
+            total += segments[i].rows;
+        }
+        rows = total;
+    }
+
+    /**
+     * Gets the amount of games in the archive.
+     */
+    public long getRowCount() {
+        return rows;
+    }
+
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Starts a query over every game in the archive.
+     * @return a query without filters.
+     */
+    public Query query() {
+        return new Query();
+    }
+
+    /**
+     * Lists the segment files of an archive in the order they were written.
+     * @param directory the directory of the archive.
+     * @return the paths of the segment files, none if the directory does not exist.
+     * @throws IOException if the directory cannot be listed.
+     */
+    static Path[] listSegments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new Path[0];
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().toArray(Path[]::new);
+        }
+    }
+
+    static String segmentName(int segment) {
+        return String.format("%s%08d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX);
+    }
+
+    static int headerBytes(int columns) {
+        return 3 * Integer.BYTES + columns * COLUMN_HEADER_BYTES;
+    }
+
+    /**
+     * Receives the rows matched by a query.
+     */
+    public interface RowVisitor {
+        /**
+         * Called for each row that matches the filters of the query.
+         * @param values the values of the selected columns in the order they were selected. The array is
+         *               reused for the next row.
+         */
+        void visit(long[] values);
+    }
+
+    /**
+     * A query over the archive: filters that every matched row passes, and the columns to read from the
+     * matched rows. Filters are ranges of values of a column, including both ends.
+     */
+    public final class Query {
+        private final List<ArchiveColumn> filterColumns = new ArrayList<>();
+        private final List<long[]> filterRanges = new ArrayList<>();
+        private ArchiveColumn[] selected = new ArchiveColumn[0];
+        private int segmentsSkipped = 0;
+        private int blocksRead = 0;
+
+        private Query() {}
+
+        /**
+         * Only matches rows where a column is within a range.
+         * @param column the column.
+         * @param min the smallest value matched.
+         * @param max the largest value matched.
+         * @return the query.
+         */
+        public Query where(ArchiveColumn column, long min, long max) {
+            filterColumns.add(column);
+            filterRanges.add(new long[]{min, max});
+            return this;
+        }
+
+        /**
+         * Only matches rows where a column has a value.
+         * @param column the column.
+         * @param value the value matched.
+         * @return the query.
+         */
+        public Query where(ArchiveColumn column, long value) {
+            return where(column, value, value);
+        }
+
+        /**
+         * Sets the columns given to the RowVisitor.
+         * @param columns the columns, in the order they are given.
+         * @return the query.
+         */
+        public Query select(ArchiveColumn... columns) {
+            selected = columns.clone();
+            return this;
+        }
+
+        /**
+         * Counts the matched rows. Segments where every row matches are counted without reading them.
+         * @return the amount of matched rows.
+         * @throws IOException if a segment cannot be read.
+         */
+        public long count() throws IOException {
+            ArchiveColumn[] previous = selected;
+            selected = new ArchiveColumn[0];
+            try {
+                return scan(values -> {}, true);
+            } finally {
+                selected = previous;
+            }
+        }
+
+        /**
+         * Adds up a column over the matched rows.
+         * @param column the column.
+         * @return the sum of the column.
+         * @throws IOException if a segment cannot be read.
+         */
+        public long sum(ArchiveColumn column) throws IOException {
+            ArchiveColumn[] previous = selected;
+            selected = new ArchiveColumn[]{column};
+            long[] sum = {0};
+            try {
+                scan(values -> sum[0] += values[0], false);
+            } finally {
+                selected = previous;
+            }
+            return sum[0];
+        }
+
+        /**
+         * Gives the selected columns of every matched row to a visitor, in the order the rows were archived.
+         * @param visitor the visitor of the rows.
+         * @return the amount of matched rows.
+         * @throws IOException if a segment cannot be read.
+         */
+        public long scan(RowVisitor visitor) throws IOException {
+            return scan(visitor, false);
+        }
+
+        /**
+         * Gets the amount of segments the last scan skipped because no row could match.
+         */
+        public int getSegmentsSkipped() {
+            return segmentsSkipped;
+        }
+
+        /**
+         * Gets the amount of column blocks the last scan read.
+         */
+        public int getBlocksRead() {
+            return blocksRead;
+        }
+
+        private long scan(RowVisitor visitor, boolean countOnly) throws IOException {
+            segmentsSkipped = 0;
+            blocksRead = 0;
+            long matched = 0;
+            long[] values = new long[selected.length];
+            // The decoded blocks are reused from one segment to the next.
+            long[][] selectedColumns = new long[selected.length][0];
+            long[][] checkedColumns = new long[filterColumns.size()][0];
+            long[][] checkedRanges = new long[filterColumns.size()][];
+            for (Segment segment : segments) {
+                int checks = 0;
+                boolean skipped = false;
+                for (int f = 0; f < filterColumns.size() && !skipped; f++) {
+                    int column = filterColumns.get(f).ordinal();
+                    long[] range = filterRanges.get(f);
+                    if (segment.max[column] < range[0] || segment.min[column] > range[1]) {
+                        skipped = true;
+                    } else if (segment.min[column] < range[0] || segment.max[column] > range[1]) {
+                        checkedColumns[checks] = segment.read(column, checkedColumns[checks]);
+                        checkedRanges[checks++] = range;
+                        blocksRead++;
+                    }
+                }
+                if (skipped) {
+                    segmentsSkipped++;
+                    continue;
+                }
+                if (countOnly && checks == 0) {
+                    matched += segment.rows;
+                    continue;
+                }
+                for (int c = 0; c < selected.length; c++) {
+                    selectedColumns[c] = segment.read(selected[c].ordinal(), selectedColumns[c]);
+                    blocksRead++;
+                }
+                for (int row = 0; row < segment.rows; row++) {
+                    boolean match = true;
+                    for (int f = 0; f < checks && match; f++) {
+                        long value = checkedColumns[f][row];
+                        match = value >= checkedRanges[f][0] && value <= checkedRanges[f][1];
+                    }
+                    if (match) {
+                        for (int c = 0; c < values.length; c++) {
+                            values[c] = selectedColumns[c][row];
+                        }
+                        visitor.visit(values);
+                        matched++;
+                    }
+                }
+            }
+            return matched;
+        }
+    }
+
+    /**
+     * The header of a segment file, with the blocks of its columns read when needed.
+     */
+    private static final class Segment {
+        private final Path file;
+        private final int rows;
+        private final byte[] encodings;
+        private final long[] min;
+        private final long[] max;
+        private final long[] offsets;
+        private final int[] lengths;
+
+        private Segment(Path file) throws IOException {
+            this.file = file;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer start = readFully(channel, 0, 3 * Integer.BYTES);
+                int columns = start.getInt(2 * Integer.BYTES);
+                if (start.getInt(0) != MAGIC || columns != ArchiveColumn.values().length) {
+                    throw new IOException(file + " is not a segment of this archive format");
+                }
+                rows = start.getInt(Integer.BYTES);
+                ByteBuffer header = readFully(channel, 3 * Integer.BYTES, columns * COLUMN_HEADER_BYTES);
+                encodings = new byte[columns];
+                min = new long[columns];
+                max = new long[columns];
+                offsets = new long[columns];
+                lengths = new int[columns];
+                for (int i = 0; i < columns; i++) {
+                    encodings[i] = header.get();
+                    min[i] = header.getLong();
+                    max[i] = header.getLong();
+                    offsets[i] = header.getLong();
+                    lengths[i] = header.getInt();
+                }
+            }
+        }
+
+        /**
+         * Reads and decodes the block of a column.
+         * @param column the ordinal of the column.
+         * @param values an array to decode into if it is large enough.
+         * @return the value of the column in every row of the segment, from index 0.
+         * @throws IOException if the block cannot be read or is corrupt.
+         */
+        private long[] read(int column, long[] values) throws IOException {
+            byte[] block;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                block = readFully(channel, offsets[column], lengths[column]).array();
+            }
+            if (values.length < rows) {
+                values = new long[rows];
+            }
+            try {
+                decode(block, encodings[column], values);
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw new IOException(file + " has a corrupt block of " + ArchiveColumn.values()[column]);
+            }
+            return values;
+        }
+
+        private void decode(byte[] block, byte encoding, long[] values) {
+            int position = 0;
+            int row = 0;
+            long previous = 0;
+            while (row < rows) {
+                long value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = block[position++];
+                    value |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                value = (value >>> 1) ^ -(value & 1);
+                if (encoding == DELTA) {
+                    previous += value;
+                    values[row++] = previous;
+                } else {
+                    long run = 0;
+                    shift = 0;
+                    do {
+                        b = block[position++];
+                        run |= (long) (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    Arrays.fill(values, row, row + (int) run, value);
+                    row += (int) run;
+                }
+            }
+        }
+
+        private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("segment is cut short");
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * This class appends the rows of finished games to an archive directory, see GameArchive for the format.
+ * <p>
+ * Rows are kept in one primitive array per column until a segment is full, and the segment is then
+ * written as one file with a block per column. Each block is encoded either as runs of equal values or
+ * as the differences between consecutive values, whichever is smaller, with every number written as a
+ * zigzag variable-length integer. Columns that hardly change, such as the harvests of a Crop that is
+ * rarely planted, take a few bytes per segment, and sorted columns such as ENDED_AT about one byte per row.
+ * <p>
+ * Segments are numbered after the ones already in the directory, so an archive can be appended to by
+ * opening a new writer. A writer must be used by one thread at a time.
+ */
+public class GameArchiveWriter {
+    /**
+     * The amount of rows in a segment unless another amount is given.
+     */
+    public static final int DEFAULT_SEGMENT_ROWS = 1 << 16;
+
+    private static final int COLUMNS = ArchiveColumn.values().length;
+
+    private final Path directory;
+    private final long[][] columns;
+    private int rows = 0;
+    private int segment;
+    private byte[] block = new byte[1024];
+
+    /**
+     * Constructor for GameArchiveWriter, which creates the directory if it does not exist.
+     * @param directory the directory of the archive.
+     * @param segmentRows the amount of rows in a segment.
+     * @throws IOException if the directory cannot be created or listed.
+     */
+    public GameArchiveWriter(Path directory, int segmentRows) throws IOException {
+        if (segmentRows < 1) {
+            throw new IllegalArgumentException("segmentRows must be positive");
+        }
+        this.directory = directory;
+        Files.createDirectories(directory);
+        columns = new long[COLUMNS][segmentRows];
+        segment = GameArchive.listSegments(directory).length;
+    }
+
+    /**
+     * Appends the row of a game that has ended.
+     * @param gameManager the game.
+     * @throws IOException if a full segment cannot be written.
+     */
+    public void append(GameManager gameManager) throws IOException {
+        append(ArchiveColumn.row(gameManager, System.currentTimeMillis()));
+    }
+
+    /**
+     * Appends a row.
+     * @param row the value of every column, by the ordinal of ArchiveColumn.
+     * @throws IOException if a full segment cannot be written.
+     */
+    public void append(long[] row) throws IOException {
+        if (row.length != COLUMNS) {
+            throw new IllegalArgumentException("a row has " + COLUMNS + " columns");
+        }
+        for (int i = 0; i < COLUMNS; i++) {
+            columns[i][rows] = row[i];
+        }
+        if (++rows == columns[0].length) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the rows appended so far as a segment, even if it is not full.
+     * @throws IOException if the segment cannot be written.
+     */
+    public void flush() throws IOException {
+        if (rows == 0) {
+            return;
+        }
+        int headerBytes = GameArchive.headerBytes(COLUMNS);
+        ByteBuffer header = ByteBuffer.allocate(headerBytes);
+        header.putInt(GameArchive.MAGIC).putInt(rows).putInt(COLUMNS);
+        Path file = directory.resolve(GameArchive.segmentName(segment));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long offset = headerBytes;
+            channel.position(offset);
+            for (long[] column : columns) {
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                for (int i = 0; i < rows; i++) {
+                    min = Math.min(min, column[i]);
+                    max = Math.max(max, column[i]);
+                }
+                byte encoding = encodedRuns(column, false) <= encodedDeltas(column, false)
+                        ? GameArchive.RUNS : GameArchive.DELTA;
+                int length = encoding == GameArchive.RUNS ? encodedRuns(column, true) : encodedDeltas(column, true);
+                ByteBuffer content = ByteBuffer.wrap(block, 0, length);
+                while (content.hasRemaining()) {
+                    channel.write(content);
+                }
+                header.put(encoding).putLong(min).putLong(max).putLong(offset).putInt(length);
+                offset += length;
+            }
+            header.flip();
+            long written = 0;
+            while (header.hasRemaining()) {
+                written += channel.write(header, written);
+            }
+        }
+        segment++;
+        rows = 0;
+    }
+
+    /**
+     * Writes the rows that are not written yet.
+     * @throws IOException if the last segment cannot be written.
+     */
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * Encodes a column as runs of a value followed by the length of the run.
+     * @param write true to write the encoding into block and false to only measure it.
+     * @return the amount of bytes of the encoding.
+     */
+    private int encodedRuns(long[] column, boolean write) {
+        int length = 0;
+        int i = 0;
+        while (i < rows) {
+            long value = column[i];
+            int run = 1;
+            while (i + run < rows && column[i + run] == value) {
+                run++;
+            }
+            length = write ? writeVarLong(zigzag(value), length) : length + varLongBytes(zigzag(value));
+            length = write ? writeVarLong(run, length) : length + varLongBytes(run);
+            i += run;
+        }
+        return length;
+    }
+
+    /**
+     * Encodes a column as its first value followed by the difference of each value from the one before it.
+     * @param write true to write the encoding into block and false to only measure it.
+     * @return the amount of bytes of the encoding.
+     */
+    private int encodedDeltas(long[] column, boolean write) {
+        int length = 0;
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            long delta = zigzag(column[i] - previous);
+            length = write ? writeVarLong(delta, length) : length + varLongBytes(delta);
+            previous = column[i];
+        }
+        return length;
+    }
+
+    private static int varLongBytes(long value) {
+        return (63 - Long.numberOfLeadingZeros(value | 1)) / 7 + 1;
+    }
+
+    private int writeVarLong(long value, int length) {
+        if (block.length - length < 10) {
+            block = Arrays.copyOf(block, block.length * 2);
+        }
+        while ((value & ~0x7FL) != 0) {
+            block[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        block[length++] = (byte) value;
+        return length;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
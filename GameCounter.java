@@ -0,0 +1,39 @@
+/**
+ * <p>
+ * This enum lists the counters of a game that rules can depend on. GameManager keeps them up to date in
+ * its RuleEngine as actions are applied and days pass.
+ */
+public enum GameCounter {
+    DAY,
+    OBJECTCOINS,
+    LEVEL,
+    /**
+     * The ordinal of the Farmer's title.
+     */
+    TITLE,
+    /**
+     * 1 if the Farmer can register for the next title and 0 if not.
+     */
+    CAN_REGISTER,
+    ROCKS,
+    HARVESTABLE_CROPS,
+    HARVESTS,
+    HARVESTED_TURNIP,
+    HARVESTED_CARROT,
+    HARVESTED_POTATO,
+    HARVESTED_ROSE,
+    HARVESTED_TURNIPS,
+    HARVESTED_SUNFLOWER,
+    HARVESTED_MANGO,
+    HARVESTED_APPLE;
+
+    /**
+     * Gets the counter of the harvests of one kind of Crop.
+     * @param choice the menu character of the Crop.
+     * @return the counter of the Crop's harvests, or null if no Crop uses the character.
+     */
+    public static GameCounter harvested(char choice) {
+        int crop = CropFactory.CHOICES.indexOf(choice);
+        return crop < 0 ? null : values()[HARVESTED_TURNIP.ordinal() + crop];
+    }
+}
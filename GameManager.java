@@ -1,16 +1,157 @@
 import exceptions.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Scanner;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class GameManager {
+    /**
+     * Whether PICKAXE is shown in the menu: there is a rock on the farm.
+     */
+    public static final Rule PICKAXE_RULE = new Rule("Pickaxe", "There is a rock to mine.",
+            Rule.atLeast(GameCounter.ROCKS, 1));
+    /**
+     * Whether REGISTER is shown in the menu: the Farmer can register for the next title.
+     */
+    public static final Rule REGISTER_RULE = new Rule("Register", "The next title is available.",
+            Rule.atLeast(GameCounter.CAN_REGISTER, 1));
+    /**
+     * Whether HARVEST is shown in the menu: there is a harvestable crop on the farm.
+     */
+    public static final Rule HARVEST_RULE = new Rule("Harvest", "There is a crop to harvest.",
+            Rule.atLeast(GameCounter.HARVESTABLE_CROPS, 1));
+
+    private static final AtomicInteger gameCount = new AtomicInteger();
+    private static final short INVALID_PLOT = Telemetry.code(new InvalidInputException());
+    // The heap used by a game besides its farm and optional structures: the GameManager, its Farmer and its
+    // RuleEngine with the rules and achievements, measured on a 64-bit JVM with compressed references.
+    private static final long GAME_BYTES = 2600;
+    // Only asked whether actions are being recorded, so that no event is created for every action otherwise.
+    private static final ActionAppliedEvent ACTION_EVENTS = new ActionAppliedEvent();
+    // The frame of the game kept by an UndoHistory before and after every step: the day, the Farmer, the
+    // state of the GameRandom, every counter and the EXP gained from every action.
+    private static final int FRAME_DAY = 0;
+    private static final int FRAME_COINS = 1;
+    private static final int FRAME_LEVEL = 2;
+    private static final int FRAME_EXP = 3;
+    private static final int FRAME_TITLE = 4;
+    private static final int FRAME_RANDOM = 5;
+    private static final int FRAME_COUNTERS = 6;
+    private static final int FRAME_EXP_GAINED = FRAME_COUNTERS + GameCounter.values().length;
+    private static final int FRAME_LENGTH = FRAME_EXP_GAINED + Metrics.ACTIONS.length();
+
+    private final int id = gameCount.incrementAndGet();
     private int day = 1;
     private final Farmer farmer;
     private final Farm farm;
     private String error = "";
+    private short errorCode = Telemetry.OK;
+    private EconomyLedger ledger = null;
+    private final RuleEngine rules = new RuleEngine();
+    private volatile SnapshotPublisher snapshots = null;
+    private boolean snapshotsDeferred = false;
+    private HarvestIndex harvestIndex = null;
+    private long memoryBudget = Long.MAX_VALUE;
+    private volatile boolean overMemoryBudget = false;
+    private volatile long publishedRetainedBytes = 0;
+    private final long[] expGained = new long[Metrics.ACTIONS.length()];
+    private final GameRandom random = new GameRandom(ThreadLocalRandom.current().nextLong());
+    private UndoHistory history = null;
+    private final long[] frame = new long[FRAME_LENGTH];
 
     public GameManager() {
         farm = new Farm();
         farmer = new Farmer();
+        farmer.setRandom(random);
+        initializeRules();
+    }
+
+    /**
+     * Creates a game on a farm of a custom size.
+     */
+    public GameManager(int rows, int columns) {
+        farm = new Farm(rows, columns);
+        farmer = new Farmer();
+        farmer.setRandom(random);
+        initializeRules();
+    }
+
+    /**
+     * Creates a game on a farm with the size and rocks of a map.
+     */
+    public GameManager(RockMap map) {
+        farm = new Farm(map.getRows(), map.getColumns());
+        farm.setRocks(map);
+        farmer = new Farmer();
+        farmer.setRandom(random);
+        initializeRules();
+    }
+
+    /**
+     * Creates a game in the middle of play, on a farm and with a Farmer that were set up beforehand.
+     * @param farm the farm of the game.
+     * @param farmer the Farmer of the game.
+     * @param day the current day.
+     */
+    public GameManager(Farm farm, Farmer farmer, int day) {
+        this.farm = farm;
+        this.farmer = farmer;
+        this.day = day;
+        farmer.setRandom(random);
+        farm.hasWitheredCrops(day);
+        initializeRules();
+        rules.set(GameCounter.HARVESTABLE_CROPS, farm.getHarvestableCount());
+    }
+
+    /**
+     * Adds the menu rules and achievements and sets every counter from the state of the game.
+     */
+    private void initializeRules() {
+        rules.add(PICKAXE_RULE);
+        rules.add(REGISTER_RULE);
+        rules.add(HARVEST_RULE);
+        for (Rule achievement : Achievements.ALL) {
+            rules.addAchievement(achievement);
+        }
+        rules.set(GameCounter.DAY, day);
+        rules.set(GameCounter.ROCKS, farm.countRocks());
+        updateFarmerCounters();
+    }
+
+    /**
+     * Sets the counters of the Farmer's balances, level and title.
+     */
+    private void updateFarmerCounters() {
+        rules.set(GameCounter.OBJECTCOINS, farmer.getObjectCoins());
+        rules.set(GameCounter.LEVEL, farmer.getLevel());
+        rules.set(GameCounter.TITLE, farmer.getTitle().ordinal());
+        rules.set(GameCounter.CAN_REGISTER, farmer.registerCheck() ? 1 : 0);
+    }
+
+    /**
+     * Starts a new game in place of this one, for running many games without allocating a new one each
+     * time. Every Plot is emptied, rocks included, and the Farmer, day and counters start over. The
+     * structures the game has enabled are kept and follow the emptied farm, the undo history is cleared and
+     * the ledger is detached, since it holds the game that ended. The generator of harvests goes on from
+     * where it was.
+     */
+    public void reset() {
+        farm.reset();
+        farmer.reset();
+        day = 1;
+        error = "";
+        errorCode = Telemetry.OK;
+        ledger = null;
+        Arrays.fill(expGained, 0);
+        if (history != null) {
+            history.clear();
+        }
+        rules.reset();
+        rules.set(GameCounter.DAY, day);
+        updateFarmerCounters();
+        publishSnapshot();
+        checkMemoryBudget();
     }
 
     /**
@@ -28,14 +169,90 @@ public class GameManager {
      * Advances the day and updates crop wither status.
      */
     public void advanceDay() {
-        day++;
-        farm.hasWitheredCrops(day);
+        beginStep();
+        advanceTo(day + 1);
+        endStep((char) 0);
+        publishSnapshot();
+        checkMemoryBudget();
+    }
+
+    /**
+     * Advances the game by an amount of days at once, stopping early if the game ends. Since nothing but
+     * Crops maturing and withering happens while no actions are taken, only the days on which that happens
+     * are visited and checked for the end of the game.
+     * @param days the amount of days to advance.
+     * @return the amount of days actually advanced.
+     */
+    public int advanceDays(int days) {
+        int start = day;
+        int target = (int) Math.min((long) day + days, Integer.MAX_VALUE - 1);
+        beginStep();
+        while (day < target && !endCheck()) {
+            advanceTo(Math.min(farm.getNextEventDay(day), target));
+        }
+        endStep((char) 0);
+        publishSnapshot();
+        checkMemoryBudget();
+        return day - start;
+    }
+
+    /**
+     * Advances the game to the next day on which a Crop matures or withers.
+     * @return the amount of days advanced, which is 0 if no Crop will mature or wither.
+     */
+    public int advanceUntilNextEvent() {
+        int next = farm.getNextEventDay(day);
+        if (next == Integer.MAX_VALUE) {
+            return 0;
+        }
+        int start = day;
+        beginStep();
+        advanceTo(next);
+        endStep((char) 0);
+        publishSnapshot();
+        checkMemoryBudget();
+        return day - start;
+    }
+
+    /**
+     * Sets the day and updates crop wither status.
+     */
+    private void advanceTo(int newDay) {
+        DayAdvancedEvent event = new DayAdvancedEvent();
+        event.begin();
+        long start = System.nanoTime();
+        day = newDay;
+        int withered = farm.hasWitheredCrops(day);
+        rules.set(GameCounter.DAY, day);
+        rules.set(GameCounter.HARVESTABLE_CROPS, farm.getHarvestableCount());
+        Metrics.recordAdvanceDay(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.day = day;
+            event.plotsScanned = farm.getRows() * farm.getColumns();
+            event.cropsWithered = withered;
+            event.commit();
+        }
+    }
+
+    /**
+     * Gets the id of the game, which is unique among the games created since the program started.
+     */
+    public int getId() {
+        return id;
     }
 
     public int getDay() {
         return day;
     }
 
+    /**
+     * Gets the hash of the state of the game: the day, the Farmer and every Plot. Games in the same state
+     * have the same hash however they got there.
+     */
+    public long stateHash() {
+        return farm.getStateHash() ^ farmer.getStateHash() ^ ZobristHash.dayKey(day);
+    }
+
     public Farmer getFarmer() {
         return farmer;
     }
@@ -45,20 +262,312 @@ public class GameManager {
     }
 
     /**
-     * Processes the player's menu choice.
+     * Gets the rules of the game, with the counters of the Farmer brought up to date since its level may
+     * have changed outside of an action.
+     */
+    public RuleEngine getRules() {
+        updateFarmerCounters();
+        return rules;
+    }
+
+    /**
+     * Starts publishing snapshots of the game at the end of every action and day, for reading the game
+     * from other threads.
+     * @return the publisher of the snapshots.
+     */
+    public SnapshotPublisher enableSnapshots() {
+        if (snapshots == null) {
+            snapshots = new SnapshotPublisher(farm, farmer, day);
+            publishedRetainedBytes = getRetainedBytes();
+        }
+        return snapshots;
+    }
+
+    /**
+     * Starts keeping the Crops of the farm ranked by the expected value of harvesting them.
+     * @return the index of the Crops.
+     */
+    public HarvestIndex enableHarvestIndex() {
+        if (harvestIndex == null) {
+            harvestIndex = new HarvestIndex(farm, farmer);
+        }
+        return harvestIndex;
+    }
+
+    /**
+     * Gets the index of the Crops of the farm by the expected value of harvesting them.
+     * @return the index, or null if it is not enabled.
+     */
+    public HarvestIndex getHarvestIndex() {
+        return harvestIndex;
+    }
+
+    /**
+     * Seeds the generator of the amount of products of every harvest, so that the game gives the same
+     * harvests every time it is played the same way.
+     * @param seed the seed.
+     */
+    public void setSeed(long seed) {
+        random.setState(seed);
+    }
+
+    /**
+     * Sells the products of every harvest on a Market shared with other games instead of at the base price
+     * of their Crop.
+     * @param market the market, or null to go back to base prices.
+     */
+    public void setMarket(Market market) {
+        farmer.setMarket(market);
+    }
+
+    /**
+     * Gets the state of the generator of harvests, from which setSeed continues with the same harvests.
+     */
+    public long getRandomState() {
+        return random.getState();
+    }
+
+    /**
+     * Starts keeping the latest steps of the game so that they can be undone and redone.
+     * @param steps the most steps kept.
+     * @param changes the most changes to Plots kept, over every step.
+     * @return the history of the steps.
+     */
+    public UndoHistory enableUndo(int steps, int changes) {
+        if (history == null) {
+            history = new UndoHistory(farm, steps, changes, FRAME_LENGTH);
+        }
+        return history;
+    }
+
+    /**
+     * Gets the history of the steps of the game.
+     * @return the history, or null if undo is not enabled.
+     */
+    public UndoHistory getUndoHistory() {
+        return history;
+    }
+
+    /**
+     * Undoes the latest action, or days advanced outside of an action, that was not undone. The Plots, the
+     * day, the Farmer, the counters and the generator of harvests are set back to before it, so redoing a
+     * harvest gives the same yield. Achievements that were completed stay completed.
+     * @return true if a step was undone and false if there was none.
+     */
+    public boolean undo() {
+        return history != null && restoreStep(history.undo(frame));
+    }
+
+    /**
+     * Redoes the earliest step that was undone, setting the game to how it was after it.
+     * @return true if a step was redone and false if there was none.
+     */
+    public boolean redo() {
+        return history != null && restoreStep(history.redo(frame));
+    }
+
+    /**
+     * Sets the game to a frame given back by the UndoHistory, whose Plots were already set.
+     * @param action the action of the step from the history, or -1 if there was no step.
+     * @return true if there was a step.
+     */
+    private boolean restoreStep(int action) {
+        if (action < 0) {
+            return false;
+        }
+        int coins = farmer.getObjectCoins();
+        long exp = farmer.getTotalExpUnits();
+        day = (int) frame[FRAME_DAY];
+        farmer.restore(FarmerTitle.values()[(int) frame[FRAME_TITLE]], (int) frame[FRAME_LEVEL], frame[FRAME_EXP],
+                (int) frame[FRAME_COINS]);
+        random.setState(frame[FRAME_RANDOM]);
+        for (GameCounter counter : GameCounter.values()) {
+            rules.set(counter, frame[FRAME_COUNTERS + counter.ordinal()]);
+        }
+        System.arraycopy(frame, FRAME_EXP_GAINED, expGained, 0, expGained.length);
+        if (ledger != null && (coins != farmer.getObjectCoins() || exp != farmer.getTotalExpUnits())) {
+            ledger.record(day, (char) action, -1, farmer.getObjectCoins() - coins, farmer.getTotalExpUnits() - exp);
+        }
+        publishSnapshot();
+        checkMemoryBudget();
+        return true;
+    }
+
+    private void beginStep() {
+        if (history != null) {
+            captureFrame();
+            history.begin(frame);
+        }
+    }
+
+    private void endStep(char action) {
+        if (history != null) {
+            captureFrame();
+            history.end(action, frame);
+        }
+    }
+
+    private void captureFrame() {
+        frame[FRAME_DAY] = day;
+        frame[FRAME_COINS] = farmer.getObjectCoins();
+        frame[FRAME_LEVEL] = farmer.getLevel();
+        frame[FRAME_EXP] = farmer.getTotalExpUnits() - (farmer.getLevel() - 1) * Farmer.EXP_PER_LEVEL;
+        frame[FRAME_TITLE] = farmer.getTitle().ordinal();
+        frame[FRAME_RANDOM] = random.getState();
+        for (GameCounter counter : GameCounter.values()) {
+            frame[FRAME_COUNTERS + counter.ordinal()] = rules.get(counter);
+        }
+        System.arraycopy(expGained, 0, frame, FRAME_EXP_GAINED, expGained.length);
+    }
+
+    /**
+     * Estimates the heap used by the game: its farm and every structure the game keeps, see MemoryFootprint.
+     * This must be called from the thread playing the game, other threads can use getPublishedRetainedBytes.
+     * @return the estimated bytes.
+     */
+    public long getRetainedBytes() {
+        HarvestIndex index = harvestIndex;
+        SnapshotPublisher publisher = snapshots;
+        EconomyLedger gameLedger = ledger;
+        UndoHistory undo = history;
+        return GAME_BYTES + farm.getRetainedBytes()
+                + (index == null ? 0 : index.getRetainedBytes())
+                + (undo == null ? 0 : undo.getRetainedBytes())
+                + (publisher == null ? 0 : publisher.getRetainedBytes())
+                + (gameLedger == null ? 0 : gameLedger.getRetainedBytes());
+    }
+
+    /**
+     * Gets the heap used by the game as estimated by getRetainedBytes when its latest snapshot was published.
+     * This can be called from any thread.
+     * @return the estimated bytes, or 0 if snapshots are not enabled.
+     */
+    public long getPublishedRetainedBytes() {
+        return publishedRetainedBytes;
+    }
+
+    /**
+     * Estimates the heap used by a new game, before it is created.
+     * @param rows the number of rows of Plots.
+     * @param columns the number of columns of Plots.
+     * @return the estimated bytes.
+     */
+    public static long estimateBytes(int rows, int columns) {
+        return GAME_BYTES + Farm.estimateBytes(rows, columns);
+    }
+
+    /**
+     * Sets the most heap the game should use. When an action or a day leaves the game over its budget, the
+     * game drops the structures it can do without, the HarvestIndex and then the UndoHistory, and reports being over budget
+     * if that was not enough.
+     * @param bytes the budget in bytes, Long.MAX_VALUE for no budget.
+     */
+    public void setMemoryBudget(long bytes) {
+        if (bytes < 1) {
+            throw new IllegalArgumentException("the memory budget must be positive");
+        }
+        memoryBudget = bytes;
+        checkMemoryBudget();
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Checks if the game used more than its memory budget after its last action or day, even without the
+     * structures it can do without. This can be called from any thread.
+     * @return true if the game is over its budget and false if not.
+     */
+    public boolean isOverMemoryBudget() {
+        return overMemoryBudget;
+    }
+
+    private void checkMemoryBudget() {
+        if (memoryBudget == Long.MAX_VALUE) {
+            return;
+        }
+        if (getRetainedBytes() > memoryBudget && harvestIndex != null) {
+            harvestIndex.close();
+            harvestIndex = null;
+        }
+        if (getRetainedBytes() > memoryBudget && history != null) {
+            history.close();
+            history = null;
+        }
+        overMemoryBudget = getRetainedBytes() > memoryBudget;
+    }
+
+    /**
+     * Sets whether the errors of actions fill in their stack traces. Errors are only ever read for their
+     * message and outcome code, so games that fail many commands without a console, such as the ones of a
+     * ScriptRunner, can turn them off to make failing much cheaper.
+     * @param stackTraces true for errors with stack traces and false for errors with only a message.
+     */
+    public void setStackTraces(boolean stackTraces) {
+        farm.setStackTraces(stackTraces);
+        farmer.setStackTraces(stackTraces);
+    }
+
+    /**
+     * Gets the latest snapshot of the game. This can be called from any thread.
+     * @return the latest snapshot, or null if snapshots are not enabled.
+     */
+    public GameSnapshot getSnapshot() {
+        SnapshotPublisher publisher = snapshots;
+        return publisher == null ? null : publisher.getSnapshot();
+    }
+
+    /**
+     * Sets whether snapshots wait to be published with flushSnapshot instead of being published at the
+     * end of every action and day, for applying a batch of actions and publishing them together.
+     * @param deferred true to publish only with flushSnapshot and false to publish after every change.
+     */
+    public void setSnapshotsDeferred(boolean deferred) {
+        snapshotsDeferred = deferred;
+    }
+
+    /**
+     * Publishes a snapshot of the game now, if snapshots are enabled.
+     */
+    public void flushSnapshot() {
+        if (snapshots != null) {
+            snapshots.publish(day);
+            publishedRetainedBytes = getRetainedBytes();
+        }
+    }
+
+    private void publishSnapshot() {
+        if (!snapshotsDeferred) {
+            flushSnapshot();
+        }
+    }
+
+    /**
+     * Sets the ledger every change to the Farmer's objectCoins and EXP is recorded in.
+     * @param ledger the ledger to record in, or null to not record changes.
+     */
+    public void setLedger(EconomyLedger ledger) {
+        this.ledger = ledger;
+    }
+
+    /**
+     * Processes the player's menu choice. The input needed by the action is read first and the action
+     * is then applied through applyAction.
      */
     public void choiceMenu(Scanner scanner)
             throws NoAvailablePlotsException, CannotAffordException, InvalidInputException, TreeAdjacencyException {
         ArrayList<Integer> xy;
         UIManager.printError(error);
         error = "";
+        errorCode = Telemetry.OK;
         System.out.println("  Choose an action.");
 
         char choice = 0;
         try {
             choice = InputManager.getCharInput(scanner);
         } catch (ScannerException e) {
-            error = e.getMessage();
+            fail(e);
         }
         System.out.println();
 
@@ -67,11 +576,7 @@ public class GameManager {
                 if (!farm.hasPlowablePlot()) {
                     System.out.println("  Which plot to plow?");
                     xy = InputManager.getPlotInput(scanner, farm);
-                    try {
-                        farmer.plow(farm.getPlot(xy.get(0), xy.get(1)), day);
-                    } catch (CropWitheredException | PlotAlreadyPlowedException | PlotAlreadyOccupiedException e) {
-                        error = e.getMessage();
-                    }
+                    applyAction(choice, xy.get(0), xy.get(1), (char) 0);
                 } else {
                     throw new NoAvailablePlotsException();
                 }
@@ -83,9 +588,16 @@ public class GameManager {
                     try {
                         farm.getPlot(xy.get(0), xy.get(1)).isPlantable();
                     } catch (PlotHasRockException | PlotAlreadyOccupiedException | PlotNotPlowedException e) {
-                        error = e.getMessage();
+                        fail(e);
+                        break;
+                    }
+                    UIManager.displayPlantOptions(farmer);
+                    System.out.println("  Which plant do you want?");
+                    try {
+                        applyAction(choice, xy.get(0), xy.get(1), InputManager.getCharInput(scanner));
+                    } catch (ScannerException e) {
+                        fail(e);
                     }
-                    plantInput(scanner, xy.get(0), xy.get(1));
                 } else {
                     throw new NoAvailablePlotsException();
                 }
@@ -94,11 +606,7 @@ public class GameManager {
                 if (farm.hasUnmaturedCrop(day)) {
                     System.out.println("  Which plot to water?");
                     xy = InputManager.getPlotInput(scanner, farm);
-                    try {
-                        farmer.water(farm.getPlot(xy.get(0), xy.get(1)), day);
-                    } catch (CropWitheredException | PlotUnoccupiedException | PlotNotPlowedException | PlotAlreadyMaturedException e) {
-                        error = e.getMessage();
-                    }
+                    applyAction(choice, xy.get(0), xy.get(1), (char) 0);
                 } else {
                     throw new NoAvailablePlotsException();
                 }
@@ -107,15 +615,7 @@ public class GameManager {
                 if (farm.hasUnmaturedCrop(day)) {
                     System.out.println("  Which plot to fertilize?");
                     xy = InputManager.getPlotInput(scanner, farm);
-                    if (farmer.coinCheck(10, false)) {
-                        try {
-                            farmer.fertilize(farm.getPlot(xy.get(0), xy.get(1)), day);
-                        } catch (CropWitheredException | PlotUnoccupiedException | PlotNotPlowedException | PlotAlreadyMaturedException e) {
-                            error = e.getMessage();
-                        }
-                    } else {
-                        throw new CannotAffordException();
-                    }
+                    applyAction(choice, xy.get(0), xy.get(1), (char) 0);
                 } else {
                     throw new NoAvailablePlotsException();
                 }
@@ -123,64 +623,50 @@ public class GameManager {
             case 'S': // SHOVEL action
                 System.out.println("  Which plot to shovel?");
                 xy = InputManager.getPlotInput(scanner, farm);
-                try {
-                    farmer.shovel(farm.getPlot(xy.get(0), xy.get(1)));
-                } catch (CannotAffordException e) {
-                    error = e.getMessage();
-                }
+                applyAction(choice, xy.get(0), xy.get(1), (char) 0);
                 break;
             case 'X': // PICKAXE action
-                if (farm.hasRock()) {
-                    if (farmer.coinCheck(50, false)) {
+                if (getRules().isSatisfied(PICKAXE_RULE)) {
+                    if (!farmer.coinCheck(50, false)) {
                         throw new CannotAffordException();
                     } else {
                         System.out.println("  Which plot to use pickaxe on?");
                         xy = InputManager.getPlotInput(scanner, farm);
-                        try {
-                            farmer.pickaxe(farm.getPlot(xy.get(0), xy.get(1)));
-                        } catch (NoRockException | CannotAffordException e) {
-                            error = e.getMessage();
-                        }
+                        applyAction(choice, xy.get(0), xy.get(1), (char) 0);
                     }
                 }
                 break;
             case 'R': // REGISTER action
-                if (farmer.registerCheck()) {
+                if (getRules().isSatisfied(REGISTER_RULE)) {
                     farmer.displayRegister();
                     System.out.println("  Do you wish to register? Enter [Y] if so, any other character if not.");
-                    char confirm = 0;
-                    try {
-                        confirm = InputManager.getCharInput(scanner);
-                    } catch (ScannerException e) {
-                        error = e.getMessage();
-                    }
-                    if (confirm == 'Y') {
-                        try {
-                            farmer.register();
-                        } catch (CannotAffordException e) {
-                            error = e.getMessage();
-                        }
+                    if (confirmInput(scanner)) {
+                        applyAction(choice, 0, 0, (char) 0);
                     }
                 }
                 break;
             case 'H': // HARVEST action
-                if (farm.hasHarvestableCrop(day)) {
+                if (rules.isSatisfied(HARVEST_RULE)) {
                     System.out.println("  Which plot to harvest?");
                     xy = InputManager.getPlotInput(scanner, farm);
-                    farmer.harvest(farm.getPlot(xy.get(0), xy.get(1)), day);
+                    applyAction(choice, xy.get(0), xy.get(1), (char) 0);
                     UIManager.printEnterCheck(scanner);
                 }
                 break;
+            case 'U': // UNDO
+                if (!undo()) {
+                    fail(new NothingToUndoException("undo"));
+                }
+                break;
+            case 'D': // REDO
+                if (!redo()) {
+                    fail(new NothingToUndoException("redo"));
+                }
+                break;
             case 'E': // END DAY action
                 System.out.println("  Do you wish to advance the day? Enter [Y] if so, any other character if not.");
-                char confirm = 0;
-                try {
-                    confirm = InputManager.getCharInput(scanner);
-                } catch (ScannerException e) {
-                    error = e.getMessage();
-                }
-                if (confirm == 'Y') {
-                    advanceDay();
+                if (confirmInput(scanner)) {
+                    applyAction(choice, 0, 0, (char) 0);
                 }
                 break;
             default:
@@ -189,95 +675,264 @@ public class GameManager {
     }
 
     /**
-     * Processes the planting input, displaying crop options and checking purchase conditions.
+     * Applies an action without reading any input, as chosen from the menu in choiceMenu.
+     * Errors on the Plot itself are kept to be displayed on the next turn and can be read with getError,
+     * while errors with the action as a whole are thrown.
+     * @param action the menu character of the action.
+     * @param x the row of the Plot acted on, ignored by REGISTER and END DAY.
+     * @param y the column of the Plot acted on, ignored by REGISTER and END DAY.
+     * @param crop the menu character of the Crop to plant, only used by PLANT.
      */
-    private void plantInput(Scanner scanner, int x, int y)
+    public void applyAction(char action, int x, int y, char crop)
+            throws CannotAffordException, InvalidInputException, TreeAdjacencyException {
+        ActionAppliedEvent event = ACTION_EVENTS.isEnabled() ? new ActionAppliedEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        long start = System.nanoTime();
+        String failure = null;
+        short failureCode = Telemetry.OK;
+        int coins = farmer.getObjectCoins();
+        long exp = farmer.getTotalExpUnits();
+        Plot plot = action != 'R' && action != 'E' && farm.isValidPlot(x, y) ? farm.getPlot(x, y) : null;
+        boolean rock = plot != null && plot.getRock();
+        boolean harvestable = plot != null && isHarvestable(plot);
+        char planted = plot != null ? CropFactory.getChoice(plot.getCrop()) : 0;
+        error = "";
+        errorCode = Telemetry.OK;
+        beginStep();
+        try {
+            switch (action) {
+                case 'P' -> plow(farm.getPlot(x, y));
+                case 'T' -> plant(x, y, crop);
+                case 'W' -> water(farm.getPlot(x, y));
+                case 'F' -> fertilize(farm.getPlot(x, y));
+                case 'S' -> shovel(farm.getPlot(x, y));
+                case 'X' -> pickaxe(farm.getPlot(x, y));
+                case 'R' -> register();
+                case 'H' -> harvest(farm.getPlot(x, y));
+                case 'E' -> advanceDay();
+                default -> throw InvalidInputException.of(farm.hasStackTraces());
+            }
+        } catch (CannotAffordException | InvalidInputException | TreeAdjacencyException e) {
+            failure = e.getMessage();
+            failureCode = Telemetry.code(e);
+            throw e;
+        } finally {
+            if (plot != null) {
+                updatePlotCounters(plot, rock, harvestable, planted, action);
+            }
+            // Levels are gained here for every action, however it is applied, so the counters see them.
+            farmer.levelUpdate(farmer.levelCheck());
+            updateFarmerCounters();
+            if (action != 'E') {
+                publishSnapshot();
+                checkMemoryBudget();
+            }
+            if (ledger != null && (coins != farmer.getObjectCoins() || exp != farmer.getTotalExpUnits())) {
+                int index = action == 'R' || action == 'E' ? -1 : x * farm.getColumns() + y;
+                ledger.record(day, action, index, farmer.getObjectCoins() - coins, farmer.getTotalExpUnits() - exp);
+            }
+            int source = Metrics.ACTIONS.indexOf(action);
+            if (source >= 0) {
+                expGained[source] += farmer.getTotalExpUnits() - exp;
+            }
+            endStep(action);
+            Metrics.recordAction(action, System.nanoTime() - start);
+            Telemetry.record(id, day, action, Telemetry.SOURCE_ACTION, failure != null ? failureCode : errorCode,
+                    farmer.getObjectCoins(), farmer.getTotalExpUnits());
+            if (event != null && event.shouldCommit()) {
+                event.action = action;
+                event.x = x;
+                event.y = y;
+                event.result = failure != null ? failure : error.isEmpty() ? "OK" : error;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Applies an action sent by a client instead of chosen from the menu, such as from a TickScheduler or
+     * a cluster shard. Every error is returned as an outcome code instead of being thrown, including a
+     * Plot outside of the farm, which is reported as invalid input.
+     * @param action the menu character of the action.
+     * @param x the row of the Plot acted on, ignored by REGISTER and END DAY.
+     * @param y the column of the Plot acted on, ignored by REGISTER and END DAY.
+     * @param crop the menu character of the Crop to plant, only used by PLANT.
+     * @return the outcome code of the action, see Telemetry.code.
+     */
+    public short applyCommand(char action, int x, int y, char crop) {
+        if (action != 'R' && action != 'E' && !farm.isValidPlot(x, y)) {
+            return INVALID_PLOT;
+        }
+        try {
+            applyAction(action, x, y, crop);
+            return errorCode;
+        } catch (CannotAffordException | InvalidInputException | TreeAdjacencyException e) {
+            return Telemetry.code(e);
+        }
+    }
+
+    /**
+     * Updates the counters that depend on a Plot after an action on it.
+     * @param plot the Plot acted on.
+     * @param rock whether the Plot had a rock before the action.
+     * @param harvestable whether the Plot had a harvestable crop before the action.
+     * @param crop the menu character of the crop on the Plot before the action.
+     * @param action the menu character of the action.
+     */
+    private void updatePlotCounters(Plot plot, boolean rock, boolean harvestable, char crop, char action) {
+        if (rock != plot.getRock()) {
+            rules.increment(GameCounter.ROCKS, rock ? -1 : 1);
+        }
+        if (harvestable && !isHarvestable(plot)) {
+            rules.increment(GameCounter.HARVESTABLE_CROPS, -1);
+            if (action == 'H') {
+                rules.increment(GameCounter.HARVESTS, 1);
+                rules.increment(GameCounter.harvested(crop), 1);
+            }
+        }
+    }
+
+    /**
+     * Checks if a Plot has a harvestable crop with the same checks as Plot.hasHarvestableCrop, without
+     * creating an exception for every Plot that has none.
+     */
+    private boolean isHarvestable(Plot plot) {
+        return !(plot.getCrop() instanceof NullCrop) && !plot.hasWitheredCrop(day)
+                && plot.getCrop().getHarvestStatus(day);
+    }
+
+    /**
+     * Keeps the error of an action to be displayed on the next turn.
+     */
+    private void fail(Exception e) {
+        error = e.getMessage();
+        errorCode = Telemetry.code(e);
+    }
+
+    /**
+     * Gets the error of the last action, which is empty if there was none.
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Gets the EXP the Farmer has gained from an action since the game was created.
+     * @param action the menu character of the action.
+     * @return the EXP gained from the action in EXP units, 0 for characters that are not actions.
+     */
+    public long getExpGained(char action) {
+        int source = Metrics.ACTIONS.indexOf(action);
+        return source < 0 ? 0 : expGained[source];
+    }
+
+    /**
+     * Gets the outcome code of the error of the last action, which is Telemetry.OK if there was none.
+     */
+    public short getErrorCode() {
+        return errorCode;
+    }
+
+    private void plow(Plot plot) {
+        try {
+            farmer.plow(plot, day);
+        } catch (CropWitheredException | PlotAlreadyPlowedException | PlotAlreadyOccupiedException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Plants a Crop, checking purchase conditions and the adjacency rule for trees.
+     */
+    private void plant(int x, int y, char choice)
             throws InvalidInputException, CannotAffordException, TreeAdjacencyException {
-        char choice;
-        UIManager.displayPlantOptions(farmer);
+        if (choice == 'E') {
+            return;
+        }
+        Plot plot = farm.getPlot(x, y);
         try {
-            do {
-                UIManager.printError(error);
-                error = "";
-                System.out.println("  Which plant do you want?");
-                choice = InputManager.getCharInput(scanner);
-                switch (choice) {
-                    case 'T':
-                        if (farmer.coinCheck(5, true)) {
-                            farmer.plant(farm.getPlot(x, y), CropFactory.createTurnip(day));
-                            choice = 'E';
-                        } else {
-                            throw new CannotAffordException();
-                        }
-                        break;
-                    case 'C':
-                        if (farmer.coinCheck(10, true)) {
-                            farmer.plant(farm.getPlot(x, y), CropFactory.createCarrot(day));
-                            choice = 'E';
-                        } else {
-                            throw new CannotAffordException();
-                        }
-                        break;
-                    case 'P':
-                        if (farmer.coinCheck(20, true)) {
-                            farmer.plant(farm.getPlot(x, y), CropFactory.createPotato(day));
-                            choice = 'E';
-                        } else {
-                            throw new CannotAffordException();
-                        }
-                        break;
-                    case 'R':
-                        if (farmer.coinCheck(5, true)) {
-                            farmer.plant(farm.getPlot(x, y), CropFactory.createRose(day));
-                            choice = 'E';
-                        } else {
-                            throw new CannotAffordException();
-                        }
-                        break;
-                    case 'U':
-                        if (farmer.coinCheck(10, true)) {
-                            farmer.plant(farm.getPlot(x, y), CropFactory.createTurnips(day));
-                            choice = 'E';
-                        } else {
-                            throw new CannotAffordException();
-                        }
-                        break;
-                    case 'S':
-                        if (farmer.coinCheck(20, true)) {
-                            farmer.plant(farm.getPlot(x, y), CropFactory.createSunflower(day));
-                            choice = 'E';
-                        } else {
-                            throw new CannotAffordException();
-                        }
-                        break;
-                    case 'M':
-                        if (farm.hasEmptyAdjacentPlots(x, y)) {
-                            throw new TreeAdjacencyException();
-                        } else if (!farmer.coinCheck(100, true)) {
-                            throw new CannotAffordException();
-                        } else {
-                            farmer.plant(farm.getPlot(x, y), CropFactory.createMango(day));
-                            choice = 'E';
-                        }
-                        break;
-                    case 'A':
-                        if (farm.hasEmptyAdjacentPlots(x, y)) {
-                            throw new TreeAdjacencyException();
-                        } else if (!farmer.coinCheck(200, true)) {
-                            throw new CannotAffordException();
-                        } else {
-                            farmer.plant(farm.getPlot(x, y), CropFactory.createApple(day));
-                            choice = 'E';
-                        }
-                        break;
-                    case 'E':
-                        break;
-                    default:
-                        throw new InvalidInputException();
-                }
-            } while (choice != 'E');
+            plot.isPlantable();
+        } catch (PlotHasRockException | PlotAlreadyOccupiedException | PlotNotPlowedException e) {
+            fail(e);
+            return;
+        }
+        Crop crop = CropFactory.create(choice, day);
+        if (crop.getType().equals("Tree") && !farm.hasEmptyAdjacentPlots(x, y)) {
+            throw TreeAdjacencyException.of(farm.hasStackTraces());
+        } else if (!farmer.coinCheck(crop.getCost(), true)) {
+            throw CannotAffordException.of(farm.hasStackTraces());
+        }
+        farmer.plant(plot, crop);
+    }
+
+    private void water(Plot plot) {
+        try {
+            farmer.water(plot, day);
+        } catch (CropWitheredException | PlotUnoccupiedException | PlotNotPlowedException | PlotAlreadyMaturedException e) {
+            fail(e);
+        }
+    }
+
+    private void fertilize(Plot plot) throws CannotAffordException {
+        if (!farmer.coinCheck(10, false)) {
+            throw CannotAffordException.of(farm.hasStackTraces());
+        }
+        try {
+            farmer.fertilize(plot, day);
+        } catch (CropWitheredException | PlotUnoccupiedException | PlotNotPlowedException | PlotAlreadyMaturedException e) {
+            fail(e);
+        }
+    }
+
+    private void shovel(Plot plot) {
+        try {
+            farmer.shovel(plot);
+        } catch (CannotAffordException e) {
+            fail(e);
+        }
+    }
+
+    private void pickaxe(Plot plot) {
+        try {
+            farmer.pickaxe(plot);
+        } catch (NoRockException | CannotAffordException e) {
+            fail(e);
+        }
+    }
+
+    private void register() {
+        if (!farmer.registerCheck()) {
+            return;
+        }
+        try {
+            farmer.register();
+        } catch (CannotAffordException e) {
+            fail(e);
+        }
+    }
+
+    private void harvest(Plot plot) {
+        try {
+            plot.hasHarvestableCrop(day);
+        } catch (PlotUnoccupiedException | CropWitheredException | CropNotMaturedException e) {
+            fail(e);
+            return;
+        }
+        farmer.harvest(plot, day);
+    }
+
+    /**
+     * Reads a confirmation from the player.
+     * @return true if the player entered [Y] and false if not.
+     */
+    private boolean confirmInput(Scanner scanner) {
+        try {
+            return InputManager.getCharInput(scanner) == 'Y';
         } catch (ScannerException e) {
-            error = e.getMessage();
+            fail(e);
+            return false;
         }
     }
-}
\ No newline at end of file
+}
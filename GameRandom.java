@@ -0,0 +1,47 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * <p>
+ * This class is the random number generator of a game, which decides the amount of products of every
+ * harvest.
+ * <p>
+ * It is a SplitMix64 generator: its whole state is a single long that is advanced by a fixed amount for
+ * every number and mixed into the number. The state can be read and set, so a game started from the same
+ * seed gives the same harvests, and a harvest that is undone and redone gives the same yield.
+ */
+public class GameRandom implements RandomGenerator {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long state;
+
+    /**
+     * Constructor for GameRandom.
+     * @param seed the seed, which decides every number given.
+     */
+    public GameRandom(long seed) {
+        state = seed;
+    }
+
+    @Override
+    public long nextLong() {
+        long z = state += GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Gets the state of the generator, from which setState continues with the same numbers.
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Sets the state of the generator, as read with getState or as a new seed.
+     * @param state the state.
+     */
+    public void setState(long state) {
+        this.state = state;
+    }
+}
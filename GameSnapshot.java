@@ -0,0 +1,278 @@
+import exceptions.InvalidInputException;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * <p>
+ * This class is an immutable view of a game at the end of an action or day, published by a
+ * SnapshotPublisher for spectators and dashboards on other threads.
+ * <p>
+ * The Plots are kept as packed states from PlotState in chunks of CHUNK_SIZE Plots. Chunks are never
+ * changed once published: a new version only copies the chunks with Plots that changed and shares the
+ * others with the version before it, so versions are cheap to make and an old version is reclaimed by the
+ * garbage collector as soon as no reader holds it.
+ * <p>
+ * A snapshot can also be written to a stream and read back, and a game can be restored from it, which is
+ * how a game is handed from one shard of a cluster to another. The counters of the rule engine that only
+ * count actions, such as the harvests, are not part of a snapshot and start again from 0.
+ */
+public final class GameSnapshot {
+    /**
+     * The amount of Plots in a chunk.
+     */
+    public static final int CHUNK_SIZE = 1 << 10;
+    static final int CHUNK_SHIFT = 10;
+
+    private static final Crop[] crops = new Crop[CropFactory.CHOICES.length()];
+
+    static {
+        for (int i = 0; i < crops.length; i++) {
+            try {
+                crops[i] = CropFactory.create(CropFactory.CHOICES.charAt(i), 0);
+            } catch (InvalidInputException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private final long version;
+    private final int day;
+    private final int rows;
+    private final int columns;
+    private final long[][] chunks;
+    private final long stateHash;
+    private final int objectCoins;
+    private final int level;
+    private final long totalExp;
+    private final FarmerTitle title;
+
+    GameSnapshot(long version, int day, int rows, int columns, long[][] chunks, long stateHash, Farmer farmer) {
+        this(version, day, rows, columns, chunks, stateHash, farmer.getObjectCoins(), farmer.getLevel(),
+                farmer.getTotalExpUnits(), farmer.getTitle());
+    }
+
+    private GameSnapshot(long version, int day, int rows, int columns, long[][] chunks, long stateHash,
+                         int objectCoins, int level, long totalExp, FarmerTitle title) {
+        this.version = version;
+        this.day = day;
+        this.rows = rows;
+        this.columns = columns;
+        this.chunks = chunks;
+        this.stateHash = stateHash;
+        this.objectCoins = objectCoins;
+        this.level = level;
+        this.totalExp = totalExp;
+        this.title = title;
+    }
+
+    /**
+     * Takes a snapshot of a game as it is now, whether or not the game publishes snapshots. This must be
+     * called by the thread playing the game.
+     * @param gameManager the game.
+     * @return a snapshot of version 0.
+     */
+    public static GameSnapshot of(GameManager gameManager) {
+        Farm farm = gameManager.getFarm();
+        return new GameSnapshot(0, gameManager.getDay(), farm.getRows(), farm.getColumns(), encodePlots(farm),
+                farm.getStateHash(), gameManager.getFarmer());
+    }
+
+    /**
+     * Packs the state of every Plot of a farm into chunks.
+     * @param farm the farm.
+     * @return the chunks of packed states.
+     */
+    static long[][] encodePlots(Farm farm) {
+        int columns = farm.getColumns();
+        int plots = farm.getRows() * columns;
+        long[][] chunks = new long[(plots + CHUNK_SIZE - 1) >>> CHUNK_SHIFT][];
+        for (int c = 0; c < chunks.length; c++) {
+            chunks[c] = new long[Math.min(CHUNK_SIZE, plots - (c << CHUNK_SHIFT))];
+        }
+        for (int i = 0; i < plots; i++) {
+            chunks[i >>> CHUNK_SHIFT][i & (CHUNK_SIZE - 1)] = PlotState.encode(farm.getPlot(i / columns, i % columns));
+        }
+        return chunks;
+    }
+
+    /**
+     * Writes the snapshot to a stream, without its version.
+     * @param out the stream to write to.
+     * @throws IOException if the stream cannot be written.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(day);
+        out.writeInt(rows);
+        out.writeInt(columns);
+        out.writeLong(stateHash);
+        out.writeInt(objectCoins);
+        out.writeInt(level);
+        out.writeLong(totalExp);
+        out.writeByte(title.ordinal());
+        for (long[] chunk : chunks) {
+            for (long state : chunk) {
+                out.writeLong(state);
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot written by write.
+     * @param in the stream to read from.
+     * @return the snapshot, of version 0.
+     * @throws IOException if the stream cannot be read or does not hold a snapshot.
+     */
+    public static GameSnapshot read(DataInput in) throws IOException {
+        int day = in.readInt();
+        int rows = in.readInt();
+        int columns = in.readInt();
+        long stateHash = in.readLong();
+        int objectCoins = in.readInt();
+        int level = in.readInt();
+        long totalExp = in.readLong();
+        int title = in.readUnsignedByte();
+        if (rows < 1 || columns < 1 || (long) rows * columns > Integer.MAX_VALUE
+                || title >= FarmerTitle.values().length) {
+            throw new IOException("not a snapshot of a game");
+        }
+        int plots = rows * columns;
+        long[][] chunks = new long[(plots + CHUNK_SIZE - 1) >>> CHUNK_SHIFT][];
+        for (int c = 0; c < chunks.length; c++) {
+            chunks[c] = new long[Math.min(CHUNK_SIZE, plots - (c << CHUNK_SHIFT))];
+            for (int i = 0; i < chunks[c].length; i++) {
+                chunks[c][i] = in.readLong();
+            }
+        }
+        return new GameSnapshot(0, day, rows, columns, chunks, stateHash, objectCoins, level, totalExp,
+                FarmerTitle.values()[title]);
+    }
+
+    /**
+     * Creates a game in the state of the snapshot.
+     * @return the restored game, with a new id.
+     * @throws IllegalArgumentException if a Plot has a Crop that does not exist or the restored Plots do
+     * not match the hash of the snapshot.
+     */
+    public GameManager restore() {
+        Farm farm = new Farm(rows, columns);
+        for (int i = 0; i < rows * columns; i++) {
+            try {
+                PlotState.restore(farm.getPlot(i / columns, i % columns), chunks[i >>> CHUNK_SHIFT][i & (CHUNK_SIZE - 1)]);
+            } catch (InvalidInputException e) {
+                throw new IllegalArgumentException("snapshot has an unknown crop at plot " + i);
+            }
+        }
+        farm.rehash();
+        if (farm.getStateHash() != stateHash) {
+            throw new IllegalArgumentException("snapshot does not match its hash");
+        }
+        Farmer farmer = new Farmer(title, level, totalExp - (level - 1) * Farmer.EXP_PER_LEVEL, objectCoins);
+        return new GameManager(farm, farmer, day);
+    }
+
+    /**
+     * Estimates the heap used by the snapshot, counting every chunk even if it is shared with another
+     * snapshot.
+     * @return the estimated bytes, see MemoryFootprint.
+     */
+    public long getRetainedBytes() {
+        int plots = rows * columns;
+        int last = plots & (CHUNK_SIZE - 1);
+        return MemoryFootprint.object(3 * Long.BYTES + 5 * Integer.BYTES + 2 * MemoryFootprint.REFERENCE)
+                + MemoryFootprint.array(chunks.length, MemoryFootprint.REFERENCE)
+                + (long) (plots >>> CHUNK_SHIFT) * MemoryFootprint.array(CHUNK_SIZE, Long.BYTES)
+                + (last == 0 ? 0 : MemoryFootprint.array(last, Long.BYTES));
+    }
+
+    /**
+     * Gets the version of the snapshot, which goes up by one every time a snapshot of the game is published.
+     * @return the version of the snapshot.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getDay() {
+        return day;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Gets the hash of the Plots, as Farm.getStateHash was when the snapshot was taken.
+     * @return the hash of the Plots.
+     */
+    public long getStateHash() {
+        return stateHash;
+    }
+
+    public int getObjectCoins() {
+        return objectCoins;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Gets the total EXP of the Farmer.
+     * @return the total EXP in EXP units.
+     */
+    public long getTotalExpUnits() {
+        return totalExp;
+    }
+
+    public FarmerTitle getTitle() {
+        return title;
+    }
+
+    /**
+     * Gets the packed state of a Plot, see PlotState.
+     * @param x the row of the Plot.
+     * @param y the column of the Plot.
+     * @return the packed state of the Plot.
+     */
+    public long getPlotState(int x, int y) {
+        int index = x * columns + y;
+        return chunks[index >>> CHUNK_SHIFT][index & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * Gets the character representing a Plot, as Plot.getCharStatus would have on the day of the snapshot.
+     * @param x the row of the Plot.
+     * @param y the column of the Plot.
+     * @return the character that represents the status of the Plot.
+     */
+    public char getCharStatus(int x, int y) {
+        long state = getPlotState(x, y);
+        if (PlotState.hasRock(state)) {
+            return 'X';
+        } else if (!PlotState.isPlowed(state)) {
+            return '0';
+        }
+        char choice = PlotState.getCrop(state);
+        if (choice == 0) {
+            return '#';
+        }
+        Crop crop = crops[CropFactory.CHOICES.indexOf(choice)];
+        int age = day - PlotState.getDate(state);
+        boolean starved = PlotState.getWater(state) < crop.getWaterMin()
+                || PlotState.getFertilizer(state) < crop.getFertilizerMin();
+        if (PlotState.isWithered(state) || age > crop.getHarvestTime() || (age == crop.getHarvestTime() && starved)) {
+            return '@';
+        }
+        return age == crop.getHarvestTime() ? choice : Character.toLowerCase(choice);
+    }
+
+    long[][] getChunks() {
+        return chunks;
+    }
+}
@@ -0,0 +1,26 @@
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for selling a harvested Crop, with the parts of the harvest formula.
+ */
+@Name("myfarm.Harvest")
+@Label("Harvest")
+@Category("MyFarm")
+public class HarvestEvent extends jdk.jfr.Event {
+    @Label("Species")
+    String species;
+
+    @Label("Products")
+    int products;
+
+    @Label("Profit")
+    int profit;
+
+    @Label("Water Bonus")
+    int waterBonus;
+
+    @Label("Fertilizer Bonus")
+    int fertilizerBonus;
+}
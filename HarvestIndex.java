@@ -0,0 +1,202 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * <p>
+ * This class keeps the Crops of a farm that will be harvestable ranked by their expected value, so that
+ * the most valuable harvests of a day can be found without scanning every Plot.
+ * <p>
+ * A Crop is indexed under the day it matures, with the expected objectCoins of harvesting it from
+ * CropEconomics for the Farmer's current title and the water and fertilizer it got. Crops that do not have
+ * their minimum water or fertilizer are left out since they wither when they mature. A Crop can only be
+ * harvested on the day it matures and withers the day after, so the Crops ready on a day are also the
+ * ones that expire that day.
+ * <p>
+ * The index follows every change to the Plots of the farm: planting, watering and fertilizing move a Crop
+ * to its new value, and harvesting, shovelling and withering remove it, each in O(log N) for N indexed
+ * Crops. The K most valuable Crops of a day are found in O(log N + K). Values are computed again for every
+ * Crop when the title of the Farmer changes, which happens a few times in a game.
+ */
+public class HarvestIndex implements PlotListener {
+    // The index with its TreeSet and TreeMap, an Entry and a TreeMap node, see MemoryFootprint.
+    private static final long INDEX_BYTES = MemoryFootprint.object(5 * MemoryFootprint.REFERENCE)
+            + MemoryFootprint.object(MemoryFootprint.REFERENCE)
+            + MemoryFootprint.object(6 * MemoryFootprint.REFERENCE + 2 * Integer.BYTES);
+    private static final long ENTRY_BYTES = MemoryFootprint.object(2 * Integer.BYTES + Long.BYTES);
+    private static final long NODE_BYTES = MemoryFootprint.object(5 * MemoryFootprint.REFERENCE + 1);
+    private final Farm farm;
+    private final Farmer farmer;
+    private final NavigableSet<Entry> ranked = new TreeSet<>();
+    private final Entry[] entries;
+    private FarmerTitle title;
+
+    /**
+     * Constructor for HarvestIndex, which indexes the Crops already on the farm and starts following it.
+     * @param farm the farm of the game.
+     * @param farmer the Farmer of the game, whose title decides the value of a harvest.
+     */
+    public HarvestIndex(Farm farm, Farmer farmer) {
+        this.farm = farm;
+        this.farmer = farmer;
+        entries = new Entry[farm.getRows() * farm.getColumns()];
+        title = farmer.getTitle();
+        reindex();
+        farm.addPlotListener(this);
+    }
+
+    @Override
+    public void plotChanged(Plot plot, long oldState) {
+        if (!checkTitle()) {
+            update(plot);
+        }
+    }
+
+    /**
+     * Gets the most valuable Crops that can be harvested on a day.
+     * @param day the current day in the Game.
+     * @param k the most Crops to get.
+     * @return the Plots of up to k harvestable Crops, the most valuable first.
+     */
+    public Plot[] top(int day, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative");
+        }
+        Plot[] top = new Plot[k];
+        int count = 0;
+        Iterator<Plot> ready = ready(day);
+        while (count < k && ready.hasNext()) {
+            top[count++] = ready.next();
+        }
+        return count == k ? top : Arrays.copyOf(top, count);
+    }
+
+    /**
+     * Iterates over the Crops that can be harvested on a day, the most valuable first. The iterator must
+     * not be used after the farm changes.
+     * @param day the current day in the Game.
+     * @return the Plots of the harvestable Crops in order of value.
+     */
+    public Iterator<Plot> ready(int day) {
+        checkTitle();
+        Iterator<Entry> entries = ranked.subSet(new Entry(day, Long.MAX_VALUE, -1), true,
+                new Entry(day, Long.MIN_VALUE, Integer.MAX_VALUE), true).iterator();
+        int columns = farm.getColumns();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public Plot next() {
+                int index = entries.next().index;
+                return farm.getPlot(index / columns, index % columns);
+            }
+        };
+    }
+
+    /**
+     * Gets the expected value of harvesting the Crop of a Plot on the day it matures.
+     * @param plot the Plot.
+     * @return the expected objectCoins in hundredths, or 0 if the Crop is not indexed.
+     */
+    public long getValue(Plot plot) {
+        checkTitle();
+        Entry entry = entries[plot.getIndex()];
+        return entry == null ? 0 : entry.value;
+    }
+
+    /**
+     * Gets the amount of Crops in the index, on any day.
+     */
+    public int size() {
+        return ranked.size();
+    }
+
+    /**
+     * Estimates the heap used by the index: an Entry and a node of the sorted set for every indexed Crop.
+     * @return the estimated bytes, see MemoryFootprint.
+     */
+    public long getRetainedBytes() {
+        return INDEX_BYTES + MemoryFootprint.array(entries.length, MemoryFootprint.REFERENCE)
+                + (long) ranked.size() * (ENTRY_BYTES + NODE_BYTES);
+    }
+
+    /**
+     * Stops following the farm.
+     */
+    public void close() {
+        farm.removePlotListener(this);
+    }
+
+    /**
+     * Computes every value again if the title of the Farmer changed since they were computed.
+     * @return true if the values were computed again.
+     */
+    private boolean checkTitle() {
+        if (farmer.getTitle() == title) {
+            return false;
+        }
+        title = farmer.getTitle();
+        reindex();
+        return true;
+    }
+
+    private void reindex() {
+        ranked.clear();
+        Arrays.fill(entries, null);
+        for (int i = 0; i < farm.getRows(); i++) {
+            for (int j = 0; j < farm.getColumns(); j++) {
+                update(farm.getPlot(i, j));
+            }
+        }
+    }
+
+    private void update(Plot plot) {
+        int index = plot.getIndex();
+        Entry old = entries[index];
+        if (old != null) {
+            ranked.remove(old);
+            entries[index] = null;
+        }
+        Crop crop = plot.getCrop();
+        if (crop instanceof NullCrop || plot.isWithered() || crop.getWaterAmount() < crop.getWaterMin()
+                || crop.getFertilizerAmount() < crop.getFertilizerMin()) {
+            return;
+        }
+        double price = CropEconomics.getExpectedPrice(title, CropFactory.getChoice(crop),
+                crop.getWaterAmount(), crop.getFertilizerAmount());
+        Entry entry = new Entry(crop.getMaturityDay(), Math.round(price * 100), index);
+        entries[index] = entry;
+        ranked.add(entry);
+    }
+
+    /**
+     * An indexed Crop, ordered by the day it matures, then by value from highest to lowest and then by
+     * the index of its Plot.
+     */
+    private static final class Entry implements Comparable<Entry> {
+        private final int day;
+        private final long value;
+        private final int index;
+
+        private Entry(int day, long value, int index) {
+            this.day = day;
+            this.value = value;
+            this.index = index;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (day != other.day) {
+                return Integer.compare(day, other.day);
+            }
+            if (value != other.value) {
+                return Long.compare(other.value, value);
+            }
+            return Integer.compare(index, other.index);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * <p>
+ * This class generates and reads RockMaps.
+ * <p>
+ * Generated maps are made from clustered value noise. A weight is picked at random for every corner of a
+ * grid of cells and interpolated across the cells, and each Plot gets a rock with a probability that grows
+ * with its weight, so rocks gather where the weights are high. The weights are skewed so that they average
+ * exactly the density, which makes the fraction of Plots with a rock the density on average. Every random
+ * value comes from hashing the seed with a position, so the same seed always gives the same map, and the
+ * map is filled into its bitset row by row in a single pass.
+ * <p>
+ * Maps can be read from text, with a line per row and X for a rock, or from a PBM bitmap in either the
+ * plain (P1) or raw (P4) format, with black pixels for rocks.
+ */
+public final class MapGenerator {
+    /**
+     * The width in Plots of the cells of the noise used when none is given.
+     */
+    public static final int DEFAULT_CLUSTER_SIZE = 8;
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final long ROW_SALT = 0xC2B2AE3D27D4EB4FL;
+    private static final double UNIT = 0x1p-53;
+
+    private MapGenerator() {}
+
+    /**
+     * Generates a map with rocks in clusters of about DEFAULT_CLUSTER_SIZE Plots.
+     * @param seed the seed of the map.
+     * @param rows the number of rows of Plots.
+     * @param columns the number of columns of Plots.
+     * @param density the expected fraction of Plots with a rock, from 0 to 1.
+     * @return the generated map.
+     */
+    public static RockMap generate(long seed, int rows, int columns, double density) {
+        return generate(seed, rows, columns, density, DEFAULT_CLUSTER_SIZE);
+    }
+
+    /**
+     * Generates a map with rocks in clusters.
+     * @param seed the seed of the map.
+     * @param rows the number of rows of Plots.
+     * @param columns the number of columns of Plots.
+     * @param density the expected fraction of Plots with a rock, from 0 to 1.
+     * @param clusterSize the width in Plots of the cells of the noise, 1 for rocks that are not clustered.
+     * @return the generated map.
+     */
+    public static RockMap generate(long seed, int rows, int columns, double density, int clusterSize) {
+        if (!(density >= 0 && density <= 1) || clusterSize < 1) {
+            throw new IllegalArgumentException("Invalid density " + density + " or cluster size " + clusterSize);
+        }
+        RockMap map = new RockMap(rows, columns);
+        long[] bits = map.getBits();
+        // Above half, the Plots without rocks are clustered instead
+        boolean inverted = density > 0.5;
+        long flip = inverted ? 1 : 0;
+        double clustered = inverted ? 1 - density : density;
+        // The weights are u^power of uniform values, which average 1 / (power + 1), so scaling them by
+        // density * (power + 1) averages the density without going over 1
+        int power = clustered == 0 ? 1 : (int) Math.max(1, Math.min(3, Math.floor(1 / clustered) - 1));
+        double scale = clustered * (power + 1) * 0x1p53;
+
+        int cells = columns / clusterSize + 2;
+        double[] top = new double[cells];
+        double[] bottom = new double[cells];
+        double[] row = new double[cells];
+        int cellRow = -1;
+        long index = 0;
+        for (int x = 0; x < rows; x++) {
+            if (x / clusterSize != cellRow) {
+                cellRow = x / clusterSize;
+                for (int cell = 0; cell < cells; cell++) {
+                    top[cell] = weight(seed, cellRow, cell, power);
+                    bottom[cell] = weight(seed, cellRow + 1, cell, power);
+                }
+            }
+            double fraction = (double) (x % clusterSize) / clusterSize;
+            for (int cell = 0; cell < cells; cell++) {
+                row[cell] = top[cell] + (bottom[cell] - top[cell]) * fraction;
+            }
+            int y = 0;
+            for (int cell = 0; y < columns; cell++) {
+                double weight = row[cell] * scale;
+                double step = (row[cell + 1] - row[cell]) * scale / clusterSize;
+                for (int end = Math.min(columns, y + clusterSize); y < end; y++, index++) {
+                    // The sign of the difference is 1 exactly when the random value is under the weight
+                    long rock = ((mix(seed ^ index * GOLDEN_GAMMA) >>> 11) - (long) weight) >>> 63;
+                    bits[(int) (index >>> 6)] |= (rock ^ flip) << index;
+                    weight += step;
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Reads a map from a text file or a PBM bitmap.
+     * @param file the file to read.
+     * @return the map in the file.
+     * @throws IOException if the file cannot be read or is not a valid map.
+     */
+    public static RockMap read(Path file) throws IOException {
+        byte[] data = Files.readAllBytes(file);
+        if (data.length >= 2 && data[0] == 'P' && (data[1] == '1' || data[1] == '4')) {
+            return readPbm(data);
+        }
+        return readText(new String(data, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes a map as a raw (P4) PBM bitmap.
+     * @param map the map to write.
+     * @param file the file to write to.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(RockMap map, Path file) throws IOException {
+        byte[] header = ("P4\n" + map.getColumns() + " " + map.getRows() + "\n").getBytes(StandardCharsets.US_ASCII);
+        int rowBytes = (map.getColumns() + 7) / 8;
+        byte[] data = new byte[header.length + rowBytes * map.getRows()];
+        System.arraycopy(header, 0, data, 0, header.length);
+        for (int i = 0; i < map.getRows(); i++) {
+            for (int j = 0; j < map.getColumns(); j++) {
+                if (map.hasRock(i, j)) {
+                    data[header.length + i * rowBytes + j / 8] |= (byte) (0x80 >>> (j % 8));
+                }
+            }
+        }
+        Files.write(file, data);
+    }
+
+    /**
+     * Generates a map and prints how long it took and, if it is small, the map itself. The arguments are
+     * the seed, rows, columns, density and cluster size, all optional.
+     */
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        int rows = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int columns = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        double density = args.length > 3 ? Double.parseDouble(args[3]) : 0.1;
+        int clusterSize = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_CLUSTER_SIZE;
+        long start = System.nanoTime();
+        RockMap map = generate(seed, rows, columns, density, clusterSize);
+        long elapsed = System.nanoTime() - start;
+        if ((long) rows * columns <= 10_000) {
+            System.out.print(map);
+        }
+        System.out.printf("  %dx%d map with %d rocks (%.4f) generated in %d ms.%n", rows, columns, map.countRocks(),
+                (double) map.countRocks() / Math.max(1, (long) rows * columns), elapsed / 1_000_000);
+    }
+
+    private static RockMap readText(String text) throws IOException {
+        String[] lines = text.split("\r?\n");
+        int rows = lines.length;
+        while (rows > 0 && lines[rows - 1].isEmpty()) {
+            rows--;
+        }
+        int columns = 0;
+        for (int i = 0; i < rows; i++) {
+            columns = Math.max(columns, lines[i].length());
+        }
+        if (rows == 0 || columns == 0) {
+            throw new IOException("The map is empty.");
+        }
+        RockMap map = new RockMap(rows, columns);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < lines[i].length(); j++) {
+                char c = lines[i].charAt(j);
+                if (c == 'X' || c == 'x' || c == '1') {
+                    map.setRock(i, j, true);
+                }
+            }
+        }
+        return map;
+    }
+
+    private static RockMap readPbm(byte[] data) throws IOException {
+        int[] position = {2};
+        int columns = readNumber(data, position);
+        int rows = readNumber(data, position);
+        RockMap map = new RockMap(rows, columns);
+        if (data[1] == '4') {
+            // A single whitespace character separates the header from the bits
+            int offset = position[0] + 1;
+            int rowBytes = (columns + 7) / 8;
+            if (offset + (long) rowBytes * rows > data.length) {
+                throw new IOException("The bitmap is shorter than its size.");
+            }
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < columns; j++) {
+                    if ((data[offset + i * rowBytes + j / 8] & (0x80 >>> (j % 8))) != 0) {
+                        map.setRock(i, j, true);
+                    }
+                }
+            }
+        } else {
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < columns; j++) {
+                    skipSpace(data, position);
+                    if (position[0] >= data.length) {
+                        throw new IOException("The bitmap is shorter than its size.");
+                    }
+                    if (data[position[0]++] == '1') {
+                        map.setRock(i, j, true);
+                    }
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Reads a number of a PBM header, skipping whitespace and comments before it.
+     */
+    private static int readNumber(byte[] data, int[] position) throws IOException {
+        skipSpace(data, position);
+        int value = 0;
+        int start = position[0];
+        while (position[0] < data.length && data[position[0]] >= '0' && data[position[0]] <= '9') {
+            value = value * 10 + data[position[0]++] - '0';
+        }
+        if (position[0] == start) {
+            throw new IOException("The bitmap header is invalid.");
+        }
+        return value;
+    }
+
+    private static void skipSpace(byte[] data, int[] position) {
+        while (position[0] < data.length) {
+            byte b = data[position[0]];
+            if (b == '#') {
+                while (position[0] < data.length && data[position[0]] != '\n') {
+                    position[0]++;
+                }
+            } else if (Character.isWhitespace(b)) {
+                position[0]++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the weight of a corner of the noise.
+     */
+    private static double weight(long seed, int row, int column, int power) {
+        double u = (mix(seed ^ ROW_SALT ^ mix(((long) row << 32 | column & 0xFFFFFFFFL) * GOLDEN_GAMMA)) >>> 11) * UNIT;
+        double weight = u;
+        for (int i = 1; i < power; i++) {
+            weight *= u;
+        }
+        return weight;
+    }
+
+    /**
+     * Mixes the bits of a value, as done by the SplitMix64 generator.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,144 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import exceptions.InvalidInputException;
+
+/**
+ * <p>
+ * This class is a market shared by many games, in which the selling price of each Crop follows the amount
+ * of it harvested across all of them.
+ * <p>
+ * Every harvest sold through the market adds its products to the supply of its Crop in the current window,
+ * kept in a striped LongAdder per Crop, so games on any number of threads can sell at the same time without
+ * a lock. On every tick the supply of the window is taken and smoothed with the windows before it, and the
+ * price of each Crop is its base price times the target supply over the smoothed supply, kept between
+ * MIN_FACTOR and MAX_FACTOR of the base price. The new prices are published as a new array that is never
+ * changed afterwards, so reading a price is one volatile read.
+ * <p>
+ * Prices are not part of the state of a game: undoing a harvest does not take its products back from the
+ * market, and a seeded game harvests the same products but not always for the same price.
+ */
+public class Market {
+    /**
+     * The lowest price of a Crop as a factor of its base price, reached when far more is harvested than
+     * the target supply.
+     */
+    public static final double MIN_FACTOR = 0.5;
+    /**
+     * The highest price of a Crop as a factor of its base price, reached when far less is harvested than
+     * the target supply.
+     */
+    public static final double MAX_FACTOR = 2.0;
+    // The weight of the latest window in the smoothed supply.
+    private static final double SMOOTHING = 0.5;
+
+    private final int[] basePrices = new int[CropFactory.CHOICES.length()];
+    private final LongAdder[] supply = new LongAdder[basePrices.length];
+    private final double[] smoothedSupply = new double[basePrices.length];
+    private final long targetSupply;
+    private volatile int[] prices;
+    private volatile long ticks = 0;
+
+    /**
+     * Constructor for Market, which starts with every Crop at its base price.
+     * @param targetSupply the products of each Crop harvested in a window at which it sells for its base price.
+     */
+    public Market(long targetSupply) {
+        if (targetSupply < 1) {
+            throw new IllegalArgumentException("targetSupply must be positive");
+        }
+        this.targetSupply = targetSupply;
+        for (int i = 0; i < basePrices.length; i++) {
+            try {
+                basePrices[i] = CropFactory.create(CropFactory.CHOICES.charAt(i), 0).getPrice();
+            } catch (InvalidInputException e) {
+                throw new IllegalStateException(e);
+            }
+            supply[i] = new LongAdder();
+            smoothedSupply[i] = targetSupply;
+        }
+        prices = basePrices.clone();
+    }
+
+    /**
+     * Sells the products of a harvest, adding them to the supply of the current window. This can be called
+     * from any thread.
+     * @param crop the Crop harvested.
+     * @param products the amount of products harvested.
+     * @return the price of one product, the published price of the Crop or its base price if it is not
+     *         on the menu.
+     */
+    public int sell(Crop crop, int products) {
+        int species = crop.getSpecies();
+        if (species < 0) {
+            return crop.getPrice();
+        }
+        supply[species].add(products);
+        return prices[species];
+    }
+
+    /**
+     * Gets the published price of a Crop.
+     * @param choice the menu character of the Crop.
+     * @return the price of one product.
+     * @throws InvalidInputException if no Crop uses the given character.
+     */
+    public int getPrice(char choice) throws InvalidInputException {
+        int species = CropFactory.CHOICES.indexOf(choice);
+        if (species < 0) {
+            throw new InvalidInputException();
+        }
+        return prices[species];
+    }
+
+    /**
+     * Gets a copy of the published prices.
+     * @return the price of one product of each Crop, in the order of CropFactory.CHOICES.
+     */
+    public int[] getPrices() {
+        return prices.clone();
+    }
+
+    /**
+     * Gets the amount of ticks so far.
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Ends the current window and publishes new prices from its supply. Products sold while the tick runs
+     * are counted in this window or the next one. Ticks are meant to come from one thread, such as the one
+     * of start, and are serialized if they do not.
+     * @return the published prices, which must not be changed.
+     */
+    public synchronized int[] tick() {
+        int[] next = new int[basePrices.length];
+        for (int i = 0; i < next.length; i++) {
+            smoothedSupply[i] += SMOOTHING * (supply[i].sumThenReset() - smoothedSupply[i]);
+            double factor = smoothedSupply[i] > 0 ? targetSupply / smoothedSupply[i] : MAX_FACTOR;
+            factor = Math.max(MIN_FACTOR, Math.min(MAX_FACTOR, factor));
+            next[i] = Math.max(1, (int) Math.round(basePrices[i] * factor));
+        }
+        prices = next;
+        ticks++;
+        return next;
+    }
+
+    /**
+     * Starts ticking the market on a daemon thread.
+     * @param periodMillis the length of a window in milliseconds.
+     * @return the executor that ticks, which can be shut down to stop.
+     */
+    public ScheduledExecutorService start(long periodMillis) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "market-tick");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::tick, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        return executor;
+    }
+}
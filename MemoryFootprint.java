@@ -0,0 +1,50 @@
+/**
+ * <p>
+ * This class estimates the heap used by the structures of a game, for accounting for and capping the
+ * memory of each game when many are hosted together.
+ * <p>
+ * Estimates follow the object layout of a 64-bit HotSpot JVM with compressed references, which is the
+ * default for heaps under 32 GB: objects start with a 12 byte header, arrays with a 16 byte header,
+ * references take 4 bytes and every object is padded to a multiple of 8 bytes. Each class that holds
+ * state growing with the farm or the game adds up its own fields with these sizes, so an estimate can be
+ * made in constant time from a few counts instead of by walking the heap.
+ */
+public final class MemoryFootprint {
+    /**
+     * The bytes of the header of an object.
+     */
+    public static final int OBJECT_HEADER = 12;
+    /**
+     * The bytes of the header of an array, including its length.
+     */
+    public static final int ARRAY_HEADER = 16;
+    /**
+     * The bytes of a reference.
+     */
+    public static final int REFERENCE = 4;
+
+    private MemoryFootprint() {}
+
+    /**
+     * Gets the size of an object with the given fields.
+     * @param fieldBytes the bytes of the fields of the object, including the ones it inherits.
+     * @return the size of the object in bytes.
+     */
+    public static long object(long fieldBytes) {
+        return align(OBJECT_HEADER + fieldBytes);
+    }
+
+    /**
+     * Gets the size of an array.
+     * @param length the amount of elements.
+     * @param elementBytes the bytes of each element, REFERENCE for arrays of objects.
+     * @return the size of the array in bytes, without the objects it refers to.
+     */
+    public static long array(long length, int elementBytes) {
+        return align(ARRAY_HEADER + length * elementBytes);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
@@ -0,0 +1,436 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * This class keeps in-process metrics about every game being played: how often each action is chosen,
+ * how long applying actions and advancing the day takes, how games end, and how long the ticks of a
+ * TickScheduler take and how many commands they apply.
+ * <p>
+ * Counters are striped LongAdders, so games on many threads can record at the same time without
+ * contending on a single value, and recording does not allocate. Latencies are kept in histograms whose
+ * buckets are powers of two in nanoseconds.
+ * <p>
+ * Gauges for the state of the Plots, the coins and EXP of Farmers and the heap of games are only computed
+ * when a snapshot is taken, from the latest GameSnapshot of each game that has been tracked, which is
+ * consistent even while the game is being played on another thread. Tracked games that do not publish
+ * snapshots are counted but left out of the gauges, since their state can only be read by the thread
+ * playing them.
+ */
+public class Metrics {
+    /**
+     * The menu characters of the actions, in the order they are reported.
+     */
+    public static final String ACTIONS = "PTWFSXRHE";
+    /**
+     * The number of latency buckets, bucket i holds latencies from 2^i up to 2^(i + 1) nanoseconds.
+     */
+    public static final int BUCKETS = 64;
+    /**
+     * The names of the Plot states reported by the gauges.
+     */
+    public static final String[] PLOT_STATES = {"Unplowed", "Rock", "Plowed", "Withered", "Growing", "Harvestable"};
+
+    private static final int INVALID_ACTION = ACTIONS.length();
+    private static final LongAdder[] actionCounts = adders(ACTIONS.length() + 1);
+    private static final LongAdder[][] actionLatency = new LongAdder[ACTIONS.length() + 1][];
+    private static final LongAdder[] advanceDayLatency = adders(BUCKETS);
+    private static final LongAdder witheredEndings = new LongAdder();
+    private static final LongAdder bankruptEndings = new LongAdder();
+    private static final LongAdder[] tickLatency = adders(BUCKETS);
+    private static final LongAdder[] tickCommands = adders(BUCKETS);
+    private static final LongAdder tickOverruns = new LongAdder();
+    private static final LongAdder rejectedCommands = new LongAdder();
+    private static final Set<GameManager> games = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    static {
+        for (int i = 0; i < actionLatency.length; i++) {
+            actionLatency[i] = adders(BUCKETS);
+        }
+    }
+
+    private Metrics() {}
+
+    /**
+     * Records that an action was applied.
+     * @param action the menu character of the action.
+     * @param nanos how long applying the action took.
+     */
+    public static void recordAction(char action, long nanos) {
+        int index = ACTIONS.indexOf(action);
+        if (index < 0) {
+            index = INVALID_ACTION;
+        }
+        actionCounts[index].increment();
+        actionLatency[index][bucket(nanos)].increment();
+    }
+
+    /**
+     * Records that a day was advanced.
+     * @param nanos how long advancing the day took.
+     */
+    public static void recordAdvanceDay(long nanos) {
+        advanceDayLatency[bucket(nanos)].increment();
+    }
+
+    /**
+     * Records a tick of a TickScheduler worker.
+     * @param nanos how long applying the commands of the tick and publishing their results took.
+     * @param commands the amount of commands applied in the tick.
+     * @param overrun true if the tick took longer than the tick period and false if not.
+     */
+    public static void recordTick(long nanos, int commands, boolean overrun) {
+        tickLatency[bucket(nanos)].increment();
+        tickCommands[bucket(commands)].increment();
+        if (overrun) {
+            tickOverruns.increment();
+        }
+    }
+
+    /**
+     * Records that a command was rejected because the queue of its game was full.
+     */
+    public static void recordRejectedCommand() {
+        rejectedCommands.increment();
+    }
+
+    /**
+     * Records how a game ended, following the branches of UIManager.displayEndScreen.
+     * @param withered true if all Plots had withered Crops and false if the Farmer ran out of money.
+     */
+    public static void recordGameEnd(boolean withered) {
+        if (withered) {
+            witheredEndings.increment();
+        } else {
+            bankruptEndings.increment();
+        }
+    }
+
+    /**
+     * Includes a game in the gauges until it is untracked or no longer used.
+     * @param gameManager the game to track.
+     */
+    public static void track(GameManager gameManager) {
+        games.add(gameManager);
+    }
+
+    /**
+     * Removes a game from the gauges.
+     * @param gameManager the game to untrack.
+     */
+    public static void untrack(GameManager gameManager) {
+        games.remove(gameManager);
+    }
+
+    /**
+     * Takes a snapshot of all metrics. Counters are read without stopping games that are recording, so
+     * counts that change while the snapshot is taken may be off by the actions in flight.
+     * @return the snapshot of all metrics.
+     */
+    public static Snapshot snapshot() {
+        long[] counts = new long[actionCounts.length];
+        long[][] latency = new long[actionLatency.length][];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = actionCounts[i].sum();
+            latency[i] = sums(actionLatency[i]);
+        }
+
+        long[] plotStates = new long[PLOT_STATES.length];
+        long[] coins = new long[BUCKETS];
+        long[] exp = new long[BUCKETS];
+        long[] retained = new long[BUCKETS];
+        long retainedBytes = 0;
+        int overBudget = 0;
+        List<GameManager> tracked;
+        synchronized (games) {
+            tracked = new ArrayList<>(games);
+        }
+        for (GameManager gameManager : tracked) {
+            GameSnapshot view = gameManager.getSnapshot();
+            if (view == null) {
+                continue;
+            }
+            long bytes = gameManager.getPublishedRetainedBytes();
+            retainedBytes += bytes;
+            retained[bucket(bytes)]++;
+            if (gameManager.isOverMemoryBudget()) {
+                overBudget++;
+            }
+            countPlotStates(view, plotStates);
+            coins[bucket(view.getObjectCoins())]++;
+            exp[bucket(view.getTotalExpUnits() / Farmer.EXP_SCALE)]++;
+        }
+        return new Snapshot(counts, latency, sums(advanceDayLatency), witheredEndings.sum(), bankruptEndings.sum(),
+                tracked.size(), plotStates, coins, exp, sums(tickLatency), sums(tickCommands), tickOverruns.sum(),
+                rejectedCommands.sum(), retainedBytes, retained, overBudget);
+    }
+
+    /**
+     * Starts writing a snapshot to a file periodically on a background thread. The file is replaced on
+     * every write.
+     * @param file the file to write the snapshots to.
+     * @param periodSeconds the amount of seconds between writes.
+     * @return the executor writing the snapshots, which can be shut down to stop writing.
+     */
+    public static ScheduledExecutorService startDump(Path file, long periodSeconds) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> {
+            try {
+                Files.writeString(file, snapshot().toString());
+            } catch (IOException e) {
+                System.err.println("Error: could not write metrics to " + file + ": " + e.getMessage());
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+        return executor;
+    }
+
+    /**
+     * Gets the latency bucket of a value.
+     * @param value the value in nanoseconds, or the amount for distributions.
+     * @return the index of the bucket.
+     */
+    public static int bucket(long value) {
+        return value <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(value);
+    }
+
+    private static void countPlotStates(GameSnapshot view, long[] plotStates) {
+        for (int i = 0; i < view.getRows(); i++) {
+            for (int j = 0; j < view.getColumns(); j++) {
+                countPlotState(view.getCharStatus(i, j), plotStates);
+            }
+        }
+    }
+
+    private static void countPlotState(char status, long[] plotStates) {
+        switch (status) {
+            case '0' -> plotStates[0]++;
+            case 'X' -> plotStates[1]++;
+            case '#' -> plotStates[2]++;
+            case '@' -> plotStates[3]++;
+            default -> plotStates[Character.isUpperCase(status) ? 5 : 4]++;
+        }
+    }
+
+    private static LongAdder[] adders(int length) {
+        LongAdder[] adders = new LongAdder[length];
+        for (int i = 0; i < length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static long[] sums(LongAdder[] adders) {
+        long[] sums = new long[adders.length];
+        for (int i = 0; i < adders.length; i++) {
+            sums[i] = adders[i].sum();
+        }
+        return sums;
+    }
+
+    /**
+     * An immutable copy of the metrics at the time it was taken.
+     */
+    public static final class Snapshot {
+        private final long[] actionCounts;
+        private final long[][] actionLatency;
+        private final long[] advanceDayLatency;
+        private final long witheredEndings;
+        private final long bankruptEndings;
+        private final int trackedGames;
+        private final long[] plotStates;
+        private final long[] coins;
+        private final long[] exp;
+        private final long[] tickLatency;
+        private final long[] tickCommands;
+        private final long tickOverruns;
+        private final long rejectedCommands;
+        private final long retainedBytes;
+        private final long[] retained;
+        private final int overBudgetGames;
+
+        private Snapshot(long[] actionCounts, long[][] actionLatency, long[] advanceDayLatency, long witheredEndings,
+                         long bankruptEndings, int trackedGames, long[] plotStates, long[] coins, long[] exp,
+                         long[] tickLatency, long[] tickCommands, long tickOverruns, long rejectedCommands,
+                         long retainedBytes, long[] retained, int overBudgetGames) {
+            this.actionCounts = actionCounts;
+            this.actionLatency = actionLatency;
+            this.advanceDayLatency = advanceDayLatency;
+            this.witheredEndings = witheredEndings;
+            this.bankruptEndings = bankruptEndings;
+            this.trackedGames = trackedGames;
+            this.plotStates = plotStates;
+            this.coins = coins;
+            this.exp = exp;
+            this.tickLatency = tickLatency;
+            this.tickCommands = tickCommands;
+            this.tickOverruns = tickOverruns;
+            this.rejectedCommands = rejectedCommands;
+            this.retainedBytes = retainedBytes;
+            this.retained = retained;
+            this.overBudgetGames = overBudgetGames;
+        }
+
+        /**
+         * Gets how many times an action was applied.
+         * @param action the menu character of the action, or any other character for invalid actions.
+         * @return the amount of times the action was applied.
+         */
+        public long getActionCount(char action) {
+            int index = ACTIONS.indexOf(action);
+            return actionCounts[index < 0 ? INVALID_ACTION : index];
+        }
+
+        /**
+         * Gets an upper bound of a percentile of the latency of an action.
+         * @param action the menu character of the action, or any other character for invalid actions.
+         * @param percentile the percentile, from 0 to 100.
+         * @return the upper bound of the bucket the percentile falls in, in nanoseconds.
+         */
+        public long getActionLatency(char action, double percentile) {
+            int index = ACTIONS.indexOf(action);
+            return percentile(actionLatency[index < 0 ? INVALID_ACTION : index], percentile);
+        }
+
+        /**
+         * Gets an upper bound of a percentile of the latency of advancing the day.
+         * @param percentile the percentile, from 0 to 100.
+         * @return the upper bound of the bucket the percentile falls in, in nanoseconds.
+         */
+        public long getAdvanceDayLatency(double percentile) {
+            return percentile(advanceDayLatency, percentile);
+        }
+
+        /**
+         * Gets an upper bound of a percentile of the duration of the ticks of TickScheduler workers.
+         * @param percentile the percentile, from 0 to 100.
+         * @return the upper bound of the bucket the percentile falls in, in nanoseconds.
+         */
+        public long getTickLatency(double percentile) {
+            return percentile(tickLatency, percentile);
+        }
+
+        /**
+         * Gets the amount of ticks that took longer than the tick period.
+         */
+        public long getTickOverruns() {
+            return tickOverruns;
+        }
+
+        /**
+         * Gets the amount of commands rejected because the queue of their game was full.
+         */
+        public long getRejectedCommands() {
+            return rejectedCommands;
+        }
+
+        /**
+         * Gets the estimated heap used by the tracked games together, see GameManager.getRetainedBytes.
+         */
+        public long getRetainedBytes() {
+            return retainedBytes;
+        }
+
+        /**
+         * Gets the amount of tracked games that use more than their memory budget.
+         */
+        public int getOverBudgetGames() {
+            return overBudgetGames;
+        }
+
+        /**
+         * Gets the amount of games that ended because all Plots had withered Crops.
+         */
+        public long getWitheredEndings() {
+            return witheredEndings;
+        }
+
+        /**
+         * Gets the amount of games that ended because the Farmer ran out of money.
+         */
+        public long getBankruptEndings() {
+            return bankruptEndings;
+        }
+
+        /**
+         * Gets the amount of Plots in a state across the tracked games.
+         * @param state the index of the state in PLOT_STATES.
+         */
+        public long getPlotCount(int state) {
+            return plotStates[state];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append("ACTION  COUNT  P50(ns)  P99(ns)\n");
+            for (int i = 0; i <= ACTIONS.length(); i++) {
+                builder.append(i < ACTIONS.length() ? ACTIONS.charAt(i) : '?').append("  ")
+                        .append(actionCounts[i]).append("  ")
+                        .append(percentile(actionLatency[i], 50)).append("  ")
+                        .append(percentile(actionLatency[i], 99)).append('\n');
+            }
+            builder.append("ADVANCE DAY P50(ns): ").append(percentile(advanceDayLatency, 50)).append('\n');
+            builder.append("ADVANCE DAY P99(ns): ").append(percentile(advanceDayLatency, 99)).append('\n');
+            builder.append("ENDED BY WITHERING: ").append(witheredEndings).append('\n');
+            builder.append("ENDED BY BANKRUPTCY: ").append(bankruptEndings).append('\n');
+            builder.append("TRACKED GAMES: ").append(trackedGames).append('\n');
+            for (int i = 0; i < PLOT_STATES.length; i++) {
+                builder.append("PLOTS ").append(PLOT_STATES[i].toUpperCase()).append(": ").append(plotStates[i]).append('\n');
+            }
+            appendDistribution(builder, "COINS", coins);
+            appendDistribution(builder, "EXP", exp);
+            builder.append("TICK P50(ns): ").append(percentile(tickLatency, 50)).append('\n');
+            builder.append("TICK P99(ns): ").append(percentile(tickLatency, 99)).append('\n');
+            appendDistribution(builder, "COMMANDS PER TICK", tickCommands);
+            builder.append("TICK OVERRUNS: ").append(tickOverruns).append('\n');
+            builder.append("REJECTED COMMANDS: ").append(rejectedCommands).append('\n');
+            builder.append("RETAINED BYTES: ").append(retainedBytes).append('\n');
+            appendDistribution(builder, "RETAINED BYTES PER GAME", retained);
+            builder.append("GAMES OVER MEMORY BUDGET: ").append(overBudgetGames).append('\n');
+            return builder.toString();
+        }
+
+        private static void appendDistribution(StringBuilder builder, String name, long[] buckets) {
+            builder.append(name).append(':');
+            for (int i = 0; i < buckets.length; i++) {
+                if (buckets[i] > 0) {
+                    builder.append(" <").append(1L << (i + 1)).append('=').append(buckets[i]);
+                }
+            }
+            builder.append('\n');
+        }
+
+        private static long percentile(long[] buckets, double percentile) {
+            long total = 0;
+            for (long count : buckets) {
+                total += count;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && buckets[i] > 0) {
+                    return i == BUCKETS - 1 ? Long.MAX_VALUE : 1L << (i + 1);
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -1,4 +1,5 @@
 import exceptions.PlotUnoccupiedException;
+import java.util.random.RandomGenerator;
 
 public class NullCrop extends Crop {
     private static final NullCrop INSTANCE = new NullCrop();
@@ -16,6 +17,16 @@ public class NullCrop extends Crop {
         return false;
     }
 
+    @Override
+    public int getMaturityDay() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int getWitherDay() {
+        return Integer.MAX_VALUE;
+    }
+
     @Override
     public void addWater() throws PlotUnoccupiedException {
         throw new PlotUnoccupiedException();
@@ -32,7 +43,19 @@ public class NullCrop extends Crop {
     }
 
     @Override
-    public int harvestCalculate(int waterMaxBonus, int fertilizerMaxBonus, int bonusEarnings) {
+    public int harvestCalculate(int waterMaxBonus, int fertilizerMaxBonus, int bonusEarnings, boolean display) {
+        return 0;
+    }
+
+    @Override
+    public int harvestCalculate(int waterMaxBonus, int fertilizerMaxBonus, int bonusEarnings, boolean display,
+                                RandomGenerator random) {
+        return 0;
+    }
+
+    @Override
+    public int harvestCalculate(int waterMaxBonus, int fertilizerMaxBonus, int bonusEarnings, boolean display,
+                                RandomGenerator random, Market market) {
         return 0;
     }
 }
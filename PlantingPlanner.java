@@ -0,0 +1,404 @@
+import exceptions.InvalidInputException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ * This class plans what to plant, where and when to end a number of days with as many objectCoins as
+ * expected, including when to register for titles.
+ * <p>
+ * The plan is made of rounds. At the start of a round every Plot is free, the Farmer may register for the
+ * next title, and then plants one kind of Crop on as many Plots as can be afforded, watering and
+ * fertilizing them as much as pays off the most. The round ends when the Crops are harvested. Trees are
+ * planted two Plots apart so that the tree adjacency rule of Farm.hasEmptyAdjacentPlots holds. Profits and
+ * EXP are the expected values from CropEconomics.
+ * <p>
+ * Rounds are searched depth first, best looking rounds first, so a good plan is found quickly and then
+ * improved for as long as the time budget allows. Branches that cannot beat the best plan so far are cut,
+ * as are states dominated by a state already reached on the same day with the same title, one with at least
+ * as many objectCoins and at least as much EXP, which can do anything they can. The first rounds are
+ * searched in parallel.
+ */
+public class PlantingPlanner {
+    private static final int FERTILIZER_COST = 10;
+
+    private final int rows;
+    private final int columns;
+    private final int horizon;
+    private final Crop[] crops = new Crop[CropFactory.CHOICES.length()];
+    private final double[] bestProfitPerDay = new double[FarmerTitle.values().length];
+
+    /**
+     * Constructor for PlantingPlanner.
+     * @param rows the number of rows of Plots of the farm.
+     * @param columns the number of columns of Plots of the farm.
+     * @param horizon the last day of the plan.
+     */
+    public PlantingPlanner(int rows, int columns, int horizon) {
+        this.rows = rows;
+        this.columns = columns;
+        this.horizon = horizon;
+        for (int i = 0; i < crops.length; i++) {
+            try {
+                crops[i] = CropFactory.create(CropFactory.CHOICES.charAt(i), 0);
+            } catch (InvalidInputException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        FarmerTitle[] titles = FarmerTitle.values();
+        for (int title = titles.length - 1; title >= 0; title--) {
+            double best = title + 1 < titles.length ? bestProfitPerDay[title + 1] : 0;
+            for (int i = 0; i < crops.length; i++) {
+                best = Math.max(best, option(titles[title], i).profit * capacity(crops[i]) / crops[i].getHarvestTime());
+            }
+            bestProfitPerDay[title] = best;
+        }
+    }
+
+    /**
+     * Plans the rest of the game for a Farmer.
+     * @param farmer the Farmer to plan for, with its current objectCoins, EXP and title.
+     * @param day the current day in the Game, on which every Plot is free.
+     * @param budgetMillis the time the search may take.
+     * @return the best plan found within the time budget.
+     */
+    public Plan plan(Farmer farmer, int day, long budgetMillis) {
+        Search search = new Search(System.nanoTime() + budgetMillis * 1_000_000L);
+        State start = new State(day, farmer.getTotalExpUnits(), farmer.getTitle(), farmer.getObjectCoins());
+        search.offer(new Round[0], start.coins);
+
+        List<Round> first = rounds(start);
+        first.parallelStream().forEach(round -> {
+            Round[] path = new Round[horizon - day + 1];
+            path[0] = round;
+            search.search(round.after, path, 1);
+        });
+        return new Plan(search.best.get(), search.bestCoins.get(), !search.timedOut);
+    }
+
+    /**
+     * Plans a default 5 x 10 farm for a new Farmer over 100 days, or the farm size, days and time budget
+     * given as arguments, and prints the plan.
+     */
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int columns = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int horizon = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        long budget = args.length > 3 ? Long.parseLong(args[3]) : 5000;
+        long start = System.nanoTime();
+        Plan plan = new PlantingPlanner(rows, columns, horizon).plan(new Farmer(), 1, budget);
+        System.out.println(plan);
+        System.out.println("  Planned in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+    }
+
+    /**
+     * Gets every round that can be started from a state, best looking first.
+     */
+    private List<Round> rounds(State state) {
+        List<Round> rounds = new ArrayList<>();
+        int level = (int) (state.exp / Farmer.EXP_PER_LEVEL) + 1;
+        FarmerTitle next = state.title.next();
+        boolean canRegister = next != null && level >= next.getLevelRequirement() && state.coins >= next.getCost();
+        for (int register = 0; register <= (canRegister ? 1 : 0); register++) {
+            FarmerTitle title = register == 1 ? next : state.title;
+            double coins = register == 1 ? state.coins - next.getCost() : state.coins;
+            for (int crop = 0; crop < crops.length; crop++) {
+                int end = state.day + crops[crop].getHarvestTime();
+                Option option = option(title, crop);
+                int plots = (int) Math.min(capacity(crops[crop]), Math.floor(coins / option.cost));
+                if (end > horizon || plots < 1 || option.profit <= 0) {
+                    continue;
+                }
+                State after = new State(end, state.exp + plots * option.exp, title, coins + plots * option.profit);
+                rounds.add(new Round(state.day, register == 1, CropFactory.CHOICES.charAt(crop), option.water,
+                        option.fertilizer, plots, after));
+            }
+        }
+        rounds.sort((a, b) -> Double.compare((b.after.coins - state.coins) / (b.after.day - state.day),
+                (a.after.coins - state.coins) / (a.after.day - state.day)));
+        return rounds;
+    }
+
+    /**
+     * Gets the amount of water and fertilizer with the highest expected profit for a Crop and title.
+     */
+    private Option option(FarmerTitle title, int crop) {
+        Crop seed = crops[crop];
+        char choice = CropFactory.CHOICES.charAt(crop);
+        Option best = null;
+        for (int water = seed.getWaterMin(); water <= seed.getWaterMax() + title.getWaterMaxBonus(); water++) {
+            for (int fertilizer = seed.getFertilizerMin(); fertilizer <= seed.getFertilizerMax() + title.getFertilizerMaxBonus(); fertilizer++) {
+                double profit = CropEconomics.getExpectedProfit(title, choice, water, fertilizer);
+                if (best == null || profit > best.profit) {
+                    long exp = Farmer.toExpUnits(0.5 + 0.5 * water + 4 * fertilizer + seed.getExp());
+                    int cost = seed.getCost() - title.getSeedCostReduction() + FERTILIZER_COST * fertilizer;
+                    best = new Option(water, fertilizer, cost, profit, exp);
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets the amount of Plots a Crop can be planted on at once.
+     */
+    private int capacity(Crop crop) {
+        if (crop.getType().equals("Tree")) {
+            return ((rows + 1) / 2) * ((columns + 1) / 2);
+        }
+        return rows * columns;
+    }
+
+    /**
+     * Gets the Plots a round plants on, as row * columns + column.
+     */
+    private int[] layout(Round round) {
+        int[] plots = new int[round.plots];
+        int count = 0;
+        boolean tree = crops[CropFactory.CHOICES.indexOf(round.crop)].getType().equals("Tree");
+        for (int i = 0; i < rows && count < plots.length; i += tree ? 2 : 1) {
+            for (int j = 0; j < columns && count < plots.length; j += tree ? 2 : 1) {
+                plots[count++] = i * columns + j;
+            }
+        }
+        return plots;
+    }
+
+    /**
+     * The state of the search between two rounds.
+     */
+    private static final class State {
+        private final int day;
+        private final long exp;
+        private final FarmerTitle title;
+        private final double coins;
+
+        private State(int day, long exp, FarmerTitle title, double coins) {
+            this.day = day;
+            this.exp = exp;
+            this.title = title;
+            this.coins = coins;
+        }
+
+        /**
+         * Gets the key of the day and title of the state.
+         */
+        private long key() {
+            return ((long) day << 8) | title.ordinal();
+        }
+
+        /**
+         * Checks if this state can do anything another state on the same day with the same title can.
+         * Comparing the levels instead of the EXP would not do, since a state with less EXP in the same
+         * level reaches the next level and the next title later.
+         */
+        private boolean dominates(State other) {
+            return coins >= other.coins && exp >= other.exp;
+        }
+    }
+
+    /**
+     * The best water and fertilizer for a Crop and title, with the cost, expected profit and EXP per Plot.
+     */
+    private static final class Option {
+        private final int water;
+        private final int fertilizer;
+        private final int cost;
+        private final double profit;
+        private final long exp;
+
+        private Option(int water, int fertilizer, int cost, double profit, long exp) {
+            this.water = water;
+            this.fertilizer = fertilizer;
+            this.cost = cost;
+            this.profit = profit;
+            this.exp = exp;
+        }
+    }
+
+    /**
+     * A round of the plan: registering or not, then planting one kind of Crop on a number of Plots.
+     */
+    private static final class Round {
+        private final int day;
+        private final boolean register;
+        private final char crop;
+        private final int water;
+        private final int fertilizer;
+        private final int plots;
+        private final State after;
+
+        private Round(int day, boolean register, char crop, int water, int fertilizer, int plots, State after) {
+            this.day = day;
+            this.register = register;
+            this.crop = crop;
+            this.water = water;
+            this.fertilizer = fertilizer;
+            this.plots = plots;
+            this.after = after;
+        }
+    }
+
+    /**
+     * The search for the best plan, shared by the threads searching it.
+     */
+    private final class Search {
+        private final long deadline;
+        // The states reached so far that no other state reached dominates, by day and title.
+        private final Map<Long, List<State>> reached = new ConcurrentHashMap<>();
+        private final AtomicReference<Round[]> best = new AtomicReference<>();
+        private final AtomicReference<Double> bestCoins = new AtomicReference<>(Double.NEGATIVE_INFINITY);
+        private volatile boolean timedOut = false;
+
+        private Search(long deadline) {
+            this.deadline = deadline;
+        }
+
+        private void search(State state, Round[] path, int depth) {
+            if (timedOut || System.nanoTime() > deadline) {
+                timedOut = true;
+                return;
+            }
+            double bound = state.coins + (horizon - state.day) * bestProfitPerDay[state.title.ordinal()];
+            if (bound <= bestCoins.get()) {
+                return;
+            }
+            if (!reach(state)) {
+                return;
+            }
+            offer(Arrays.copyOf(path, depth), state.coins);
+            for (Round round : rounds(state)) {
+                path[depth] = round;
+                search(round.after, path, depth + 1);
+            }
+        }
+
+        /**
+         * Adds a state to the states reached unless one of them dominates it.
+         * @return true if the state was added and false if it is dominated.
+         */
+        private boolean reach(State state) {
+            boolean[] added = {false};
+            reached.compute(state.key(), (key, states) -> {
+                List<State> frontier = states == null ? new ArrayList<>() : states;
+                for (State other : frontier) {
+                    if (other.dominates(state)) {
+                        return frontier;
+                    }
+                }
+                frontier.removeIf(state::dominates);
+                frontier.add(state);
+                added[0] = true;
+                return frontier;
+            });
+            return added[0];
+        }
+
+        private synchronized void offer(Round[] rounds, double coins) {
+            if (coins > bestCoins.get()) {
+                bestCoins.set(coins);
+                best.set(rounds);
+            }
+        }
+    }
+
+    /**
+     * A plan found by the planner.
+     */
+    public final class Plan {
+        private final Round[] rounds;
+        private final double expectedCoins;
+        private final boolean complete;
+
+        private Plan(Round[] rounds, double expectedCoins, boolean complete) {
+            this.rounds = rounds;
+            this.expectedCoins = expectedCoins;
+            this.complete = complete;
+        }
+
+        /**
+         * Gets the expected objectCoins at the end of the plan.
+         */
+        public double getExpectedCoins() {
+            return expectedCoins;
+        }
+
+        /**
+         * Gets whether the search finished within its time budget, in which case no better plan of rounds exists.
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+
+        /**
+         * Gets the amount of rounds in the plan.
+         */
+        public int getRoundCount() {
+            return rounds.length;
+        }
+
+        /**
+         * Gets the day a round starts.
+         */
+        public int getDay(int round) {
+            return rounds[round].day;
+        }
+
+        /**
+         * Gets whether the Farmer registers for the next title before a round.
+         */
+        public boolean isRegistering(int round) {
+            return rounds[round].register;
+        }
+
+        /**
+         * Gets the menu character of the Crop planted in a round.
+         */
+        public char getCrop(int round) {
+            return rounds[round].crop;
+        }
+
+        /**
+         * Gets the amount of times each Crop of a round is watered.
+         */
+        public int getWater(int round) {
+            return rounds[round].water;
+        }
+
+        /**
+         * Gets the amount of times each Crop of a round is fertilized.
+         */
+        public int getFertilizer(int round) {
+            return rounds[round].fertilizer;
+        }
+
+        /**
+         * Gets the Plots planted in a round, as row * columns + column.
+         */
+        public int[] getPlots(int round) {
+            return layout(rounds[round]);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for (Round round : rounds) {
+                builder.append("  DAY ").append(round.day).append(": ");
+                if (round.register) {
+                    builder.append("register, ");
+                }
+                builder.append("plant ").append(round.plots).append(" x ")
+                        .append(crops[CropFactory.CHOICES.indexOf(round.crop)].getName())
+                        .append(", water ").append(round.water).append(", fertilize ").append(round.fertilizer)
+                        .append(System.lineSeparator());
+            }
+            builder.append(String.format("  Expected objectCoins: %.2f%s", expectedCoins, complete ? "" : " (time budget reached)"));
+            return builder.toString();
+        }
+    }
+}
@@ -1,4 +1,5 @@
 import exceptions.*;
+import java.util.random.RandomGenerator;
 
 /**
  * <p>
@@ -21,10 +22,47 @@ public class Plot {
     private boolean rock = false;
     private boolean wither = false;
 
+    private final Farm farm;
+    private final int index;
+
     /**
      * Constructor for Plot.
      */
     public Plot(){
+        this(null, 0);
+    }
+
+    /**
+     * Constructor for a Plot of a Farm, which is told of every change to the Plot.
+     * @param farm the Farm the Plot belongs to.
+     * @param index the index of the Plot in the Farm, row * columns + column.
+     */
+    public Plot(Farm farm, int index){
+        this.farm = farm;
+        this.index = index;
+    }
+
+    /**
+     * Sets the whole state of the plot at once without telling its Farm, for plots restored or generated
+     * directly instead of through actions. The Farm must be rehashed afterwards.
+     * @param plowed whether the plot is plowed.
+     * @param rock whether the plot has a rock.
+     * @param crop the crop on the plot, NullCrop if there is none.
+     * @param wither whether the crop has been found to be withered.
+     */
+    void restore(boolean plowed, boolean rock, Crop crop, boolean wither){
+        this.plowed = plowed;
+        this.rock = rock;
+        this.crop = crop;
+        this.wither = wither;
+    }
+
+    /**
+     * Getter for the index of the Plot in its Farm.
+     * @return the index of the Plot, row * columns + column.
+     */
+    public int getIndex() {
+        return index;
     }
 
     /**
@@ -56,7 +94,9 @@ public class Plot {
      * @param newCrop the Crop that will be added to the Plot.
      */
     public void setCrop(Crop newCrop){
+        long state = PlotState.encode(this);
         this.crop = newCrop;
+        changed(state);
     }
 
     /**
@@ -66,12 +106,17 @@ public class Plot {
      * plot has no crop in it, 11 if the crop is mature, 4 if the crop has withered and 0 if there is no error.
      */
     public void water(int day) throws PlotNotPlowedException, PlotUnoccupiedException, PlotAlreadyMaturedException, CropWitheredException {
-        if (!plowed) throw new PlotNotPlowedException();
+        if (!plowed) throw PlotNotPlowedException.of(stackTraces());
         // if (crop == null) throw new PlotUnoccupiedException();
-        if (crop.getHarvestStatus(day)) throw new PlotAlreadyMaturedException();
-        if(hasWitheredCrop(day)) throw new CropWitheredException();
+        if (crop.getHarvestStatus(day)) throw PlotAlreadyMaturedException.of(stackTraces());
+        if(hasWitheredCrop(day)) throw CropWitheredException.of(stackTraces());
 
+        // NullCrop would throw the same, but without knowing whether the Farm wants a stack trace.
+        if (crop instanceof NullCrop) throw PlotUnoccupiedException.of(stackTraces());
+
+        long state = PlotState.encode(this);
         crop.addWater();
+        changed(state);
     }
     /**
      * Adds fertilizer to the plot if and only if the plot is plowed and has a crop that is not mature yet.
@@ -80,12 +125,17 @@ public class Plot {
      * 11 if the crop is mature, 4 if the crop has withered and 0 if there is no error.
      */
     public void fertilize(int day) throws PlotNotPlowedException, PlotUnoccupiedException, PlotAlreadyMaturedException, CropWitheredException {
-        if (!plowed) throw new PlotNotPlowedException();
+        if (!plowed) throw PlotNotPlowedException.of(stackTraces());
         // if (crop == null) throw new PlotUnoccupiedException();
-        if (crop.getHarvestStatus(day)) throw new PlotAlreadyMaturedException();
-        if (hasWitheredCrop(day)) throw new CropWitheredException();
+        if (crop.getHarvestStatus(day)) throw PlotAlreadyMaturedException.of(stackTraces());
+        if (hasWitheredCrop(day)) throw CropWitheredException.of(stackTraces());
+
+        // NullCrop would throw the same, but without knowing whether the Farm wants a stack trace.
+        if (crop instanceof NullCrop) throw PlotUnoccupiedException.of(stackTraces());
 
+        long state = PlotState.encode(this);
         crop.addFertilizer();
+        changed(state);
     }
 
     /**
@@ -95,11 +145,25 @@ public class Plot {
      * 12 if the plot has already been plowed without any plant, and 0 if there is no error.
      */
     public void plow(int day) throws CropWitheredException, PlotAlreadyOccupiedException, PlotAlreadyPlowedException {
-        if (hasWitheredCrop(day)) throw new CropWitheredException();
-        if (!(crop instanceof NullCrop)) throw new PlotAlreadyOccupiedException();
-        if (plowed) throw new PlotAlreadyPlowedException();
+        if (hasWitheredCrop(day)) throw CropWitheredException.of(stackTraces());
+        if (!(crop instanceof NullCrop)) throw PlotAlreadyOccupiedException.of(stackTraces());
+        if (plowed) throw PlotAlreadyPlowedException.of(stackTraces());
 
+        long state = PlotState.encode(this);
         plowed = true;
+        changed(state);
+    }
+
+    /**
+     * Puts or removes a rock on the plot, as done when a map is applied to its Farm.
+     * @param rock true to put a rock and false to remove it.
+     */
+    public void setRock(boolean rock){
+        if (this.rock != rock) {
+            long state = PlotState.encode(this);
+            this.rock = rock;
+            changed(state);
+        }
     }
 
     /**
@@ -108,9 +172,11 @@ public class Plot {
      */
     public void removeRock() throws NoRockException {
         if (rock) {
+            long state = PlotState.encode(this);
             rock = false;
+            changed(state);
         } else {
-            throw new NoRockException();
+            throw NoRockException.of(stackTraces());
         }
     }
 
@@ -119,21 +185,54 @@ public class Plot {
      * fertilizer amount to 0.
      */
     public void resetPlot(){
+        long state = PlotState.encode(this);
         plowed = false;
         // crop = null;
         crop = NullCrop.getInstance();
         wither = false;
+        changed(state);
     }
     /**
      * Gets the profit from harvesting the crop.
      * @param waterMaxBonus the Farmer stat for an additional bonus in calculating additional profit from watering.
      * @param fertilizerMaxBonus the Farmer stat for an additional bonus in calculating additional profit from fertilizing.
      * @param bonusEarnings the Farmer stat for additional bonus to base price when calculating profit.
+     * @param display whether the parts of the harvest calculation are displayed.
      * @return the profit gained from harvesting the crop in the plot.
      */
 
-    public int getHarvestProfit(int waterMaxBonus, int fertilizerMaxBonus, int bonusEarnings){
-        return crop.harvestCalculate(waterMaxBonus, fertilizerMaxBonus, bonusEarnings);
+    public int getHarvestProfit(int waterMaxBonus, int fertilizerMaxBonus, int bonusEarnings, boolean display){
+        return crop.harvestCalculate(waterMaxBonus, fertilizerMaxBonus, bonusEarnings, display);
+    }
+
+    /**
+     * Gets the profit from harvesting the crop, with the amount of products drawn from a given generator.
+     * @param waterMaxBonus the Farmer stat for an additional bonus in calculating additional profit from watering.
+     * @param fertilizerMaxBonus the Farmer stat for an additional bonus in calculating additional profit from fertilizing.
+     * @param bonusEarnings the Farmer stat for additional bonus to base price when calculating profit.
+     * @param display whether the parts of the harvest calculation are displayed.
+     * @param random the generator of the amount of products.
+     * @return the profit gained from harvesting the crop in the plot.
+     */
+    public int getHarvestProfit(int waterMaxBonus, int fertilizerMaxBonus, int bonusEarnings, boolean display,
+                                RandomGenerator random){
+        return crop.harvestCalculate(waterMaxBonus, fertilizerMaxBonus, bonusEarnings, display, random);
+    }
+
+    /**
+     * Gets the profit from harvesting the crop, with the amount of products drawn from a given generator and
+     * sold on a shared Market.
+     * @param waterMaxBonus the Farmer stat for an additional bonus in calculating additional profit from watering.
+     * @param fertilizerMaxBonus the Farmer stat for an additional bonus in calculating additional profit from fertilizing.
+     * @param bonusEarnings the Farmer stat for additional bonus to base price when calculating profit.
+     * @param display whether the parts of the harvest calculation are displayed.
+     * @param random the generator of the amount of products.
+     * @param market the market the products are sold on, or null to sell them at the base price.
+     * @return the profit gained from harvesting the crop in the plot.
+     */
+    public int getHarvestProfit(int waterMaxBonus, int fertilizerMaxBonus, int bonusEarnings, boolean display,
+                                RandomGenerator random, Market market){
+        return crop.harvestCalculate(waterMaxBonus, fertilizerMaxBonus, bonusEarnings, display, random, market);
     }
 
     /**
@@ -152,12 +251,31 @@ public class Plot {
      * the crop cannot be harvested yet and 0 if there is no error.
      */
     public boolean hasHarvestableCrop(int day) throws PlotUnoccupiedException, CropWitheredException, CropNotMaturedException {
-        if (crop instanceof NullCrop) throw new PlotUnoccupiedException();
-        if (hasWitheredCrop(day)) throw new CropWitheredException();
-        if (!crop.getHarvestStatus(day)) throw new CropNotMaturedException();
+        if (crop instanceof NullCrop) throw PlotUnoccupiedException.of(stackTraces());
+        if (hasWitheredCrop(day)) throw CropWitheredException.of(stackTraces());
+        if (!crop.getHarvestStatus(day)) throw CropNotMaturedException.of(stackTraces());
         return true;
     }
 
+    /**
+     * Gets the next day after the given day on which the crop on the plot matures or withers, if nothing
+     * else is done to the plot.
+     * @param day the current day in the Game.
+     * @return the day of the next change to the crop, or Integer.MAX_VALUE if the crop will not change.
+     */
+    public int getNextEventDay(int day){
+        if (wither){
+            return Integer.MAX_VALUE;
+        }
+        if (crop.getMaturityDay() > day){
+            return crop.getMaturityDay();
+        }
+        if (crop.getWitherDay() > day){
+            return crop.getWitherDay();
+        }
+        return Integer.MAX_VALUE;
+    }
+
     /**
      * Checks if the plot has a withered crop.
      * @param day the current day in the Game.
@@ -169,12 +287,48 @@ public class Plot {
         }
         // else if (crop != null && crop.witherCheck(day)){
         else if (crop.isWithered(day)){
+            long state = PlotState.encode(this);
             wither = true;
+            changed(state);
             return true;
         }
         return false;
     }
 
+    /**
+     * Getter for whether the plot has been found to have a withered crop, without checking the crop again.
+     * @return true if the plot has been marked as withered, and false if not.
+     */
+    public boolean isWithered(){
+        return wither;
+    }
+
+    /**
+     * Gets the key of the current state of the plot for the hash of its Farm.
+     * @return the key of the plot from ZobristHash.
+     */
+    public long hashKey(){
+        return ZobristHash.plotKey(index, this);
+    }
+
+    /**
+     * Tells the Farm of the plot that the plot has changed.
+     * @param state the packed state of the plot before it changed.
+     */
+    private void changed(long state){
+        if (farm != null) {
+            farm.plotChanged(this, state);
+        }
+    }
+
+    /**
+     * Checks if the errors of actions on the plot fill in their stack traces, which they do unless its
+     * Farm was told not to.
+     */
+    private boolean stackTraces(){
+        return farm == null || farm.hasStackTraces();
+    }
+
     // /**
     //  * Checks if the plot has a crop.
     //  * @return true if the plot has crop, and false if not.
@@ -192,9 +346,9 @@ public class Plot {
      */
 
     public boolean isPlantable() throws PlotHasRockException, PlotAlreadyOccupiedException, PlotNotPlowedException {
-        if (rock) throw new PlotHasRockException();
-        if (!(crop instanceof NullCrop)) throw new PlotAlreadyOccupiedException();
-        if (!plowed) throw new PlotNotPlowedException();
+        if (rock) throw PlotHasRockException.of(stackTraces());
+        if (!(crop instanceof NullCrop)) throw PlotAlreadyOccupiedException.of(stackTraces());
+        if (!plowed) throw PlotNotPlowedException.of(stackTraces());
         return true;
     }
 
@@ -230,12 +384,12 @@ public class Plot {
      */
     public char getCharStatus(int day){ // Text characters before GUI is implemented.
         char status;
-        if(!plowed){
-            return '0';
-        }
-        else if(rock){
+        if(rock){
             return 'X';
         }
+        else if(!plowed){
+            return '0';
+        }
         // else if(crop == null){
         else if(crop instanceof NullCrop){
             return '#';
@@ -0,0 +1,13 @@
+/**
+ * <p>
+ * This interface is for objects that follow every change to the Plots of a Farm, such as the snapshots of
+ * a game. Listeners are called on the thread changing the Plot, right after the change.
+ */
+public interface PlotListener {
+    /**
+     * Called after a Plot has changed.
+     * @param plot the Plot that changed.
+     * @param oldState the packed state of the Plot before it changed, see PlotState.
+     */
+    void plotChanged(Plot plot, long oldState);
+}
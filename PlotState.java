@@ -0,0 +1,102 @@
+import exceptions.InvalidInputException;
+
+/**
+ * <p>
+ * This class packs the whole state of a Plot into a long: whether it is plowed, has a rock or a withered
+ * Crop, and which Crop it has, when it was planted and how much it was watered and fertilized. An empty
+ * unplowed Plot has a state of 0.
+ * <p>
+ * Water and fertilizer are kept up to MAX_AMOUNT and saturate above it, so a Crop watered more often than
+ * that is restored with MAX_AMOUNT. This never changes how it grows or sells, since every minimum and
+ * maximum of a Crop, with every Farmer bonus, is far below it.
+ * <p>
+ * Packed states are what the Farm's hash is made from and what snapshots of a game store for each Plot.
+ */
+public final class PlotState {
+    private static final int PLOWED = 1;
+    private static final int ROCK = 2;
+    private static final int WITHERED = 4;
+    /**
+     * The most water or fertilizer a packed state holds.
+     */
+    public static final int MAX_AMOUNT = (1 << 11) - 1;
+
+    private static final int CROP_SHIFT = 3;
+    private static final int WATER_SHIFT = 11;
+    private static final int FERTILIZER_SHIFT = 22;
+    private static final int DATE_SHIFT = 33;
+
+    private PlotState() {}
+
+    /**
+     * Packs the state of a Plot.
+     * @param plot the Plot.
+     * @return the packed state of the Plot.
+     */
+    public static long encode(Plot plot) {
+        Crop crop = plot.getCrop();
+        long flags = (plot.getPlow() ? PLOWED : 0) | (plot.getRock() ? ROCK : 0) | (plot.isWithered() ? WITHERED : 0);
+        return flags
+                | (long) CropFactory.getChoice(crop) << CROP_SHIFT
+                | (long) saturate(crop.getWaterAmount()) << WATER_SHIFT
+                | (long) saturate(crop.getFertilizerAmount()) << FERTILIZER_SHIFT
+                | (long) crop.getDate() << DATE_SHIFT;
+    }
+
+    public static boolean isPlowed(long state) {
+        return (state & PLOWED) != 0;
+    }
+
+    public static boolean hasRock(long state) {
+        return (state & ROCK) != 0;
+    }
+
+    public static boolean isWithered(long state) {
+        return (state & WITHERED) != 0;
+    }
+
+    /**
+     * Gets the Crop of a packed state.
+     * @param state the packed state.
+     * @return the menu character of the Crop, or 0 if there is none.
+     */
+    public static char getCrop(long state) {
+        return (char) ((state >>> CROP_SHIFT) & 0xFF);
+    }
+
+    public static int getWater(long state) {
+        return (int) ((state >>> WATER_SHIFT) & MAX_AMOUNT);
+    }
+
+    public static int getFertilizer(long state) {
+        return (int) ((state >>> FERTILIZER_SHIFT) & MAX_AMOUNT);
+    }
+
+    /**
+     * Sets a Plot to a packed state without telling its Farm, which must be rehashed afterwards.
+     * @param plot the Plot to restore.
+     * @param state the packed state.
+     * @throws InvalidInputException if the state has a Crop that does not exist.
+     */
+    static void restore(Plot plot, long state) throws InvalidInputException {
+        Crop crop = NullCrop.getInstance();
+        if (getCrop(state) != 0) {
+            crop = CropFactory.create(getCrop(state), getDate(state));
+            crop.setAmounts(getWater(state), getFertilizer(state));
+        }
+        plot.restore(isPlowed(state), hasRock(state), crop, isWithered(state));
+    }
+
+    /**
+     * Gets the day the Crop of a packed state was planted.
+     * @param state the packed state.
+     * @return the day the Crop was planted, 0 if there is none.
+     */
+    public static int getDate(long state) {
+        return (int) (state >>> DATE_SHIFT);
+    }
+
+    private static int saturate(int amount) {
+        return Math.min(amount, MAX_AMOUNT);
+    }
+}
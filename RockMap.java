@@ -0,0 +1,102 @@
+/**
+ * <p>
+ * This class is a layout of rocks on a farm of a number of rows and columns, stored as a bitset with one
+ * bit per Plot in row-major order, so that even very large layouts stay small.
+ */
+public class RockMap {
+    private final int rows;
+    private final int columns;
+    private final long[] bits;
+
+    /**
+     * Constructor for a RockMap without rocks.
+     * @param rows the number of rows of Plots.
+     * @param columns the number of columns of Plots.
+     */
+    public RockMap(int rows, int columns) {
+        this(rows, columns, new long[(int) (((long) rows * columns + 63) >>> 6)]);
+    }
+
+    /**
+     * Constructor for a RockMap from a bitset.
+     * @param rows the number of rows of Plots.
+     * @param columns the number of columns of Plots.
+     * @param bits the bitset, bit row * columns + column being set for a rock.
+     */
+    RockMap(int rows, int columns, long[] bits) {
+        if (rows < 0 || columns < 0) {
+            throw new IllegalArgumentException("Invalid map size: " + rows + "x" + columns);
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.bits = bits;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Checks if there is a rock on a Plot.
+     * @param x the row of the Plot.
+     * @param y the column of the Plot.
+     * @return true if there is a rock and false if not.
+     */
+    public boolean hasRock(int x, int y) {
+        long index = (long) x * columns + y;
+        return (bits[(int) (index >>> 6)] & (1L << index)) != 0;
+    }
+
+    /**
+     * Puts or removes a rock on a Plot.
+     * @param x the row of the Plot.
+     * @param y the column of the Plot.
+     * @param rock true to put a rock and false to remove it.
+     */
+    public void setRock(int x, int y, boolean rock) {
+        long index = (long) x * columns + y;
+        if (rock) {
+            bits[(int) (index >>> 6)] |= 1L << index;
+        } else {
+            bits[(int) (index >>> 6)] &= ~(1L << index);
+        }
+    }
+
+    /**
+     * Counts the rocks of the map.
+     * @return the number of Plots with a rock.
+     */
+    public long countRocks() {
+        long count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the words of the bitset, bit row * columns + column being set for a rock.
+     */
+    long[] getBits() {
+        return bits;
+    }
+
+    /**
+     * Gets the map as text, one line per row with X for a rock and . for no rock, as read by MapGenerator.read.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder((columns + 1) * rows);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                builder.append(hasRock(i, j) ? 'X' : '.');
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * <p>
+ * This class is a rule made of conditions on GameCounters, all of which must hold for the rule to be
+ * satisfied, such as an achievement or whether an action is shown in the menu.
+ * <p>
+ * Rules only describe their conditions and hold no state, so the same Rule can be added to the RuleEngine
+ * of every game.
+ */
+public final class Rule {
+    private final String name;
+    private final String description;
+    private final Condition[] conditions;
+
+    /**
+     * Constructor for Rule.
+     * @param name the name of the rule.
+     * @param description what has to be done to satisfy the rule.
+     * @param conditions the conditions that must all hold.
+     */
+    public Rule(String name, String description, Condition... conditions) {
+        this.name = name;
+        this.description = description;
+        this.conditions = conditions.clone();
+    }
+
+    /**
+     * Getter for the name of the rule.
+     * @return the name of the rule.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter for the description of the rule.
+     * @return what has to be done to satisfy the rule.
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Gets the amount of conditions of the rule.
+     * @return the amount of conditions.
+     */
+    public int getConditionCount() {
+        return conditions.length;
+    }
+
+    /**
+     * Gets a condition of the rule.
+     * @param index the index of the condition.
+     * @return the condition.
+     */
+    public Condition getCondition(int index) {
+        return conditions[index];
+    }
+
+    /**
+     * Creates a condition that holds while a counter is at least a threshold.
+     * @param counter the counter.
+     * @param threshold the lowest value of the counter for which the condition holds.
+     * @return the condition.
+     */
+    public static Condition atLeast(GameCounter counter, long threshold) {
+        return new Condition(counter, threshold, true);
+    }
+
+    /**
+     * Creates a condition that holds while a counter is at most a threshold.
+     * @param counter the counter.
+     * @param threshold the highest value of the counter for which the condition holds.
+     * @return the condition.
+     */
+    public static Condition atMost(GameCounter counter, long threshold) {
+        return new Condition(counter, threshold, false);
+    }
+
+    /**
+     * A comparison of a counter with a threshold.
+     */
+    public static final class Condition {
+        private final GameCounter counter;
+        private final long threshold;
+        private final boolean atLeast;
+
+        private Condition(GameCounter counter, long threshold, boolean atLeast) {
+            this.counter = counter;
+            this.threshold = threshold;
+            this.atLeast = atLeast;
+        }
+
+        public GameCounter getCounter() {
+            return counter;
+        }
+
+        public long getThreshold() {
+            return threshold;
+        }
+
+        /**
+         * Checks if the condition holds for the counter at least the threshold, rather than at most.
+         * @return true for an at least condition and false for an at most condition.
+         */
+        public boolean isAtLeast() {
+            return atLeast;
+        }
+
+        /**
+         * Checks if the condition holds for a value of its counter.
+         * @param value the value of the counter.
+         * @return true if the condition holds and false if not.
+         */
+        public boolean test(long value) {
+            return atLeast ? value >= threshold : value <= threshold;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * This class keeps the GameCounters of a game and tracks which of its Rules are satisfied.
+ * <p>
+ * The conditions of every Rule are compiled into sorted thresholds per counter. When a counter changes
+ * from one value to another, only the conditions whose thresholds lie between the two values can change,
+ * so only those are found by binary search and flipped, and each Rule keeps a count of its conditions that
+ * hold. Updating a counter therefore costs the same however many Rules there are, apart from the Rules
+ * whose conditions actually change.
+ * <p>
+ * Rules added as achievements are completed the first time all of their conditions hold, and can then be
+ * polled once with pollCompleted. Other Rules are only checked with isSatisfied.
+ */
+public class RuleEngine {
+    private static final int COUNTERS = GameCounter.values().length;
+
+    private final long[] values = new long[COUNTERS];
+
+    private final ArrayList<Rule> rules = new ArrayList<>();
+    private final Map<Rule, Integer> ids = new IdentityHashMap<>();
+    private int[] holding = new int[8];
+    private boolean[] achievement = new boolean[8];
+    private boolean[] completed = new boolean[8];
+    private final ArrayDeque<Rule> newlyCompleted = new ArrayDeque<>();
+
+    private int conditionCount = 0;
+    private int[] conditionRule = new int[8];
+    private boolean[] conditionHolds = new boolean[8];
+    private Rule.Condition[] conditions = new Rule.Condition[8];
+
+    private final boolean[] dirty = new boolean[COUNTERS];
+    private final long[][] atLeastThresholds = new long[COUNTERS][0];
+    private final int[][] atLeastConditions = new int[COUNTERS][0];
+    private final long[][] atMostThresholds = new long[COUNTERS][0];
+    private final int[][] atMostConditions = new int[COUNTERS][0];
+
+    /**
+     * Adds a Rule that is only checked with isSatisfied.
+     * @param rule the Rule to add.
+     */
+    public void add(Rule rule) {
+        add(rule, false);
+    }
+
+    /**
+     * Adds a Rule that is completed the first time all of its conditions hold.
+     * @param rule the achievement to add.
+     */
+    public void addAchievement(Rule rule) {
+        add(rule, true);
+    }
+
+    private void add(Rule rule, boolean isAchievement) {
+        if (ids.containsKey(rule)) {
+            return;
+        }
+        int id = rules.size();
+        rules.add(rule);
+        ids.put(rule, id);
+        if (id == holding.length) {
+            holding = Arrays.copyOf(holding, id * 2);
+            achievement = Arrays.copyOf(achievement, id * 2);
+            completed = Arrays.copyOf(completed, id * 2);
+        }
+        achievement[id] = isAchievement;
+        for (int i = 0; i < rule.getConditionCount(); i++) {
+            Rule.Condition condition = rule.getCondition(i);
+            if (conditionCount == conditions.length) {
+                conditions = Arrays.copyOf(conditions, conditionCount * 2);
+                conditionRule = Arrays.copyOf(conditionRule, conditionCount * 2);
+                conditionHolds = Arrays.copyOf(conditionHolds, conditionCount * 2);
+            }
+            conditions[conditionCount] = condition;
+            conditionRule[conditionCount] = id;
+            conditionHolds[conditionCount] = condition.test(values[condition.getCounter().ordinal()]);
+            if (conditionHolds[conditionCount]) {
+                holding[id]++;
+            }
+            dirty[condition.getCounter().ordinal()] = true;
+            conditionCount++;
+        }
+        checkCompleted(id);
+    }
+
+    /**
+     * Gets the value of a counter.
+     * @param counter the counter.
+     * @return the value of the counter.
+     */
+    public long get(GameCounter counter) {
+        return values[counter.ordinal()];
+    }
+
+    /**
+     * Adds an amount to a counter.
+     * @param counter the counter.
+     * @param delta the amount to add, which may be negative.
+     */
+    public void increment(GameCounter counter, long delta) {
+        set(counter, values[counter.ordinal()] + delta);
+    }
+
+    /**
+     * Sets a counter, updating the conditions whose thresholds it crosses.
+     * @param counter the counter.
+     * @param value the new value of the counter.
+     */
+    public void set(GameCounter counter, long value) {
+        int index = counter.ordinal();
+        long old = values[index];
+        if (old == value) {
+            return;
+        }
+        values[index] = value;
+        if (dirty[index]) {
+            compile(index);
+        }
+        if (value > old) {
+            // At least conditions with thresholds in (old, value] now hold, at most ones in [old, value) no longer do
+            flip(atLeastThresholds[index], atLeastConditions[index], old + 1, value + 1, true);
+            flip(atMostThresholds[index], atMostConditions[index], old, value, false);
+        } else {
+            flip(atLeastThresholds[index], atLeastConditions[index], value + 1, old + 1, false);
+            flip(atMostThresholds[index], atMostConditions[index], value, old, true);
+        }
+    }
+
+    /**
+     * Checks if every condition of a Rule holds.
+     * @param rule the Rule, which must have been added.
+     * @return true if the Rule is satisfied and false if not.
+     */
+    public boolean isSatisfied(Rule rule) {
+        int id = ids.get(rule);
+        return holding[id] == rule.getConditionCount();
+    }
+
+    /**
+     * Checks if an achievement has been completed.
+     * @param rule the achievement, which must have been added.
+     * @return true if the achievement was completed at some point and false if not.
+     */
+    public boolean isCompleted(Rule rule) {
+        return completed[ids.get(rule)];
+    }
+
+    /**
+     * Gets the next achievement that was completed and has not been polled yet.
+     * @return the achievement, or null if there is none.
+     */
+    public Rule pollCompleted() {
+        return newlyCompleted.poll();
+    }
+
+    /**
+     * Sets every counter back to 0 and forgets which achievements were completed, as in a new engine with
+     * the same Rules.
+     */
+    public void reset() {
+        for (GameCounter counter : GameCounter.values()) {
+            set(counter, 0);
+        }
+        Arrays.fill(completed, false);
+        newlyCompleted.clear();
+        for (int id = 0; id < rules.size(); id++) {
+            checkCompleted(id);
+        }
+    }
+
+    /**
+     * Gets the amount of Rules added.
+     * @return the amount of Rules.
+     */
+    public int getRuleCount() {
+        return rules.size();
+    }
+
+    private void flip(long[] thresholds, int[] ids, long from, long to, boolean holds) {
+        for (int i = lowerBound(thresholds, from), end = lowerBound(thresholds, to); i < end; i++) {
+            int condition = ids[i];
+            if (conditionHolds[condition] == holds) {
+                continue;
+            }
+            conditionHolds[condition] = holds;
+            int rule = conditionRule[condition];
+            if (holds) {
+                holding[rule]++;
+                checkCompleted(rule);
+            } else {
+                holding[rule]--;
+            }
+        }
+    }
+
+    private void checkCompleted(int rule) {
+        if (achievement[rule] && !completed[rule] && holding[rule] == rules.get(rule).getConditionCount()) {
+            completed[rule] = true;
+            newlyCompleted.add(rules.get(rule));
+        }
+    }
+
+    /**
+     * Sorts the thresholds of the conditions on a counter after Rules were added.
+     */
+    private void compile(int counter) {
+        ArrayList<Integer> atLeast = new ArrayList<>();
+        ArrayList<Integer> atMost = new ArrayList<>();
+        for (int i = 0; i < conditionCount; i++) {
+            if (conditions[i].getCounter().ordinal() == counter) {
+                (conditions[i].isAtLeast() ? atLeast : atMost).add(i);
+            }
+        }
+        atLeast.sort((a, b) -> Long.compare(conditions[a].getThreshold(), conditions[b].getThreshold()));
+        atMost.sort((a, b) -> Long.compare(conditions[a].getThreshold(), conditions[b].getThreshold()));
+        atLeastConditions[counter] = atLeast.stream().mapToInt(Integer::intValue).toArray();
+        atLeastThresholds[counter] = atLeast.stream().mapToLong(i -> conditions[i].getThreshold()).toArray();
+        atMostConditions[counter] = atMost.stream().mapToInt(Integer::intValue).toArray();
+        atMostThresholds[counter] = atMost.stream().mapToLong(i -> conditions[i].getThreshold()).toArray();
+        dirty[counter] = false;
+    }
+
+    /**
+     * Gets the index of the first threshold that is at least a value.
+     */
+    private static int lowerBound(long[] thresholds, long value) {
+        int low = 0;
+        int high = thresholds.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (thresholds[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,188 @@
+import exceptions.InvalidInputException;
+
+import java.util.SplittableRandom;
+
+/**
+ * <p>
+ * This class builds mid-game scenarios for benchmarks and load tests: a farm of mixed Crops of different
+ * ages, partly watered and fertilized, some withered, with rocks, plowed and unplowed land, and a Farmer of
+ * any title, as described by a ScenarioSpec.
+ * <p>
+ * The state is written straight into the Plots instead of going through actions, in one pass over the
+ * farm in row-major order, and the hash of the farm is computed once at the end. Every random choice comes
+ * from a generator seeded with the given seed, so the same seed and spec always build the same scenario.
+ * <p>
+ * Scenarios are consistent with the rules of the game. A Crop that has not withered is never older than its
+ * harvest time, and if it is harvestable it has had at least its minimum water and fertilizer. Withered
+ * Crops are past their harvest time. Trees have no Crops around them, so a tree is replaced by another
+ * Crop, or by nothing if the mix only has trees, when a neighbour is already planted.
+ */
+public final class ScenarioGenerator {
+    private static final long ROCK_SALT = 0x632BE59BD9B4E019L;
+
+    private ScenarioGenerator() {}
+
+    /**
+     * Builds a scenario.
+     * @param seed the seed of the scenario.
+     * @param spec the description of the scenario.
+     * @return a game in the state of the scenario.
+     */
+    public static GameManager generate(long seed, ScenarioSpec spec) {
+        int rows = spec.getRows();
+        int columns = spec.getColumns();
+        int day = spec.getDay();
+        Crop[] prototypes = new Crop[CropFactory.CHOICES.length()];
+        boolean[] trees = new boolean[prototypes.length];
+        int oldest = 0;
+        for (int i = 0; i < prototypes.length; i++) {
+            prototypes[i] = create(i, 0);
+            trees[i] = prototypes[i].getType().equals("Tree");
+            oldest = Math.max(oldest, prototypes[i].getHarvestTime());
+        }
+        double[] ages = spec.getAgeHistogram();
+        if (day <= oldest + ages.length) {
+            throw new IllegalArgumentException("Day " + day + " is too early for Crops that old.");
+        }
+        double[] mix = cumulative(spec.getCropMix(), null, false);
+        double[] otherMix = cumulative(spec.getCropMix(), trees, true);
+        double[] ageWeights = cumulative(ages, null, false);
+
+        SplittableRandom random = new SplittableRandom(seed);
+        RockMap rocks = MapGenerator.generate(seed ^ ROCK_SALT, rows, columns, spec.getRockDensity());
+        Farm farm = new Farm(rows, columns);
+        // What was put on the Plots of the row above and of this row: 0 for nothing, 1 for a Crop and 2 for a tree
+        byte[] above = new byte[columns + 2];
+        byte[] current = new byte[columns + 2];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                int crop = -1;
+                if (random.nextDouble() < spec.getPlantedFraction()) {
+                    int left = current[j];
+                    int tree = Math.max(Math.max(above[j], above[j + 1]), Math.max(above[j + 2], left));
+                    crop = pick(mix, random.nextDouble());
+                    if (tree == 2) {
+                        crop = -1;
+                    } else if (trees[crop] && tree == 1) {
+                        crop = otherMix == null ? -1 : pick(otherMix, random.nextDouble());
+                    }
+                }
+                Plot plot = farm.getPlot(i, j);
+                if (crop < 0) {
+                    boolean rock = rocks.hasRock(i, j);
+                    plot.restore(!rock && random.nextDouble() < spec.getPlowedFraction(), rock, NullCrop.getInstance(), false);
+                    current[j + 1] = 0;
+                    continue;
+                }
+                Crop prototype = prototypes[crop];
+                int harvestTime = prototype.getHarvestTime();
+                int age = pick(ageWeights, random.nextDouble());
+                boolean withered = random.nextDouble() < spec.getWitherRatio();
+                age = withered ? harvestTime + 1 + age : Math.min(age, harvestTime);
+                Crop planted = create(crop, day - age);
+                if (!withered && age == harvestTime) {
+                    planted.setAmounts(between(random, prototype.getWaterMin(), prototype.getWaterMax()),
+                            between(random, prototype.getFertilizerMin(), prototype.getFertilizerMax()));
+                } else {
+                    planted.setAmounts(between(random, 0, prototype.getWaterMax()),
+                            between(random, 0, prototype.getFertilizerMax()));
+                }
+                plot.restore(true, false, planted, withered);
+                current[j + 1] = (byte) (trees[crop] ? 2 : 1);
+            }
+            byte[] swap = above;
+            above = current;
+            current = swap;
+        }
+        farm.rehash();
+
+        Farmer farmer = new Farmer(spec.getTitle(), spec.getLevel(), random.nextLong(Farmer.EXP_PER_LEVEL),
+                spec.getObjectCoins());
+        return new GameManager(farm, farmer, day);
+    }
+
+    /**
+     * Builds a scenario and prints how long it took and what is on the farm. The arguments are the seed,
+     * rows and columns, all optional.
+     */
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        int rows = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int columns = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        long start = System.nanoTime();
+        GameManager game = generate(seed, new ScenarioSpec(rows, columns));
+        long elapsed = System.nanoTime() - start;
+        int[] counts = new int[128];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                counts[game.getFarm().getPlot(i, j).getCharStatus(game.getDay())]++;
+            }
+        }
+        if ((long) rows * columns <= 10_000) {
+            for (int i = 0; i < rows; i++) {
+                StringBuilder line = new StringBuilder("  ");
+                for (int j = 0; j < columns; j++) {
+                    line.append(game.getFarm().getPlot(i, j).getCharStatus(game.getDay()));
+                }
+                System.out.println(line);
+            }
+        }
+        StringBuilder line = new StringBuilder("  ");
+        for (char c = 0; c < counts.length; c++) {
+            if (counts[c] > 0) {
+                line.append(c).append(": ").append(counts[c]).append("  ");
+            }
+        }
+        System.out.println(line);
+        System.out.printf("  %dx%d scenario on day %d generated in %d ms, hash %016x.%n", rows, columns,
+                game.getDay(), elapsed / 1_000_000, game.stateHash());
+    }
+
+    private static Crop create(int crop, int day) {
+        try {
+            return CropFactory.create(CropFactory.CHOICES.charAt(crop), day);
+        } catch (InvalidInputException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int between(SplittableRandom random, int min, int max) {
+        return min + (int) (random.nextDouble() * (max - min + 1));
+    }
+
+    /**
+     * Gets the cumulative weights, normalized to end at 1.
+     * @param weights the weights.
+     * @param exclude the weights to leave out, or null to keep every weight.
+     * @param excluded the value of exclude that leaves a weight out.
+     * @return the cumulative weights, or null if every weight is 0.
+     */
+    private static double[] cumulative(double[] weights, boolean[] exclude, boolean excluded) {
+        double[] cumulative = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (exclude == null || exclude[i] != excluded) {
+                sum += weights[i];
+            }
+            cumulative[i] = sum;
+        }
+        if (sum == 0) {
+            return null;
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    /**
+     * Gets the index a uniform value falls on in cumulative weights.
+     */
+    private static int pick(double[] cumulative, double value) {
+        int index = 0;
+        while (index < cumulative.length - 1 && value >= cumulative[index]) {
+            index++;
+        }
+        return index;
+    }
+}
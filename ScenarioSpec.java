@@ -0,0 +1,201 @@
+/**
+ * <p>
+ * This class describes the scenarios made by ScenarioGenerator: the size of the farm, the day, how the
+ * Plots are distributed between Crops, rocks and empty land, and the Farmer. A new spec describes a 5 x 10
+ * farm on day 30 with every Crop equally likely, which can then be changed with the setters.
+ */
+public class ScenarioSpec {
+    private int rows = 5;
+    private int columns = 10;
+    private int day = 30;
+    private double[] cropMix = {1, 1, 1, 1, 1, 1, 1, 1};
+    private double[] ageHistogram = {1, 1, 1, 1, 1, 1, 1, 1, 1, 1};
+    private double plantedFraction = 0.7;
+    private double witherRatio = 0.1;
+    private double plowedFraction = 0.5;
+    private double rockDensity = 0.1;
+    private FarmerTitle title = FarmerTitle.FARMER;
+    private int level = 5;
+    private int objectCoins = 500;
+
+    /**
+     * Constructor for ScenarioSpec with the default farm size.
+     */
+    public ScenarioSpec() {}
+
+    /**
+     * Constructor for ScenarioSpec.
+     * @param rows the number of rows of Plots.
+     * @param columns the number of columns of Plots.
+     */
+    public ScenarioSpec(int rows, int columns) {
+        setSize(rows, columns);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Sets the size of the farm.
+     * @param rows the number of rows of Plots.
+     * @param columns the number of columns of Plots.
+     */
+    public void setSize(int rows, int columns) {
+        if (rows < 1 || columns < 1) {
+            throw new IllegalArgumentException("Invalid farm size: " + rows + "x" + columns);
+        }
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    public int getDay() {
+        return day;
+    }
+
+    /**
+     * Sets the day of the scenario, which must leave room for the oldest Crops to have been planted on day 1.
+     * @param day the current day.
+     */
+    public void setDay(int day) {
+        if (day < 1) {
+            throw new IllegalArgumentException("Invalid day: " + day);
+        }
+        this.day = day;
+    }
+
+    /**
+     * Gets the relative weights of the Crops, in the order of CropFactory.CHOICES.
+     * @return a copy of the weights.
+     */
+    public double[] getCropMix() {
+        return cropMix.clone();
+    }
+
+    /**
+     * Sets how likely each Crop is to be planted on a planted Plot. Trees are replaced by other Crops where
+     * they would break the adjacency rule.
+     * @param cropMix the relative weights of the Crops, in the order of CropFactory.CHOICES.
+     */
+    public void setCropMix(double... cropMix) {
+        this.cropMix = weights(cropMix, CropFactory.CHOICES.length());
+    }
+
+    /**
+     * Gets the relative weights of the ages of Crops in days.
+     * @return a copy of the weights.
+     */
+    public double[] getAgeHistogram() {
+        return ageHistogram.clone();
+    }
+
+    /**
+     * Sets how likely each age in days is for a Crop that has not withered, ages past a Crop's harvest
+     * time counting as its harvest time, that is as harvestable. Withered Crops are that much older than
+     * their harvest time.
+     * @param ageHistogram the relative weights of the ages from 0 days.
+     */
+    public void setAgeHistogram(double... ageHistogram) {
+        this.ageHistogram = weights(ageHistogram, ageHistogram.length);
+    }
+
+    public double getPlantedFraction() {
+        return plantedFraction;
+    }
+
+    /**
+     * Sets the fraction of Plots with a Crop.
+     * @param plantedFraction the fraction, from 0 to 1.
+     */
+    public void setPlantedFraction(double plantedFraction) {
+        this.plantedFraction = fraction(plantedFraction);
+    }
+
+    public double getWitherRatio() {
+        return witherRatio;
+    }
+
+    /**
+     * Sets the fraction of Crops that have withered.
+     * @param witherRatio the fraction, from 0 to 1.
+     */
+    public void setWitherRatio(double witherRatio) {
+        this.witherRatio = fraction(witherRatio);
+    }
+
+    public double getPlowedFraction() {
+        return plowedFraction;
+    }
+
+    /**
+     * Sets the fraction of Plots without a Crop or rock that are plowed.
+     * @param plowedFraction the fraction, from 0 to 1.
+     */
+    public void setPlowedFraction(double plowedFraction) {
+        this.plowedFraction = fraction(plowedFraction);
+    }
+
+    public double getRockDensity() {
+        return rockDensity;
+    }
+
+    /**
+     * Sets the density of the rock map generated by MapGenerator. Rocks are only kept on Plots without a Crop.
+     * @param rockDensity the density, from 0 to 1.
+     */
+    public void setRockDensity(double rockDensity) {
+        this.rockDensity = fraction(rockDensity);
+    }
+
+    public FarmerTitle getTitle() {
+        return title;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getObjectCoins() {
+        return objectCoins;
+    }
+
+    /**
+     * Sets the Farmer of the scenario.
+     * @param title the title of the Farmer.
+     * @param level the level of the Farmer.
+     * @param objectCoins the objectCoins of the Farmer.
+     */
+    public void setFarmer(FarmerTitle title, int level, int objectCoins) {
+        if (level < title.getLevelRequirement()) {
+            throw new IllegalArgumentException("Level " + level + " is too low for " + title.getName());
+        }
+        this.title = title;
+        this.level = level;
+        this.objectCoins = objectCoins;
+    }
+
+    private static double fraction(double value) {
+        if (!(value >= 0 && value <= 1)) {
+            throw new IllegalArgumentException("Invalid fraction: " + value);
+        }
+        return value;
+    }
+
+    private static double[] weights(double[] weights, int length) {
+        double sum = 0;
+        for (double weight : weights) {
+            if (!(weight >= 0)) {
+                throw new IllegalArgumentException("Invalid weight: " + weight);
+            }
+            sum += weight;
+        }
+        if (weights.length != length || sum <= 0) {
+            throw new IllegalArgumentException("Expected " + length + " weights that are not all 0.");
+        }
+        return weights.clone();
+    }
+}
@@ -0,0 +1,302 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>
+ * This class runs a script of commands on games without a console, for regression tests and bulk
+ * automation. A script has one command per line in the grammar of the menu: the menu character of the
+ * action, the row and column of the Plot for actions on a Plot, the menu character of the Crop for PLANT
+ * and Y to confirm REGISTER and END DAY, such as "P 0 0", "T 1 2 C" and "E Y". REGISTER and END DAY
+ * without Y are cancelled like in the menu, and blank lines are skipped.
+ * <p>
+ * The script is memory-mapped a window at a time and parsed in place a byte at a time, without creating
+ * strings. Every command is applied through GameManager.applyCommand, to games whose errors have no stack
+ * traces, since most commands of a script fail and only their outcome codes are kept. When a game ends,
+ * the commands after it are applied to a new game, seeded with the seed of the run plus the number of the
+ * game if a seed is given.
+ * <p>
+ * The outcome of every command is written to a log as one byte, its outcome code from Telemetry.code, and
+ * GAME_OVER is written after the command that ended a game.
+ * <p>
+ * Every checkpoint interval, the log is forced to disk and a checkpoint is written with the position in
+ * the script, the length of the log and a GameSnapshot of the current game. A run started again with a
+ * checkpoint resumes from it, so a run that crashed only repeats the commands after its last checkpoint.
+ * Counters that snapshots do not hold, such as the harvests of each Crop, start again from 0 for the game
+ * that was resumed.
+ */
+public class ScriptRunner {
+    /**
+     * The byte written to the log after the command that ended a game.
+     */
+    public static final byte GAME_OVER = 0x7F;
+    /**
+     * The amount of commands between checkpoints unless another amount is given.
+     */
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 1 << 20;
+
+    private static final int CHECKPOINT_MAGIC = 0x5343524B;
+    private static final int NO_NUMBER = -1;
+
+    private final Path script;
+    private final Path log;
+    private final Path checkpoint;
+    private final int rows;
+    private final int columns;
+    private final long checkpointInterval;
+    private final Long seed;
+    private long window = Integer.MAX_VALUE;
+    private final ByteBuffer outcomes = ByteBuffer.allocateDirect(1 << 16);
+    private GameManager gameManager;
+    private long position = 0;
+    private long commands = 0;
+    private long logLength = 0;
+    private int games = 0;
+
+    /**
+     * Constructor for ScriptRunner.
+     * @param script the script file.
+     * @param log the file to write the outcome of every command to.
+     * @param checkpoint the file to keep the checkpoint in, which is resumed from if it exists.
+     * @param rows the number of rows of Plots of every game.
+     * @param columns the number of columns of Plots of every game.
+     * @param checkpointInterval the amount of commands between checkpoints.
+     * @param seed the seed of the first game, or null for games with random harvests.
+     */
+    public ScriptRunner(Path script, Path log, Path checkpoint, int rows, int columns, long checkpointInterval,
+                        Long seed) {
+        if (rows < 1 || columns < 1) {
+            throw new IllegalArgumentException("a farm needs at least one plot");
+        }
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("checkpointInterval must be positive");
+        }
+        this.script = script;
+        this.log = log;
+        this.checkpoint = checkpoint;
+        this.rows = rows;
+        this.columns = columns;
+        this.checkpointInterval = checkpointInterval;
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the most bytes of the script mapped at once, for testing windows that end in the middle of a line.
+     * @param window the size of a window in bytes.
+     */
+    void setWindow(long window) {
+        this.window = window;
+    }
+
+    /**
+     * Runs the script to its end, from the checkpoint if there is one, and writes a last checkpoint.
+     * @return the amount of commands applied in this run.
+     * @throws IOException if a file cannot be read or written, or the checkpoint is not one of this script.
+     */
+    public long run() throws IOException {
+        long resumed = resume();
+        try (FileChannel input = FileChannel.open(script, StandardOpenOption.READ);
+             FileChannel output = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            output.truncate(logLength);
+            output.position(logLength);
+            long size = input.size();
+            long nextCheckpoint = commands + checkpointInterval;
+            while (position < size) {
+                long length = Math.min(window, size - position);
+                long base = position;
+                MappedByteBuffer buffer = input.map(FileChannel.MapMode.READ_ONLY, base, length);
+                boolean last = base + length == size;
+                int start = 0;
+                // A line cut off by the end of the window is parsed again at the start of the next one.
+                while (start < length) {
+                    int end = lineEnd(buffer, start, (int) length);
+                    if (end == length && !last) {
+                        if (start == 0) {
+                            throw new IOException("a line of " + script + " is longer than a window");
+                        }
+                        break;
+                    }
+                    apply(buffer, start, end, output);
+                    start = end + 1;
+                    position = base + Math.min(start, length);
+                    if (commands >= nextCheckpoint) {
+                        writeCheckpoint(output);
+                        nextCheckpoint = commands + checkpointInterval;
+                    }
+                }
+            }
+            writeCheckpoint(output);
+        }
+        return commands - resumed;
+    }
+
+    /**
+     * Gets the amount of commands applied since the script was first started.
+     */
+    public long getCommands() {
+        return commands;
+    }
+
+    /**
+     * Gets the amount of games that ended since the script was first started.
+     */
+    public int getGames() {
+        return games;
+    }
+
+    /**
+     * Gets the game the next command is applied to.
+     */
+    public GameManager getGameManager() {
+        return gameManager;
+    }
+
+    private static int lineEnd(ByteBuffer buffer, int start, int limit) {
+        int end = start;
+        while (end < limit && buffer.get(end) != '\n') {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Parses and applies the command on a line, and logs its outcome.
+     */
+    private void apply(ByteBuffer buffer, int start, int end, FileChannel output) throws IOException {
+        int i = skipSpaces(buffer, start, end);
+        if (i == end) {
+            return;
+        }
+        char action = (char) buffer.get(i++);
+        int x = NO_NUMBER;
+        int y = NO_NUMBER;
+        char option = 0;
+        while ((i = skipSpaces(buffer, i, end)) < end) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                long number = 0;
+                while (i < end && (b = buffer.get(i)) >= '0' && b <= '9') {
+                    number = Math.min(number * 10 + (b - '0'), Integer.MAX_VALUE);
+                    i++;
+                }
+                if (x == NO_NUMBER) {
+                    x = (int) number;
+                } else if (y == NO_NUMBER) {
+                    y = (int) number;
+                }
+            } else {
+                option = (char) b;
+                while (i < end && buffer.get(i) > ' ') {
+                    i++;
+                }
+            }
+        }
+        short outcome = Telemetry.OK;
+        if ((action != 'R' && action != 'E') || option == 'Y') {
+            outcome = gameManager.applyCommand(action, x, y, action == 'T' ? option : 0);
+        }
+        commands++;
+        log(output, (byte) outcome);
+        if (gameManager.endCheck()) {
+            Metrics.recordGameEnd(gameManager.getFarm().isFullOfWitheredCrops(gameManager.getDay()));
+            log(output, GAME_OVER);
+            games++;
+            gameManager = newGame();
+        }
+    }
+
+    private static int skipSpaces(ByteBuffer buffer, int i, int end) {
+        while (i < end && buffer.get(i) <= ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private void log(FileChannel output, byte outcome) throws IOException {
+        if (!outcomes.hasRemaining()) {
+            flushLog(output);
+        }
+        outcomes.put(outcome);
+        logLength++;
+    }
+
+    private void flushLog(FileChannel output) throws IOException {
+        outcomes.flip();
+        while (outcomes.hasRemaining()) {
+            output.write(outcomes);
+        }
+        outcomes.clear();
+    }
+
+    private GameManager newGame() {
+        GameManager game = new GameManager(rows, columns);
+        game.getFarmer().setDisplay(false);
+        game.setStackTraces(false);
+        if (seed != null) {
+            game.setSeed(seed + games);
+        }
+        return game;
+    }
+
+    /**
+     * Reads the checkpoint if there is one, or starts the first game.
+     * @return the amount of commands applied before the checkpoint.
+     */
+    private long resume() throws IOException {
+        if (!Files.exists(checkpoint)) {
+            gameManager = newGame();
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpoint)))) {
+            if (in.readInt() != CHECKPOINT_MAGIC) {
+                throw new IOException(checkpoint + " is not a checkpoint of a script");
+            }
+            position = in.readLong();
+            commands = in.readLong();
+            logLength = in.readLong();
+            games = in.readInt();
+            long randomState = in.readLong();
+            try {
+                gameManager = GameSnapshot.read(in).restore();
+            } catch (IllegalArgumentException e) {
+                throw new IOException(checkpoint + " has a corrupt game: " + e.getMessage());
+            }
+            gameManager.getFarmer().setDisplay(false);
+            gameManager.setStackTraces(false);
+            gameManager.setSeed(randomState);
+        }
+        if (position > Files.size(script) || logLength > Files.size(log)) {
+            throw new IOException(checkpoint + " is past the end of the script or the log");
+        }
+        return commands;
+    }
+
+    /**
+     * Forces the log to disk and then replaces the checkpoint, so that a checkpoint never points past the
+     * end of the log.
+     */
+    private void writeCheckpoint(FileChannel output) throws IOException {
+        flushLog(output);
+        output.force(false);
+        Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeLong(position);
+            out.writeLong(commands);
+            out.writeLong(logLength);
+            out.writeInt(games);
+            out.writeLong(gameManager.getRandomState());
+            GameSnapshot.of(gameManager).write(out);
+        }
+        Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
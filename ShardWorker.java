@@ -0,0 +1,205 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+
+/**
+ * <p>
+ * This class is one shard of a cluster of games: a process that hosts some of the games of a
+ * ClusterCoordinator and applies the requests the coordinator sends it, see ClusterProtocol.
+ * <p>
+ * When run on its own, the worker listens on a loopback port chosen by the system, prints that port on
+ * its first line of standard output for the coordinator to read, serves a single coordinator and exits
+ * when the coordinator shuts it down or disconnects. Games on a shard are only touched by the thread
+ * serving the coordinator, and their Farmers do not display anything.
+ * <p>
+ * Every game on the shard gets the memory budget given with -Dgame.memory.budget=<bytes>, if any, and a
+ * new game that would be over its budget from the start is refused. Games moved from another shard are
+ * always accepted, so that a handoff cannot lose a game.
+ * <p>
+ * The state streams of games are encoded here, on the thread playing them, keyed by the GameManager so
+ * that a game moved to another shard starts a new stream there with a keyframe.
+ */
+public class ShardWorker {
+    private static final int KEYFRAME_INTERVAL = 64;
+
+    private final HashMap<Integer, GameManager> games = new HashMap<>();
+    private final HashMap<Integer, StateStreamEncoder> streams = new HashMap<>();
+    private short[] codes = new short[256];
+    private final long memoryBudget = Long.getLong("game.memory.budget", Long.MAX_VALUE);
+
+    /**
+     * Serves the requests of a coordinator on a socket until the coordinator shuts the worker down or
+     * disconnects.
+     * @param socket the socket connected to the coordinator.
+     * @throws IOException if the socket cannot be read or written.
+     */
+    public void serve(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        while (true) {
+            int type = in.read();
+            if (type < 0) {
+                return;
+            }
+            try {
+                if (!handle((byte) type, in, out)) {
+                    out.flush();
+                    return;
+                }
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                out.writeByte(ClusterProtocol.REPLY_ERROR);
+                out.writeUTF(String.valueOf(e.getMessage()));
+            }
+            // Replies are only sent once there are no more requests waiting, so that a batch of requests
+            // is answered with one write.
+            if (in.available() == 0) {
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Applies a request and writes its reply.
+     * @return false if the request was to shut down and true if not.
+     */
+    private boolean handle(byte type, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (type) {
+            case ClusterProtocol.CREATE -> {
+                int game = in.readInt();
+                int rows = in.readInt();
+                int columns = in.readInt();
+                long seed = in.readLong();
+                if (rows < 1 || columns < 1) {
+                    throw new IllegalArgumentException("a farm needs at least one plot");
+                }
+                checkMemoryBudget(GameManager.estimateBytes(rows, columns));
+                GameManager gameManager = seed < 0 ? new GameManager(rows, columns)
+                        : ScenarioGenerator.generate(seed, new ScenarioSpec(rows, columns));
+                checkMemoryBudget(gameManager.getRetainedBytes());
+                add(game, gameManager);
+                out.writeByte(ClusterProtocol.REPLY_OK);
+            }
+            case ClusterProtocol.COMMANDS -> {
+                int count = in.readInt();
+                if (codes.length < count) {
+                    codes = new short[Math.max(count, codes.length * 2)];
+                }
+                for (int i = 0; i < count; i++) {
+                    GameManager gameManager = games.get(in.readInt());
+                    char action = (char) in.readUnsignedByte();
+                    short x = in.readShort();
+                    short y = in.readShort();
+                    char crop = (char) in.readUnsignedByte();
+                    codes[i] = gameManager == null ? Telemetry.UNKNOWN : gameManager.applyCommand(action, x, y, crop);
+                }
+                out.writeByte(ClusterProtocol.REPLY_OK);
+                out.writeInt(count);
+                for (int i = 0; i < count; i++) {
+                    out.writeShort(codes[i]);
+                }
+            }
+            case ClusterProtocol.ADVANCE_DAY -> {
+                for (GameManager gameManager : games.values()) {
+                    gameManager.advanceDay();
+                }
+                out.writeByte(ClusterProtocol.REPLY_OK);
+                out.writeInt(games.size());
+            }
+            case ClusterProtocol.EXPORT -> {
+                GameManager gameManager = games.remove(in.readInt());
+                if (gameManager == null) {
+                    throw new IllegalArgumentException("unknown game");
+                }
+                Metrics.untrack(gameManager);
+                StateStreamEncoder stream = streams.remove(gameManager.getId());
+                if (stream != null) {
+                    stream.close();
+                }
+                out.writeByte(ClusterProtocol.REPLY_OK);
+                GameSnapshot.of(gameManager).write(out);
+            }
+            case ClusterProtocol.IMPORT -> {
+                int game = in.readInt();
+                add(game, GameSnapshot.read(in).restore());
+                out.writeByte(ClusterProtocol.REPLY_OK);
+            }
+            case ClusterProtocol.HASH -> {
+                GameManager gameManager = games.get(in.readInt());
+                if (gameManager == null) {
+                    throw new IllegalArgumentException("unknown game");
+                }
+                out.writeByte(ClusterProtocol.REPLY_OK);
+                out.writeLong(gameManager.stateHash());
+            }
+            case ClusterProtocol.STREAM -> {
+                GameManager gameManager = games.get(in.readInt());
+                boolean keyframe = in.readByte() != 0;
+                if (gameManager == null) {
+                    throw new IllegalArgumentException("unknown game");
+                }
+                StateStreamEncoder stream = streams.computeIfAbsent(gameManager.getId(), id ->
+                        new StateStreamEncoder(gameManager.getFarm(), gameManager.getFarmer(), KEYFRAME_INTERVAL, true));
+                if (keyframe) {
+                    stream.requestKeyframe();
+                }
+                byte[] frame = stream.nextFrame(gameManager.getDay());
+                out.writeByte(ClusterProtocol.REPLY_OK);
+                out.writeInt(frame.length);
+                out.write(frame);
+            }
+            case ClusterProtocol.SHUTDOWN -> {
+                out.writeByte(ClusterProtocol.REPLY_OK);
+                return false;
+            }
+            default -> throw new IOException("unknown request " + type);
+        }
+        return true;
+    }
+
+    private void add(int game, GameManager gameManager) {
+        if (games.containsKey(game)) {
+            throw new IllegalStateException("game " + game + " is already on this shard");
+        }
+        gameManager.getFarmer().setDisplay(false);
+        if (memoryBudget != Long.MAX_VALUE) {
+            gameManager.setMemoryBudget(memoryBudget);
+        }
+        games.put(game, gameManager);
+        Metrics.track(gameManager);
+    }
+
+    private void checkMemoryBudget(long bytes) {
+        if (bytes > memoryBudget) {
+            throw new IllegalStateException("the game needs " + bytes + " bytes, over the budget of "
+                    + memoryBudget);
+        }
+    }
+
+    /**
+     * Runs a worker process: prints its port, then serves the first coordinator that connects.
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        PrintStream console = System.out;
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            console.println(ClusterProtocol.PORT_LINE + server.getLocalPort());
+            console.flush();
+            // Nothing else may be written to standard output, which the coordinator reads the port from.
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try (Socket socket = server.accept()) {
+                new ShardWorker().serve(socket);
+            }
+        } catch (IOException e) {
+            System.err.println("Error: shard stopped: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import java.util.Arrays;
+
+/**
+ * <p>
+ * This class publishes GameSnapshots of a game so that other threads can read a consistent state of it
+ * while it is being played.
+ * <p>
+ * The publisher follows every change to the Plots of the farm and remembers which Plots changed. When the
+ * game publishes at the end of an action or day, only those Plots are packed again, into copies of their
+ * chunks, and the new snapshot is made visible through a single volatile reference. Readers only ever
+ * read that reference and the immutable snapshot behind it, so they never block the game and never see a
+ * version that is half updated.
+ * <p>
+ * Publishing must be done by the thread playing the game.
+ */
+public class SnapshotPublisher implements PlotListener {
+    private final Farm farm;
+    private final Farmer farmer;
+    private volatile GameSnapshot current;
+
+    private int[] dirty = new int[16];
+    private int dirtyCount = 0;
+    private final long[] dirtyBits;
+
+    /**
+     * Constructor for SnapshotPublisher, which starts following the farm and publishes its first snapshot.
+     * @param farm the farm of the game.
+     * @param farmer the Farmer of the game.
+     * @param day the current day.
+     */
+    public SnapshotPublisher(Farm farm, Farmer farmer, int day) {
+        this.farm = farm;
+        this.farmer = farmer;
+        int rows = farm.getRows();
+        int columns = farm.getColumns();
+        dirtyBits = new long[(rows * columns + 63) >>> 6];
+        current = new GameSnapshot(0, day, rows, columns, GameSnapshot.encodePlots(farm), farm.getStateHash(), farmer);
+        farm.addPlotListener(this);
+    }
+
+    @Override
+    public void plotChanged(Plot plot, long oldState) {
+        int index = plot.getIndex();
+        long bit = 1L << index;
+        if ((dirtyBits[index >>> 6] & bit) == 0) {
+            dirtyBits[index >>> 6] |= bit;
+            if (dirtyCount == dirty.length) {
+                dirty = Arrays.copyOf(dirty, dirtyCount * 2);
+            }
+            dirty[dirtyCount++] = index;
+        }
+    }
+
+    /**
+     * Publishes a snapshot of the game as it is now.
+     * @param day the current day.
+     * @return the published snapshot.
+     */
+    public GameSnapshot publish(int day) {
+        GameSnapshot previous = current;
+        long[][] previousChunks = previous.getChunks();
+        long[][] chunks = previousChunks;
+        if (dirtyCount > 0) {
+            chunks = previousChunks.clone();
+            int columns = farm.getColumns();
+            for (int i = 0; i < dirtyCount; i++) {
+                int index = dirty[i];
+                int chunk = index >>> GameSnapshot.CHUNK_SHIFT;
+                if (chunks[chunk] == previousChunks[chunk]) {
+                    chunks[chunk] = previousChunks[chunk].clone();
+                }
+                chunks[chunk][index & (GameSnapshot.CHUNK_SIZE - 1)] =
+                        PlotState.encode(farm.getPlot(index / columns, index % columns));
+                dirtyBits[index >>> 6] = 0;
+            }
+            dirtyCount = 0;
+        }
+        GameSnapshot snapshot = new GameSnapshot(previous.getVersion() + 1, day, previous.getRows(),
+                previous.getColumns(), chunks, farm.getStateHash(), farmer);
+        current = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Gets the latest snapshot. This can be called from any thread.
+     * @return the latest published snapshot.
+     */
+    public GameSnapshot getSnapshot() {
+        return current;
+    }
+
+    /**
+     * Estimates the heap used by the publisher and its latest snapshot. Older snapshots share the chunks
+     * that did not change and are freed once no reader holds them, so they are not counted.
+     * @return the estimated bytes, see MemoryFootprint.
+     */
+    public long getRetainedBytes() {
+        return MemoryFootprint.object(4 * MemoryFootprint.REFERENCE + Integer.BYTES)
+                + MemoryFootprint.array(dirty.length, Integer.BYTES)
+                + MemoryFootprint.array(dirtyBits.length, Long.BYTES) + current.getRetainedBytes();
+    }
+
+    /**
+     * Stops following the farm. The last snapshot can still be read.
+     */
+    public void close() {
+        farm.removePlotListener(this);
+    }
+}
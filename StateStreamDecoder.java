@@ -0,0 +1,256 @@
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * <p>
+ * This class is the client side of a StateStreamEncoder: it rebuilds the state of a game from the frames
+ * of its stream.
+ * <p>
+ * A decoder that has not seen a keyframe yet, or that missed a frame, ignores delta frames until the next
+ * keyframe, so a client can join a stream at any point. The hash of the rebuilt state is kept up to date
+ * as Plots change, and is the same as GameManager.stateHash of the game when the frame was made.
+ */
+public class StateStreamDecoder {
+    private final Inflater inflater = new Inflater();
+    private byte[] inflated = new byte[256];
+
+    private boolean synced = false;
+    private long sequence = -1;
+    private int rows = 0;
+    private int columns = 0;
+    private int day = 0;
+    private int objectCoins = 0;
+    private int level = 0;
+    private long totalExp = 0;
+    private FarmerTitle title = FarmerTitle.FARMER;
+    private long[] states = new long[0];
+    private long plotsHash = 0;
+
+    // The frame being read and the position in it.
+    private byte[] frame;
+    private int position;
+    private int limit;
+
+    /**
+     * Applies a frame to the state.
+     * @param bytes the frame.
+     * @return true if the frame was applied, and false if it was a delta frame that was ignored while
+     * waiting for a keyframe.
+     * @throws IllegalArgumentException if the frame is not a frame of a state stream.
+     */
+    public boolean apply(byte[] bytes) {
+        if (bytes.length == 0) {
+            throw new IllegalArgumentException("empty frame");
+        }
+        int kind = bytes[0] & 0xFF;
+        frame = bytes;
+        position = 1;
+        limit = bytes.length;
+        long number = readVarLong();
+        boolean keyframe = (kind & ~StateStreamEncoder.COMPRESSED) == StateStreamEncoder.KEYFRAME;
+        if (!keyframe && (kind & ~StateStreamEncoder.COMPRESSED) != StateStreamEncoder.DELTA) {
+            throw new IllegalArgumentException("unknown frame kind " + kind);
+        }
+        if (!keyframe && (!synced || number != sequence + 1)) {
+            synced = false;
+            return false;
+        }
+        // A frame that turns out to be malformed leaves the decoder waiting for a keyframe.
+        synced = false;
+        if ((kind & StateStreamEncoder.COMPRESSED) != 0) {
+            inflate();
+        }
+        if (keyframe) {
+            readKeyframe();
+        } else {
+            readDelta();
+        }
+        if (position != limit) {
+            throw new IllegalArgumentException("frame has " + (limit - position) + " extra bytes");
+        }
+        sequence = number;
+        synced = true;
+        return true;
+    }
+
+    /**
+     * Checks if the decoder has the state of the game, which is false until the first keyframe and after a
+     * frame was missed.
+     * @return true if the state is up to date with the stream and false if not.
+     */
+    public boolean isSynced() {
+        return synced;
+    }
+
+    /**
+     * Gets the sequence number of the last frame applied.
+     * @return the sequence number, or -1 if no frame was applied.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public int getDay() {
+        return day;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getObjectCoins() {
+        return objectCoins;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Gets the total EXP of the Farmer.
+     * @return the total EXP in EXP units.
+     */
+    public long getTotalExpUnits() {
+        return totalExp;
+    }
+
+    public FarmerTitle getTitle() {
+        return title;
+    }
+
+    /**
+     * Gets the packed state of a Plot, see PlotState.
+     * @param x the row of the Plot.
+     * @param y the column of the Plot.
+     * @return the packed state of the Plot.
+     */
+    public long getPlotState(int x, int y) {
+        return states[x * columns + y];
+    }
+
+    /**
+     * Gets the hash of the rebuilt state, computed like GameManager.stateHash.
+     * @return the hash of the day, the Farmer and every Plot.
+     */
+    public long getStateHash() {
+        return plotsHash ^ ZobristHash.farmerKey(objectCoins, level, title) ^ ZobristHash.dayKey(day);
+    }
+
+    private void readKeyframe() {
+        int newRows = readInt();
+        int newColumns = readInt();
+        if (newRows < 1 || newColumns < 1 || (long) newRows * newColumns > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("keyframe has a bad size");
+        }
+        day = readInt();
+        objectCoins = (int) unzigzag(readVarLong());
+        level = readInt();
+        totalExp = unzigzag(readVarLong());
+        title = readTitle();
+        if (newRows * newColumns != states.length) {
+            states = new long[newRows * newColumns];
+        }
+        rows = newRows;
+        columns = newColumns;
+        long hash = 0;
+        for (int i = 0; i < states.length; i++) {
+            states[i] = readVarLong();
+            hash ^= ZobristHash.stateKey(i, states[i]);
+        }
+        plotsHash = hash;
+    }
+
+    private void readDelta() {
+        day = readInt();
+        int mask = readInt();
+        if ((mask & StateStreamEncoder.COINS_CHANGED) != 0) {
+            objectCoins = (int) unzigzag(readVarLong());
+        }
+        if ((mask & StateStreamEncoder.LEVEL_CHANGED) != 0) {
+            level = readInt();
+        }
+        if ((mask & StateStreamEncoder.EXP_CHANGED) != 0) {
+            totalExp = unzigzag(readVarLong());
+        }
+        if ((mask & StateStreamEncoder.TITLE_CHANGED) != 0) {
+            title = readTitle();
+        }
+        int count = readInt();
+        int index = 0;
+        for (int i = 0; i < count; i++) {
+            index += readInt();
+            if (index >= states.length) {
+                throw new IllegalArgumentException("delta changes plot " + index + " of " + states.length);
+            }
+            long state = readVarLong();
+            plotsHash ^= ZobristHash.stateKey(index, states[index]) ^ ZobristHash.stateKey(index, state);
+            states[index] = state;
+        }
+    }
+
+    /**
+     * Replaces the rest of the frame with its inflated content.
+     */
+    private void inflate() {
+        inflater.reset();
+        inflater.setInput(frame, position, limit - position);
+        int total = 0;
+        try {
+            while (!inflater.finished()) {
+                if (total == inflated.length) {
+                    inflated = Arrays.copyOf(inflated, total * 2);
+                }
+                int count = inflater.inflate(inflated, total, inflated.length - total);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("compressed frame is cut short");
+                }
+                total += count;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("compressed frame is corrupt: " + e.getMessage());
+        }
+        frame = inflated;
+        position = 0;
+        limit = total;
+    }
+
+    private FarmerTitle readTitle() {
+        int ordinal = readInt();
+        if (ordinal >= FarmerTitle.values().length) {
+            throw new IllegalArgumentException("unknown title " + ordinal);
+        }
+        return FarmerTitle.values()[ordinal];
+    }
+
+    private int readInt() {
+        long value = readVarLong();
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("number out of range");
+        }
+        return (int) value;
+    }
+
+    private long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position >= limit) {
+                throw new IllegalArgumentException("frame is cut short");
+            }
+            byte b = frame[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("number is too long");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,248 @@
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * <p>
+ * This class turns the changes to a game into a stream of compact binary frames for remote UIs and
+ * spectators, which a StateStreamDecoder turns back into the state of the game.
+ * <p>
+ * Like a SnapshotPublisher, the encoder follows every change to the Plots of the farm and remembers which
+ * Plots changed. Each frame holds everything that changed since the frame before it, however many actions
+ * that was, so that frames can be made once per tick. A delta frame holds the day, the fields of the
+ * Farmer that changed and the index and packed state of each Plot that changed, so its size depends on
+ * the amount of changes and not on the size of the farm. A keyframe holds the whole game, and is sent
+ * every keyframeInterval frames or when asked for, so that a client can join in the middle of a stream.
+ * <p>
+ * Frames start with a byte giving their kind, with COMPRESSED set if the rest of the frame was deflated,
+ * and then the sequence number of the frame. Numbers are written as variable-length integers of 7 bits per
+ * byte, with signed numbers zigzag encoded, and the indices of changed Plots as the gap from the index
+ * before them.
+ * <p>
+ * Frames must be made by the thread playing the game.
+ */
+public class StateStreamEncoder implements PlotListener {
+    /**
+     * The kind of a frame holding the whole game.
+     */
+    public static final int KEYFRAME = 1;
+    /**
+     * The kind of a frame holding the changes since the frame before it.
+     */
+    public static final int DELTA = 2;
+    /**
+     * Set on the kind of a frame whose body is deflated.
+     */
+    public static final int COMPRESSED = 0x80;
+
+    /**
+     * Set in the mask of a delta frame if the objectCoins of the Farmer changed.
+     */
+    static final int COINS_CHANGED = 1;
+    /**
+     * Set in the mask of a delta frame if the level of the Farmer changed.
+     */
+    static final int LEVEL_CHANGED = 2;
+    /**
+     * Set in the mask of a delta frame if the EXP of the Farmer changed.
+     */
+    static final int EXP_CHANGED = 4;
+    /**
+     * Set in the mask of a delta frame if the title of the Farmer changed.
+     */
+    static final int TITLE_CHANGED = 8;
+
+    // Bodies shorter than this are not worth deflating.
+    private static final int COMPRESS_THRESHOLD = 64;
+
+    private final Farm farm;
+    private final Farmer farmer;
+    private final int keyframeInterval;
+    private final Deflater deflater;
+    private long sequence = 0;
+    private boolean keyframeRequested = true;
+
+    private int[] dirty = new int[16];
+    private int dirtyCount = 0;
+    private final long[] dirtyBits;
+
+    private int sentCoins;
+    private int sentLevel;
+    private long sentExp;
+    private FarmerTitle sentTitle;
+
+    private byte[] body = new byte[256];
+    private int length = 0;
+    private byte[] compressed = new byte[256];
+
+    /**
+     * Constructor for StateStreamEncoder, which starts following the farm. The first frame is a keyframe.
+     * @param farm the farm of the game.
+     * @param farmer the Farmer of the game.
+     * @param keyframeInterval the amount of frames from one keyframe to the next.
+     * @param compress whether frames are deflated when that makes them smaller.
+     */
+    public StateStreamEncoder(Farm farm, Farmer farmer, int keyframeInterval, boolean compress) {
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("keyframeInterval must be positive");
+        }
+        this.farm = farm;
+        this.farmer = farmer;
+        this.keyframeInterval = keyframeInterval;
+        deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        dirtyBits = new long[(farm.getRows() * farm.getColumns() + 63) >>> 6];
+        farm.addPlotListener(this);
+    }
+
+    @Override
+    public void plotChanged(Plot plot, long oldState) {
+        int index = plot.getIndex();
+        long bit = 1L << index;
+        if ((dirtyBits[index >>> 6] & bit) == 0) {
+            dirtyBits[index >>> 6] |= bit;
+            if (dirtyCount == dirty.length) {
+                dirty = Arrays.copyOf(dirty, dirtyCount * 2);
+            }
+            dirty[dirtyCount++] = index;
+        }
+    }
+
+    /**
+     * Makes the next frame a keyframe, for when a client joins or has lost its place in the stream.
+     */
+    public void requestKeyframe() {
+        keyframeRequested = true;
+    }
+
+    /**
+     * Makes the frame of everything that changed since the last frame.
+     * @param day the current day.
+     * @return the frame.
+     */
+    public byte[] nextFrame(int day) {
+        boolean keyframe = keyframeRequested || sequence % keyframeInterval == 0;
+        length = 0;
+        if (keyframe) {
+            writeKeyframe(day);
+        } else {
+            writeDelta(day);
+        }
+        for (int i = 0; i < dirtyCount; i++) {
+            dirtyBits[dirty[i] >>> 6] = 0;
+        }
+        dirtyCount = 0;
+        keyframeRequested = false;
+        sentCoins = farmer.getObjectCoins();
+        sentLevel = farmer.getLevel();
+        sentExp = farmer.getTotalExpUnits();
+        sentTitle = farmer.getTitle();
+        return frame(keyframe ? KEYFRAME : DELTA, sequence++);
+    }
+
+    /**
+     * Stops following the farm.
+     */
+    public void close() {
+        farm.removePlotListener(this);
+        if (deflater != null) {
+            deflater.end();
+        }
+    }
+
+    private void writeKeyframe(int day) {
+        int rows = farm.getRows();
+        int columns = farm.getColumns();
+        writeVarLong(rows);
+        writeVarLong(columns);
+        writeVarLong(day);
+        writeVarLong(zigzag(farmer.getObjectCoins()));
+        writeVarLong(farmer.getLevel());
+        writeVarLong(zigzag(farmer.getTotalExpUnits()));
+        writeVarLong(farmer.getTitle().ordinal());
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                writeVarLong(PlotState.encode(farm.getPlot(i, j)));
+            }
+        }
+    }
+
+    private void writeDelta(int day) {
+        int mask = (farmer.getObjectCoins() != sentCoins ? COINS_CHANGED : 0)
+                | (farmer.getLevel() != sentLevel ? LEVEL_CHANGED : 0)
+                | (farmer.getTotalExpUnits() != sentExp ? EXP_CHANGED : 0)
+                | (farmer.getTitle() != sentTitle ? TITLE_CHANGED : 0);
+        writeVarLong(day);
+        writeVarLong(mask);
+        if ((mask & COINS_CHANGED) != 0) {
+            writeVarLong(zigzag(farmer.getObjectCoins()));
+        }
+        if ((mask & LEVEL_CHANGED) != 0) {
+            writeVarLong(farmer.getLevel());
+        }
+        if ((mask & EXP_CHANGED) != 0) {
+            writeVarLong(zigzag(farmer.getTotalExpUnits()));
+        }
+        if ((mask & TITLE_CHANGED) != 0) {
+            writeVarLong(farmer.getTitle().ordinal());
+        }
+        Arrays.sort(dirty, 0, dirtyCount);
+        writeVarLong(dirtyCount);
+        int columns = farm.getColumns();
+        int previous = 0;
+        for (int i = 0; i < dirtyCount; i++) {
+            int index = dirty[i];
+            writeVarLong(index - previous);
+            writeVarLong(PlotState.encode(farm.getPlot(index / columns, index % columns)));
+            previous = index;
+        }
+    }
+
+    /**
+     * Puts the kind and sequence number in front of the body, deflating the body if that is enabled and
+     * makes it smaller.
+     */
+    private byte[] frame(int kind, long number) {
+        byte[] content = body;
+        int contentLength = length;
+        if (deflater != null && length >= COMPRESS_THRESHOLD) {
+            deflater.reset();
+            deflater.setInput(body, 0, length);
+            deflater.finish();
+            if (compressed.length < length) {
+                compressed = new byte[body.length];
+            }
+            int deflated = deflater.deflate(compressed, 0, length);
+            if (deflater.finished() && deflated < length) {
+                kind |= COMPRESSED;
+                content = compressed;
+                contentLength = deflated;
+            }
+        }
+        byte[] header = new byte[11];
+        header[0] = (byte) kind;
+        int headerLength = 1;
+        long value = number;
+        while ((value & ~0x7FL) != 0) {
+            header[headerLength++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        header[headerLength++] = (byte) value;
+        byte[] frame = Arrays.copyOf(header, headerLength + contentLength);
+        System.arraycopy(content, 0, frame, headerLength, contentLength);
+        return frame;
+    }
+
+    private void writeVarLong(long value) {
+        if (body.length - length < 10) {
+            body = Arrays.copyOf(body, body.length * 2);
+        }
+        while ((value & ~0x7FL) != 0) {
+            body[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        body[length++] = (byte) value;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
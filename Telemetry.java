@@ -0,0 +1,135 @@
+import exceptions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * <p>
+ * This class is where the game records its telemetry: the outcome of every action and the errors that
+ * used to only be printed. Nothing is recorded until a TelemetryWriter is started, so recording costs
+ * nothing more than a check when telemetry is off.
+ * <p>
+ * Outcomes are recorded as codes rather than messages: 0 for success and one code for each exception of
+ * the game, so that records keep a fixed layout.
+ */
+public final class Telemetry {
+    /**
+     * The source of records of actions applied by GameManager.applyAction.
+     */
+    public static final byte SOURCE_ACTION = 0;
+    /**
+     * The source of records of errors caught by the Driver.
+     */
+    public static final byte SOURCE_DRIVER = 1;
+    /**
+     * The source of records of errors in Farmer.harvest.
+     */
+    public static final byte SOURCE_FARMER = 2;
+    /**
+     * The names of the sources, by source.
+     */
+    public static final String[] SOURCES = {"Action", "Driver", "Farmer"};
+
+    /**
+     * The outcome code of an action that succeeded.
+     */
+    public static final short OK = 0;
+    /**
+     * The outcome code of an error that is not an exception of the game.
+     */
+    public static final short UNKNOWN = -1;
+
+    private static final Class<?>[] ERRORS = {
+            CannotAffordException.class, CropNotMaturedException.class, CropWitheredException.class,
+            InvalidInputException.class, NoAvailablePlotsException.class, NoRockException.class,
+            PlotAlreadyMaturedException.class, PlotAlreadyOccupiedException.class,
+            PlotAlreadyPlowedException.class, PlotHasRockException.class, PlotNotPlowedException.class,
+            PlotUnoccupiedException.class, ScannerException.class, TreeAdjacencyException.class,
+            NothingToUndoException.class
+    };
+
+    private static volatile TelemetryWriter writer = null;
+
+    private Telemetry() {}
+
+    /**
+     * Starts recording telemetry into files named after a prefix.
+     * @param prefix the path of the files without their number.
+     * @param capacity the amount of records that can be waiting to be written.
+     * @param maxFileBytes the size after which a new file is started.
+     * @param policy what to do with a record when too many are waiting to be written.
+     * @throws IOException if the first file cannot be opened.
+     */
+    public static synchronized void start(Path prefix, int capacity, long maxFileBytes, TelemetryWriter.Policy policy)
+            throws IOException {
+        stop();
+        writer = new TelemetryWriter(prefix, capacity, maxFileBytes, policy);
+    }
+
+    /**
+     * Stops recording telemetry, writing every record that is still waiting.
+     */
+    public static synchronized void stop() {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    /**
+     * Checks if telemetry is being recorded.
+     * @return true if a writer has been started and false if not.
+     */
+    public static boolean isEnabled() {
+        return writer != null;
+    }
+
+    /**
+     * Records an event if telemetry is being recorded.
+     * @param game the id of the game, or 0 if it is not known.
+     * @param day the day in the game.
+     * @param action the menu character of the action, or 0 if there is none.
+     * @param source where the record comes from.
+     * @param code the outcome code.
+     * @param objectCoins the objectCoins of the Farmer.
+     * @param exp the total EXP units of the Farmer.
+     */
+    public static void record(int game, int day, char action, byte source, short code, int objectCoins, long exp) {
+        TelemetryWriter current = writer;
+        if (current != null) {
+            current.record(game, day, action, source, code, objectCoins, exp);
+        }
+    }
+
+    /**
+     * Gets the outcome code of an exception.
+     * @param e the exception, or null for success.
+     * @return the code of the exception, OK for null and UNKNOWN if it is not an exception of the game.
+     */
+    public static short code(Throwable e) {
+        if (e == null) {
+            return OK;
+        }
+        for (int i = 0; i < ERRORS.length; i++) {
+            if (ERRORS[i] == e.getClass()) {
+                return (short) (i + 1);
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Gets the name of an outcome code.
+     * @param code the outcome code.
+     * @return "OK", the simple name of the exception, or "Unknown".
+     */
+    public static String codeName(short code) {
+        if (code == OK) {
+            return "OK";
+        }
+        if (code > 0 && code <= ERRORS.length) {
+            return ERRORS[code - 1].getSimpleName();
+        }
+        return "Unknown";
+    }
+}
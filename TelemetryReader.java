@@ -0,0 +1,77 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>
+ * This class turns telemetry files written by TelemetryWriter back into CSV, one line per record, in the
+ * order of the files given as arguments.
+ */
+public class TelemetryReader {
+    /**
+     * The header line of the CSV.
+     */
+    public static final String HEADER = "time,game,day,action,source,outcome,objectCoins,exp";
+
+    /**
+     * Prints every record of the given telemetry files as CSV.
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Error: usage: TelemetryReader <file>...");
+            return;
+        }
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        try {
+            out.write(HEADER);
+            out.newLine();
+            for (String file : args) {
+                read(Path.of(file), out);
+            }
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Error: could not read telemetry: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes every record of a telemetry file as CSV.
+     * @param file the telemetry file.
+     * @param out where to write the CSV lines.
+     * @throws IOException if the file cannot be read.
+     */
+    public static void read(Path file, Appendable out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(4096 * TelemetryWriter.RECORD_BYTES);
+            StringBuilder line = new StringBuilder();
+            while (channel.read(buffer) > 0 || buffer.position() >= TelemetryWriter.RECORD_BYTES) {
+                buffer.flip();
+                while (buffer.remaining() >= TelemetryWriter.RECORD_BYTES) {
+                    long time = buffer.getLong();
+                    int game = buffer.getInt();
+                    int day = buffer.getInt();
+                    char action = (char) buffer.get();
+                    byte source = buffer.get();
+                    short code = buffer.getShort();
+                    int coins = buffer.getInt();
+                    long exp = buffer.getLong();
+                    line.setLength(0);
+                    line.append(time).append(',').append(game).append(',').append(day).append(',')
+                            .append(action == 0 ? "" : String.valueOf(action)).append(',')
+                            .append(source >= 0 && source < Telemetry.SOURCES.length ? Telemetry.SOURCES[source] : "Unknown")
+                            .append(',').append(Telemetry.codeName(code)).append(',').append(coins).append(',')
+                            .append(exp / Farmer.EXP_SCALE).append('.')
+                            .append(String.format("%02d", Math.abs(exp % Farmer.EXP_SCALE)))
+                            .append(System.lineSeparator());
+                    out.append(line);
+                }
+                buffer.compact();
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ * This class writes telemetry records to rotating files from a background thread, so that the threads
+ * playing games never wait on the disk.
+ * <p>
+ * Records are put in a bounded lock-free queue of primitive arrays that any number of threads can record
+ * into. Each record claims a slot by advancing a shared position and publishes it by setting the slot's
+ * sequence number, which is what the writer thread waits for before reading it. When the queue is full a
+ * record is either dropped and counted, or the recording thread waits for the writer to catch up,
+ * depending on the policy.
+ * <p>
+ * The writer thread takes records off the queue in batches, encodes them into a buffer of RECORD_BYTES
+ * per record and writes the buffer through a FileChannel. Files are named after a prefix and numbered from
+ * 0, and a new one is started once the current one reaches its maximum size.
+ */
+public class TelemetryWriter {
+    /**
+     * The amount of bytes of a record in a telemetry file: the time in milliseconds, game id, day, action,
+     * source, outcome code, objectCoins and EXP units.
+     */
+    public static final int RECORD_BYTES = Long.BYTES + Integer.BYTES + Integer.BYTES + 1 + 1 + Short.BYTES
+            + Integer.BYTES + Long.BYTES;
+
+    private static final int BATCH = 2048;
+    private static final long IDLE_NANOS = 1_000_000L;
+
+    /**
+     * What to do with a record when the queue is full.
+     */
+    public enum Policy {
+        /**
+         * Drop the record and count it.
+         */
+        DROP,
+        /**
+         * Wait until the writer thread has made room for the record.
+         */
+        BLOCK
+    }
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head = 0;
+    private final long[] times;
+    private final int[] games;
+    private final int[] days;
+    private final byte[] actions;
+    private final byte[] sources;
+    private final short[] codes;
+    private final int[] coins;
+    private final long[] exps;
+
+    private final Policy policy;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final Path prefix;
+    private final long maxFileBytes;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BATCH * RECORD_BYTES);
+    private FileChannel channel;
+    private int fileNumber = 0;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * Constructor for TelemetryWriter, which starts its writer thread.
+     * @param prefix the path of the files without their number.
+     * @param capacity the amount of records the queue can hold, rounded up to a power of two.
+     * @param maxFileBytes the size after which a new file is started.
+     * @param policy what to do with a record when the queue is full.
+     * @throws IOException if the first file cannot be opened.
+     */
+    public TelemetryWriter(Path prefix, int capacity, long maxFileBytes, Policy policy) throws IOException {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        times = new long[size];
+        games = new int[size];
+        days = new int[size];
+        actions = new byte[size];
+        sources = new byte[size];
+        codes = new short[size];
+        coins = new int[size];
+        exps = new long[size];
+        this.policy = policy;
+        this.prefix = prefix;
+        this.maxFileBytes = Math.max(RECORD_BYTES, maxFileBytes - maxFileBytes % RECORD_BYTES);
+        channel = open();
+        thread = new Thread(this::run, "telemetry-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Records an event.
+     * @param game the id of the game, or 0 if it is not known.
+     * @param day the day in the game.
+     * @param action the menu character of the action, or 0 if there is none.
+     * @param source where the record comes from, see Telemetry.
+     * @param code the outcome code, see Telemetry.code.
+     * @param objectCoins the objectCoins of the Farmer.
+     * @param exp the total EXP units of the Farmer.
+     * @return true if the record was queued and false if it was dropped.
+     */
+    public boolean record(int game, int day, char action, byte source, short code, int objectCoins, long exp) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                if (policy == Policy.DROP || !running) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+                LockSupport.unpark(thread);
+                LockSupport.parkNanos(IDLE_NANOS / 100);
+                position = tail.get();
+            } else {
+                position = tail.get();
+            }
+        }
+        int index = (int) (position & mask);
+        times[index] = System.currentTimeMillis();
+        games[index] = game;
+        days[index] = day;
+        actions[index] = (byte) action;
+        sources[index] = source;
+        codes[index] = code;
+        coins[index] = objectCoins;
+        exps[index] = exp;
+        sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    /**
+     * Gets the amount of records dropped because the queue was full.
+     * @return the amount of dropped records.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Gets the amount of records written to files.
+     * @return the amount of written records.
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * Stops the writer thread after it has written every queued record, and closes the current file.
+     */
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                int count = drain();
+                if (count > 0) {
+                    write();
+                } else if (!running) {
+                    break;
+                } else {
+                    LockSupport.parkNanos(IDLE_NANOS);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error: could not write telemetry: " + e.getMessage());
+            running = false;
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error: could not close telemetry: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Moves up to a batch of published records from the queue into the buffer.
+     * @return the amount of records moved.
+     */
+    private int drain() {
+        buffer.clear();
+        int count = 0;
+        while (count < BATCH) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            buffer.putLong(times[index]).putInt(games[index]).putInt(days[index]).put(actions[index])
+                    .put(sources[index]).putShort(codes[index]).putInt(coins[index]).putLong(exps[index]);
+            sequences.lazySet(index, head + mask + 1);
+            head++;
+            count++;
+        }
+        buffer.flip();
+        return count;
+    }
+
+    /**
+     * Writes the buffer, starting new files whenever the current one is full.
+     */
+    private void write() throws IOException {
+        while (buffer.hasRemaining()) {
+            long room = maxFileBytes - channel.position();
+            if (room <= 0) {
+                channel.close();
+                fileNumber++;
+                channel = open();
+                continue;
+            }
+            int limit = buffer.limit();
+            buffer.limit((int) Math.min(limit, buffer.position() + room));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.limit(limit);
+        }
+        written.addAndGet(buffer.limit() / RECORD_BYTES);
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(Path.of(prefix + "." + fileNumber), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+}
@@ -0,0 +1,417 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ * This class applies the commands of many games on a fixed tick instead of the moment each command
+ * arrives, for hosting games that are played from other threads.
+ * <p>
+ * Every game has its own bounded lock-free queue that any number of threads can submit commands into,
+ * built like the queue of TelemetryWriter. Each game is pinned to one worker thread, chosen by its id, so
+ * that a game is only ever touched by the same thread and its Plots stay in that thread's cache. On every
+ * tick a worker drains the queues of its games, applies each game's commands through
+ * GameManager.applyCommand as one batch, publishes one snapshot per game for the whole batch and then
+ * hands the results of the tick to the ResultListener together.
+ * <p>
+ * Submitting never waits. When a queue is three quarters full submitting returns SLOW_DOWN so that
+ * clients can back off before commands are lost, and when it is full the command is rejected. The time
+ * each tick takes and the commands it applied are recorded in Metrics.
+ */
+public class TickScheduler {
+    /**
+     * What happened to a submitted command.
+     */
+    public enum Admission {
+        /**
+         * The command was queued.
+         */
+        ACCEPTED,
+        /**
+         * The command was queued, but the queue of its game is almost full and the client should slow down.
+         */
+        SLOW_DOWN,
+        /**
+         * The command was not queued because the queue of its game is full or the game is not registered.
+         */
+        REJECTED
+    }
+
+    /**
+     * Receives the results of commands once the tick that applied them has published its snapshots.
+     */
+    public interface ResultListener {
+        /**
+         * Called on the worker thread for each command applied.
+         * @param game the id of the game.
+         * @param action the menu character of the action.
+         * @param code the outcome code of the action, see Telemetry.code.
+         * @param latencyNanos the time from submitting the command to its result.
+         */
+        void completed(int game, char action, short code, long latencyNanos);
+    }
+
+    private final Worker[] workers;
+    private final ConcurrentHashMap<Integer, GameQueue> queues = new ConcurrentHashMap<>();
+    private final int capacity;
+    private final long tickNanos;
+    private final ResultListener listener;
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * Constructor for TickScheduler, which starts its worker threads.
+     * @param workers the amount of worker threads.
+     * @param tickNanos the period of a tick in nanoseconds.
+     * @param capacity the amount of commands the queue of each game can hold, rounded up to a power of two.
+     * @param listener what receives the results of commands, or null if they are not needed.
+     */
+    public TickScheduler(int workers, long tickNanos, int capacity, ResultListener listener) {
+        if (workers < 1 || tickNanos < 1 || capacity < 1) {
+            throw new IllegalArgumentException("workers, tick and capacity must be positive");
+        }
+        this.capacity = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.tickNanos = tickNanos;
+        this.listener = listener;
+        this.workers = new Worker[workers];
+        for (int i = 0; i < workers; i++) {
+            this.workers[i] = new Worker(i);
+        }
+        for (Worker worker : this.workers) {
+            worker.thread.start();
+        }
+    }
+
+    /**
+     * Starts applying the commands of a game. From now on the game must only be touched through the
+     * scheduler, and its snapshots are published once per tick instead of after every action.
+     * @param gameManager the game to register.
+     */
+    public void register(GameManager gameManager) {
+        GameQueue queue = new GameQueue(gameManager, capacity);
+        if (queues.putIfAbsent(gameManager.getId(), queue) == null) {
+            gameManager.setSnapshotsDeferred(true);
+            workers[Math.floorMod(gameManager.getId(), workers.length)].add(queue);
+        }
+    }
+
+    /**
+     * Stops applying the commands of a game and hands it back. Commands still queued for it are dropped.
+     * The worker of the game publishes its snapshots after every action again and publishes one of the
+     * game as it was left, and this waits until it has, so the game can be touched as soon as this returns.
+     * @param game the id of the game.
+     */
+    public void unregister(int game) {
+        GameQueue queue = queues.remove(game);
+        if (queue == null) {
+            return;
+        }
+        Worker worker = workers[Math.floorMod(game, workers.length)];
+        if (Thread.currentThread() == worker.thread) {
+            worker.release(queue);
+            return;
+        }
+        worker.leaving.add(queue);
+        LockSupport.unpark(worker.thread);
+        boolean interrupted = false;
+        while (queue.released.getCount() > 0) {
+            try {
+                if (!queue.released.await(tickNanos, TimeUnit.NANOSECONDS) && !worker.thread.isAlive()) {
+                    // The worker stopped before it saw the game, so nothing else touches it.
+                    worker.release(queue);
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Submits a command to be applied on the next tick. This can be called from any thread.
+     * @param game the id of the game.
+     * @param action the menu character of the action.
+     * @param x the row of the Plot acted on, ignored by REGISTER and END DAY.
+     * @param y the column of the Plot acted on, ignored by REGISTER and END DAY.
+     * @param crop the menu character of the Crop to plant, only used by PLANT.
+     * @return whether the command was queued and whether the client should slow down.
+     */
+    public Admission submit(int game, char action, int x, int y, char crop) {
+        GameQueue queue = queues.get(game);
+        if (queue == null || !running || !queue.offer(action, x, y, crop)) {
+            rejected.incrementAndGet();
+            Metrics.recordRejectedCommand();
+            return Admission.REJECTED;
+        }
+        return queue.size() >= capacity - capacity / 4 ? Admission.SLOW_DOWN : Admission.ACCEPTED;
+    }
+
+    /**
+     * Gets the amount of commands waiting in the queue of a game.
+     * @param game the id of the game.
+     * @return the amount of queued commands, or 0 if the game is not registered.
+     */
+    public int getQueueDepth(int game) {
+        GameQueue queue = queues.get(game);
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * Gets the amount of commands rejected since the scheduler started.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Gets the amount of commands applied since the scheduler started.
+     */
+    public long getApplied() {
+        long applied = 0;
+        for (Worker worker : workers) {
+            applied += worker.applied;
+        }
+        return applied;
+    }
+
+    /**
+     * Gets the amount of ticks that took longer than the tick period since the scheduler started.
+     */
+    public long getOverruns() {
+        long overruns = 0;
+        for (Worker worker : workers) {
+            overruns += worker.overruns;
+        }
+        return overruns;
+    }
+
+    /**
+     * Stops the workers after they have applied every queued command. Commands submitted afterwards are
+     * rejected.
+     */
+    public void close() {
+        running = false;
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+        for (Worker worker : workers) {
+            try {
+                worker.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * A thread applying the commands of the games pinned to it, one tick at a time.
+     */
+    private final class Worker {
+        private final Thread thread;
+        private volatile GameQueue[] games = new GameQueue[0];
+        private final ConcurrentLinkedQueue<GameQueue> leaving = new ConcurrentLinkedQueue<>();
+        private volatile long applied = 0;
+        private volatile long overruns = 0;
+        private char[] actions = new char[64];
+        private short[] codes = new short[64];
+        private long[] submitted = new long[64];
+
+        private Worker(int number) {
+            thread = new Thread(this::run, "tick-worker-" + number);
+            thread.setDaemon(true);
+        }
+
+        private synchronized void add(GameQueue queue) {
+            GameQueue[] added = Arrays.copyOf(games, games.length + 1);
+            added[games.length] = queue;
+            games = added;
+        }
+
+        /**
+         * Removes a game from the worker and hands it back with its snapshots published after every action
+         * again. This must run on the worker thread, or once the worker has stopped.
+         */
+        private synchronized void release(GameQueue queue) {
+            if (queue.released.getCount() == 0) {
+                return;
+            }
+            GameQueue[] current = games;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == queue) {
+                    GameQueue[] remaining = new GameQueue[current.length - 1];
+                    System.arraycopy(current, 0, remaining, 0, i);
+                    System.arraycopy(current, i + 1, remaining, i, remaining.length - i);
+                    games = remaining;
+                    break;
+                }
+            }
+            queue.gameManager.setSnapshotsDeferred(false);
+            queue.gameManager.flushSnapshot();
+            queue.released.countDown();
+        }
+
+        private void run() {
+            long deadline = System.nanoTime() + tickNanos;
+            while (true) {
+                boolean stopping = !running;
+                for (GameQueue queue = leaving.poll(); queue != null; queue = leaving.poll()) {
+                    release(queue);
+                }
+                long start = System.nanoTime();
+                int commands = 0;
+                for (GameQueue queue : games) {
+                    // A listener may have unregistered a game later in this tick.
+                    if (queue.released.getCount() > 0) {
+                        commands += tick(queue);
+                    }
+                }
+                long end = System.nanoTime();
+                boolean overrun = end - start > tickNanos;
+                if (commands > 0) {
+                    applied += commands;
+                    Metrics.recordTick(end - start, commands, overrun);
+                }
+                if (stopping) {
+                    break;
+                }
+                if (overrun) {
+                    overruns++;
+                }
+                if (end - deadline >= 0) {
+                    // Missed ticks are skipped rather than run back to back.
+                    deadline = end + tickNanos;
+                } else {
+                    LockSupport.parkNanos(deadline - end);
+                    deadline += tickNanos;
+                }
+            }
+        }
+
+        /**
+         * Applies the queued commands of a game as one batch and hands their results to the listener.
+         * @return the amount of commands applied.
+         */
+        private int tick(GameQueue queue) {
+            GameManager gameManager = queue.gameManager;
+            int count = 0;
+            // At most a queue's worth per tick, so that a game whose clients keep up with it cannot starve
+            // the other games of the worker.
+            while (count < capacity && queue.poll()) {
+                if (count == actions.length) {
+                    actions = Arrays.copyOf(actions, count * 2);
+                    codes = Arrays.copyOf(codes, count * 2);
+                    submitted = Arrays.copyOf(submitted, count * 2);
+                }
+                actions[count] = queue.action;
+                submitted[count] = queue.submitted;
+                codes[count++] = gameManager.applyCommand(queue.action, queue.x, queue.y, queue.crop);
+            }
+            if (count > 0) {
+                gameManager.flushSnapshot();
+                if (listener != null) {
+                    long now = System.nanoTime();
+                    for (int i = 0; i < count; i++) {
+                        listener.completed(gameManager.getId(), actions[i], codes[i], now - submitted[i]);
+                    }
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * The queue of commands of one game. Any thread can offer commands, while only the worker of the game
+     * polls them.
+     */
+    private static final class GameQueue {
+        private final GameManager gameManager;
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final int mask;
+        private final AtomicLongArray sequences;
+        private final AtomicLong tail = new AtomicLong();
+        private volatile long head = 0;
+        private final char[] actions;
+        private final int[] xs;
+        private final int[] ys;
+        private final char[] crops;
+        private final long[] times;
+
+        // The command taken by the last call to poll.
+        private char action;
+        private int x;
+        private int y;
+        private char crop;
+        private long submitted;
+
+        private GameQueue(GameManager gameManager, int capacity) {
+            this.gameManager = gameManager;
+            mask = capacity - 1;
+            sequences = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                sequences.set(i, i);
+            }
+            actions = new char[capacity];
+            xs = new int[capacity];
+            ys = new int[capacity];
+            crops = new char[capacity];
+            times = new long[capacity];
+        }
+
+        private boolean offer(char action, int x, int y, char crop) {
+            long position = tail.get();
+            while (true) {
+                int index = (int) (position & mask);
+                long difference = sequences.get(index) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        break;
+                    }
+                    position = tail.get();
+                } else if (difference < 0) {
+                    return false;
+                } else {
+                    position = tail.get();
+                }
+            }
+            int index = (int) (position & mask);
+            actions[index] = action;
+            xs[index] = x;
+            ys[index] = y;
+            crops[index] = crop;
+            times[index] = System.nanoTime();
+            sequences.lazySet(index, position + 1);
+            return true;
+        }
+
+        /**
+         * Takes the next published command off the queue into the fields of the last command.
+         * @return true if a command was taken and false if the queue is empty.
+         */
+        private boolean poll() {
+            long position = head;
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                return false;
+            }
+            action = actions[index];
+            x = xs[index];
+            y = ys[index];
+            crop = crops[index];
+            submitted = times[index];
+            sequences.lazySet(index, position + mask + 1);
+            head = position + 1;
+            return true;
+        }
+
+        private int size() {
+            return (int) Math.max(0, tail.get() - head);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+import java.util.Arrays;
+
+/**
+ * <p>
+ * This class is a fixed-size cache of values about game states, keyed by GameManager.stateHash.
+ * <p>
+ * Each hash has a single slot it can be stored in, and storing a value replaces whatever was in that slot,
+ * so the table never grows past its capacity. The full hash is kept with the value, so a value is only
+ * returned for the exact hash it was stored with.
+ * @param <V> the type of value kept for a state.
+ */
+public class TranspositionTable<V> {
+    private final long[] hashes;
+    private final Object[] values;
+    private final int mask;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Constructor for TranspositionTable.
+     * @param capacity the maximum amount of values kept, rounded up to a power of two.
+     */
+    public TranspositionTable(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        hashes = new long[size];
+        values = new Object[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Gets the value stored for a state.
+     * @param hash the hash of the state.
+     * @return the value of the state, or null if none is stored.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long hash) {
+        int slot = slot(hash);
+        if (values[slot] != null && hashes[slot] == hash) {
+            hits++;
+            return (V) values[slot];
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Stores the value of a state, replacing the value of any state in the same slot.
+     * @param hash the hash of the state.
+     * @param value the value of the state.
+     */
+    public void put(long hash, V value) {
+        int slot = slot(hash);
+        hashes[slot] = hash;
+        values[slot] = value;
+    }
+
+    /**
+     * Removes every value from the table.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+    }
+
+    /**
+     * Gets the amount of times get found a value.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the amount of times get did not find a value.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    private int slot(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -1,3 +1,4 @@
+import java.util.Iterator;
 import java.util.Scanner;
 
 public class UIManager {
@@ -10,9 +11,18 @@ public class UIManager {
     }
 
     public static void displayFarmInfo(int day, Farmer farmer, Farm farm) {
-        // Check for level update before printing
-        boolean levelUpdate = farmer.levelCheck();
+        displayFarmInfo(day, farmer, farm, null);
+    }
 
+    /**
+     * Displays the farm, listing the harvestable Crops from the most valuable if an index of them is given
+     * and in the order of the Plots if not.
+     * @param day the current day in the Game.
+     * @param farmer the Farmer.
+     * @param farm the farm.
+     * @param harvestIndex the index of the Crops of the farm, or null to scan the farm for harvestable Crops.
+     */
+    public static void displayFarmInfo(int day, Farmer farmer, Farm farm, HarvestIndex harvestIndex) {
         System.out.println();
         System.out.println("  --------  MY FARM  --------  ");
         System.out.println("  DAY: " + day);
@@ -24,13 +34,33 @@ public class UIManager {
         // Temporary display of a single plot
         System.out.println("  " + farm.getPlot(0, 0).getCharStatus(day));
 
-        // Update level and harvest status
-        farmer.levelUpdate(levelUpdate);
         System.out.println();
-        farm.displayHarvestableCrop(day);
+        if (harvestIndex == null) {
+            farm.displayHarvestableCrop(day);
+        } else {
+            for (Iterator<Plot> ready = harvestIndex.ready(day); ready.hasNext(); ) {
+                Plot plot = ready.next();
+                System.out.printf("  A %s can be harvested at (%d, %d) for about %.2f objectCoins.%n",
+                        plot.getCrop().getName(), plot.getIndex() / farm.getColumns(),
+                        plot.getIndex() % farm.getColumns(), harvestIndex.getValue(plot) / 100.0);
+            }
+        }
+    }
+
+    /**
+     * Displays the actions, showing PICKAXE, REGISTER and HARVEST only when their rules are satisfied.
+     * @param rules the rules of the game.
+     */
+    public static void displayChoiceMenu(RuleEngine rules) {
+        displayChoiceMenu(rules, null);
     }
 
-    public static void displayChoiceMenu(Farm farm, Farmer farmer, int day) {
+    /**
+     * Displays the actions, with UNDO and REDO when there is a step to undo or redo.
+     * @param rules the rules of the game.
+     * @param history the history of the steps of the game, or null if undo is not enabled.
+     */
+    public static void displayChoiceMenu(RuleEngine rules, UndoHistory history) {
         System.out.println();
         System.out.println("  --------  ACTIONS  --------  ");
         System.out.println("  [P]LOW (Plow a plot) ");
@@ -38,18 +68,34 @@ public class UIManager {
         System.out.println("  [W]ATERING CAN (Water a plot) ");
         System.out.println("  [F]ERTILIZER (Fertilize a plot) ");
         System.out.println("  [S]HOVEL (Shovel a plot) ");
-        if (farm.hasRock()) {
+        if (rules.isSatisfied(GameManager.PICKAXE_RULE)) {
             System.out.println("  PICKA[X]E (Mine a rock on plot) ");
         }
-        if (farmer.registerCheck()) {
+        if (rules.isSatisfied(GameManager.REGISTER_RULE)) {
             System.out.println("  [R]EGISTER (Next title is available for registration) ");
         }
-        if (farm.hasHarvestableCrop(day)) {
+        if (rules.isSatisfied(GameManager.HARVEST_RULE)) {
             System.out.println("  [H]ARVEST (Harvest a matured crop.)");
         }
+        if (history != null && history.getUndoCount() > 0) {
+            System.out.println("  [U]NDO (Take back the last action)");
+        }
+        if (history != null && history.getRedoCount() > 0) {
+            System.out.println("  RE[D]O (Do the last undone action again)");
+        }
         System.out.println("  [E]ND DAY (Advances the day)");
     }
 
+    /**
+     * Displays the achievements completed since they were last displayed.
+     * @param rules the rules of the game.
+     */
+    public static void displayAchievements(RuleEngine rules) {
+        for (Rule achievement = rules.pollCompleted(); achievement != null; achievement = rules.pollCompleted()) {
+            System.out.println("  ACHIEVEMENT UNLOCKED: " + achievement.getName() + " (" + achievement.getDescription() + ")");
+        }
+    }
+
     public static void displayEndScreen(Farm farm, int day) {
         System.out.println();
         if (farm.isFullOfWitheredCrops(day)) {
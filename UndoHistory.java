@@ -0,0 +1,252 @@
+import exceptions.InvalidInputException;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * This class keeps the recent steps of a game so that they can be undone and redone. A step is an action,
+ * or days advanced outside of an action.
+ * <p>
+ * A step is recorded as the changes it made to the Plots of the farm, each the index of the Plot with its
+ * packed state from PlotState before and after the change, and as a frame of the rest of the game before
+ * and after the step: the day, the Farmer, the state of the GameRandom and the counters, laid out by
+ * GameManager. Undoing a step sets the Plots it changed back to their old states in reverse order and
+ * gives back the frame from before it, and redoing it sets them to their new states in order, so both
+ * take time in proportion to the changes of the step and not to the size of the farm. Plots are set back
+ * through the farm, so its hash and every other PlotListener follow them.
+ * <p>
+ * Steps and changes are kept in two rings of primitive arrays of a fixed size, so recording does not
+ * allocate and the history has a fixed memory. Once a ring is full the oldest steps are forgotten. A step
+ * with more changes than the ring of changes holds, such as a day that withers a large farm, cannot be
+ * undone and forgets every step before it. Recording a step forgets the steps that were undone, which
+ * can no longer be redone.
+ * <p>
+ * Changes to the farm made outside of a step cannot be undone either, so they also forget every step,
+ * except for Crops found to have withered.
+ */
+public class UndoHistory implements PlotListener {
+    // The history and its arrays without their contents, see MemoryFootprint.
+    private static final long HISTORY_BYTES = MemoryFootprint.object(10 * MemoryFootprint.REFERENCE
+            + 5 * Long.BYTES + 2 * Integer.BYTES + 2);
+
+    private final Farm farm;
+    private final int frameLength;
+    private final long[] before;
+    private final long[] after;
+    private final long[] changeStarts;
+    private final long[] changeEnds;
+    private final byte[] actions;
+    private final int[] plots;
+    private final long[] oldStates;
+    private final long[] newStates;
+    private final long[] pending;
+    // Steps and changes are numbered from the start of the game, and kept at their number modulo the ring.
+    private long first = 0;
+    private long current = 0;
+    private long last = 0;
+    private long changeTop = 0;
+    private long stepStart = 0;
+    private int depth = 0;
+    private boolean overflowed = false;
+    private boolean replaying = false;
+
+    /**
+     * Constructor for UndoHistory, which starts following the farm.
+     * @param farm the farm of the game.
+     * @param steps the most steps kept.
+     * @param changes the most changes to Plots kept, over every step.
+     * @param frameLength the amount of longs in a frame of the game.
+     */
+    public UndoHistory(Farm farm, int steps, int changes, int frameLength) {
+        if (steps < 1 || changes < 1) {
+            throw new IllegalArgumentException("steps and changes must be positive");
+        }
+        this.farm = farm;
+        this.frameLength = frameLength;
+        before = new long[steps * frameLength];
+        after = new long[steps * frameLength];
+        changeStarts = new long[steps];
+        changeEnds = new long[steps];
+        actions = new byte[steps];
+        plots = new int[changes];
+        oldStates = new long[changes];
+        newStates = new long[changes];
+        pending = new long[frameLength];
+        farm.addPlotListener(this);
+    }
+
+    @Override
+    public void plotChanged(Plot plot, long oldState) {
+        if (replaying) {
+            return;
+        }
+        if (depth == 0) {
+            // A Crop found to have withered follows from the day and the rest of the Plot, so it is the same
+            // whichever steps are undone. Any other change cannot be undone.
+            if (!plot.isWithered() || PlotState.isWithered(oldState)) {
+                clear();
+            }
+            return;
+        }
+        if (overflowed) {
+            return;
+        }
+        if (changeTop - stepStart >= plots.length) {
+            overflowed = true;
+            return;
+        }
+        while (first < current && changeTop - changeStarts[ring(first)] >= plots.length) {
+            first++;
+        }
+        int change = (int) (changeTop++ % plots.length);
+        plots[change] = plot.getIndex();
+        oldStates[change] = oldState;
+        newStates[change] = PlotState.encode(plot);
+    }
+
+    /**
+     * Starts recording a step. Steps started while another is recorded are part of it.
+     * @param frame the frame of the game before the step.
+     */
+    public void begin(long[] frame) {
+        if (depth++ > 0) {
+            return;
+        }
+        last = current;
+        if (current > first) {
+            changeTop = changeEnds[ring(current - 1)];
+        }
+        stepStart = changeTop;
+        overflowed = false;
+        System.arraycopy(frame, 0, pending, 0, frameLength);
+    }
+
+    /**
+     * Ends recording a step. A step that changed nothing is not kept.
+     * @param action the menu character of the action of the step, or 0 for days advanced outside of one.
+     * @param frame the frame of the game after the step.
+     */
+    public void end(char action, long[] frame) {
+        if (--depth > 0) {
+            return;
+        }
+        if (overflowed) {
+            clear();
+            return;
+        }
+        if (changeTop == stepStart && Arrays.equals(pending, 0, frameLength, frame, 0, frameLength)) {
+            return;
+        }
+        if (current - first == actions.length) {
+            first++;
+        }
+        int step = ring(current);
+        System.arraycopy(pending, 0, before, step * frameLength, frameLength);
+        System.arraycopy(frame, 0, after, step * frameLength, frameLength);
+        changeStarts[step] = stepStart;
+        changeEnds[step] = changeTop;
+        actions[step] = (byte) action;
+        last = ++current;
+    }
+
+    /**
+     * Undoes the latest step that was not undone, setting its Plots back.
+     * @param frame the array to fill with the frame of the game before the step, for the caller to set.
+     * @return the menu character of the action of the step, 0 for days advanced outside of one, or -1 if
+     *         there is no step to undo.
+     */
+    public int undo(long[] frame) {
+        if (current == first) {
+            return -1;
+        }
+        int step = ring(--current);
+        replaying = true;
+        try {
+            for (long c = changeEnds[step] - 1; c >= changeStarts[step]; c--) {
+                int change = (int) (c % plots.length);
+                restore(plots[change], oldStates[change]);
+            }
+        } finally {
+            replaying = false;
+        }
+        System.arraycopy(before, step * frameLength, frame, 0, frameLength);
+        return actions[step];
+    }
+
+    /**
+     * Redoes the earliest step that was undone, setting its Plots forward again.
+     * @param frame the array to fill with the frame of the game after the step, for the caller to set.
+     * @return the menu character of the action of the step, 0 for days advanced outside of one, or -1 if
+     *         there is no step to redo.
+     */
+    public int redo(long[] frame) {
+        if (current == last) {
+            return -1;
+        }
+        int step = ring(current++);
+        replaying = true;
+        try {
+            for (long c = changeStarts[step]; c < changeEnds[step]; c++) {
+                int change = (int) (c % plots.length);
+                restore(plots[change], newStates[change]);
+            }
+        } finally {
+            replaying = false;
+        }
+        System.arraycopy(after, step * frameLength, frame, 0, frameLength);
+        return actions[step];
+    }
+
+    /**
+     * Gets the amount of steps that can be undone.
+     */
+    public int getUndoCount() {
+        return (int) (current - first);
+    }
+
+    /**
+     * Gets the amount of steps that can be redone.
+     */
+    public int getRedoCount() {
+        return (int) (last - current);
+    }
+
+    /**
+     * Forgets every step.
+     */
+    public void clear() {
+        first = current;
+        last = current;
+    }
+
+    /**
+     * Estimates the heap used by the history, which is fixed when it is created.
+     * @return the estimated bytes, see MemoryFootprint.
+     */
+    public long getRetainedBytes() {
+        return HISTORY_BYTES + 2 * MemoryFootprint.array(before.length, Long.BYTES)
+                + MemoryFootprint.array(pending.length, Long.BYTES)
+                + 2 * MemoryFootprint.array(actions.length, Long.BYTES)
+                + MemoryFootprint.array(actions.length, Byte.BYTES)
+                + MemoryFootprint.array(plots.length, Integer.BYTES)
+                + 2 * MemoryFootprint.array(plots.length, Long.BYTES);
+    }
+
+    /**
+     * Stops following the farm.
+     */
+    public void close() {
+        farm.removePlotListener(this);
+    }
+
+    private int ring(long step) {
+        return (int) (step % actions.length);
+    }
+
+    private void restore(int index, long state) {
+        try {
+            farm.restorePlot(index, state);
+        } catch (InvalidInputException e) {
+            throw new IllegalStateException("the history has a Crop that does not exist", e);
+        }
+    }
+}
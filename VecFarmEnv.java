@@ -0,0 +1,226 @@
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ * This class runs many independent games side by side without a console, for training agents.
+ * <p>
+ * Every step applies one action to each game. Actions are numbers from 0 to getActionCount() - 1 that
+ * encode the menu action, the Plot and the Crop to plant, see encodeAction. After a step, the observation
+ * of each game is written into one shared array laid out game by game, together with the reward (the
+ * change in objectCoins) and whether the game is done. A game that is done is reset in place right away,
+ * so its observation is the start of the next game.
+ * <p>
+ * The games and arrays are allocated once when the environment is created, and the errors of the games have
+ * no stack traces, so that failed actions cost about as little as the others. Games can be stepped in
+ * ranges from several threads at once, since every game is only touched by the thread stepping its range.
+ */
+public class VecFarmEnv {
+    /**
+     * The menu characters of the actions, in the order they are encoded.
+     */
+    public static final String ACTIONS = "PTWFSXRHE";
+    /**
+     * The amount of observation values per Plot: state, Crop, age, water and fertilizer.
+     */
+    public static final int PLOT_FEATURES = 5;
+    /**
+     * The amount of observation values for the rest of the game: day, objectCoins, level, title and total EXP.
+     */
+    public static final int GAME_FEATURES = 5;
+
+    private final int rows;
+    private final int columns;
+    private final int maxDays;
+    private final GameManager[] games;
+    private final float[] observations;
+    private final float[] rewards;
+    private final boolean[] dones;
+    private final int features;
+
+    /**
+     * Constructor for the environment.
+     * @param count the number of games to run.
+     * @param rows the number of rows of Plots of each farm.
+     * @param columns the number of columns of Plots of each farm.
+     * @param maxDays the day after which a game is done even if it has not ended.
+     */
+    public VecFarmEnv(int count, int rows, int columns, int maxDays) {
+        this.rows = rows;
+        this.columns = columns;
+        this.maxDays = maxDays;
+        games = new GameManager[count];
+        features = rows * columns * PLOT_FEATURES + GAME_FEATURES;
+        observations = new float[count * features];
+        rewards = new float[count];
+        dones = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            games[i] = new GameManager(rows, columns);
+            games[i].getFarmer().setDisplay(false);
+            games[i].setStackTraces(false);
+            observe(i);
+        }
+    }
+
+    /**
+     * Gets the amount of different actions.
+     * @return the amount of different actions.
+     */
+    public int getActionCount() {
+        return ACTIONS.length() * rows * columns * CropFactory.CHOICES.length();
+    }
+
+    /**
+     * Gets the amount of observation values of each game.
+     * @return the amount of observation values per game.
+     */
+    public int getFeatureCount() {
+        return features;
+    }
+
+    /**
+     * Encodes an action for step.
+     * @param action the menu character of the action.
+     * @param x the row of the Plot acted on.
+     * @param y the column of the Plot acted on.
+     * @param crop the menu character of the Crop to plant, ignored if the action does not plant.
+     * @return the encoded action.
+     * @throws IllegalArgumentException if the action or the Crop to plant is not on the menu, or the Plot is
+     *         not on the farm.
+     */
+    public int encodeAction(char action, int x, int y, char crop) {
+        int actionIndex = ACTIONS.indexOf(action);
+        if (actionIndex < 0) {
+            throw new IllegalArgumentException("unknown action " + action);
+        }
+        if (x < 0 || x >= rows || y < 0 || y >= columns) {
+            throw new IllegalArgumentException("(" + x + ", " + y + ") is not on the farm");
+        }
+        int cropIndex = CropFactory.CHOICES.indexOf(crop);
+        if (cropIndex < 0) {
+            if (action == 'T') {
+                throw new IllegalArgumentException("unknown crop " + crop);
+            }
+            cropIndex = 0;
+        }
+        return (actionIndex * rows * columns + x * columns + y) * CropFactory.CHOICES.length() + cropIndex;
+    }
+
+    /**
+     * Gets the observations of every game, game i being stored from i * getFeatureCount(). The array is
+     * reused by every step.
+     * @return the observations of every game.
+     */
+    public float[] getObservations() {
+        return observations;
+    }
+
+    /**
+     * Gets the reward of every game from the last step. The array is reused by every step.
+     * @return the rewards of every game.
+     */
+    public float[] getRewards() {
+        return rewards;
+    }
+
+    /**
+     * Gets whether every game was done in the last step. The array is reused by every step.
+     * @return true for the games that were done and replaced with new games.
+     */
+    public boolean[] getDones() {
+        return dones;
+    }
+
+    /**
+     * Applies an action to every game.
+     * @param actions the encoded action of every game.
+     */
+    public void step(int[] actions) {
+        step(actions, 0, games.length);
+    }
+
+    /**
+     * Applies an action to every game, splitting the games across the common fork-join pool.
+     * @param actions the encoded action of every game.
+     * @param batches the amount of ranges of games stepped in parallel.
+     */
+    public void stepParallel(int[] actions, int batches) {
+        int size = (games.length + batches - 1) / batches;
+        IntStream.range(0, batches).parallel()
+                .forEach(batch -> step(actions, batch * size, Math.min(games.length, (batch + 1) * size)));
+    }
+
+    /**
+     * Applies an action to a range of games.
+     * @param actions the encoded action of every game.
+     * @param from the first game to step.
+     * @param to the game after the last game to step.
+     * @throws IllegalArgumentException if an action is not from 0 to getActionCount() - 1, in which case
+     *         the games before it were stepped.
+     */
+    public void step(int[] actions, int from, int to) {
+        int crops = CropFactory.CHOICES.length();
+        int plots = rows * columns;
+        int count = getActionCount();
+        for (int i = from; i < to; i++) {
+            if (actions[i] < 0 || actions[i] >= count) {
+                throw new IllegalArgumentException("action " + actions[i] + " of game " + i + " is not encoded");
+            }
+            GameManager game = games[i];
+            int coins = game.getFarmer().getObjectCoins();
+            int plot = actions[i] / crops % plots;
+            // Most actions of an agent fail, which applyCommand reports as a code instead of throwing.
+            game.applyCommand(ACTIONS.charAt(actions[i] / crops / plots), plot / columns, plot % columns,
+                    CropFactory.CHOICES.charAt(actions[i] % crops));
+            rewards[i] = game.getFarmer().getObjectCoins() - coins;
+            dones[i] = game.endCheck() || game.getDay() > maxDays;
+            if (dones[i]) {
+                reset(i);
+            } else {
+                observe(i);
+            }
+        }
+    }
+
+    private void reset(int index) {
+        games[index].reset();
+        games[index].setStackTraces(false);
+        observe(index);
+    }
+
+    private void observe(int index) {
+        GameManager game = games[index];
+        int day = game.getDay();
+        int offset = index * features;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                Plot plot = game.getFarm().getPlot(i, j);
+                Crop crop = plot.getCrop();
+                boolean planted = !(crop instanceof NullCrop);
+                observations[offset++] = state(plot.getCharStatus(day));
+                observations[offset++] = crop.getSpecies() + 1;
+                observations[offset++] = planted ? day - crop.getDate() : 0;
+                observations[offset++] = crop.getWaterAmount();
+                observations[offset++] = crop.getFertilizerAmount();
+            }
+        }
+        Farmer farmer = game.getFarmer();
+        observations[offset++] = day;
+        observations[offset++] = farmer.getObjectCoins();
+        observations[offset++] = farmer.getLevel();
+        observations[offset++] = farmer.getTitle().ordinal();
+        observations[offset] = (float) farmer.getTotalExp();
+    }
+
+    /**
+     * Gets the state of a Plot from the character representing it, numbered as in Metrics.PLOT_STATES.
+     */
+    private static float state(char status) {
+        return switch (status) {
+            case '0' -> 0;
+            case 'X' -> 1;
+            case '#' -> 2;
+            case '@' -> 3;
+            default -> Character.isUpperCase(status) ? 5 : 4;
+        };
+    }
+}
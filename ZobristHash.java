@@ -0,0 +1,71 @@
+/**
+ * <p>
+ * This class gives the 64-bit keys used to hash the state of a game, so that identical states reached
+ * through different actions have the same hash.
+ * <p>
+ * Like Zobrist hashing, the hash of a farm is the XOR of a key for the state of every Plot, so it can be
+ * updated whenever a single Plot changes by XOR-ing out its old key and XOR-ing in its new one. Instead of
+ * a table of random keys for every Plot and every state, the keys are made by mixing the Plot's index with
+ * its state, which gives keys that are just as well spread without the memory of the table. An empty Plot
+ * has a key of 0, so an empty farm has a hash of 0.
+ */
+public final class ZobristHash {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final long DAY_SALT = 0x5DEECE66DL;
+    private static final long FARMER_SALT = 0xD1B54A32D192ED03L;
+
+    private ZobristHash() {}
+
+    /**
+     * Gets the key of a Plot in its current state: whether it is plowed, has a rock or a withered Crop,
+     * and which Crop it has, when it was planted and how much it was watered and fertilized.
+     * @param index the index of the Plot in its Farm.
+     * @param plot the Plot.
+     * @return the key of the Plot, which is 0 for an empty unplowed Plot.
+     */
+    public static long plotKey(int index, Plot plot) {
+        return stateKey(index, PlotState.encode(plot));
+    }
+
+    /**
+     * Gets the key of a Plot in a packed state from PlotState.
+     * @param index the index of the Plot in its Farm.
+     * @param state the packed state of the Plot.
+     * @return the key of the Plot, which is 0 for an empty unplowed Plot.
+     */
+    public static long stateKey(int index, long state) {
+        if (state == 0) {
+            return 0;
+        }
+        return mix(mix(index * GOLDEN_GAMMA) ^ state);
+    }
+
+    /**
+     * Gets the key of a Farmer's objectCoins, level and title.
+     * @param objectCoins the objectCoins of the Farmer.
+     * @param level the level of the Farmer.
+     * @param title the title of the Farmer.
+     * @return the key of the Farmer.
+     */
+    public static long farmerKey(int objectCoins, int level, FarmerTitle title) {
+        return mix(FARMER_SALT ^ mix(((long) objectCoins << 32) ^ ((long) level << 8) ^ title.ordinal()));
+    }
+
+    /**
+     * Gets the key of a day.
+     * @param day the day in the Game.
+     * @return the key of the day.
+     */
+    public static long dayKey(int day) {
+        return mix(DAY_SALT ^ mix(day));
+    }
+
+    /**
+     * Mixes the bits of a value, as done by the SplitMix64 generator.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -1,7 +1,18 @@
 package exceptions;
 
 public class CannotAffordException extends Exception {
+    // Shared, since without a stack trace or suppressed exceptions it holds nothing but its message.
+    private static final CannotAffordException WITHOUT_STACK_TRACE = new CannotAffordException(false);
+
     public CannotAffordException() {
         super("Not enough objectCoins.");
     }
+
+    private CannotAffordException(boolean stackTrace) {
+        super("Not enough objectCoins.", null, stackTrace, stackTrace);
+    }
+
+    public static CannotAffordException of(boolean stackTrace) {
+        return stackTrace ? new CannotAffordException() : WITHOUT_STACK_TRACE;
+    }
 }
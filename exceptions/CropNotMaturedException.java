@@ -1,7 +1,18 @@
 package exceptions;
 
 public class CropNotMaturedException extends Exception {
+    // Shared, since without a stack trace or suppressed exceptions it holds nothing but its message.
+    private static final CropNotMaturedException WITHOUT_STACK_TRACE = new CropNotMaturedException(false);
+
     public CropNotMaturedException() {
         super("Crop in plot has not matured yet.");
     }
+
+    private CropNotMaturedException(boolean stackTrace) {
+        super("Crop in plot has not matured yet.", null, stackTrace, stackTrace);
+    }
+
+    public static CropNotMaturedException of(boolean stackTrace) {
+        return stackTrace ? new CropNotMaturedException() : WITHOUT_STACK_TRACE;
+    }
 }
@@ -1,7 +1,18 @@
 package exceptions;
 
 public class CropWitheredException extends Exception {
+    // Shared, since without a stack trace or suppressed exceptions it holds nothing but its message.
+    private static final CropWitheredException WITHOUT_STACK_TRACE = new CropWitheredException(false);
+
     public CropWitheredException() {
         super("Crop has withered.");
     }
+
+    private CropWitheredException(boolean stackTrace) {
+        super("Crop has withered.", null, stackTrace, stackTrace);
+    }
+
+    public static CropWitheredException of(boolean stackTrace) {
+        return stackTrace ? new CropWitheredException() : WITHOUT_STACK_TRACE;
+    }
 }
@@ -1,7 +1,18 @@
 package exceptions;
 
 public class InvalidInputException extends Exception {
+    // Shared, since without a stack trace or suppressed exceptions it holds nothing but its message.
+    private static final InvalidInputException WITHOUT_STACK_TRACE = new InvalidInputException(false);
+
     public InvalidInputException() {
         super("Invalid input.");
     }
+
+    private InvalidInputException(boolean stackTrace) {
+        super("Invalid input.", null, stackTrace, stackTrace);
+    }
+
+    public static InvalidInputException of(boolean stackTrace) {
+        return stackTrace ? new InvalidInputException() : WITHOUT_STACK_TRACE;
+    }
 }
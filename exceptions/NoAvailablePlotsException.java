@@ -1,7 +1,18 @@
 package exceptions;
 
 public class NoAvailablePlotsException extends Exception {
+    // Shared, since without a stack trace or suppressed exceptions it holds nothing but its message.
+    private static final NoAvailablePlotsException WITHOUT_STACK_TRACE = new NoAvailablePlotsException(false);
+
     public NoAvailablePlotsException() {
         super("No available plots to use action on.");
     }
+
+    private NoAvailablePlotsException(boolean stackTrace) {
+        super("No available plots to use action on.", null, stackTrace, stackTrace);
+    }
+
+    public static NoAvailablePlotsException of(boolean stackTrace) {
+        return stackTrace ? new NoAvailablePlotsException() : WITHOUT_STACK_TRACE;
+    }
 }
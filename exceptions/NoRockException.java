@@ -1,7 +1,18 @@
 package exceptions;
 
 public class NoRockException extends Exception {
+    // Shared, since without a stack trace or suppressed exceptions it holds nothing but its message.
+    private static final NoRockException WITHOUT_STACK_TRACE = new NoRockException(false);
+
     public NoRockException() {
         super("No rock to pickaxe.");
     }
+
+    private NoRockException(boolean stackTrace) {
+        super("No rock to pickaxe.", null, stackTrace, stackTrace);
+    }
+
+    public static NoRockException of(boolean stackTrace) {
+        return stackTrace ? new NoRockException() : WITHOUT_STACK_TRACE;
+    }
 }
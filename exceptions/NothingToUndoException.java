@@ -0,0 +1,7 @@
+package exceptions;
+
+public class NothingToUndoException extends Exception {
+    public NothingToUndoException(String action) {
+        super("Nothing to " + action + ".");
+    }
+}
@@ -1,7 +1,18 @@
 package exceptions;
 
 public class PlotAlreadyMaturedException extends Exception {
+    // Shared, since without a stack trace or suppressed exceptions it holds nothing but its message.
+    private static final PlotAlreadyMaturedException WITHOUT_STACK_TRACE = new PlotAlreadyMaturedException(false);
+
     public PlotAlreadyMaturedException() {
         super("Plot cannot be watered or fertilized at harvest date.");
     }
+
+    private PlotAlreadyMaturedException(boolean stackTrace) {
+        super("Plot cannot be watered or fertilized at harvest date.", null, stackTrace, stackTrace);
+    }
+
+    public static PlotAlreadyMaturedException of(boolean stackTrace) {
+        return stackTrace ? new PlotAlreadyMaturedException() : WITHOUT_STACK_TRACE;
+    }
 }
@@ -1,7 +1,18 @@
 package exceptions;
 
 public class PlotAlreadyOccupiedException extends Exception {
+    // Shared, since without a stack trace or suppressed exceptions it holds nothing but its message.
+    private static final PlotAlreadyOccupiedException WITHOUT_STACK_TRACE = new PlotAlreadyOccupiedException(false);
+
     public PlotAlreadyOccupiedException() {
         super("Plot already has crop in it.");
     }
+
+    private PlotAlreadyOccupiedException(boolean stackTrace) {
+        super("Plot already has crop in it.", null, stackTrace, stackTrace);
+    }
+
+    public static PlotAlreadyOccupiedException of(boolean stackTrace) {
+        return stackTrace ? new PlotAlreadyOccupiedException() : WITHOUT_STACK_TRACE;
+    }
 }
@@ -1,7 +1,18 @@
 package exceptions;
 
 public class PlotAlreadyPlowedException extends Exception {
+    // Shared, since without a stack trace or suppressed exceptions it holds nothing but its message.
+    private static final PlotAlreadyPlowedException WITHOUT_STACK_TRACE = new PlotAlreadyPlowedException(false);
+
     public PlotAlreadyPlowedException() {
         super("Plot already plowed.");
     }
+
+    private PlotAlreadyPlowedException(boolean stackTrace) {
+        super("Plot already plowed.", null, stackTrace, stackTrace);
+    }
+
+    public static PlotAlreadyPlowedException of(boolean stackTrace) {
+        return stackTrace ? new PlotAlreadyPlowedException() : WITHOUT_STACK_TRACE;
+    }
 }
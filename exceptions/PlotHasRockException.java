@@ -1,7 +1,18 @@
 package exceptions;
 
 public class PlotHasRockException extends Exception {
+    // Shared, since without a stack trace or suppressed exceptions it holds nothing but its message.
+    private static final PlotHasRockException WITHOUT_STACK_TRACE = new PlotHasRockException(false);
+
     public PlotHasRockException() {
         super("Plot has rock in it.");
     }
+
+    private PlotHasRockException(boolean stackTrace) {
+        super("Plot has rock in it.", null, stackTrace, stackTrace);
+    }
+
+    public static PlotHasRockException of(boolean stackTrace) {
+        return stackTrace ? new PlotHasRockException() : WITHOUT_STACK_TRACE;
+    }
 }
@@ -1,7 +1,18 @@
 package exceptions;
 
 public class PlotNotPlowedException extends Exception {
+    // Shared, since without a stack trace or suppressed exceptions it holds nothing but its message.
+    private static final PlotNotPlowedException WITHOUT_STACK_TRACE = new PlotNotPlowedException(false);
+
     public PlotNotPlowedException() {
         super("Plot is not plowed.");
     }
+
+    private PlotNotPlowedException(boolean stackTrace) {
+        super("Plot is not plowed.", null, stackTrace, stackTrace);
+    }
+
+    public static PlotNotPlowedException of(boolean stackTrace) {
+        return stackTrace ? new PlotNotPlowedException() : WITHOUT_STACK_TRACE;
+    }
 }
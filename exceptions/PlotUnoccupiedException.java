@@ -1,7 +1,18 @@
 package exceptions;
 
 public class PlotUnoccupiedException extends Exception {
+    // Shared, since without a stack trace or suppressed exceptions it holds nothing but its message.
+    private static final PlotUnoccupiedException WITHOUT_STACK_TRACE = new PlotUnoccupiedException(false);
+
     public PlotUnoccupiedException() {
         super("No crop in plot.");
     }
+
+    private PlotUnoccupiedException(boolean stackTrace) {
+        super("No crop in plot.", null, stackTrace, stackTrace);
+    }
+
+    public static PlotUnoccupiedException of(boolean stackTrace) {
+        return stackTrace ? new PlotUnoccupiedException() : WITHOUT_STACK_TRACE;
+    }
 }
@@ -1,7 +1,18 @@
 package exceptions;
 
 public class TreeAdjacencyException extends Exception {
+    // Shared, since without a stack trace or suppressed exceptions it holds nothing but its message.
+    private static final TreeAdjacencyException WITHOUT_STACK_TRACE = new TreeAdjacencyException(false);
+
     public TreeAdjacencyException() {
         super("Trees need all adjacent plots empty.");
     }
+
+    private TreeAdjacencyException(boolean stackTrace) {
+        super("Trees need all adjacent plots empty.", null, stackTrace, stackTrace);
+    }
+
+    public static TreeAdjacencyException of(boolean stackTrace) {
+        return stackTrace ? new TreeAdjacencyException() : WITHOUT_STACK_TRACE;
+    }
 }
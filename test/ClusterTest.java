@@ -0,0 +1,226 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.SplittableRandom;
+
+/**
+ * <p>
+ * Checks a ClusterCoordinator against local replicas of its games: random commands are sent to games
+ * spread across shard processes and applied to a replica of every game in this process, and the outcome
+ * codes and the state hashes of the shards must be those of the replicas, including after games were
+ * moved by hand and by rebalance. Harvests are left out, since the amount of products is random and the
+ * shards do not share the seeds of their games.
+ * <p>
+ * Also checks that a game whose new shard refuses it is given back to its old shard.
+ * <p>
+ * Run from the root of the repository with
+ * javac -d out *.java exceptions/*.java test/*.java && java -cp out ClusterTest
+ */
+public class ClusterTest {
+    private static final int SHARDS = 3;
+    private static final int GAMES = 24;
+    private static final int ROUNDS = 60;
+    private static final int COMMANDS = 40;
+    private static final int MOVE_INTERVAL = 7;
+    private static final int REBALANCE_ROUND = 30;
+    private static final String STEP_ACTIONS = "PTWFSXRE";
+
+    private static int checks = 0;
+
+    public static void main(String[] args) throws IOException {
+        checkReplicas();
+        checkFailedImport();
+        System.out.println("ClusterTest: " + checks + " checks passed");
+    }
+
+    /**
+     * Plays random commands on the games of a cluster and on their replicas, moving games between shards
+     * and rebalancing them on the way.
+     */
+    private static void checkReplicas() throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        try (ClusterCoordinator cluster = ClusterCoordinator.launch(SHARDS)) {
+            int[] ids = new int[GAMES];
+            GameManager[] replicas = new GameManager[GAMES];
+            for (int i = 0; i < GAMES; i++) {
+                ScenarioSpec spec = new ScenarioSpec(8 + random.nextInt(9), 8 + random.nextInt(9));
+                ids[i] = cluster.createScenario(i, spec.getRows(), spec.getColumns());
+                replicas[i] = ScenarioGenerator.generate(i, spec);
+                replicas[i].getFarmer().setDisplay(false);
+            }
+            for (int shard = 0; shard < SHARDS; shard++) {
+                check(cluster.getGameCount(shard) == GAMES / SHARDS, "shard " + shard + " was given "
+                        + cluster.getGameCount(shard) + " games");
+            }
+            int[] games = new int[COMMANDS];
+            short[] expected = new short[COMMANDS];
+            for (int round = 0; round < ROUNDS; round++) {
+                for (int i = 0; i < COMMANDS; i++) {
+                    int game = random.nextInt(GAMES);
+                    Farm farm = replicas[game].getFarm();
+                    char action = STEP_ACTIONS.charAt(random.nextInt(STEP_ACTIONS.length()));
+                    int x = random.nextInt(farm.getRows());
+                    int y = random.nextInt(farm.getColumns());
+                    char crop = CropFactory.CHOICES.charAt(random.nextInt(CropFactory.CHOICES.length()));
+                    check(cluster.submit(ids[game], action, x, y, crop) == i, "round " + round + " command " + i
+                            + " was queued at another position");
+                    games[i] = game;
+                    expected[i] = replicas[game].applyCommand(action, x, y, crop);
+                }
+                short[] codes = cluster.flush();
+                check(codes.length == COMMANDS, "round " + round + " got " + codes.length + " outcome codes");
+                for (int i = 0; i < COMMANDS; i++) {
+                    check(codes[i] == expected[i], "round " + round + " command " + i + " on game " + ids[games[i]]
+                            + " had outcome " + codes[i] + " instead of " + expected[i]);
+                }
+                if (round % 4 == 3) {
+                    check(cluster.advanceDay() == GAMES, "round " + round + " did not advance every game");
+                    for (GameManager replica : replicas) {
+                        replica.advanceDay();
+                    }
+                }
+                if (round % MOVE_INTERVAL == MOVE_INTERVAL - 1) {
+                    int game = random.nextInt(GAMES);
+                    int shard = random.nextInt(SHARDS);
+                    cluster.move(ids[game], shard);
+                    check(cluster.getShard(ids[game]) == shard, "game " + ids[game] + " is on shard "
+                            + cluster.getShard(ids[game]) + " after moving it to shard " + shard);
+                    replicas[game] = handOff(replicas[game]);
+                }
+                if (round == REBALANCE_ROUND) {
+                    for (int game = 0; game < GAMES / 2; game++) {
+                        if (cluster.getShard(ids[game]) != 0) {
+                            cluster.move(ids[game], 0);
+                            replicas[game] = handOff(replicas[game]);
+                        }
+                    }
+                    check(cluster.getGameCount(0) >= GAMES / 2, "shard 0 has " + cluster.getGameCount(0)
+                            + " games after moving half of the games to it");
+                    int[] shards = new int[GAMES];
+                    for (int game = 0; game < GAMES; game++) {
+                        shards[game] = cluster.getShard(ids[game]);
+                    }
+                    int moved = cluster.rebalance();
+                    check(moved > 0, "rebalance moved no games");
+                    int total = 0;
+                    for (int shard = 0; shard < SHARDS; shard++) {
+                        int count = cluster.getGameCount(shard);
+                        check(count == GAMES / SHARDS, "shard " + shard + " has " + count + " games after rebalance");
+                        total += count;
+                    }
+                    check(total == GAMES, "the shards have " + total + " games after rebalance");
+                    int changed = 0;
+                    for (int game = 0; game < GAMES; game++) {
+                        if (cluster.getShard(ids[game]) != shards[game]) {
+                            replicas[game] = handOff(replicas[game]);
+                            changed++;
+                        }
+                    }
+                    check(changed == moved, "rebalance moved " + moved + " games but " + changed
+                            + " changed shards");
+                }
+                for (int game = 0; game < GAMES; game++) {
+                    check(cluster.stateHash(ids[game]) == replicas[game].stateHash(), "round " + round + ": game "
+                            + ids[game] + " on shard " + cluster.getShard(ids[game]) + " has another hash than its replica");
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that a game stays on its shard, in the same state, when the shard it is moved to refuses it.
+     */
+    private static void checkFailedImport() throws IOException {
+        try (ServerSocket workerServer = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             ServerSocket refusingServer = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread worker = new Thread(() -> {
+                try (Socket socket = workerServer.accept()) {
+                    new ShardWorker().serve(socket);
+                } catch (IOException e) {
+                    System.err.println("Error: shard stopped: " + e.getMessage());
+                }
+            });
+            Thread refusing = new Thread(() -> {
+                try (Socket socket = refusingServer.accept()) {
+                    refuseImports(socket);
+                } catch (IOException e) {
+                    System.err.println("Error: refusing shard stopped: " + e.getMessage());
+                }
+            });
+            worker.start();
+            refusing.start();
+            try (ClusterCoordinator cluster = new ClusterCoordinator(
+                    new Socket(InetAddress.getLoopbackAddress(), workerServer.getLocalPort()),
+                    new Socket(InetAddress.getLoopbackAddress(), refusingServer.getLocalPort()))) {
+                int game = cluster.createScenario(7, 10, 10);
+                check(cluster.getShard(game) == 0, "the game was created on shard " + cluster.getShard(game));
+                cluster.submit(game, 'P', 0, 0, 'A');
+                cluster.flush();
+                long hash = cluster.stateHash(game);
+                boolean failed = false;
+                try {
+                    cluster.move(game, 1);
+                } catch (IOException e) {
+                    failed = true;
+                }
+                check(failed, "moving the game to a shard that refuses it did not fail");
+                check(cluster.getShard(game) == 0, "the game is on shard " + cluster.getShard(game)
+                        + " after a failed move");
+                check(cluster.getGameCount(0) == 1 && cluster.getGameCount(1) == 0, "the shards have "
+                        + cluster.getGameCount(0) + " and " + cluster.getGameCount(1) + " games after a failed move");
+                check(cluster.stateHash(game) == hash, "the game changed in a failed move");
+                cluster.submit(game, 'E', 0, 0, 'A');
+                check(cluster.flush()[0] == Telemetry.OK, "the game cannot be played after a failed move");
+            }
+            worker.join();
+            refusing.join();
+        } catch (InterruptedException e) {
+            throw new AssertionError("interrupted while waiting for the shards", e);
+        }
+    }
+
+    /**
+     * Serves a coordinator like a shard that refuses every game handed to it and has no games.
+     */
+    private static void refuseImports(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        while (true) {
+            int type = in.read();
+            if (type == ClusterProtocol.IMPORT) {
+                in.readInt();
+                GameSnapshot.read(in);
+                out.writeByte(ClusterProtocol.REPLY_ERROR);
+                out.writeUTF("this shard refuses every game");
+            } else if (type == ClusterProtocol.SHUTDOWN) {
+                out.writeByte(ClusterProtocol.REPLY_OK);
+                out.flush();
+                return;
+            } else {
+                throw new IOException("unexpected request " + type);
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Hands a replica off like a shard does, which starts the counters of its rule engine again.
+     */
+    private static GameManager handOff(GameManager replica) {
+        GameManager restored = GameSnapshot.of(replica).restore();
+        restored.getFarmer().setDisplay(false);
+        return restored;
+    }
+
+    private static void check(boolean condition, String message) {
+        checks++;
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
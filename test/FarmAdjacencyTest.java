@@ -0,0 +1,52 @@
+/**
+ * <p>
+ * Checks Farm.hasEmptyAdjacentPlots, which decides whether a tree can be planted: every Plot of a farm
+ * that is not square must be checked without going out of bounds, and only Crops and rocks in the eight
+ * Plots around the tree may stop it, not the Plot itself or Plots further away.
+ * <p>
+ * Run from the root of the repository with
+ * javac -d out *.java exceptions/*.java test/*.java && java -cp out FarmAdjacencyTest
+ */
+public class FarmAdjacencyTest {
+    private static final int ROWS = 5;
+    private static final int COLUMNS = 10;
+
+    public static void main(String[] args) {
+        int checks = 0;
+        Farm farm = new Farm(ROWS, COLUMNS);
+        // The old check swapped the bounds of rows and columns, so a tree on (0, 9) of a 5x10 farm threw
+        // once (0, 8) was taken.
+        check(farm.hasEmptyAdjacentPlots(0, 9), "(0, 9) of an empty 5x10 farm has a neighbour");
+        farm.getPlot(0, 8).setCrop(CropFactory.createTurnip(1));
+        check(!farm.hasEmptyAdjacentPlots(0, 9), "a Crop on (0, 8) does not stop a tree on (0, 9)");
+        farm.getPlot(0, 8).resetPlot();
+        checks += 2;
+        for (int x = 0; x < ROWS; x++) {
+            for (int y = 0; y < COLUMNS; y++) {
+                check(farm.hasEmptyAdjacentPlots(x, y), "(" + x + ", " + y + ") of an empty farm has a neighbour");
+                checks++;
+            }
+        }
+        for (int x = 0; x < ROWS; x++) {
+            for (int y = 0; y < COLUMNS; y++) {
+                farm.getPlot(x, y).setCrop(CropFactory.createTurnip(1));
+                for (int i = 0; i < ROWS; i++) {
+                    for (int j = 0; j < COLUMNS; j++) {
+                        boolean adjacent = (i != x || j != y) && Math.abs(i - x) <= 1 && Math.abs(j - y) <= 1;
+                        check(farm.hasEmptyAdjacentPlots(i, j) == !adjacent, "a Crop on (" + x + ", " + y + ") "
+                                + (adjacent ? "does not stop" : "stops") + " a tree on (" + i + ", " + j + ")");
+                        checks++;
+                    }
+                }
+                farm.getPlot(x, y).resetPlot();
+            }
+        }
+        System.out.println("FarmAdjacencyTest: " + checks + " checks passed");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
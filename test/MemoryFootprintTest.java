@@ -0,0 +1,73 @@
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * Checks the memory a game is estimated to use by GameManager.getRetainedBytes against the heap that
+ * copies of the game measurably take up after garbage collection, for farms of different sizes with and
+ * without their optional structures. An estimate more than TOLERANCE off fails, since memory budgets and
+ * the admission of games on shards are decided from it.
+ * <p>
+ * The estimates are made for a 64-bit JVM with compressed references, which is the default for heaps
+ * under 32 GB.
+ * <p>
+ * Run from the root of the repository with
+ * javac -d out *.java exceptions/*.java test/*.java && java -cp out MemoryFootprintTest
+ */
+public class MemoryFootprintTest {
+    private static final double TOLERANCE = 0.05;
+    private static final long COPIES_BYTES = 256L << 20;
+
+    private static int checks = 0;
+
+    public static void main(String[] args) {
+        checkFootprint("empty 100x100", () -> new GameManager(100, 100));
+        checkFootprint("scenario 100x100", () -> ScenarioGenerator.generate(1, new ScenarioSpec(100, 100)));
+        checkFootprint("scenario 100x100 with snapshots and index", () -> {
+            GameManager gameManager = ScenarioGenerator.generate(1, new ScenarioSpec(100, 100));
+            gameManager.enableSnapshots();
+            gameManager.enableHarvestIndex();
+            return gameManager;
+        });
+        checkFootprint("scenario 1000x1000", () -> ScenarioGenerator.generate(1, new ScenarioSpec(1000, 1000)));
+        System.out.println("MemoryFootprintTest: " + checks + " checks passed");
+    }
+
+    /**
+     * Makes copies of a game, about COPIES_BYTES of them, and checks that their estimated bytes are within
+     * TOLERANCE of the growth of the heap.
+     */
+    private static void checkFootprint(String name, Supplier<GameManager> factory) {
+        long sample = factory.get().getRetainedBytes();
+        int copies = (int) Math.max(4, Math.min(1000, COPIES_BYTES / sample));
+        GameManager[] games = new GameManager[copies];
+        long before = usedHeap();
+        long estimated = 0;
+        for (int i = 0; i < copies; i++) {
+            games[i] = factory.get();
+            estimated += games[i].getRetainedBytes();
+        }
+        long measured = usedHeap() - before;
+        double error = (double) (estimated - measured) / measured;
+        System.out.println(String.format(Locale.ROOT, "MemoryFootprintTest: GameManager %s estimated %d bytes, "
+                + "measured %d bytes, %.1f%% off", name, estimated / copies, measured / copies, 100 * error));
+        check(Math.abs(error) <= TOLERANCE, "the estimate of GameManager " + name + " is " + estimated / copies
+                + " bytes but a game takes up " + measured / copies + " bytes");
+        check(games[copies - 1].getDay() > 0, "the last copy of GameManager " + name + " has no day");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void check(boolean condition, String message) {
+        checks++;
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
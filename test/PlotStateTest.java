@@ -0,0 +1,94 @@
+import exceptions.InvalidInputException;
+
+/**
+ * <p>
+ * Checks that packing a Plot with PlotState and restoring it gives back the same Plot, for amounts of water
+ * and fertilizer around the edges of the bits they are packed into and for amounts above MAX_AMOUNT, which
+ * must restore to a Crop that grows and sells the same.
+ * <p>
+ * Run from the root of the repository with
+ * javac -d out *.java exceptions/*.java test/*.java && java -cp out PlotStateTest
+ */
+public class PlotStateTest {
+    private static final int[] AMOUNTS = {0, 1, 7, 255, 256, 300, PlotState.MAX_AMOUNT};
+    private static final int[] DATES = {1, 40, 1 << 20, Integer.MAX_VALUE - 1};
+
+    public static void main(String[] args) throws InvalidInputException {
+        int checks = 0;
+        for (char choice : CropFactory.CHOICES.toCharArray()) {
+            for (int water : AMOUNTS) {
+                for (int fertilizer : AMOUNTS) {
+                    for (int date : DATES) {
+                        checkRoundTrip(choice, date, water, fertilizer);
+                        checks++;
+                    }
+                }
+            }
+            checkSaturated(choice, PlotState.MAX_AMOUNT + 1, 5000);
+            checkSaturated(choice, 100_000, PlotState.MAX_AMOUNT + 1);
+            checks += 2;
+        }
+        System.out.println("PlotStateTest: " + checks + " checks passed");
+    }
+
+    /**
+     * Checks that a Crop with amounts that fit is restored exactly.
+     */
+    private static void checkRoundTrip(char choice, int date, int water, int fertilizer) throws InvalidInputException {
+        Plot plot = plot(choice, date, water, fertilizer);
+        long state = PlotState.encode(plot);
+        Plot restored = new Plot();
+        PlotState.restore(restored, state);
+        Crop crop = restored.getCrop();
+        String name = choice + " planted on " + date + " with " + water + " water and " + fertilizer + " fertilizer";
+        check(CropFactory.getChoice(crop) == choice, name + " restored as " + CropFactory.getChoice(crop));
+        check(crop.getDate() == date, name + " restored with date " + crop.getDate());
+        check(crop.getWaterAmount() == water, name + " restored with water " + crop.getWaterAmount());
+        check(crop.getFertilizerAmount() == fertilizer, name + " restored with fertilizer " + crop.getFertilizerAmount());
+        check(restored.getPlow() && !restored.getRock(), name + " restored unplowed or with a rock");
+        check(PlotState.encode(restored) == state, name + " packs differently after restoring");
+    }
+
+    /**
+     * Checks that a Crop with amounts above MAX_AMOUNT packs the same as after restoring and still grows
+     * and sells the same.
+     */
+    private static void checkSaturated(char choice, int water, int fertilizer) throws InvalidInputException {
+        Plot plot = plot(choice, 3, water, fertilizer);
+        long state = PlotState.encode(plot);
+        Plot restored = new Plot();
+        PlotState.restore(restored, state);
+        Crop original = plot.getCrop();
+        Crop crop = restored.getCrop();
+        String name = choice + " with " + water + " water and " + fertilizer + " fertilizer";
+        check(crop.getWaterAmount() == Math.min(water, PlotState.MAX_AMOUNT), name + " did not saturate water");
+        check(crop.getFertilizerAmount() == Math.min(fertilizer, PlotState.MAX_AMOUNT), name + " did not saturate fertilizer");
+        check(PlotState.encode(restored) == state, name + " packs differently after restoring");
+        check(crop.getWitherDay() == original.getWitherDay(), name + " withers on another day after restoring");
+        for (int day = 3; day <= original.getWitherDay() + 1; day++) {
+            check(crop.isWithered(day) == original.isWithered(day), name + " withers differently on day " + day);
+        }
+        for (FarmerTitle title : FarmerTitle.values()) {
+            int products = crop.getProductMax();
+            check(crop.calculatePrice(products, crop.getWaterAmount(), crop.getFertilizerAmount(),
+                            title.getWaterMaxBonus(), title.getFertilizerMaxBonus(), title.getBonusEarnings())
+                    == original.calculatePrice(products, water, fertilizer, title.getWaterMaxBonus(),
+                            title.getFertilizerMaxBonus(), title.getBonusEarnings()),
+                    name + " sells for another price after restoring as a " + title);
+        }
+    }
+
+    private static Plot plot(char choice, int date, int water, int fertilizer) throws InvalidInputException {
+        Crop crop = CropFactory.create(choice, date);
+        crop.setAmounts(water, fertilizer);
+        Plot plot = new Plot();
+        plot.restore(true, false, crop, false);
+        return plot;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
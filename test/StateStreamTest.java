@@ -0,0 +1,140 @@
+import java.util.SplittableRandom;
+
+/**
+ * <p>
+ * Checks that a StateStreamDecoder rebuilds the state of a game from the frames of a StateStreamEncoder:
+ * random commands are played on seeded games, and after every frame each decoder that is synced must have
+ * the day, Farmer, Plots and hash of the game. One decoder follows the stream from its start, one joins in
+ * the middle of it and one misses frames, and both of those must ignore delta frames until the next
+ * keyframe and then be synced again. Streams are checked with and without compression.
+ * <p>
+ * Run from the root of the repository with
+ * javac -d out *.java exceptions/*.java test/*.java && java -cp out StateStreamTest
+ */
+public class StateStreamTest {
+    private static final int GAMES = 40;
+    private static final int FRAMES = 400;
+    private static final int KEYFRAME_INTERVAL = 25;
+    private static final int MAX_COMMANDS = 6;
+    private static final int JOIN_FRAME = 37;
+    private static final int DROP_INTERVAL = 60;
+    private static final String STEP_ACTIONS = "PTWFSXHE";
+
+    private static int checks = 0;
+    private static int compressedFrames = 0;
+    private static int resyncs = 0;
+
+    public static void main(String[] args) {
+        for (int game = 0; game < GAMES; game++) {
+            checkStream(game, false);
+            checkStream(game, true);
+        }
+        check(compressedFrames > 0, "no frame of the compressed streams was deflated");
+        check(resyncs > 0, "no decoder resynced after a dropped frame");
+        System.out.println("StateStreamTest: " + checks + " checks passed, " + compressedFrames
+                + " compressed frames, " + resyncs + " resyncs after dropped frames");
+    }
+
+    /**
+     * Plays a seeded game with random commands, making a frame after every few commands, and checks the
+     * decoders that follow its stream.
+     */
+    private static void checkStream(int seed, boolean compress) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int rows = 4 + random.nextInt(12);
+        int columns = 4 + random.nextInt(12);
+        GameManager gameManager = new GameManager(rows, columns);
+        gameManager.getFarmer().setDisplay(false);
+        gameManager.setSeed(seed);
+        StateStreamEncoder encoder = new StateStreamEncoder(gameManager.getFarm(), gameManager.getFarmer(),
+                KEYFRAME_INTERVAL, compress);
+        StateStreamDecoder fromStart = new StateStreamDecoder();
+        StateStreamDecoder joined = new StateStreamDecoder();
+        StateStreamDecoder lossy = new StateStreamDecoder();
+        String name = "game " + seed + (compress ? " compressed" : "");
+        boolean dropped = false;
+        for (int frame = 0; frame < FRAMES && !gameManager.endCheck(); frame++) {
+            int commands = random.nextInt(MAX_COMMANDS + 1);
+            for (int i = 0; i < commands; i++) {
+                gameManager.applyCommand(STEP_ACTIONS.charAt(random.nextInt(STEP_ACTIONS.length())),
+                        random.nextInt(rows), random.nextInt(columns),
+                        CropFactory.CHOICES.charAt(random.nextInt(CropFactory.CHOICES.length())));
+            }
+            byte[] bytes = encoder.nextFrame(gameManager.getDay());
+            int kind = bytes[0] & 0xFF;
+            boolean keyframe = (kind & ~StateStreamEncoder.COMPRESSED) == StateStreamEncoder.KEYFRAME;
+            check(keyframe == (frame % KEYFRAME_INTERVAL == 0), name + " frame " + frame + " has kind " + kind);
+            check(compress || (kind & StateStreamEncoder.COMPRESSED) == 0, name + " frame " + frame
+                    + " is deflated without compression");
+            if ((kind & StateStreamEncoder.COMPRESSED) != 0) {
+                compressedFrames++;
+            }
+            String at = name + " frame " + frame;
+
+            check(fromStart.apply(bytes), at + " was ignored by the decoder following from the start");
+            checkState(fromStart, gameManager, at);
+
+            if (frame >= JOIN_FRAME) {
+                boolean applied = joined.apply(bytes);
+                boolean waiting = frame < (JOIN_FRAME / KEYFRAME_INTERVAL + 1) * KEYFRAME_INTERVAL;
+                check(applied == !waiting, at + (waiting ? " was applied before the first keyframe"
+                        : " was ignored after the first keyframe") + " by the decoder that joined");
+                check(joined.isSynced() == !waiting, at + " left the decoder that joined synced: "
+                        + joined.isSynced());
+                if (applied) {
+                    checkState(joined, gameManager, at + " (joined)");
+                }
+            }
+
+            if (frame % DROP_INTERVAL == DROP_INTERVAL - 1 && !keyframe) {
+                dropped = true;
+                continue;
+            }
+            boolean applied = lossy.apply(bytes);
+            check(applied == (!dropped || keyframe), at + (applied ? " was applied after a dropped frame"
+                    : " was ignored") + " by the decoder missing frames");
+            check(lossy.isSynced() == applied, at + " left the decoder missing frames synced: " + lossy.isSynced());
+            if (applied) {
+                checkState(lossy, gameManager, at + " (missing frames)");
+                check(lossy.getSequence() == frame, at + " left the decoder missing frames at sequence "
+                        + lossy.getSequence());
+                if (dropped) {
+                    resyncs++;
+                }
+                dropped = false;
+            }
+        }
+        encoder.close();
+    }
+
+    /**
+     * Checks that a synced decoder has the state of the game.
+     */
+    private static void checkState(StateStreamDecoder decoder, GameManager gameManager, String at) {
+        Farmer farmer = gameManager.getFarmer();
+        Farm farm = gameManager.getFarm();
+        check(decoder.getStateHash() == gameManager.stateHash(), at + ": the decoded hash "
+                + decoder.getStateHash() + " is not the hash of the game " + gameManager.stateHash());
+        check(decoder.getDay() == gameManager.getDay(), at + ": day " + decoder.getDay() + " instead of "
+                + gameManager.getDay());
+        check(decoder.getObjectCoins() == farmer.getObjectCoins() && decoder.getLevel() == farmer.getLevel()
+                && decoder.getTotalExpUnits() == farmer.getTotalExpUnits() && decoder.getTitle() == farmer.getTitle(),
+                at + ": the Farmer was decoded as " + decoder.getObjectCoins() + " coins, level " + decoder.getLevel()
+                        + ", " + decoder.getTotalExpUnits() + " EXP units and " + decoder.getTitle());
+        check(decoder.getRows() == farm.getRows() && decoder.getColumns() == farm.getColumns(), at
+                + ": the farm was decoded as " + decoder.getRows() + "x" + decoder.getColumns());
+        for (int i = 0; i < farm.getRows(); i++) {
+            for (int j = 0; j < farm.getColumns(); j++) {
+                check(decoder.getPlotState(i, j) == PlotState.encode(farm.getPlot(i, j)), at + ": Plot (" + i
+                        + ", " + j + ") was decoded as " + decoder.getPlotState(i, j));
+            }
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        checks++;
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+import exceptions.InvalidInputException;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * <p>
+ * Checks the hashes of ZobristHash: that distinct Plot states and distinct game states do not collide over
+ * a large sample, and that the hash the Farm keeps up to date as Plots change equals the hash computed
+ * from scratch by Farm.rehash after random sequences of actions, undos, redos and resets.
+ * <p>
+ * Run from the root of the repository with
+ * javac -d out *.java exceptions/*.java test/*.java && java -cp out ZobristHashTest
+ */
+public class ZobristHashTest {
+    private static final int PLOTS = 100;
+    private static final int MAX_WATER = 10;
+    private static final int MAX_FERTILIZER = 6;
+    private static final int MAX_DATE = 20;
+    private static final int GAMES = 2000;
+    private static final int STEPS = 200;
+    private static final String STEP_ACTIONS = "PTWFSXHEUDZ";
+
+    public static void main(String[] args) throws InvalidInputException {
+        checkPlotKeys();
+        checkGameStates();
+    }
+
+    /**
+     * Checks that every Plot of a 10x10 farm has a different key in every state of a Crop that is planted
+     * on one of 20 days and watered and fertilized up to 10 and 6 times, plowed or withered.
+     */
+    private static void checkPlotKeys() throws InvalidInputException {
+        String choices = CropFactory.CHOICES;
+        long[] keys = new long[PLOTS * choices.length() * 2 * (MAX_WATER + 1) * (MAX_FERTILIZER + 1) * MAX_DATE];
+        int count = 0;
+        Plot plot = new Plot();
+        for (int index = 0; index < PLOTS; index++) {
+            for (char choice : choices.toCharArray()) {
+                for (int withered = 0; withered < 2; withered++) {
+                    for (int water = 0; water <= MAX_WATER; water++) {
+                        for (int fertilizer = 0; fertilizer <= MAX_FERTILIZER; fertilizer++) {
+                            for (int date = 1; date <= MAX_DATE; date++) {
+                                Crop crop = CropFactory.create(choice, date);
+                                crop.setAmounts(water, fertilizer);
+                                plot.restore(true, false, crop, withered == 1);
+                                keys[count++] = ZobristHash.plotKey(index, plot);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        Arrays.sort(keys);
+        int collisions = 0;
+        for (int i = 1; i < keys.length; i++) {
+            if (keys[i] == keys[i - 1]) {
+                collisions++;
+            }
+        }
+        check(collisions == 0, collisions + " collisions among " + keys.length + " Plot keys");
+        System.out.println("ZobristHashTest: " + keys.length + " distinct Plot states, no collisions");
+    }
+
+    /**
+     * Plays random games, checking after every step that the farm's hash equals its hash computed again,
+     * and that no two distinct game states reached have the same hash of the game.
+     */
+    private static void checkGameStates() {
+        SplittableRandom random = new SplittableRandom(34);
+        Map<Long, String> seen = new HashMap<>();
+        int states = 0;
+        int steps = 0;
+        for (int game = 0; game < GAMES; game++) {
+            GameManager gameManager = new GameManager(3, 4);
+            gameManager.getFarmer().setDisplay(false);
+            gameManager.setSeed(game);
+            gameManager.enableUndo(20, 200);
+            Farm farm = gameManager.getFarm();
+            for (int step = 0; step < STEPS && !gameManager.endCheck(); step++) {
+                char action = STEP_ACTIONS.charAt(random.nextInt(STEP_ACTIONS.length()));
+                switch (action) {
+                    case 'U' -> gameManager.undo();
+                    case 'D' -> gameManager.redo();
+                    case 'Z' -> {
+                        if (random.nextInt(20) == 0) {
+                            gameManager.reset();
+                        }
+                    }
+                    default -> gameManager.applyCommand(action, random.nextInt(3), random.nextInt(4),
+                            CropFactory.CHOICES.charAt(random.nextInt(CropFactory.CHOICES.length())));
+                }
+                steps++;
+                long incremental = farm.getStateHash();
+                farm.rehash();
+                check(incremental == farm.getStateHash(), "game " + game + " step " + step + " after " + action
+                        + ": the incremental hash " + incremental + " is not the rehashed " + farm.getStateHash());
+
+                String state = describe(gameManager);
+                String previous = seen.putIfAbsent(gameManager.stateHash(), state);
+                check(previous == null || previous.equals(state), "game " + game + " step " + step
+                        + ": the states " + previous + " and " + state + " have the same hash");
+                states++;
+            }
+        }
+        System.out.println("ZobristHashTest: " + steps + " steps with matching incremental hashes, "
+                + seen.size() + " distinct game states out of " + states + ", no collisions");
+    }
+
+    /**
+     * Describes everything the hash of a game covers.
+     */
+    private static String describe(GameManager gameManager) {
+        Farmer farmer = gameManager.getFarmer();
+        StringBuilder state = new StringBuilder().append(gameManager.getDay()).append(',')
+                .append(farmer.getObjectCoins()).append(',').append(farmer.getLevel()).append(',')
+                .append(farmer.getTitle());
+        Farm farm = gameManager.getFarm();
+        for (int i = 0; i < farm.getRows(); i++) {
+            for (int j = 0; j < farm.getColumns(); j++) {
+                state.append('|').append(PlotState.encode(farm.getPlot(i, j)));
+            }
+        }
+        return state.toString();
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
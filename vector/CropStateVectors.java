@@ -0,0 +1,51 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * <p>
+ * This class is the pass of CropStateColumns.evaluate written with the Vector API, which checks as many
+ * Plots at a time as the widest vector of the machine holds and turns the results of the compares straight
+ * into the bits of the masks, without the lanes the scalar loop of CropStateColumns packs afterwards.
+ * <p>
+ * The Vector API is still an incubator module, so this class is kept apart from the others and is only
+ * compiled and used when the module is added:
+ * javac --add-modules jdk.incubator.vector -d out *.java exceptions/*.java vector/*.java
+ * and run with java --add-modules jdk.incubator.vector. CropStateColumns falls back to its scalar loop when
+ * the module or this class is missing.
+ */
+public class CropStateVectors implements CropStateColumns.Kernel {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public int evaluate(int day, int size, int[] date, int[] harvestTime, int[] water, int[] waterMin,
+            int[] fertilizer, int[] fertilizerMin, int[] found, long[] matured, long[] withered) {
+        IntVector today = IntVector.broadcast(SPECIES, day);
+        int words = size >>> 6;
+        for (int word = 0; word < words; word++) {
+            long mature = 0;
+            long dead = 0;
+            // A species holds a power of two of ints, so every word is a whole amount of vectors.
+            for (int shift = 0; shift < 64; shift += SPECIES.length()) {
+                int i = (word << 6) + shift;
+                IntVector sinceMaturity = today.sub(IntVector.fromArray(SPECIES, date, i))
+                        .sub(IntVector.fromArray(SPECIES, harvestTime, i));
+                VectorMask<Integer> matures = sinceMaturity.compare(VectorOperators.EQ, 0);
+                IntVector waterLeft = IntVector.fromArray(SPECIES, water, i)
+                        .sub(IntVector.fromArray(SPECIES, waterMin, i));
+                IntVector fertilizerLeft = IntVector.fromArray(SPECIES, fertilizer, i)
+                        .sub(IntVector.fromArray(SPECIES, fertilizerMin, i));
+                VectorMask<Integer> lacking = waterLeft.or(fertilizerLeft).compare(VectorOperators.LT, 0);
+                VectorMask<Integer> dies = IntVector.fromArray(SPECIES, found, i).compare(VectorOperators.NE, 0)
+                        .or(sinceMaturity.compare(VectorOperators.GT, 0))
+                        .or(matures.and(lacking));
+                mature |= matures.toLong() << shift;
+                dead |= dies.toLong() << shift;
+            }
+            matured[word] = mature;
+            withered[word] = dead;
+        }
+        return words << 6;
+    }
+}